@@ -43,6 +43,8 @@ import android.view.*;
 import android.widget.*;
 import com.ti.fm.FmReceiver;
 import com.ti.fm.FmReceiverIntent;
+import com.ti.fm.FmRxConfiguration;
+import com.ti.fm.IFmReceiverCallback;
 import com.ti.fm.IFmConstants;
 import com.ti.fmapp.adapters.PreSetsAdapter;
 import com.ti.fmapp.database.PreSetsDB;
@@ -119,7 +121,7 @@ public class FmRxApp extends Activity implements View.OnClickListener,
     private ImageView imgFmMode, imgFmVolume;//, imgFmLoudspeaker;
     private TextView txtStatusMsg, txtRadioText;
     private TextView txtPsText;
-    private ProgressDialog pd = null, configPd;
+    private ProgressDialog pd = null;
 
     /**
      * *****************************************
@@ -211,6 +213,8 @@ public class FmRxApp extends Activity implements View.OnClickListener,
 
     private OrientationListener mOrientationListener;
     private boolean hasInitializedFMReceiver = false;
+    /* Events come through mFmCallback instead of mReceiver */
+    private boolean mUsingFmCallback = false;
 
     Context mContext;
 
@@ -412,6 +416,17 @@ public class FmRxApp extends Activity implements View.OnClickListener,
     public void onServiceConnected() {
         Utils.debugFunc("onServiceConnected", Log.INFO, mPrintDebugInfo);
         mFmServiceConnected = true;
+        /*
+         * Take the events over binder once the service is there; mReceiver is
+         * only kept when the service cannot register the callback.
+         */
+        if (!mUsingFmCallback && sFmReceiver != null
+                && sFmReceiver.registerCallback(mFmCallback, null)) {
+            mUsingFmCallback = true;
+            if (hasInitializedFMReceiver) {
+                unregisterReceiver(mReceiver);
+            }
+        }
         startup();
     }
 
@@ -888,93 +903,78 @@ public class FmRxApp extends Activity implements View.OnClickListener,
         SharedPreferences fmConfigPreferences = getSharedPreferences(
                 "fmConfigPreferences", MODE_PRIVATE);
 
-        // Set Band
         int band = fmConfigPreferences.getInt(BAND, DEFAULT_BAND);
-        Utils.debugFunc("setRdsConfig()--- band= " + band, Log.INFO, mPrintDebugInfo);
-        if (band != sBand) // If Band is same as the one set already do not set
-        // it again
-        {
-
-            if (MAKE_FM_APIS_BLOCKING) {
-                // Code for blocking call
-                mStatus = sFmReceiver.setBand(band);
-                if (!mStatus) {
-                    Utils.debugFunc("setRdsConfig()-- setBand ->Error", Log.ERROR, mPrintDebugInfo);
-                    showAlert(this, "FmReceiver", getString(R.string.not_able_to_setband_to_value));
-                } else {
-                    sBand = band;
-                    if (sdefaultSettingOn) {
-                        /* Set the default frequency */
-                        if (sBand == FM_BAND_EUROPE_US) {
-                            lastTunedFrequency = DEFAULT_FREQ_EUROPE;
-                        } else {
-                            lastTunedFrequency = DEFAULT_FREQ_JAPAN;
-                        }
+        int deEmp = fmConfigPreferences.getInt(DEEMP, DEFAULT_DEEMP);
+        int mode = fmConfigPreferences.getInt(MODE, DEFAULT_MODE);
+        int channelSpace = fmConfigPreferences.getInt(CHANNELSPACE,
+                DEFAULT_CHANNELSPACE);
+        boolean rdsEnable = fmConfigPreferences.getBoolean(RDS, DEFAULT_RDS);
+        int rdsSystem = fmConfigPreferences.getInt(RDSSYSTEM,
+                DEFAULT_RDS_SYSTEM);
+        boolean rdsAfSwitch = fmConfigPreferences.getBoolean(RDSAF,
+                DEFAULT_RDS_AF);
+        int rdsAf = rdsAfSwitch ? 1 : 0;
+        int rssiThreshHold = fmConfigPreferences.getInt(RSSI, DEFAULT_RSSI);
+        Utils.debugFunc("setRdsConfig()--- band= " + band + " DeEmp= " + deEmp
+                + " mode= " + mode + " channelSpace= " + channelSpace
+                + " rdsEnable= " + rdsEnable + " rdsSystem= " + rdsSystem
+                + " rdsAfSwitch= " + rdsAf + " rssiThreshHold= " + rssiThreshHold,
+                Log.INFO, mPrintDebugInfo);
+
+        /*
+         * The whole configuration goes to the service in one call. It only
+         * sends the values the chip does not hold yet and returns once they
+         * have completed, with the bits of the fields that failed.
+         */
+        FmRxConfiguration config = new FmRxConfiguration()
+                .setBand(band)
+                .setDeEmphasisFilter(deEmp)
+                .setMonoStereoMode(mode)
+                .setChannelSpacing(channelSpace)
+                .setRdsEnabled(rdsEnable)
+                .setRdsSystem(rdsSystem)
+                .setRdsAfSwitchMode(rdsAf)
+                .setRssiThreshold(rssiThreshHold);
+        int failed = sFmReceiver.applyConfiguration(config);
+
+        // Band
+        if (band != sBand) {
+            if ((failed & FmRxConfiguration.FIELD_BAND) != 0) {
+                Utils.debugFunc("setRdsConfig()-- setBand ->Error", Log.ERROR, mPrintDebugInfo);
+                showAlert(this, "FmReceiver", getString(R.string.not_able_to_setband_to_value));
+            } else {
+                sBand = band;
+                if (sdefaultSettingOn) {
+                    /* Set the default frequency */
+                    if (sBand == FM_BAND_EUROPE_US) {
+                        lastTunedFrequency = DEFAULT_FREQ_EUROPE;
+                    } else {
+                        lastTunedFrequency = DEFAULT_FREQ_JAPAN;
                     }
+                }
 
+                if (MAKE_FM_APIS_BLOCKING) {
                     mStatus = sFmReceiver.tune((int) (lastTunedFrequency * 1000));
                     if (!mStatus) {
                         showAlert(getParent(), "FmReceiver", getString(R.string.not_able_to_tune));
                     }
-
-                }
-
-            } else {
-
-                mStatus = sFmReceiver.setBand(band);
-                if (!mStatus) {
-                    Utils.debugFunc("setRdsConfig()-- setBand ->Error", Log.ERROR, mPrintDebugInfo);
-                    showAlert(this, "FmReceiver",
-                            getString(R.string.not_able_to_setband_to_value));
-                } else {
-                    sBand = band;
-                    if (sdefaultSettingOn) {
-                        /* Set the default frequency */
-                        if (sBand == FM_BAND_EUROPE_US) {
-                            lastTunedFrequency = DEFAULT_FREQ_EUROPE;
-                        } else {
-                            lastTunedFrequency = DEFAULT_FREQ_JAPAN;
-                        }
-                    }
-
                 }
             }
         }
 
-
-        // Set De-emp Filter
-        int deEmp = fmConfigPreferences.getInt(DEEMP, DEFAULT_DEEMP);
-        if (mDeEmpFilter != deEmp)// If De-Emp filter is same as the one set
-        // already do not set it again
-        {
-            if (MAKE_FM_APIS_BLOCKING) {
-                mStatus = sFmReceiver.setDeEmphasisFilter(deEmp);
-            }
-            //else
-            // mStatus = sFmReceiver.rxSetDeEmphasisFilter_nb(deEmp);
-            Utils.debugFunc("setRdsConfig()--- DeEmp= " + deEmp, Log.INFO, mPrintDebugInfo);
-
-            if (!mStatus) {
+        // De-emp Filter
+        if (mDeEmpFilter != deEmp) {
+            if ((failed & FmRxConfiguration.FIELD_DEEMPHASIS_FILTER) != 0) {
                 Utils.debugFunc("setRdsConfig()-- setDeEmphasisFilter ->Error", Log.ERROR, mPrintDebugInfo);
                 showAlert(this, "FmReceiver",
                         getString(R.string.not_able_to_set_deemp_filter_to_value));
-
             }
             mDeEmpFilter = deEmp;
-
         }
 
-
-        // Set Mode
-        int mode = fmConfigPreferences.getInt(MODE, DEFAULT_MODE);
-        if (mMode != mode)// If Mode is same as the one set already do not set it
-        // again
-        {
-
-            if (MAKE_FM_APIS_BLOCKING) {
-                mStatus = sFmReceiver.setMonoStereoMode(mode);
-            }
-            if (!mStatus) {
+        // Mode
+        if (mMode != mode) {
+            if ((failed & FmRxConfiguration.FIELD_MONO_STEREO_MODE) != 0) {
                 showAlert(this, "FmReceiver", getString(R.string.not_able_to_set_mode));
             } else {
                 mMode = mode;
@@ -984,23 +984,11 @@ public class FmRxApp extends Activity implements View.OnClickListener,
                     imgFmMode.setImageResource(R.drawable.fm_mono);
                 }
             }
-
         }
 
-
-        /** Set channel spacing to the one selected by the user */
-        int channelSpace = fmConfigPreferences.getInt(CHANNELSPACE,
-                DEFAULT_CHANNELSPACE);
-        Utils.debugFunc("setChannelSpacing()--- channelSpace= " + channelSpace, Log.INFO, mPrintDebugInfo);
-        if (channelSpace != sChannelSpace) // If channelSpace is same as the one
-        // set already do not set
-        // it again
-        {
-            if (MAKE_FM_APIS_BLOCKING) {
-                mStatus = sFmReceiver.setChannelSpacing(channelSpace);
-            }
-
-            if (!mStatus) {
+        // Channel spacing
+        if (channelSpace != sChannelSpace) {
+            if ((failed & FmRxConfiguration.FIELD_CHANNEL_SPACING) != 0) {
                 Utils.debugFunc("setChannelSpacing()-- setChannelSpacing ->Error", Log.ERROR, mPrintDebugInfo);
                 showAlert(this, "FmReceiver",
                         getString(R.string.not_able_to_set_channel_spacing_to_value));
@@ -1008,93 +996,54 @@ public class FmRxApp extends Activity implements View.OnClickListener,
             sChannelSpace = channelSpace;
         }
 
-
-        // set RDS related configuration
-        boolean rdsEnable = fmConfigPreferences.getBoolean(RDS, DEFAULT_RDS);
-        Utils.debugFunc("setRDS()--- rdsEnable= " + rdsEnable, Log.INFO, mPrintDebugInfo);
+        // RDS
         if (mRds != rdsEnable) {
-
-            if (rdsEnable) {
-                if (MAKE_FM_APIS_BLOCKING) {
-                    mStatus = sFmReceiver.enableRds();
-                }
-                if (!mStatus) {
+            if ((failed & FmRxConfiguration.FIELD_RDS_ENABLED) != 0) {
+                if (rdsEnable) {
                     Utils.debugFunc("setRDS()-- enableRds() ->Error", Log.ERROR, mPrintDebugInfo);
                     showAlert(this, "FmReceiver", getString(R.string.not_able_enable_rds));
-                }
-
-            } else {
-                if (MAKE_FM_APIS_BLOCKING) {
-                    mStatus = sFmReceiver.disableRds();
-                }
-
-                if (!mStatus) {
+                } else {
                     Utils.debugFunc("setRDS()-- disableRds() ->Error", Log.ERROR, mPrintDebugInfo);
                     showAlert(this, "FmReceiver", getString(R.string.not_able_disable_rds));
-                } else {
-                    Utils.debugFunc("setRDS()-- disableRds() ->success", Log.ERROR, mPrintDebugInfo);
-                    /* clear the PS and RDS text */
-                    txtPsText.setText(null);
-                    txtRadioText.setText(null);
                 }
+            } else if (!rdsEnable) {
+                /* clear the PS and RDS text */
+                txtPsText.setText(null);
+                txtRadioText.setText(null);
             }
             mRds = rdsEnable;
         }
 
-        // setRdssystem
-        int rdsSystem = fmConfigPreferences.getInt(RDSSYSTEM,
-                DEFAULT_RDS_SYSTEM);
-        if (DBG) {
-            Utils.debugFunc("setRdsSystem()--- rdsSystem= " + rdsSystem, Log.DEBUG, mPrintDebugInfo);
-        }
+        // RDS system
         if (mRdsSystem != rdsSystem) {
-            // Set RDS-SYSTEM if a new choice is made by the user
-
-            if (MAKE_FM_APIS_BLOCKING) {
-                mStatus = sFmReceiver.setRdsSystem(fmConfigPreferences.getInt(
-                        RDSSYSTEM, DEFAULT_RDS_SYSTEM));
-            }
-
-            if (!mStatus) {
+            if ((failed & FmRxConfiguration.FIELD_RDS_SYSTEM) != 0) {
                 Utils.debugFunc("setRdsSystem()-- setRdsSystem ->Error", Log.ERROR, mPrintDebugInfo);
                 showAlert(this, "FmReceiver", getString(R.string.not_able_to_set_rds_to_value));
             }
             mRdsSystem = rdsSystem;
         }
 
-        boolean rdsAfSwitch = fmConfigPreferences.getBoolean(RDSAF,
-                DEFAULT_RDS_AF);
-        int rdsAf = rdsAfSwitch ? 1 : 0;
-        if (DBG) {
-            Utils.debugFunc("setRdsAf()--- rdsAfSwitch= " + rdsAf, Log.DEBUG, mPrintDebugInfo);
-        }
+        // RDS AF
         if (mRdsAf != rdsAfSwitch) {
-            // Set RDS-AF if a new choice is made by the user
-
-            if (MAKE_FM_APIS_BLOCKING) {
-                mStatus = sFmReceiver.setRdsAfSwitchMode(rdsAf);
-            }
-            if (!mStatus) {
-                Utils.debugFunc("setRdsAf()-- setRdsAfSwitchMode(1) ->Error", Log.ERROR, mPrintDebugInfo);
+            if ((failed & FmRxConfiguration.FIELD_RDS_AF_SWITCH_MODE) != 0) {
+                Utils.debugFunc("setRdsAf()-- setRdsAfSwitchMode ->Error", Log.ERROR, mPrintDebugInfo);
                 showAlert(this, "FmReceiver", getString(R.string.not_able_to_set_rds_af_on));
             }
             mRdsAf = rdsAfSwitch;
         }
-        // Set Rssi
-        int rssiThreshHold = fmConfigPreferences.getInt(RSSI, DEFAULT_RSSI);
-        Utils.debugFunc("setRssi()-ENTER --- rssiThreshHold= " + rssiThreshHold, Log.INFO, mPrintDebugInfo);
-
-        // Set RSSI if a new value is entered by the user
 
-        if (MAKE_FM_APIS_BLOCKING) {
-            mStatus = sFmReceiver.setRssiThreshold(rssiThreshHold);
-        }
-        if (!mStatus) {
+        // Rssi
+        if ((failed & FmRxConfiguration.FIELD_RSSI_THRESHOLD) != 0) {
             showAlert(this, "FmReceiver", getString(R.string.not_able_to_set_rssi_threshold));
         }
-
         mRssi = rssiThreshHold;
 
+        /*
+         * Everything has completed when applyConfiguration returns, and an
+         * unchanged RSSI threshold is not sent, so its event is not awaited
+         */
+        configurationState = CONFIGURATION_STATE_IDLE;
+
         Utils.debugFunc("setRdsConfig()-exit", Log.INFO, mPrintDebugInfo);
 
     }
@@ -1266,27 +1215,6 @@ public class FmRxApp extends Activity implements View.OnClickListener,
         }
     }
 
-    /**
-     * Adds Delay of 3 seconds
-     */
-    private void insertDelayThread() {
-
-        new Thread() {
-            public void run() {
-                try {
-                    // Add some delay to make sure all configuration has been
-                    // completed.
-                    sleep(3000);
-                } catch (Exception e) {
-                    Utils.debugFunc("InsertDelayThread()-- Exception!", Log.ERROR, mPrintDebugInfo);
-                }
-                // Dismiss the Dialog
-                configPd.dismiss();
-            }
-        }.start();
-
-    }
-
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
         Utils.debugFunc("onActivityResult called", Log.INFO, mPrintDebugInfo);
@@ -1316,11 +1244,6 @@ public class FmRxApp extends Activity implements View.OnClickListener,
 
 
                         setRdsConfig();
-                        configPd = ProgressDialog.show(this, getString(R.string.please_wait),
-                                getString(R.string.applying_new_config), true, false);
-                        // The delay is inserted to make sure all the configurations
-                        // have been completed.
-                        insertDelayThread();
                     }
                 }
 
@@ -1677,12 +1600,32 @@ public class FmRxApp extends Activity implements View.OnClickListener,
          * when out of the FM application screen. Will only unregister if it has been registered to begin with
          */
         if (hasInitializedFMReceiver) {
-            unregisterReceiver(mReceiver);
+            if (!mUsingFmCallback) {
+                unregisterReceiver(mReceiver);
+            }
             unregisterReceiver(mNotificationsReceiver);
         }
+        if (mUsingFmCallback && sFmReceiver != null) {
+            sFmReceiver.unregisterCallback(mFmCallback);
+        }
         sFmReceiver.close();
     }
 
+    /*
+     * Receiver events sent by the service over binder. They carry the action
+     * and extras of the broadcasts, so mReceiver dispatches them; it only
+     * posts to mHandler and can run on the binder thread.
+     */
+    private final IFmReceiverCallback.Stub mFmCallback = new IFmReceiverCallback.Stub() {
+        public void onEvent(String action, Bundle extras) {
+            Intent intent = new Intent(action);
+            if (extras != null) {
+                intent.putExtras(extras);
+            }
+            mReceiver.onReceive(FmRxApp.this, intent);
+        }
+    };
+
     // Receives all of the FM intents and dispatches to the proper handler
 
     private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
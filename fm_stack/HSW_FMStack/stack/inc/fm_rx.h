@@ -545,6 +545,13 @@ struct _FmRxEvent {
 			FMC_U8 startIndex;
 
 			FmcRdsRepertoire repertoire;
+
+			/*
+				FMC_TRUE when the text ends with this subsequence: its "0x0D" was
+				received (it is not part of msg) or the last index of the group
+				type was reached. FMC_FALSE when only a run of the text is sent.
+			*/
+			FMC_BOOL endOfText;
 		} radioTextData;
 		
 		struct {
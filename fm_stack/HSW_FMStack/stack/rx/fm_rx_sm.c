@@ -255,7 +255,7 @@ FMC_STATIC void FM_FinishPowerOn(FmRxStatus status);
 FMC_STATIC void send_fm_event_ps_changed(FMC_U32 freq, FMC_U8 *data);
 FMC_STATIC void send_fm_event_af_list_changed(FMC_U16 pi, FMC_U8 afListSize, FmcFreq *afList);
 FMC_STATIC void send_fm_event_af_jump(FmRxEventType eventType,FMC_U8 status, FMC_U16 Pi, FMC_U32 oldFreq, FMC_U32 newFreq);
-FMC_STATIC void send_fm_event_radio_text(FMC_BOOL changed, FMC_U8 length, FMC_U8 *radioText,FMC_U8 dataStartIndex);
+FMC_STATIC void send_fm_event_radio_text(FMC_BOOL changed, FMC_U8 length, FMC_U8 *radioText,FMC_U8 dataStartIndex, FMC_BOOL endOfText);
 FMC_STATIC void send_fm_event_most_mode_changed(FMC_U8 mode);
 FMC_STATIC void send_fm_event_pty_changed(FmcRdsPtyCode ptyCode);
 FMC_STATIC void send_fm_event_pi_changed(FmcRdsPiCode piCode);
@@ -507,7 +507,7 @@ FMC_STATIC void handleRdsGroup0(FmRxRdsDataFormat  *rdsFormat);
 FMC_STATIC FMC_BOOL checkNewAf(FMC_U8 af);
 FMC_STATIC void handleRdsGroup2(FmRxRdsDataFormat  *rdsFormat);
 FMC_STATIC FMC_BOOL rdsParseFunc_CheckIfReachedEndOfText(FMC_U8 * index, FMC_U8 rtIndex);
-FMC_STATIC void rdsParseFunc_sendRtAndResetIndexes(FMC_U8 zeroD_Index);
+FMC_STATIC void rdsParseFunc_sendRtAndResetIndexes(FMC_U8 zeroD_Index, FMC_BOOL endOfText);
 FMC_STATIC void           rdsParseFunc_Switch2DolphinForm(FmRxRdsDataFormat  *rdsFormat);
 FMC_STATIC FmcRdsGroupTypeMask rdsParseFunc_getGroupType(FMC_U8 group);
 FMC_STATIC FMC_BOOL         rdsParseFunc_updateRepertoire(FMC_U8 byte1,FMC_U8 byte2);
@@ -4286,7 +4286,7 @@ FMC_STATIC void handleRdsGroup2(FmRxRdsDataFormat  *rdsFormat)
     */
     if((_fmRxSmData.rdsParams.nextRtIndex != rtIndex)||(abFlag != _fmRxSmData.rdsParams.prevABFlag)) 
     {
-        rdsParseFunc_sendRtAndResetIndexes(zeroD_Index);
+        rdsParseFunc_sendRtAndResetIndexes(zeroD_Index, FMC_FALSE);
         
         /* Flag that A/B flag was changed for the next time you send data to app*/
         if(abFlag != _fmRxSmData.rdsParams.prevABFlag) 
@@ -4328,7 +4328,7 @@ FMC_STATIC void handleRdsGroup2(FmRxRdsDataFormat  *rdsFormat)
     /* Is this the last index? */
     if (rdsParseFunc_CheckIfReachedEndOfText(&zeroD_Index,rtIndex))
     {
-        rdsParseFunc_sendRtAndResetIndexes(zeroD_Index);
+        rdsParseFunc_sendRtAndResetIndexes(zeroD_Index, FMC_TRUE);
     }
 }
 /*
@@ -4336,8 +4336,10 @@ FMC_STATIC void handleRdsGroup2(FmRxRdsDataFormat  *rdsFormat)
 *    - the on parameter index is used to indicate the location of "0x0D" in the last group 
 *       whitch is needed to calculate corectly the start location of the data.
 *       if "0x0D" was not resieved zero will be sent as index   
+*    - endOfText is FMC_TRUE when the data ends the text ("0x0D" or last index)
+*       and FMC_FALSE when only a run of the text is flushed
 */
-FMC_STATIC void rdsParseFunc_sendRtAndResetIndexes(FMC_U8 zeroD_Index)
+FMC_STATIC void rdsParseFunc_sendRtAndResetIndexes(FMC_U8 zeroD_Index, FMC_BOOL endOfText)
 {
     FMC_U8 indexOfstartLocationOfData;
     /*I repertoire was updated then first 2 bytes in first group where repertoire and not rt data*/
@@ -4361,7 +4363,8 @@ FMC_STATIC void rdsParseFunc_sendRtAndResetIndexes(FMC_U8 zeroD_Index)
         send_fm_event_radio_text(_fmRxSmData.rdsParams.abFlagChanged,  
                             _fmRxSmData.rdsParams.rtLength,  
                             (FMC_U8*)(_fmRxSmData.rdsParams.radioText), 
-                            indexOfstartLocationOfData); 
+                            indexOfstartLocationOfData,
+                            endOfText); 
         FMC_LOG_INFO(("handleRdsGroup2: Sent RT to app length = %d start index = %d .\n",
                     _fmRxSmData.rdsParams.rtLength, 
                     indexOfstartLocationOfData)); 
@@ -4394,8 +4397,8 @@ FMC_STATIC FMC_BOOL rdsParseFunc_CheckIfReachedEndOfText(FMC_U8 * index, FMC_U8
         }
     }
     /* If we reached the last valid index */
-    /* Udi - Replace RDS_RADIO_TEXT_SIZEwith 64 / 32 depending on group type */
-    if(rtIndex + 1 >= (RDS_RADIO_TEXT_SIZE/_fmRxSmData.rdsParams.numOfRtBytesInGroup))
+    /* 16 groups for both versions: 64 characters in 2A, 32 characters in 2B */
+    if(rtIndex + 1 >= (RDS_BLOCK_B_RT_INDEX_MASK + 1))
     {
         *index = zeroDindex;
         return FMC_TRUE;
@@ -4958,13 +4961,14 @@ FMC_STATIC void send_fm_event_af_jump(FmRxEventType eventType,FMC_U8 status, FMC
     _FM_RX_SM_SendAppEvent(&_fmRxSmData.context, status, FM_RX_CMD_NONE, eventType);
 }
 
-FMC_STATIC void send_fm_event_radio_text(FMC_BOOL changed, FMC_U8 length, FMC_U8 *radioText,FMC_U8 dataStartIndex)
+FMC_STATIC void send_fm_event_radio_text(FMC_BOOL changed, FMC_U8 length, FMC_U8 *radioText,FMC_U8 dataStartIndex, FMC_BOOL endOfText)
 {
     _fmRxSmData.context.appEvent.p.radioTextData.repertoire = _fmRxSmData.rdsData.repertoire;
     _fmRxSmData.context.appEvent.p.radioTextData.resetDisplay = changed;
     _fmRxSmData.context.appEvent.p.radioTextData.startIndex = dataStartIndex;
     _fmRxSmData.context.appEvent.p.radioTextData.len = length;
     _fmRxSmData.context.appEvent.p.radioTextData.msg = radioText;
+    _fmRxSmData.context.appEvent.p.radioTextData.endOfText = endOfText;
     _FM_RX_SM_SendAppEvent(&_fmRxSmData.context, FM_RX_STATUS_SUCCESS, FM_RX_CMD_NONE, FM_RX_EVENT_RADIO_TEXT);
 }
 
@@ -5,7 +5,9 @@ include $(CLEAR_VARS)
 LOCAL_MODULE := fmreceiverif
 LOCAL_MODULE_TAGS := optional
 LOCAL_SRC_FILES := $(call all-java-files-under, src) \
-           src/java/com/ti/fm/IFmReceiver.aidl
+           src/java/com/ti/fm/IFmReceiver.aidl \
+           src/java/com/ti/fm/IFmReceiverCallback.aidl
+LOCAL_AIDL_INCLUDES := $(LOCAL_PATH)/src/java
 
 include $(BUILD_JAVA_LIBRARY)
 
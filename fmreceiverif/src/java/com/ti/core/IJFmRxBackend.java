@@ -0,0 +1,129 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      IJFmRxBackend.java
+ *
+ *   BRIEF:          Operations JFmRx hands down to the FM stack.
+ *
+ *   DESCRIPTION:    One method per nativeJFmRx_* entry point, same arguments
+ *                   and same status values. The default backend calls into
+ *                   JFmRxNative.cpp; JFmRxSimBackend implements them in Java.
+ *                   A backend reports events through the JFmRx.nativeCb_*
+ *                   methods, serialized on a single thread.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import java.nio.ByteBuffer;
+
+public interface IJFmRxBackend {
+
+	int create(JFmContext contextValue);
+
+	int destroy(long contextValue);
+
+	int enable(long contextValue);
+
+	int disable(long contextValue);
+
+	int setBand(long contextValue, int jFmBand);
+
+	int getBand(long contextValue);
+
+	int tune(long contextValue, int jFmFreq);
+
+	int getTunedFrequency(long contextValue);
+
+	int setMonoStereoMode(long contextValue, int jFmMonoStereoMode);
+
+	int getMonoStereoMode(long contextValue);
+
+	int setMuteMode(long contextValue, int jFmMuteMode);
+
+	int getMuteMode(long contextValue);
+
+	int setRssiThreshold(long contextValue, int jFmRssi);
+
+	int getRssiThreshold(long contextValue);
+
+	int getRssi(long contextValue);
+
+	int setVolume(long contextValue, int jFmVolume);
+
+	int getVolume(long contextValue);
+
+	int setChannelSpacing(long contextValue, int jFmChannelSpacing);
+
+	int getChannelSpacing(long contextValue);
+
+	int setDeEmphasisFilter(long contextValue, int jFmEmphasisFilter);
+
+	int getDeEmphasisFilter(long contextValue);
+
+	int seek(long contextValue, int jFmDirection);
+
+	int stopSeek(long contextValue);
+
+	int enableRDS(long contextValue);
+
+	int disableRDS(long contextValue);
+
+	int enableAudioRouting(long contextValue);
+
+	int disableAudioRouting(long contextValue);
+
+	int setRdsAfSwitchMode(long contextValue, int jRdsAfSwitchMode);
+
+	int getRdsAfSwitchMode(long contextValue);
+
+	int changeAudioTarget(long contextValue, int audioTargetMask,
+			int digitalConfig);
+
+	int changeDigitalTargetConfiguration(long contextValue, int digitalConfig);
+
+	int setRfDependentMuteMode(long contextValue, int mode);
+
+	int getRfDependentMute(long contextValue);
+
+	int setRdsSystem(long contextValue, int rdsSystem);
+
+	int getRdsSystem(long contextValue);
+
+	int setRdsGroupMask(long contextValue, long groupMask);
+
+	int getRdsGroupMask(long contextValue);
+
+	int isValidChannel(long contextValue);
+
+	int completeScan(long contextValue);
+
+	int getFwVersion(long contextValue);
+
+	int getCompleteScanProgress(long contextValue);
+
+	int stopCompleteScan(long contextValue);
+
+	int getDispatcherStats(long[] stats);
+
+	int setRawRdsRing(ByteBuffer buffer, int slots);
+
+	int setRawRdsBatching(int batchSize, int maxLatencyMs, long groupMask);
+}
@@ -32,6 +32,9 @@
 package com.ti.jfm.core;
 
 import android.util.Log;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import com.ti.jfm.core.*;
 
@@ -45,6 +48,90 @@ public class JFmRx {
 	private static JFmContext context;
 	/** Hash table to store JFmContext handles based upon JFmRx. */
 	private static HashMap<JFmContext, JFmRx> mRxContextsTable = new HashMap<JFmContext, JFmRx>();
+	/** Last resolved callback target, avoids a table lookup per upcall. */
+	private static volatile JFmRx mCallbackRx = null;
+	private long mContextValue = JFmContext.INVALID_CONTEXT_VALUE;
+
+	/*
+	 * Wrappers handed to ICallback. Upcalls arrive serialized from the native
+	 * stack, so each instance is refilled per event instead of allocated.
+	 */
+	private final JFmRxRdsPiCode mCbPiCode = new JFmRxRdsPiCode(0);
+	private final JFmRxRdsPtyCode mCbPtyCode = new JFmRxRdsPtyCode(0);
+	private final JFmRxTuneFreq mCbTuneFreq = new JFmRxTuneFreq(0);
+	private final JFmRxAfFreq mCbAfFreq = new JFmRxAfFreq(0);
+	private final JFmRxAfListSize mCbAfListSize = new JFmRxAfListSize(0);
+	private final JFmRxFreq mCbFreq = new JFmRxFreq(0);
+
+	/** Raw RDS ring filled by the native stack, null in per-group mode */
+	private JFmRxRdsRing mRdsRing = null;
+
+	/** Future based facade completed from fmRxCmdDone, if one was created */
+	private volatile JFmRxAsync mAsync = null;
+
+	/** Round trip latency of every command, from issue to fmRxCmdDone */
+	private final JFmRxCmdStats mCmdStats = new JFmRxCmdStats();
+
+	/**
+	 * Where the commands go, JFmRxNative.cpp unless replaced by setBackend().
+	 * Always traced by JFmRxTrace.
+	 */
+	private static volatile IJFmRxBackend sBackend = new JFmRxTrace.Backend(
+			new NativeBackend());
+
+	/* As passed to setBackend(), null for JFmRxNative.cpp */
+	private static volatile IJFmRxBackend sBackendSet = null;
+
+	/* Set while startCapture() records the commands and callbacks */
+	private static volatile JFmRxCapture sCapture = null;
+
+	/** Indexes of the values returned by getDispatcherStats() */
+	public static final int DISPATCH_STAT_QUEUE_DEPTH = 0;
+	public static final int DISPATCH_STAT_MAX_QUEUE_DEPTH = 1;
+	public static final int DISPATCH_STAT_EVENTS = 2;
+	public static final int DISPATCH_STAT_DROPPED = 3;
+	public static final int DISPATCH_STAT_TOTAL_LATENCY_NS = 4;
+	public static final int DISPATCH_STAT_MAX_LATENCY_NS = 5;
+	public static final int DISPATCH_STAT_NUM = 6;
+
+	/** Indexes of getUpcallCount(), one per nativeCb_* upcall */
+	public static final int UPCALL_RAW_RDS = 0;
+	public static final int UPCALL_RAW_RDS_RING = 1;
+	public static final int UPCALL_RAW_RDS_BATCH = 2;
+	public static final int UPCALL_RADIO_TEXT = 3;
+	public static final int UPCALL_PI_CODE = 4;
+	public static final int UPCALL_PTY_CODE = 5;
+	public static final int UPCALL_PS = 6;
+	public static final int UPCALL_MONO_STEREO_MODE = 7;
+	public static final int UPCALL_AUDIO_PATH = 8;
+	public static final int UPCALL_AF_SWITCH_FREQ_FAILED = 9;
+	public static final int UPCALL_AF_SWITCH_START = 10;
+	public static final int UPCALL_AF_LIST = 11;
+	public static final int UPCALL_AF_SWITCH_COMPLETE = 12;
+	public static final int UPCALL_CMD_DONE = 13;
+	public static final int UPCALL_CMD_ERROR = 14;
+	public static final int UPCALL_COMPLETE_SCAN_DONE = 15;
+	public static final int NUM_UPCALLS = 16;
+
+	private static final String[] UPCALL_NAMES = { "fmRxRawRDS",
+			"fmRxRawRdsRingAvailable", "fmRxRawRdsBatch", "fmRxRadioText",
+			"fmRxPiCodeChanged", "fmRxPtyCodeChanged", "fmRxPsChanged",
+			"fmRxMonoStereoModeChanged", "fmRxAudioPathChanged",
+			"fmRxAfSwitchFreqFailed", "fmRxAfSwitchStart",
+			"fmRxAfListChanged", "fmRxAfSwitchComplete", "fmRxCmdDone",
+			"fmRxCmdError", "fmRxCompleteScanDone" };
+
+	/*
+	 * Upcalls received, whether or not a JFmRx took them. Only the callback
+	 * thread writes them.
+	 */
+	private static final long[] sUpcalls = new long[NUM_UPCALLS];
+
+	/** Largest batch accepted by setRawRdsBatching() */
+	public static final int RDS_BATCH_MAX = 64;
+
+	/* Set once libfmrx.so is loaded, never on a plain JVM */
+	private static boolean sNativeLoaded = false;
 
 	/** Events path */
 	static {
@@ -52,6 +139,7 @@ public class JFmRx {
 		    Log.i(TAG, "Loading libfmrx.so");
 		    System.loadLibrary("fmrx");
 		    JFmRx.nativeJFmRx_ClassInitNative();
+		    sNativeLoaded = true;
 		}
 		catch (UnsatisfiedLinkError ule) {   
 		    Log.e(TAG, "WARNING: Could not load libfmrx.so");    
@@ -62,6 +150,16 @@ public class JFmRx {
 		}
 	}
 
+	/**
+	 * Receiver events, all called on the one callback thread.
+	 * <p>
+	 * The arguments are only valid for the duration of the call. The wrapper
+	 * objects are refilled for the next event, and JFmRxNative.cpp keeps one
+	 * array per length that it overwrites for every later upcall of any kind:
+	 * groupData, msg1, name, afList, channelsData and the batch arrays. A
+	 * callback that keeps one of them past its return, e.g. as a map key or
+	 * an Intent extra, must keep a copy.
+	 */
 	public interface ICallback {
 
 		void fmRxRawRDS(JFmRxStatus status,
@@ -99,6 +197,21 @@ public class JFmRx {
 		void fmRxCompleteScanDone(JFmRxStatus status, int numOfChannels,
 				int[] channelsData);
 
+		/*
+		 * Replaces fmRxRawRDS while a ring is registered with setRawRdsRing().
+		 * count groups can be read from the ring; call ring.consume() once
+		 * they have been processed.
+		 */
+		void fmRxRawRdsAvailable(JFmRxRdsRing ring, int count);
+
+		/*
+		 * Replaces fmRxRawRDS while batching is enabled with
+		 * setRawRdsBatching(). groupData holds count groups of 8 bytes,
+		 * groupMasks the matching JFmRxRdsGroupTypeMask values.
+		 */
+		void fmRxRawRdsBatch(JFmRxStatus status, int count, byte[] groupData,
+				int[] groupMasks);
+
 	}
 
 	/**
@@ -117,6 +230,10 @@ public class JFmRx {
 		public int getValue() {
 			return value;
 		}
+
+		public void setValue(int value) {
+			this.value = value;
+		}
 	}
 
 	public static class JFmRxRdsPtyCode {
@@ -129,6 +246,10 @@ public class JFmRx {
 		public int getValue() {
 			return value;
 		}
+
+		public void setValue(int value) {
+			this.value = value;
+		}
 	}
 
 	public static class JFmRxAfFreq {
@@ -142,6 +263,10 @@ public class JFmRx {
 		public int getAfFreq() {
 			return value;
 		}
+
+		public void setAfFreq(int value) {
+			this.value = value;
+		}
 	}
 
 	public static class JFmRxAfListSize {
@@ -155,6 +280,10 @@ public class JFmRx {
 			return value;
 		}
 
+		public void setValue(int value) {
+			this.value = value;
+		}
+
 	}
 
 	// ***************************************************************
@@ -520,7 +649,7 @@ public class JFmRx {
 			JFmContext c = new JFmContext();
 			if (DBG)
 				Log.d(TAG, "Calling nativeJFmRx_Create");
-			int fmStatus = nativeJFmRx_Create(c);
+			int fmStatus = sBackend.create(c);
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_Create, status = "
@@ -538,7 +667,9 @@ public class JFmRx {
 
 			this.context = c;
 			this.callback = callback;
+			mContextValue = c.getValue();
 			mRxContextsTable.put(context, this);
+			mCallbackRx = this;
 
 		} catch (Exception e) {
 			Log.e(TAG, "create: exception during nativeJFmRx_create ("
@@ -554,7 +685,7 @@ public class JFmRx {
 		JFmRxStatus jFmRxStatus;
 
 		try {
-			int fmStatus = nativeJFmRx_Destroy(context.getValue());
+			int fmStatus = sBackend.destroy(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_Destroy, status = "
@@ -570,6 +701,9 @@ public class JFmRx {
 			 */
 
 			mRxContextsTable.remove(context);
+			if (mCallbackRx == this) {
+				mCallbackRx = null;
+			}
 
 		} catch (Exception e) {
 			Log.e(TAG, "destroy: exception during nativeJFmRx_Destroy ("
@@ -594,8 +728,10 @@ public class JFmRx {
 			return jFmRxStatus;
 		}
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_ENABLE);
+
 		try {
-			int fmStatus = nativeJFmRx_Enable(context.getValue());
+			int fmStatus = sBackend.enable(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_Enable, status = "
@@ -606,6 +742,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_ENABLE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -613,8 +750,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_DISABLE);
+
 		try {
-			int status = nativeJFmRx_Disable(context.getValue());
+			int status = sBackend.disable(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_Disable, status = "
@@ -624,15 +763,18 @@ public class JFmRx {
 					+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_DISABLE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
 	public JFmRxStatus setBand(JFmRxBand jFmRxBand) {
 
 		JFmRxStatus jFmRxStatus;
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_BAND);
+
 		try {
 
-			int status = nativeJFmRx_SetBand(context.getValue(), jFmRxBand
+			int status = sBackend.setBand(context.getValue(), jFmRxBand
 					.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -644,6 +786,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_BAND, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -651,8 +794,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_BAND);
+
 		try {
-			int status = nativeJFmRx_GetBand(context.getValue());
+			int status = sBackend.getBand(context.getValue());
 
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -664,6 +809,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_BAND, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -672,9 +818,11 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_TUNE);
+
 		try {
 
-			int status = nativeJFmRx_Tune(context.getValue(), jfmRxFreq
+			int status = sBackend.tune(context.getValue(), jfmRxFreq
 					.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -685,6 +833,7 @@ public class JFmRx {
 					+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_TUNE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -692,8 +841,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_TUNED_FREQUENCY);
+
 		try {
-			int status = nativeJFmRx_GetTunedFrequency(context.getValue());
+			int status = sBackend.getTunedFrequency(context.getValue());
 
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -706,6 +857,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_TUNED_FREQUENCY, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -714,8 +866,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_MONO_STEREO_MODE);
+
 		try {
-			int status = nativeJFmRx_SetMonoStereoMode(context.getValue(),
+			int status = sBackend.setMonoStereoMode(context.getValue(),
 					jFmRxMonoStereoMode.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -727,6 +881,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_SET_MONO_STEREO_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -735,8 +890,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_IS_CHANNEL_VALID);
+
 		try {
-			int status = nativeJFmRx_IsValidChannel(context.getValue());
+			int status = sBackend.isValidChannel(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_IsValidChannel, status = "
@@ -747,6 +904,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_IS_CHANNEL_VALID, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -755,8 +913,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_COMPLETE_SCAN);
+
 		try {
-			int status = nativeJFmRx_CompleteScan(context.getValue());
+			int status = sBackend.completeScan(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_CompleteScan, status = "
@@ -767,6 +927,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_COMPLETE_SCAN, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -775,8 +936,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_FW_VERSION);
+
 		try {
-			int status = nativeJFmRx_GetFwVersion(context.getValue());
+			int status = sBackend.getFwVersion(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetFwVersion, status = "
@@ -787,6 +950,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_GET_FW_VERSION, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -795,8 +959,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_COMPLETE_SCAN_PROGRESS);
+
 		try {
-			int status = nativeJFmRx_GetCompleteScanProgress(context.getValue());
+			int status = sBackend.getCompleteScanProgress(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG,
@@ -811,6 +977,7 @@ public class JFmRx {
 									+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_COMPLETE_SCAN_PROGRESS, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -819,8 +986,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_STOP_COMPLETE_SCAN);
+
 		try {
-			int status = nativeJFmRx_StopCompleteScan(context.getValue());
+			int status = sBackend.stopCompleteScan(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_StopCompleteScan, status = "
@@ -831,6 +1000,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_STOP_COMPLETE_SCAN, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -839,8 +1009,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_MONO_STEREO_MODE);
+
 		try {
-			int status = nativeJFmRx_GetMonoStereoMode(context.getValue());
+			int status = sBackend.getMonoStereoMode(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetMonoStereoMode, status = "
@@ -852,6 +1024,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_GET_MONO_STEREO_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -860,8 +1033,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_MUTE_MODE);
+
 		try {
-			int status = nativeJFmRx_SetMuteMode(context.getValue(),
+			int status = sBackend.setMuteMode(context.getValue(),
 					jFmRxMuteMode.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -875,6 +1050,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_MUTE_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -883,8 +1059,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_MUTE_MODE);
+
 		try {
-			int status = nativeJFmRx_GetMuteMode(context.getValue());
+			int status = sBackend.getMuteMode(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetMuteMode, status = "
@@ -895,6 +1073,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_GET_MUTE_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -902,8 +1081,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_RSSI_THRESHOLD);
+
 		try {
-			int status = nativeJFmRx_SetRssiThreshold(context.getValue(),
+			int status = sBackend.setRssiThreshold(context.getValue(),
 					jFmRssi.getRssi());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, status);
 			if (DBG)
@@ -915,6 +1096,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_SET_RSSI_THRESHOLD, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -923,8 +1105,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_RSSI_THRESHOLD);
+
 		try {
-			int fmStatus = nativeJFmRx_GetRssiThreshold(context.getValue());
+			int fmStatus = sBackend.getRssiThreshold(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetRssiThreshold, status = "
@@ -935,6 +1119,7 @@ public class JFmRx {
 							+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_GET_RSSI_THRESHOLD, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -942,8 +1127,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_RSSI);
+
 		try {
-			int fmStatus = nativeJFmRx_GetRssi(context.getValue());
+			int fmStatus = sBackend.getRssi(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetRssi, status = "
@@ -954,6 +1141,7 @@ public class JFmRx {
 					+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_GET_RSSI, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -961,8 +1149,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_VOLUME);
+
 		try {
-			int fmStatus = nativeJFmRx_SetVolume(context.getValue(), jFmVolume
+			int fmStatus = sBackend.setVolume(context.getValue(), jFmVolume
 					.getVolume());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -974,6 +1164,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_VOLUME, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -982,8 +1173,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_VOLUME);
+
 		try {
-			int fmStatus = nativeJFmRx_GetVolume(context.getValue());
+			int fmStatus = sBackend.getVolume(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetVolume, status = "
@@ -994,6 +1187,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_VOLUME, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1002,8 +1196,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_CHANNEL_SPACING);
+
 		try {
-			int fmStatus = nativeJFmRx_SetChannelSpacing(context.getValue(),
+			int fmStatus = sBackend.setChannelSpacing(context.getValue(),
 					jFmRxChannelSpacing.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1016,6 +1212,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_CHANNEL_SPACING, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1024,8 +1221,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_CHANNEL_SPACING);
+
 		try {
-			int fmStatus = nativeJFmRx_GetChannelSpacing(context.getValue());
+			int fmStatus = sBackend.getChannelSpacing(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetChannelSpacing, status = "
@@ -1037,6 +1236,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_CHANNEL_SPACING, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1045,8 +1245,10 @@ public class JFmRx {
 			JFmRxEmphasisFilter jFmRxEmphasisFilter) {
 
 		JFmRxStatus jFmRxStatus;
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_DEEMPHASIS_FILTER);
+
 		try {
-			int fmStatus = nativeJFmRx_SetDeEmphasisFilter(context.getValue(),
+			int fmStatus = sBackend.setDeEmphasisFilter(context.getValue(),
 					jFmRxEmphasisFilter.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1059,6 +1261,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_DEEMPHASIS_FILTER, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1067,8 +1270,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER);
+
 		try {
-			int fmStatus = nativeJFmRx_GetDeEmphasisFilter(context.getValue());
+			int fmStatus = sBackend.getDeEmphasisFilter(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetDeEmphasisFilter, status = "
@@ -1080,6 +1285,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -1087,8 +1293,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SEEK);
+
 		try {
-			int fmStatus = nativeJFmRx_Seek(context.getValue(),
+			int fmStatus = sBackend.seek(context.getValue(),
 					jFmRxSeekDirection.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1099,6 +1307,7 @@ public class JFmRx {
 					+ e.toString() + ")");
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
+		mCmdStats.issued(JFmRxCommand.CMD_SEEK, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -1106,8 +1315,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_STOP_SEEK);
+
 		try {
-			int fmStatus = nativeJFmRx_StopSeek(context.getValue());
+			int fmStatus = sBackend.stopSeek(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_StopSeek, status = "
@@ -1119,6 +1330,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_STOP_SEEK, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1127,8 +1339,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_ENABLE_RDS);
+
 		try {
-			int fmStatus = nativeJFmRx_EnableRDS(context.getValue());
+			int fmStatus = sBackend.enableRDS(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_EnableRDS, status = "
@@ -1140,6 +1354,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_ENABLE_RDS, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -1147,8 +1362,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_DISABLE_RDS);
+
 		try {
-			int fmStatus = nativeJFmRx_DisableRDS(context.getValue());
+			int fmStatus = sBackend.disableRDS(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_DisableRDS, status = "
@@ -1160,6 +1377,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_DISABLE_RDS, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -1167,8 +1385,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_ENABLE_AUDIO);
+
 		try {
-			int fmStatus = nativeJFmRx_EnableAudioRouting(context.getValue());
+			int fmStatus = sBackend.enableAudioRouting(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_EnableAudioRouting, status = "
@@ -1181,6 +1401,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_ENABLE_AUDIO, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -1188,8 +1409,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_DISABLE_AUDIO);
+
 		try {
-			int fmStatus = nativeJFmRx_DisableAudioRouting(context.getValue());
+			int fmStatus = sBackend.disableAudioRouting(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_DisableAudioRouting, status = "
@@ -1201,6 +1424,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_DISABLE_AUDIO, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1209,8 +1433,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_RDS_AF_SWITCH_MODE);
+
 		try {
-			int fmStatus = nativeJFmRx_SetRdsAfSwitchMode(context.getValue(),
+			int fmStatus = sBackend.setRdsAfSwitchMode(context.getValue(),
 					jRdsAfSwitchMode.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1223,6 +1449,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_RDS_AF_SWITCH_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1231,8 +1458,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE);
+
 		try {
-			int fmStatus = nativeJFmRx_GetRdsAfSwitchMode(context.getValue());
+			int fmStatus = sBackend.getRdsAfSwitchMode(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetRdsAfSwitchMode, status = "
@@ -1245,6 +1474,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 	}
 
@@ -1254,8 +1484,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_CHANGE_AUDIO_TARGET);
+
 		try {
-			int fmStatus = nativeJFmRx_ChangeAudioTarget(context.getValue(),
+			int fmStatus = sBackend.changeAudioTarget(context.getValue(),
 					jFmRxAudioTargetMask.getValue(), digitalConfig.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1268,6 +1500,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_CHANGE_AUDIO_TARGET, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1277,8 +1510,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_CHANGE_DIGITAL_AUDIO_CONFIGURATION);
+
 		try {
-			int fmStatus = nativeJFmRx_ChangeDigitalTargetConfiguration(context
+			int fmStatus = sBackend.changeDigitalTargetConfiguration(context
 					.getValue(), digitalConfig.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1295,6 +1530,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_CHANGE_DIGITAL_AUDIO_CONFIGURATION, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1303,8 +1539,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_RF_DEPENDENT_MUTE_MODE);
+
 		try {
-			int fmStatus = nativeJFmRx_SetRfDependentMuteMode(context
+			int fmStatus = sBackend.setRfDependentMuteMode(context
 					.getValue(), mode.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1319,6 +1557,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_RF_DEPENDENT_MUTE_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1327,8 +1566,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE);
+
 		try {
-			int fmStatus = nativeJFmRx_GetRfDependentMute(context.getValue());
+			int fmStatus = sBackend.getRfDependentMute(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetRfDependentMute, status = "
@@ -1341,6 +1582,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1349,8 +1591,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_RDS_SYSTEM);
+
 		try {
-			int fmStatus = nativeJFmRx_SetRdsSystem(context.getValue(),
+			int fmStatus = sBackend.setRdsSystem(context.getValue(),
 					rdsSystem.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1364,6 +1608,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_RDS_SYSTEM, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1372,8 +1617,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_RDS_SYSTEM);
+
 		try {
-			int fmStatus = nativeJFmRx_GetRdsSystem(context.getValue());
+			int fmStatus = sBackend.getRdsSystem(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetRdsSystem, status = "
@@ -1385,6 +1632,37 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_RDS_SYSTEM, ticket, jFmRxStatus);
+		return jFmRxStatus;
+
+	}
+
+	/**
+	 * Sets a group mask made of several JFmRxRdsGroupTypeMask bits, which the
+	 * enum variant below cannot express.
+	 */
+	public JFmRxStatus setRdsGroupMask(long groupMask) {
+
+		JFmRxStatus jFmRxStatus;
+
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_RDS_GROUP_MASK);
+
+		try {
+			int fmStatus = sBackend.setRdsGroupMask(context.getValue(),
+					groupMask);
+			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
+			if (DBG)
+				Log.d(TAG, "After nativeJFmRx_SetRdsGroupMask, status = "
+						+ jFmRxStatus.toString());
+
+		} catch (Exception e) {
+			Log.e(TAG,
+					"setRdsGroupMask: exception during nativeJFmRx_SetRdsGroupMask ("
+							+ e.toString() + ")");
+			jFmRxStatus = JFmRxStatus.FAILED;
+		}
+
+		mCmdStats.issued(JFmRxCommand.CMD_SET_RDS_GROUP_MASK, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1393,8 +1671,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_SET_RDS_GROUP_MASK);
+
 		try {
-			int fmStatus = nativeJFmRx_SetRdsGroupMask(context.getValue(),
+			int fmStatus = sBackend.setRdsGroupMask(context.getValue(),
 					groupMask.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
@@ -1408,6 +1688,7 @@ public class JFmRx {
 			jFmRxStatus = JFmRxStatus.FAILED;
 		}
 
+		mCmdStats.issued(JFmRxCommand.CMD_SET_RDS_GROUP_MASK, ticket, jFmRxStatus);
 		return jFmRxStatus;
 
 	}
@@ -1416,8 +1697,10 @@ public class JFmRx {
 
 		JFmRxStatus jFmRxStatus;
 
+		long ticket = mCmdStats.begin(JFmRxCommand.CMD_GET_RDS_GROUP_MASK);
+
 		try {
-			int fmStatus = nativeJFmRx_GetRdsGroupMask(context.getValue());
+			int fmStatus = sBackend.getRdsGroupMask(context.getValue());
 			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
 			if (DBG)
 				Log.d(TAG, "After nativeJFmRx_GetRdsGroupMask, status = "
@@ -1432,8 +1715,385 @@ public class JFmRx {
 		if (DBG)
 			Log.d(TAG, "getRdsGroupMask: exiting");
 
+		mCmdStats.issued(JFmRxCommand.CMD_GET_RDS_GROUP_MASK, ticket, jFmRxStatus);
+		return jFmRxStatus;
+
+	}
+
+	/**
+	 * Switches raw RDS delivery to the given ring. Groups are then written
+	 * into the ring by the native stack and announced through
+	 * ICallback.fmRxRawRdsAvailable() instead of one fmRxRawRDS() call per
+	 * group. Passing null returns to per-group delivery.
+	 */
+	public JFmRxStatus setRawRdsRing(JFmRxRdsRing ring) {
+		JFmRxStatus jFmRxStatus;
+
+		try {
+			int fmStatus;
+			if (ring != null) {
+				fmStatus = sBackend.setRawRdsRing(ring.getBuffer(), ring
+						.getSlots());
+			} else {
+				fmStatus = sBackend.setRawRdsRing(null, 0);
+			}
+			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
+			if (DBG)
+				Log.d(TAG, "After nativeJFmRx_SetRawRdsRing, status = "
+						+ jFmRxStatus.toString());
+
+			if (jFmRxStatus == JFmRxStatus.SUCCESS) {
+				mRdsRing = ring;
+			}
+		} catch (Exception e) {
+			Log.e(TAG,
+					"setRawRdsRing: exception during nativeJFmRx_SetRawRdsRing ("
+							+ e.toString() + ")");
+			jFmRxStatus = JFmRxStatus.FAILED;
+		}
+
 		return jFmRxStatus;
+	}
+
+	/**
+	 * Delivers raw RDS groups through ICallback.fmRxRawRdsBatch() in batches
+	 * of up to batchSize (max RDS_BATCH_MAX) groups. A batch is flushed when
+	 * full or when its oldest group is maxLatencyMs old. Only groups whose
+	 * type bit is set in groupMask are delivered. A batchSize of 0 returns to
+	 * one fmRxRawRDS() call per group. A registered raw RDS ring takes
+	 * precedence over batching.
+	 */
+	public JFmRxStatus setRawRdsBatching(int batchSize, int maxLatencyMs,
+			long groupMask) {
+		JFmRxStatus jFmRxStatus;
 
+		try {
+			int fmStatus = sBackend.setRawRdsBatching(batchSize,
+					maxLatencyMs, groupMask);
+			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
+			if (DBG)
+				Log.d(TAG, "After nativeJFmRx_SetRawRdsBatching, status = "
+						+ jFmRxStatus.toString());
+		} catch (Exception e) {
+			Log.e(TAG,
+					"setRawRdsBatching: exception during nativeJFmRx_SetRawRdsBatching ("
+							+ e.toString() + ")");
+			jFmRxStatus = JFmRxStatus.FAILED;
+		}
+
+		return jFmRxStatus;
+	}
+
+	/**
+	 * Replaces the backend the commands of every JFmRx are sent to, e.g. by a
+	 * JFmRxSimBackend to run without the chip. Must be called before
+	 * create(). Passing null restores JFmRxNative.cpp. A capture in progress
+	 * goes on recording the commands sent to the new backend.
+	 */
+	public static synchronized void setBackend(IJFmRxBackend backend) {
+		IJFmRxBackend traced = new JFmRxTrace.Backend(backend != null ? backend
+				: new NativeBackend());
+
+		sBackend = sCapture != null ? new JFmRxCapture.Backend(sCapture,
+				traced) : traced;
+		sBackendSet = backend;
+	}
+
+	/** The backend passed to setBackend(), null for JFmRxNative.cpp */
+	public static IJFmRxBackend getBackend() {
+		return sBackendSet;
+	}
+
+	/**
+	 * Starts recording every command and callback into the file at path, see
+	 * JFmRxCapture. The capture can be played back by JFmRxReplay.
+	 */
+	public static synchronized JFmRxStatus startCapture(String path) {
+		if (sCapture != null) {
+			Log.e(TAG, "startCapture: capture already in progress");
+			return JFmRxStatus.IN_PROGRESS;
+		}
+
+		FileOutputStream stream;
+		try {
+			stream = new FileOutputStream(path);
+		} catch (IOException e) {
+			Log.e(TAG, "startCapture: " + e.toString());
+			return JFmRxStatus.FAILED;
+		}
+		return startCapture(stream);
+	}
+
+	/**
+	 * Same as startCapture(String) into a file opened by the caller, such as
+	 * one handed over by a client. The stream is closed by stopCapture(), or
+	 * right away if the capture cannot start.
+	 */
+	public static synchronized JFmRxStatus startCapture(FileOutputStream stream) {
+		if (sCapture != null) {
+			Log.e(TAG, "startCapture: capture already in progress");
+			try {
+				stream.close();
+			} catch (IOException e) {
+				Log.e(TAG, "startCapture: " + e.toString());
+			}
+			return JFmRxStatus.IN_PROGRESS;
+		}
+
+		JFmRxCapture capture = new JFmRxCapture(stream);
+		sBackend = new JFmRxCapture.Backend(capture, sBackend);
+		sCapture = capture;
+		return JFmRxStatus.SUCCESS;
+	}
+
+	/** Stops the capture started by startCapture() and closes its file */
+	public static synchronized JFmRxStatus stopCapture() {
+		JFmRxCapture capture = sCapture;
+
+		if (capture == null) {
+			return JFmRxStatus.FAILED;
+		}
+		sCapture = null;
+		if (sBackend instanceof JFmRxCapture.Backend) {
+			sBackend = ((JFmRxCapture.Backend) sBackend).getTarget();
+		}
+		capture.close();
+		return JFmRxStatus.SUCCESS;
+	}
+
+	/** Number of nativeCb_* upcalls of the given UPCALL_* index so far */
+	public static long getUpcallCount(int upcall) {
+		return sUpcalls[upcall];
+	}
+
+	public static String getUpcallName(int upcall) {
+		return UPCALL_NAMES[upcall];
+	}
+
+	/** Latency, error and in-flight counters of the commands */
+	public JFmRxCmdStats getCmdStats() {
+		return mCmdStats;
+	}
+
+	/* Called by the JFmRxAsync constructor */
+	void setAsync(JFmRxAsync async) {
+		mAsync = async;
+	}
+
+	/**
+	 * Reads the counters of the native callback dispatcher into stats, which
+	 * must hold at least DISPATCH_STAT_NUM entries. Latencies are measured
+	 * from the stack reporting an event until its Java callback returned.
+	 */
+	public JFmRxStatus getDispatcherStats(long[] stats) {
+		JFmRxStatus jFmRxStatus;
+
+		try {
+			int fmStatus = sBackend.getDispatcherStats(stats);
+			jFmRxStatus = JFmUtils.getEnumConst(JFmRxStatus.class, fmStatus);
+		} catch (Exception e) {
+			Log.e(TAG,
+					"getDispatcherStats: exception during nativeJFmRx_GetDispatcherStats ("
+							+ e.toString() + ")");
+			jFmRxStatus = JFmRxStatus.FAILED;
+		}
+
+		return jFmRxStatus;
+	}
+
+	/* Backend calling into JFmRxNative.cpp */
+	private static final class NativeBackend implements IJFmRxBackend {
+
+		public int create(JFmContext contextValue) {
+			return nativeJFmRx_Create(contextValue);
+		}
+
+		public int destroy(long contextValue) {
+			return nativeJFmRx_Destroy(contextValue);
+		}
+
+		public int enable(long contextValue) {
+			return nativeJFmRx_Enable(contextValue);
+		}
+
+		public int disable(long contextValue) {
+			return nativeJFmRx_Disable(contextValue);
+		}
+
+		public int setBand(long contextValue, int jFmBand) {
+			return nativeJFmRx_SetBand(contextValue, jFmBand);
+		}
+
+		public int getBand(long contextValue) {
+			return nativeJFmRx_GetBand(contextValue);
+		}
+
+		public int tune(long contextValue, int jFmFreq) {
+			return nativeJFmRx_Tune(contextValue, jFmFreq);
+		}
+
+		public int getTunedFrequency(long contextValue) {
+			return nativeJFmRx_GetTunedFrequency(contextValue);
+		}
+
+		public int setMonoStereoMode(long contextValue, int jFmMonoStereoMode) {
+			return nativeJFmRx_SetMonoStereoMode(
+					contextValue, jFmMonoStereoMode);
+		}
+
+		public int getMonoStereoMode(long contextValue) {
+			return nativeJFmRx_GetMonoStereoMode(contextValue);
+		}
+
+		public int setMuteMode(long contextValue, int jFmMuteMode) {
+			return nativeJFmRx_SetMuteMode(contextValue, jFmMuteMode);
+		}
+
+		public int getMuteMode(long contextValue) {
+			return nativeJFmRx_GetMuteMode(contextValue);
+		}
+
+		public int setRssiThreshold(long contextValue, int jFmRssi) {
+			return nativeJFmRx_SetRssiThreshold(contextValue, jFmRssi);
+		}
+
+		public int getRssiThreshold(long contextValue) {
+			return nativeJFmRx_GetRssiThreshold(contextValue);
+		}
+
+		public int getRssi(long contextValue) {
+			return nativeJFmRx_GetRssi(contextValue);
+		}
+
+		public int setVolume(long contextValue, int jFmVolume) {
+			return nativeJFmRx_SetVolume(contextValue, jFmVolume);
+		}
+
+		public int getVolume(long contextValue) {
+			return nativeJFmRx_GetVolume(contextValue);
+		}
+
+		public int setChannelSpacing(long contextValue, int jFmChannelSpacing) {
+			return nativeJFmRx_SetChannelSpacing(
+					contextValue, jFmChannelSpacing);
+		}
+
+		public int getChannelSpacing(long contextValue) {
+			return nativeJFmRx_GetChannelSpacing(contextValue);
+		}
+
+		public int setDeEmphasisFilter(long contextValue,
+				int jFmEmphasisFilter) {
+			return nativeJFmRx_SetDeEmphasisFilter(
+					contextValue, jFmEmphasisFilter);
+		}
+
+		public int getDeEmphasisFilter(long contextValue) {
+			return nativeJFmRx_GetDeEmphasisFilter(contextValue);
+		}
+
+		public int seek(long contextValue, int jFmDirection) {
+			return nativeJFmRx_Seek(contextValue, jFmDirection);
+		}
+
+		public int stopSeek(long contextValue) {
+			return nativeJFmRx_StopSeek(contextValue);
+		}
+
+		public int enableRDS(long contextValue) {
+			return nativeJFmRx_EnableRDS(contextValue);
+		}
+
+		public int disableRDS(long contextValue) {
+			return nativeJFmRx_DisableRDS(contextValue);
+		}
+
+		public int enableAudioRouting(long contextValue) {
+			return nativeJFmRx_EnableAudioRouting(contextValue);
+		}
+
+		public int disableAudioRouting(long contextValue) {
+			return nativeJFmRx_DisableAudioRouting(contextValue);
+		}
+
+		public int setRdsAfSwitchMode(long contextValue, int jRdsAfSwitchMode) {
+			return nativeJFmRx_SetRdsAfSwitchMode(
+					contextValue, jRdsAfSwitchMode);
+		}
+
+		public int getRdsAfSwitchMode(long contextValue) {
+			return nativeJFmRx_GetRdsAfSwitchMode(contextValue);
+		}
+
+		public int changeAudioTarget(long contextValue, int audioTargetMask,
+				int digitalConfig) {
+			return nativeJFmRx_ChangeAudioTarget(
+					contextValue, audioTargetMask, digitalConfig);
+		}
+
+		public int changeDigitalTargetConfiguration(long contextValue,
+				int digitalConfig) {
+			return nativeJFmRx_ChangeDigitalTargetConfiguration(
+					contextValue, digitalConfig);
+		}
+
+		public int setRfDependentMuteMode(long contextValue, int mode) {
+			return nativeJFmRx_SetRfDependentMuteMode(contextValue, mode);
+		}
+
+		public int getRfDependentMute(long contextValue) {
+			return nativeJFmRx_GetRfDependentMute(contextValue);
+		}
+
+		public int setRdsSystem(long contextValue, int rdsSystem) {
+			return nativeJFmRx_SetRdsSystem(contextValue, rdsSystem);
+		}
+
+		public int getRdsSystem(long contextValue) {
+			return nativeJFmRx_GetRdsSystem(contextValue);
+		}
+
+		public int setRdsGroupMask(long contextValue, long groupMask) {
+			return nativeJFmRx_SetRdsGroupMask(contextValue, groupMask);
+		}
+
+		public int getRdsGroupMask(long contextValue) {
+			return nativeJFmRx_GetRdsGroupMask(contextValue);
+		}
+
+		public int isValidChannel(long contextValue) {
+			return nativeJFmRx_IsValidChannel(contextValue);
+		}
+
+		public int completeScan(long contextValue) {
+			return nativeJFmRx_CompleteScan(contextValue);
+		}
+
+		public int getFwVersion(long contextValue) {
+			return nativeJFmRx_GetFwVersion(contextValue);
+		}
+
+		public int getCompleteScanProgress(long contextValue) {
+			return nativeJFmRx_GetCompleteScanProgress(contextValue);
+		}
+
+		public int stopCompleteScan(long contextValue) {
+			return nativeJFmRx_StopCompleteScan(contextValue);
+		}
+
+		public int getDispatcherStats(long[] stats) {
+			return nativeJFmRx_GetDispatcherStats(stats);
+		}
+
+		public int setRawRdsRing(ByteBuffer buffer, int slots) {
+			return nativeJFmRx_SetRawRdsRing(buffer, slots);
+		}
+
+		public int setRawRdsBatching(int batchSize, int maxLatencyMs,
+				long groupMask) {
+			return nativeJFmRx_SetRawRdsBatching(
+					batchSize, maxLatencyMs, groupMask);
+		}
 	}
 
 	/*--------------------------------------------------------------------------
@@ -1541,6 +2201,25 @@ public class JFmRx {
 
 	private static native int nativeJFmRx_StopCompleteScan(long contextValue);
 
+	private static native int nativeJFmRx_GetDispatcherStats(long[] stats);
+
+	private static native int nativeJFmRx_SetRawRdsRing(
+			ByteBuffer buffer, int slots);
+
+	private static native int nativeJFmRx_SetRawRdsBatching(int batchSize,
+			int maxLatencyMs, long groupMask);
+
+	/* Counter accesses of JFmRxRdsRing, as atomics of the native side */
+	static native int nativeJFmRx_RdsRingLoadAcquire(ByteBuffer buffer,
+			int offset);
+
+	static native void nativeJFmRx_RdsRingStoreRelease(ByteBuffer buffer,
+			int offset, int value);
+
+	static boolean isNativeLoaded() {
+		return sNativeLoaded;
+	}
+
 	/*
 	 * -------------------------------- NATIVE PART
 	 * --------------------------------
@@ -1549,12 +2228,23 @@ public class JFmRx {
 	/*
 	 * ---------------------------------------------- Callbacks from the
 	 * JFmRxNative.cpp module ----------------------------------------------
+	 *
+	 * The arrays are the ones cached by the native dispatcher and are passed
+	 * on without a copy, see ICallback.
 	 */
 
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxRawRDS(int status, int bitInMaskValue,
 			byte[] groupData) {
 
+		sUpcalls[UPCALL_RAW_RDS]++;
+		JFmRxTrace.upcall(UPCALL_RAW_RDS, status, bitInMaskValue);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onRawRds(status, bitInMaskValue, groupData);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1578,10 +2268,71 @@ public class JFmRx {
 		}
 	}
 
+	@SuppressWarnings("unused")
+	public static void nativeCb_fmRxRawRdsRingAvailable(int count) {
+
+		sUpcalls[UPCALL_RAW_RDS_RING]++;
+		JFmRxTrace.upcall(UPCALL_RAW_RDS_RING, 0, count);
+
+		JFmRx mJFmRx = getJFmRx(context.getValue());
+
+		if (mJFmRx != null && mJFmRx.mRdsRing != null) {
+
+			JFmRxCapture capture = sCapture;
+			if (capture != null) {
+				capture.onRawRdsRing(mJFmRx.mRdsRing, count);
+			}
+
+			if (DBG)
+				Log.d(TAG, "nativeCb_fmRxRawRdsRingAvailable: calling callback");
+
+			mJFmRx.callback.fmRxRawRdsAvailable(mJFmRx.mRdsRing, count);
+
+		}
+	}
+
+	@SuppressWarnings("unused")
+	public static void nativeCb_fmRxRawRdsBatch(int status, int count,
+			byte[] groupData, int[] groupMasks) {
+
+		sUpcalls[UPCALL_RAW_RDS_BATCH]++;
+		JFmRxTrace.upcall(UPCALL_RAW_RDS_BATCH, status, count);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onRawRdsBatch(status, count, groupData, groupMasks);
+		}
+
+		JFmRx mJFmRx = getJFmRx(context.getValue());
+
+		if (mJFmRx != null) {
+
+			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
+					status);
+
+			if (DBG)
+				Log.d(TAG, "nativeCb_fmRxRawRdsBatch: calling callback, count "
+						+ count);
+
+			mJFmRx.callback.fmRxRawRdsBatch(rxStatus, count, groupData,
+					groupMasks);
+
+		}
+	}
+
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxRadioText(int status, boolean resetDisplay,
 			byte[] msg1, int len, int startIndex, int repertoire) {
 
+		sUpcalls[UPCALL_RADIO_TEXT]++;
+		JFmRxTrace.upcall(UPCALL_RADIO_TEXT, status, len);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onRadioText(status, resetDisplay, msg1, len,
+					startIndex, repertoire);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1610,6 +2361,14 @@ public class JFmRx {
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxPiCodeChanged(int status, int piValue) {
 
+		sUpcalls[UPCALL_PI_CODE]++;
+		JFmRxTrace.upcall(UPCALL_PI_CODE, status, piValue);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onValue(JFmRxCapture.REC_PI_CODE, status, piValue);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1623,7 +2382,8 @@ public class JFmRx {
 			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
 					status);
 
-			JFmRxRdsPiCode pi = new JFmRxRdsPiCode(piValue);
+			JFmRxRdsPiCode pi = mJFmRx.mCbPiCode;
+			pi.setValue(piValue);
 
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxPiCodeChanged: calling callback");
@@ -1637,6 +2397,14 @@ public class JFmRx {
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxPtyCodeChanged(int status, int ptyValue) {
 
+		sUpcalls[UPCALL_PTY_CODE]++;
+		JFmRxTrace.upcall(UPCALL_PTY_CODE, status, ptyValue);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onValue(JFmRxCapture.REC_PTY_CODE, status, ptyValue);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1650,7 +2418,8 @@ public class JFmRx {
 			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
 					status);
 
-			JFmRxRdsPtyCode pty = new JFmRxRdsPtyCode(ptyValue);
+			JFmRxRdsPtyCode pty = mJFmRx.mCbPtyCode;
+			pty.setValue(ptyValue);
 
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxPtyCodeChanged: calling callback");
@@ -1665,6 +2434,14 @@ public class JFmRx {
 	public static void nativeCb_fmRxPsChanged(int status, int frequency,
 			byte[] name, int repertoire) {
 
+		sUpcalls[UPCALL_PS]++;
+		JFmRxTrace.upcall(UPCALL_PS, status, frequency);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onPs(status, frequency, name, repertoire);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1680,7 +2457,8 @@ public class JFmRx {
 			JFmRxRepertoire jRepertoire = JFmUtils.getEnumConst(
 					JFmRxRepertoire.class, repertoire);
 
-			JFmRxFreq jFreq = new JFmRxFreq(frequency);
+			JFmRxFreq jFreq = mJFmRx.mCbFreq;
+			jFreq.setValue(frequency);
 
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxPsChanged: calling callback");
@@ -1695,6 +2473,15 @@ public class JFmRx {
 	public static void nativeCb_fmRxMonoStereoModeChanged(int status,
 			int modeValue) {
 
+		sUpcalls[UPCALL_MONO_STEREO_MODE]++;
+		JFmRxTrace.upcall(UPCALL_MONO_STEREO_MODE, status, modeValue);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onValue(JFmRxCapture.REC_MONO_STEREO_MODE, status,
+					modeValue);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1722,12 +2509,23 @@ public class JFmRx {
 
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxAudioPathChanged(int status) {
+		sUpcalls[UPCALL_AUDIO_PATH]++;
+		JFmRxTrace.upcall(UPCALL_AUDIO_PATH, status, 0);
 	}
 
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxAfSwitchFreqFailed(int status, int piValue,
 			int tunedFreq, int afFreqValue) {
 
+		sUpcalls[UPCALL_AF_SWITCH_FREQ_FAILED]++;
+		JFmRxTrace.upcall(UPCALL_AF_SWITCH_FREQ_FAILED, status, afFreqValue);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onAfSwitch(JFmRxCapture.REC_AF_SWITCH_FREQ_FAILED,
+					status, piValue, tunedFreq, afFreqValue);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1741,11 +2539,14 @@ public class JFmRx {
 			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
 					status);
 
-			JFmRxRdsPiCode pi = new JFmRxRdsPiCode(piValue);
+			JFmRxRdsPiCode pi = mJFmRx.mCbPiCode;
+			pi.setValue(piValue);
 
-			JFmRxTuneFreq tuneFreq = new JFmRxTuneFreq(tunedFreq);
+			JFmRxTuneFreq tuneFreq = mJFmRx.mCbTuneFreq;
+			tuneFreq.setTuneFreq(tunedFreq);
 
-			JFmRxAfFreq afFreq = new JFmRxAfFreq(afFreqValue);
+			JFmRxAfFreq afFreq = mJFmRx.mCbAfFreq;
+			afFreq.setAfFreq(afFreqValue);
 
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxAfSwitchFreqFailed: calling callback");
@@ -1760,6 +2561,15 @@ public class JFmRx {
 	public static void nativeCb_fmRxAfSwitchStart(int status, int piValue,
 			int tunedFreq, int afFreq) {
 
+		sUpcalls[UPCALL_AF_SWITCH_START]++;
+		JFmRxTrace.upcall(UPCALL_AF_SWITCH_START, status, afFreq);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onAfSwitch(JFmRxCapture.REC_AF_SWITCH_START, status,
+					piValue, tunedFreq, afFreq);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1771,11 +2581,14 @@ public class JFmRx {
 
 			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
 					status);
-			JFmRxRdsPiCode pi = new JFmRxRdsPiCode(piValue);
+			JFmRxRdsPiCode pi = mJFmRx.mCbPiCode;
+			pi.setValue(piValue);
 
-			JFmRxTuneFreq tuneFreq = new JFmRxTuneFreq(tunedFreq);
+			JFmRxTuneFreq tuneFreq = mJFmRx.mCbTuneFreq;
+			tuneFreq.setTuneFreq(tunedFreq);
 
-			JFmRxAfFreq aFreq = new JFmRxAfFreq(afFreq);
+			JFmRxAfFreq aFreq = mJFmRx.mCbAfFreq;
+			aFreq.setAfFreq(afFreq);
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxAfSwitchStart: calling callback");
 
@@ -1788,6 +2601,14 @@ public class JFmRx {
 	public static void nativeCb_fmRxAfListChanged(int status, int piValue,
 			byte[] afList, int afListSize) {
 
+		sUpcalls[UPCALL_AF_LIST]++;
+		JFmRxTrace.upcall(UPCALL_AF_LIST, status, afListSize);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onAfList(status, piValue, afList, afListSize);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 		if (mJFmRx != null) {
 
@@ -1800,9 +2621,11 @@ public class JFmRx {
 			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
 					status);
 
-			JFmRxRdsPiCode pi = new JFmRxRdsPiCode(piValue);
+			JFmRxRdsPiCode pi = mJFmRx.mCbPiCode;
+			pi.setValue(piValue);
 
-			JFmRxAfListSize jafListSize = new JFmRxAfListSize(afListSize);
+			JFmRxAfListSize jafListSize = mJFmRx.mCbAfListSize;
+			jafListSize.setValue(afListSize);
 
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxAfListChanged: calling callback");
@@ -1817,6 +2640,15 @@ public class JFmRx {
 	public static void nativeCb_fmRxAfSwitchComplete(int status, int piValue,
 			int tunedFreq, int afFreq) {
 
+		sUpcalls[UPCALL_AF_SWITCH_COMPLETE]++;
+		JFmRxTrace.upcall(UPCALL_AF_SWITCH_COMPLETE, status, afFreq);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onAfSwitch(JFmRxCapture.REC_AF_SWITCH_COMPLETE,
+					status, piValue, tunedFreq, afFreq);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1830,11 +2662,14 @@ public class JFmRx {
 			JFmRxStatus rxStatus = JFmUtils.getEnumConst(JFmRxStatus.class,
 					status);
 
-			JFmRxRdsPiCode pi = new JFmRxRdsPiCode(piValue);
+			JFmRxRdsPiCode pi = mJFmRx.mCbPiCode;
+			pi.setValue(piValue);
 
-			JFmRxTuneFreq tuneFreq = new JFmRxTuneFreq(tunedFreq);
+			JFmRxTuneFreq tuneFreq = mJFmRx.mCbTuneFreq;
+			tuneFreq.setTuneFreq(tunedFreq);
 
-			JFmRxAfFreq aFreq = new JFmRxAfFreq(afFreq);
+			JFmRxAfFreq aFreq = mJFmRx.mCbAfFreq;
+			aFreq.setAfFreq(afFreq);
 
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxAfSwitchComplete: calling callback");
@@ -1848,6 +2683,14 @@ public class JFmRx {
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxCmdDone(int status, int cmd, long value) {
 
+		sUpcalls[UPCALL_CMD_DONE]++;
+		JFmRxTrace.cmdDone(cmd, status, value);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onCmdDone(status, cmd, value);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1863,8 +2706,15 @@ public class JFmRx {
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxCmdDone: calling callback");
 
+			mJFmRx.mCmdStats.onCmdDone(cmd, rxStatus);
+
 			callback.fmRxCmdDone(rxStatus, cmd, value);
 
+			JFmRxAsync async = mJFmRx.mAsync;
+			if (async != null) {
+				async.onCmdDone(rxStatus, cmd, value);
+			}
+
 		}
 
 	}
@@ -1872,6 +2722,14 @@ public class JFmRx {
 	@SuppressWarnings("unused")
 	public static void nativeCb_fmRxCmdError(int status) {
 
+		sUpcalls[UPCALL_CMD_ERROR]++;
+		JFmRxTrace.upcall(UPCALL_CMD_ERROR, status, 0);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onCmdError(status);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1887,6 +2745,8 @@ public class JFmRx {
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxCmdError: calling callback");
 
+			mJFmRx.mCmdStats.onCmdError();
+
 			callback.fmRxCmdError(rxStatus);
 
 		}
@@ -1897,6 +2757,14 @@ public class JFmRx {
 	public static void nativeCb_fmRxCompleteScanDone(int status,
 			int numOfChannels, int[] channelsData) {
 
+		sUpcalls[UPCALL_COMPLETE_SCAN_DONE]++;
+		JFmRxTrace.upcall(UPCALL_COMPLETE_SCAN_DONE, status, numOfChannels);
+
+		JFmRxCapture capture = sCapture;
+		if (capture != null) {
+			capture.onCompleteScanDone(status, numOfChannels, channelsData);
+		}
+
 		JFmRx mJFmRx = getJFmRx(context.getValue());
 
 		if (mJFmRx != null) {
@@ -1913,9 +2781,19 @@ public class JFmRx {
 			if (DBG)
 				Log.d(TAG, "nativeCb_fmRxCompleteScanDone: calling callback");
 
+			mJFmRx.mCmdStats.onCmdDone(JFmRxCommand.CMD_COMPLETE_SCAN,
+					rxStatus);
+
 			callback
 					.fmRxCompleteScanDone(rxStatus, numOfChannels, channelsData);
 
+			/* Complete scan has no fmRxCmdDone, its future completes here */
+			JFmRxAsync async = mJFmRx.mAsync;
+			if (async != null) {
+				async.onCmdDone(rxStatus, JFmRxCommand.CMD_COMPLETE_SCAN,
+						numOfChannels);
+			}
+
 		}
 
 	}
@@ -1926,7 +2804,12 @@ public class JFmRx {
 	 *******************************************************************************************/
 
 	private static JFmRx getJFmRx(long contextValue) {
-		JFmRx jFmRx;
+		JFmRx jFmRx = mCallbackRx;
+
+		/* Fast path - the context the upcalls are normally issued for */
+		if (jFmRx != null && jFmRx.mContextValue == contextValue) {
+			return jFmRx;
+		}
 
 		JFmContext profileContext = new JFmContext(contextValue);
 
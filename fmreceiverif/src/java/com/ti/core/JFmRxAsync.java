@@ -0,0 +1,468 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxAsync.java
+ *
+ *   BRIEF:          Future based facade over JFmRx.
+ *
+ *   DESCRIPTION:    Every call issues the JFmRx command and returns a
+ *                   JFmRxFuture. fmRxCmdDone completions are matched to the
+ *                   oldest outstanding future of the same JFmRxCommand id, so
+ *                   any number of commands may be in flight at once.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import android.util.Log;
+import java.util.LinkedList;
+import com.ti.jfm.core.JFmRx.*;
+
+public final class JFmRxAsync {
+
+	private static final String TAG = "JFmRxAsync";
+	private static final boolean DBG = false;
+
+	/*
+	 * A cancelled or timed out future stays queued until its completion
+	 * arrives, which keeps the FIFO matching aligned. If the chip never
+	 * answers, it is dropped from the queue once it is this old.
+	 */
+	private static final long STALE_FUTURE_NS = 10L * 1000 * 1000 * 1000;
+
+	private final JFmRx mJFmRx;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private final LinkedList<JFmRxFuture>[] mPending = new LinkedList[JFmRxCommand.LAST_API_CMD + 1];
+
+	public JFmRxAsync(JFmRx jFmRx) {
+		mJFmRx = jFmRx;
+		for (int i = 0; i < mPending.length; i++) {
+			mPending[i] = new LinkedList<JFmRxFuture>();
+		}
+		jFmRx.setAsync(this);
+	}
+
+	public JFmRx getJFmRx() {
+		return mJFmRx;
+	}
+
+	/** Number of commands issued and not completed yet */
+	public int getInFlightCount() {
+		int count = 0;
+
+		for (LinkedList<JFmRxFuture> pending : mPending) {
+			synchronized (pending) {
+				count += pending.size();
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Completion hook, called by JFmRx after ICallback.fmRxCmdDone returned.
+	 * Returns false if no future was waiting for the command.
+	 */
+	boolean onCmdDone(JFmRxStatus status, int command, long value) {
+		JFmRxFuture future;
+
+		if (command < 0 || command >= mPending.length) {
+			return false;
+		}
+
+		/*
+		 * The stack reports a seek or complete scan it stopped only through
+		 * the stop command, as SEEK_STOPPED or COMPLETE_SCAN_STOPPED.
+		 */
+		if (command == JFmRxCommand.CMD_STOP_SEEK
+				&& (status == JFmRxStatus.SUCCESS || status == JFmRxStatus.SEEK_STOPPED)) {
+			completeStopped(JFmRxCommand.CMD_SEEK, JFmRxStatus.SEEK_STOPPED,
+					value);
+		} else if (command == JFmRxCommand.CMD_STOP_COMPLETE_SCAN
+				&& (status == JFmRxStatus.SUCCESS || status == JFmRxStatus.COMPLETE_SCAN_STOPPED)) {
+			completeStopped(JFmRxCommand.CMD_COMPLETE_SCAN,
+					JFmRxStatus.COMPLETE_SCAN_STOPPED, 0);
+		}
+
+		LinkedList<JFmRxFuture> pending = mPending[command];
+		synchronized (pending) {
+			future = pending.poll();
+		}
+
+		if (future == null) {
+			if (DBG)
+				Log.d(TAG, "onCmdDone: no future for command " + command);
+			return false;
+		}
+
+		if (!future.complete(status, value)) {
+			if (DBG)
+				Log.d(TAG, "onCmdDone: dropped completion of cancelled command "
+						+ command);
+		}
+		return true;
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			Command wrappers
+	 *
+	 * Read commands are shared: while a read is in flight, the same read
+	 * returns the in-flight future instead of issuing a second command.
+	 * Cancelling a shared future cancels it for every holder.
+	 *------------------------------------------------------------------------*/
+
+	public JFmRxFuture enable() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_ENABLE);
+		return end(future, mJFmRx.enable());
+	}
+
+	public JFmRxFuture disable() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_DISABLE);
+		return end(future, mJFmRx.disable());
+	}
+
+	public JFmRxFuture setBand(JFmRxBand band) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_BAND);
+		return end(future, mJFmRx.setBand(band));
+	}
+
+	public JFmRxFuture getBand() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_BAND);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_BAND), mJFmRx.getBand());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setMonoStereoMode(JFmRxMonoStereoMode mode) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_MONO_STEREO_MODE);
+		return end(future, mJFmRx.setMonoStereoMode(mode));
+	}
+
+	public JFmRxFuture getMonoStereoMode() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_MONO_STEREO_MODE);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_MONO_STEREO_MODE), mJFmRx.getMonoStereoMode());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setMuteMode(JFmRxMuteMode mode) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_MUTE_MODE);
+		return end(future, mJFmRx.setMuteMode(mode));
+	}
+
+	public JFmRxFuture getMuteMode() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_MUTE_MODE);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_MUTE_MODE), mJFmRx.getMuteMode());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setRfDependentMuteMode(JFmRxRfDependentMuteMode mode) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_RF_DEPENDENT_MUTE_MODE);
+		return end(future, mJFmRx.setRfDependentMuteMode(mode));
+	}
+
+	public JFmRxFuture getRfDependentMute() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE), mJFmRx.getRfDependentMute());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setRssiThreshold(JFmRxRssi threshold) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_RSSI_THRESHOLD);
+		return end(future, mJFmRx.setRssiThreshold(threshold));
+	}
+
+	public JFmRxFuture getRssiThreshold() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_RSSI_THRESHOLD);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_RSSI_THRESHOLD), mJFmRx.getRssiThreshold());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setDeEmphasisFilter(JFmRxEmphasisFilter filter) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_DEEMPHASIS_FILTER);
+		return end(future, mJFmRx.SetDeEmphasisFilter(filter));
+	}
+
+	public JFmRxFuture getDeEmphasisFilter() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER), mJFmRx.GetDeEmphasisFilter());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setVolume(JFmRxVolume volume) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_VOLUME);
+		return end(future, mJFmRx.setVolume(volume));
+	}
+
+	public JFmRxFuture getVolume() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_VOLUME);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_VOLUME), mJFmRx.getVolume());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setChannelSpacing(JFmRxChannelSpacing spacing) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_CHANNEL_SPACING);
+		return end(future, mJFmRx.setChannelSpacing(spacing));
+	}
+
+	public JFmRxFuture getChannelSpacing() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_CHANNEL_SPACING);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_CHANNEL_SPACING), mJFmRx.getChannelSpacing());
+		}
+		return future;
+	}
+
+	public JFmRxFuture tune(JFmRxFreq freq) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_TUNE);
+		return end(future, mJFmRx.tune(freq));
+	}
+
+	public JFmRxFuture getTunedFrequency() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_TUNED_FREQUENCY);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_TUNED_FREQUENCY), mJFmRx.getTunedFrequency());
+		}
+		return future;
+	}
+
+	public JFmRxFuture seek(JFmRxSeekDirection direction) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SEEK);
+		return end(future, mJFmRx.seek(direction));
+	}
+
+	public JFmRxFuture stopSeek() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_STOP_SEEK);
+		return end(future, mJFmRx.stopSeek());
+	}
+
+	public JFmRxFuture getRssi() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_RSSI);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_RSSI), mJFmRx.getRssi());
+		}
+		return future;
+	}
+
+	public JFmRxFuture enableRds() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_ENABLE_RDS);
+		return end(future, mJFmRx.enableRDS());
+	}
+
+	public JFmRxFuture disableRds() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_DISABLE_RDS);
+		return end(future, mJFmRx.DisableRDS());
+	}
+
+	public JFmRxFuture setRdsSystem(JFmRxRdsSystem system) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_RDS_SYSTEM);
+		return end(future, mJFmRx.setRdsSystem(system));
+	}
+
+	public JFmRxFuture getRdsSystem() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_RDS_SYSTEM);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_RDS_SYSTEM), mJFmRx.getRdsSystem());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setRdsGroupMask(JFmRxRdsGroupTypeMask mask) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_RDS_GROUP_MASK);
+		return end(future, mJFmRx.setRdsGroupMask(mask));
+	}
+
+	public JFmRxFuture setRdsGroupMask(long mask) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_RDS_GROUP_MASK);
+		return end(future, mJFmRx.setRdsGroupMask(mask));
+	}
+
+	public JFmRxFuture getRdsGroupMask() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_RDS_GROUP_MASK);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_RDS_GROUP_MASK), mJFmRx.getRdsGroupMask());
+		}
+		return future;
+	}
+
+	public JFmRxFuture setRdsAfSwitchMode(JFmRxRdsAfSwitchMode mode) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_SET_RDS_AF_SWITCH_MODE);
+		return end(future, mJFmRx.setRdsAfSwitchMode(mode));
+	}
+
+	public JFmRxFuture getRdsAfSwitchMode() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE), mJFmRx.getRdsAfSwitchMode());
+		}
+		return future;
+	}
+
+	public JFmRxFuture enableAudioRouting() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_ENABLE_AUDIO);
+		return end(future, mJFmRx.enableAudioRouting());
+	}
+
+	public JFmRxFuture disableAudioRouting() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_DISABLE_AUDIO);
+		return end(future, mJFmRx.disableAudioRouting());
+	}
+
+	public JFmRxFuture changeAudioTarget(JFmRxAudioTargetMask mask,
+			JFmRxEcalSampleFrequency digitalConfig) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_CHANGE_AUDIO_TARGET);
+		return end(future, mJFmRx.changeAudioTarget(mask, digitalConfig));
+	}
+
+	public JFmRxFuture changeDigitalTargetConfiguration(
+			JFmRxEcalSampleFrequency digitalConfig) {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_CHANGE_DIGITAL_AUDIO_CONFIGURATION);
+		return end(future, mJFmRx
+				.changeDigitalTargetConfiguration(digitalConfig));
+	}
+
+	public JFmRxFuture getFwVersion() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_GET_FW_VERSION);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_GET_FW_VERSION), mJFmRx.getFwVersion());
+		}
+		return future;
+	}
+
+	public JFmRxFuture isValidChannel() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_IS_CHANNEL_VALID);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_IS_CHANNEL_VALID), mJFmRx.isValidChannel());
+		}
+		return future;
+	}
+
+	/** Completes with the number of channels found as value */
+	public JFmRxFuture completeScan() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_COMPLETE_SCAN);
+		return end(future, mJFmRx.completeScan());
+	}
+
+	public JFmRxFuture getCompleteScanProgress() {
+		JFmRxFuture future = inFlight(JFmRxCommand.CMD_COMPLETE_SCAN_PROGRESS);
+		if (future == null) {
+			future = end(begin(JFmRxCommand.CMD_COMPLETE_SCAN_PROGRESS), mJFmRx.getCompleteScanProgress());
+		}
+		return future;
+	}
+
+	public JFmRxFuture stopCompleteScan() {
+		JFmRxFuture future = begin(JFmRxCommand.CMD_STOP_COMPLETE_SCAN);
+		return end(future, mJFmRx.stopCompleteScan());
+	}
+
+	/******************************************************************************************
+	 * Private utility functions
+	 *
+	 *******************************************************************************************/
+
+	/*
+	 * Returns the newest outstanding future of command, if any, joined by the
+	 * caller: it is only cancelled once every caller has released it.
+	 */
+	private JFmRxFuture inFlight(int command) {
+		JFmRxFuture future;
+		LinkedList<JFmRxFuture> pending = mPending[command];
+
+		synchronized (pending) {
+			future = pending.peekLast();
+		}
+		return (future != null && future.join()) ? future : null;
+	}
+
+	/*
+	 * The future is queued before the command is issued, so a completion that
+	 * arrives before the JFmRx call returns still finds it.
+	 */
+	private JFmRxFuture begin(int command) {
+		JFmRxFuture future = new JFmRxFuture(command);
+		LinkedList<JFmRxFuture> pending = mPending[command];
+
+		synchronized (pending) {
+			dropStale(pending, future.getSubmitTimeNs());
+			pending.addLast(future);
+		}
+		return future;
+	}
+
+	private JFmRxFuture end(JFmRxFuture future, JFmRxStatus status) {
+		future.setIssueStatus(status);
+		if (status != JFmRxStatus.PENDING) {
+			/* Rejected or completed synchronously - no fmRxCmdDone will follow */
+			LinkedList<JFmRxFuture> pending = mPending[future.getCommand()];
+			synchronized (pending) {
+				pending.remove(future);
+			}
+			future.complete(status, 0);
+
+			if (DBG)
+				Log.d(TAG, "command " + future.getCommand()
+						+ " not pending, status = " + status);
+		}
+		return future;
+	}
+
+	/*
+	 * A stopped seek or complete scan gets no completion of its own, only the
+	 * stop command does. Its future fails with the stop status; a seek gets
+	 * the frequency reached as value, a complete scan no channels.
+	 */
+	private void completeStopped(int command, JFmRxStatus status, long value) {
+		JFmRxFuture future;
+		LinkedList<JFmRxFuture> pending = mPending[command];
+
+		while (true) {
+			synchronized (pending) {
+				future = pending.poll();
+			}
+			if (future == null) {
+				return;
+			}
+			future.complete(status, value);
+		}
+	}
+
+	private void dropStale(LinkedList<JFmRxFuture> pending, long now) {
+		JFmRxFuture head;
+
+		while ((head = pending.peek()) != null && head.isCancelled()
+				&& now - head.getSubmitTimeNs() > STALE_FUTURE_NS) {
+			pending.poll();
+			Log.w(TAG, "dropping stale future of command " + head.getCommand());
+		}
+	}
+}
@@ -0,0 +1,799 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxCapture.java
+ *
+ *   BRIEF:          Binary capture of the JFmRx commands and callbacks.
+ *
+ *   DESCRIPTION:    Started with JFmRx.startCapture(). Every command sent to
+ *                   the backend and every nativeCb_* upcall is appended to a
+ *                   file as one record. Records are put in direct buffers;
+ *                   a full buffer is handed to a writer thread, which writes
+ *                   it to a FileChannel, so the callback and binder threads
+ *                   never wait for the file. When the writer falls behind
+ *                   and no buffer is free, records are dropped and counted.
+ *                   JFmRxReplay plays a capture back into an ICallback.
+ *
+ *                   Layout: a header (magic, version, wall clock start time
+ *                   in ms) then records. A record is its type byte, the time
+ *                   since the previous record in us, then its fields. Numbers
+ *                   are zigzag varints, byte and int arrays are preceded by
+ *                   their length.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import android.util.Log;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+public final class JFmRxCapture {
+
+	private static final String TAG = "JFmRxCapture";
+
+	static final int MAGIC = 0x464D5258; /* "FMRX" */
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+
+	/* Record types */
+	static final int REC_COMMAND = 1;
+	static final int REC_RAW_RDS = 2;
+	static final int REC_RAW_RDS_BATCH = 3;
+	static final int REC_RAW_RDS_RING = 4;
+	static final int REC_RADIO_TEXT = 5;
+	static final int REC_PI_CODE = 6;
+	static final int REC_PTY_CODE = 7;
+	static final int REC_PS = 8;
+	static final int REC_MONO_STEREO_MODE = 9;
+	static final int REC_AF_SWITCH_FREQ_FAILED = 10;
+	static final int REC_AF_SWITCH_START = 11;
+	static final int REC_AF_SWITCH_COMPLETE = 12;
+	static final int REC_AF_LIST = 13;
+	static final int REC_CMD_DONE = 14;
+	static final int REC_CMD_ERROR = 15;
+	static final int REC_COMPLETE_SCAN_DONE = 16;
+
+	/* IJFmRxBackend operations, as recorded in REC_COMMAND */
+	public static final int OP_CREATE = 0;
+	public static final int OP_DESTROY = 1;
+	public static final int OP_ENABLE = 2;
+	public static final int OP_DISABLE = 3;
+	public static final int OP_SET_BAND = 4;
+	public static final int OP_GET_BAND = 5;
+	public static final int OP_TUNE = 6;
+	public static final int OP_GET_TUNED_FREQUENCY = 7;
+	public static final int OP_SET_MONO_STEREO_MODE = 8;
+	public static final int OP_GET_MONO_STEREO_MODE = 9;
+	public static final int OP_SET_MUTE_MODE = 10;
+	public static final int OP_GET_MUTE_MODE = 11;
+	public static final int OP_SET_RSSI_THRESHOLD = 12;
+	public static final int OP_GET_RSSI_THRESHOLD = 13;
+	public static final int OP_GET_RSSI = 14;
+	public static final int OP_SET_VOLUME = 15;
+	public static final int OP_GET_VOLUME = 16;
+	public static final int OP_SET_CHANNEL_SPACING = 17;
+	public static final int OP_GET_CHANNEL_SPACING = 18;
+	public static final int OP_SET_DE_EMPHASIS_FILTER = 19;
+	public static final int OP_GET_DE_EMPHASIS_FILTER = 20;
+	public static final int OP_SEEK = 21;
+	public static final int OP_STOP_SEEK = 22;
+	public static final int OP_ENABLE_RDS = 23;
+	public static final int OP_DISABLE_RDS = 24;
+	public static final int OP_ENABLE_AUDIO_ROUTING = 25;
+	public static final int OP_DISABLE_AUDIO_ROUTING = 26;
+	public static final int OP_SET_RDS_AF_SWITCH_MODE = 27;
+	public static final int OP_GET_RDS_AF_SWITCH_MODE = 28;
+	public static final int OP_CHANGE_AUDIO_TARGET = 29;
+	public static final int OP_CHANGE_DIGITAL_TARGET_CONFIGURATION = 30;
+	public static final int OP_SET_RF_DEPENDENT_MUTE_MODE = 31;
+	public static final int OP_GET_RF_DEPENDENT_MUTE = 32;
+	public static final int OP_SET_RDS_SYSTEM = 33;
+	public static final int OP_GET_RDS_SYSTEM = 34;
+	public static final int OP_SET_RDS_GROUP_MASK = 35;
+	public static final int OP_GET_RDS_GROUP_MASK = 36;
+	public static final int OP_IS_VALID_CHANNEL = 37;
+	public static final int OP_COMPLETE_SCAN = 38;
+	public static final int OP_GET_FW_VERSION = 39;
+	public static final int OP_GET_COMPLETE_SCAN_PROGRESS = 40;
+	public static final int OP_STOP_COMPLETE_SCAN = 41;
+	public static final int OP_GET_DISPATCHER_STATS = 42;
+	public static final int OP_SET_RAW_RDS_RING = 43;
+	public static final int OP_SET_RAW_RDS_BATCHING = 44;
+
+	public static final String[] OP_NAMES = {
+			"create", "destroy", "enable", "disable", "setBand", "getBand",
+			"tune", "getTunedFrequency", "setMonoStereoMode",
+			"getMonoStereoMode", "setMuteMode", "getMuteMode",
+			"setRssiThreshold", "getRssiThreshold", "getRssi", "setVolume",
+			"getVolume", "setChannelSpacing", "getChannelSpacing",
+			"setDeEmphasisFilter", "getDeEmphasisFilter", "seek", "stopSeek",
+			"enableRDS", "disableRDS", "enableAudioRouting",
+			"disableAudioRouting", "setRdsAfSwitchMode", "getRdsAfSwitchMode",
+			"changeAudioTarget", "changeDigitalTargetConfiguration",
+			"setRfDependentMuteMode", "getRfDependentMute", "setRdsSystem",
+			"getRdsSystem", "setRdsGroupMask", "getRdsGroupMask",
+			"isValidChannel", "completeScan", "getFwVersion",
+			"getCompleteScanProgress", "stopCompleteScan", "getDispatcherStats",
+			"setRawRdsRing", "setRawRdsBatching" };
+
+	/* A varint takes up to 10 bytes */
+	private static final int VARINT_MAX = 10;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int BUFFERS = 3;
+
+	private final FileOutputStream mStream;
+	private final FileChannel mChannel;
+
+	/* Buffers the writer is done with, and the ones it has to write */
+	private final ArrayBlockingQueue<ByteBuffer> mFree = new ArrayBlockingQueue<ByteBuffer>(
+			BUFFERS);
+	private final ArrayBlockingQueue<ByteBuffer> mFull = new ArrayBlockingQueue<ByteBuffer>(
+			BUFFERS + 1);
+	/* Queued by close() after the last buffer */
+	private final ByteBuffer mEnd = ByteBuffer.allocate(0);
+	private final Thread mWriter;
+
+	/* Buffer being filled, under the lock */
+	private ByteBuffer mBuffer;
+
+	/* Time of the previous record, advanced by the recorded deltas */
+	private long mLastNs;
+	private long mRecords = 0;
+	private long mDropped = 0;
+	private boolean mClosed = false;
+
+	/* Written by the writer thread */
+	private long mBytes = 0;
+	private volatile boolean mFailed = false;
+
+	/* Writes to stream, closed by close() */
+	JFmRxCapture(FileOutputStream stream) {
+		mStream = stream;
+		mChannel = mStream.getChannel();
+		for (int i = 1; i < BUFFERS; i++) {
+			mFree.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+		}
+		mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		mBuffer.putInt(MAGIC);
+		mBuffer.putInt(VERSION);
+		mBuffer.putLong(System.currentTimeMillis());
+		mLastNs = System.nanoTime();
+
+		mWriter = new Thread("JFmRxCapture") {
+			public void run() {
+				write();
+			}
+		};
+		mWriter.start();
+	}
+
+	/* Records the commands sent to target */
+	static final class Backend implements IJFmRxBackend {
+		private final JFmRxCapture mCapture;
+		private final IJFmRxBackend mTarget;
+
+		Backend(JFmRxCapture capture, IJFmRxBackend target) {
+			mCapture = capture;
+			mTarget = target;
+		}
+
+		IJFmRxBackend getTarget() {
+			return mTarget;
+		}
+
+		public int create(JFmContext contextValue) {
+			int status = mTarget.create(contextValue);
+			mCapture.onCommand(OP_CREATE, status);
+			return status;
+		}
+
+		public int destroy(long contextValue) {
+			int status = mTarget.destroy(contextValue);
+			mCapture.onCommand(OP_DESTROY, status);
+			return status;
+		}
+
+		public int enable(long contextValue) {
+			int status = mTarget.enable(contextValue);
+			mCapture.onCommand(OP_ENABLE, status);
+			return status;
+		}
+
+		public int disable(long contextValue) {
+			int status = mTarget.disable(contextValue);
+			mCapture.onCommand(OP_DISABLE, status);
+			return status;
+		}
+
+		public int setBand(long contextValue, int jFmBand) {
+			int status = mTarget.setBand(contextValue, jFmBand);
+			mCapture.onCommand(OP_SET_BAND, status, jFmBand);
+			return status;
+		}
+
+		public int getBand(long contextValue) {
+			int status = mTarget.getBand(contextValue);
+			mCapture.onCommand(OP_GET_BAND, status);
+			return status;
+		}
+
+		public int tune(long contextValue, int jFmFreq) {
+			int status = mTarget.tune(contextValue, jFmFreq);
+			mCapture.onCommand(OP_TUNE, status, jFmFreq);
+			return status;
+		}
+
+		public int getTunedFrequency(long contextValue) {
+			int status = mTarget.getTunedFrequency(contextValue);
+			mCapture.onCommand(OP_GET_TUNED_FREQUENCY, status);
+			return status;
+		}
+
+		public int setMonoStereoMode(long contextValue, int jFmMonoStereoMode) {
+			int status = mTarget.setMonoStereoMode(contextValue,
+					jFmMonoStereoMode);
+			mCapture.onCommand(OP_SET_MONO_STEREO_MODE, status,
+					jFmMonoStereoMode);
+			return status;
+		}
+
+		public int getMonoStereoMode(long contextValue) {
+			int status = mTarget.getMonoStereoMode(contextValue);
+			mCapture.onCommand(OP_GET_MONO_STEREO_MODE, status);
+			return status;
+		}
+
+		public int setMuteMode(long contextValue, int jFmMuteMode) {
+			int status = mTarget.setMuteMode(contextValue, jFmMuteMode);
+			mCapture.onCommand(OP_SET_MUTE_MODE, status, jFmMuteMode);
+			return status;
+		}
+
+		public int getMuteMode(long contextValue) {
+			int status = mTarget.getMuteMode(contextValue);
+			mCapture.onCommand(OP_GET_MUTE_MODE, status);
+			return status;
+		}
+
+		public int setRssiThreshold(long contextValue, int jFmRssi) {
+			int status = mTarget.setRssiThreshold(contextValue, jFmRssi);
+			mCapture.onCommand(OP_SET_RSSI_THRESHOLD, status, jFmRssi);
+			return status;
+		}
+
+		public int getRssiThreshold(long contextValue) {
+			int status = mTarget.getRssiThreshold(contextValue);
+			mCapture.onCommand(OP_GET_RSSI_THRESHOLD, status);
+			return status;
+		}
+
+		public int getRssi(long contextValue) {
+			int status = mTarget.getRssi(contextValue);
+			mCapture.onCommand(OP_GET_RSSI, status);
+			return status;
+		}
+
+		public int setVolume(long contextValue, int jFmVolume) {
+			int status = mTarget.setVolume(contextValue, jFmVolume);
+			mCapture.onCommand(OP_SET_VOLUME, status, jFmVolume);
+			return status;
+		}
+
+		public int getVolume(long contextValue) {
+			int status = mTarget.getVolume(contextValue);
+			mCapture.onCommand(OP_GET_VOLUME, status);
+			return status;
+		}
+
+		public int setChannelSpacing(long contextValue, int jFmChannelSpacing) {
+			int status = mTarget.setChannelSpacing(contextValue,
+					jFmChannelSpacing);
+			mCapture.onCommand(OP_SET_CHANNEL_SPACING, status,
+					jFmChannelSpacing);
+			return status;
+		}
+
+		public int getChannelSpacing(long contextValue) {
+			int status = mTarget.getChannelSpacing(contextValue);
+			mCapture.onCommand(OP_GET_CHANNEL_SPACING, status);
+			return status;
+		}
+
+		public int setDeEmphasisFilter(long contextValue,
+				int jFmEmphasisFilter) {
+			int status = mTarget.setDeEmphasisFilter(contextValue,
+					jFmEmphasisFilter);
+			mCapture.onCommand(OP_SET_DE_EMPHASIS_FILTER, status,
+					jFmEmphasisFilter);
+			return status;
+		}
+
+		public int getDeEmphasisFilter(long contextValue) {
+			int status = mTarget.getDeEmphasisFilter(contextValue);
+			mCapture.onCommand(OP_GET_DE_EMPHASIS_FILTER, status);
+			return status;
+		}
+
+		public int seek(long contextValue, int jFmDirection) {
+			int status = mTarget.seek(contextValue, jFmDirection);
+			mCapture.onCommand(OP_SEEK, status, jFmDirection);
+			return status;
+		}
+
+		public int stopSeek(long contextValue) {
+			int status = mTarget.stopSeek(contextValue);
+			mCapture.onCommand(OP_STOP_SEEK, status);
+			return status;
+		}
+
+		public int enableRDS(long contextValue) {
+			int status = mTarget.enableRDS(contextValue);
+			mCapture.onCommand(OP_ENABLE_RDS, status);
+			return status;
+		}
+
+		public int disableRDS(long contextValue) {
+			int status = mTarget.disableRDS(contextValue);
+			mCapture.onCommand(OP_DISABLE_RDS, status);
+			return status;
+		}
+
+		public int enableAudioRouting(long contextValue) {
+			int status = mTarget.enableAudioRouting(contextValue);
+			mCapture.onCommand(OP_ENABLE_AUDIO_ROUTING, status);
+			return status;
+		}
+
+		public int disableAudioRouting(long contextValue) {
+			int status = mTarget.disableAudioRouting(contextValue);
+			mCapture.onCommand(OP_DISABLE_AUDIO_ROUTING, status);
+			return status;
+		}
+
+		public int setRdsAfSwitchMode(long contextValue, int jRdsAfSwitchMode) {
+			int status = mTarget.setRdsAfSwitchMode(contextValue,
+					jRdsAfSwitchMode);
+			mCapture.onCommand(OP_SET_RDS_AF_SWITCH_MODE, status,
+					jRdsAfSwitchMode);
+			return status;
+		}
+
+		public int getRdsAfSwitchMode(long contextValue) {
+			int status = mTarget.getRdsAfSwitchMode(contextValue);
+			mCapture.onCommand(OP_GET_RDS_AF_SWITCH_MODE, status);
+			return status;
+		}
+
+		public int changeAudioTarget(long contextValue, int audioTargetMask,
+				int digitalConfig) {
+			int status = mTarget.changeAudioTarget(contextValue, audioTargetMask,
+					digitalConfig);
+			mCapture.onCommand(OP_CHANGE_AUDIO_TARGET, status,
+					audioTargetMask, digitalConfig);
+			return status;
+		}
+
+		public int changeDigitalTargetConfiguration(long contextValue,
+				int digitalConfig) {
+			int status = mTarget.changeDigitalTargetConfiguration(contextValue,
+					digitalConfig);
+			mCapture.onCommand(OP_CHANGE_DIGITAL_TARGET_CONFIGURATION, status,
+					digitalConfig);
+			return status;
+		}
+
+		public int setRfDependentMuteMode(long contextValue, int mode) {
+			int status = mTarget.setRfDependentMuteMode(contextValue, mode);
+			mCapture.onCommand(OP_SET_RF_DEPENDENT_MUTE_MODE, status, mode);
+			return status;
+		}
+
+		public int getRfDependentMute(long contextValue) {
+			int status = mTarget.getRfDependentMute(contextValue);
+			mCapture.onCommand(OP_GET_RF_DEPENDENT_MUTE, status);
+			return status;
+		}
+
+		public int setRdsSystem(long contextValue, int rdsSystem) {
+			int status = mTarget.setRdsSystem(contextValue, rdsSystem);
+			mCapture.onCommand(OP_SET_RDS_SYSTEM, status, rdsSystem);
+			return status;
+		}
+
+		public int getRdsSystem(long contextValue) {
+			int status = mTarget.getRdsSystem(contextValue);
+			mCapture.onCommand(OP_GET_RDS_SYSTEM, status);
+			return status;
+		}
+
+		public int setRdsGroupMask(long contextValue, long groupMask) {
+			int status = mTarget.setRdsGroupMask(contextValue, groupMask);
+			mCapture.onCommand(OP_SET_RDS_GROUP_MASK, status, groupMask);
+			return status;
+		}
+
+		public int getRdsGroupMask(long contextValue) {
+			int status = mTarget.getRdsGroupMask(contextValue);
+			mCapture.onCommand(OP_GET_RDS_GROUP_MASK, status);
+			return status;
+		}
+
+		public int isValidChannel(long contextValue) {
+			int status = mTarget.isValidChannel(contextValue);
+			mCapture.onCommand(OP_IS_VALID_CHANNEL, status);
+			return status;
+		}
+
+		public int completeScan(long contextValue) {
+			int status = mTarget.completeScan(contextValue);
+			mCapture.onCommand(OP_COMPLETE_SCAN, status);
+			return status;
+		}
+
+		public int getFwVersion(long contextValue) {
+			int status = mTarget.getFwVersion(contextValue);
+			mCapture.onCommand(OP_GET_FW_VERSION, status);
+			return status;
+		}
+
+		public int getCompleteScanProgress(long contextValue) {
+			int status = mTarget.getCompleteScanProgress(contextValue);
+			mCapture.onCommand(OP_GET_COMPLETE_SCAN_PROGRESS, status);
+			return status;
+		}
+
+		public int stopCompleteScan(long contextValue) {
+			int status = mTarget.stopCompleteScan(contextValue);
+			mCapture.onCommand(OP_STOP_COMPLETE_SCAN, status);
+			return status;
+		}
+
+		public int getDispatcherStats(long[] stats) {
+			int status = mTarget.getDispatcherStats(stats);
+			mCapture.onCommand(OP_GET_DISPATCHER_STATS, status);
+			return status;
+		}
+
+		public int setRawRdsRing(ByteBuffer buffer, int slots) {
+			int status = mTarget.setRawRdsRing(buffer, slots);
+			mCapture.onCommand(OP_SET_RAW_RDS_RING, status, slots);
+			return status;
+		}
+
+		public int setRawRdsBatching(int batchSize, int maxLatencyMs,
+				long groupMask) {
+			int status = mTarget.setRawRdsBatching(batchSize, maxLatencyMs,
+					groupMask);
+			mCapture.onCommand(OP_SET_RAW_RDS_BATCHING, status,
+					batchSize, maxLatencyMs);
+			return status;
+		}
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			Records
+	 *------------------------------------------------------------------------*/
+
+	/* Commands are recorded once issued, after any early completion */
+	synchronized void onCommand(int op, int status) {
+		if (begin(REC_COMMAND, 4 * VARINT_MAX)) {
+			putInt(op);
+			putInt(status);
+			putInt(0);
+			mRecords++;
+		}
+	}
+
+	synchronized void onCommand(int op, int status, long arg) {
+		if (begin(REC_COMMAND, 5 * VARINT_MAX)) {
+			putInt(op);
+			putInt(status);
+			putInt(1);
+			putLong(arg);
+			mRecords++;
+		}
+	}
+
+	synchronized void onCommand(int op, int status, long arg1, long arg2) {
+		if (begin(REC_COMMAND, 6 * VARINT_MAX)) {
+			putInt(op);
+			putInt(status);
+			putInt(2);
+			putLong(arg1);
+			putLong(arg2);
+			mRecords++;
+		}
+	}
+
+	synchronized void onRawRds(int status, int groupMask, byte[] groupData) {
+		if (begin(REC_RAW_RDS, 3 * VARINT_MAX + length(groupData))) {
+			putInt(status);
+			putInt(groupMask);
+			putBytes(groupData, length(groupData));
+			mRecords++;
+		}
+	}
+
+	synchronized void onRawRdsBatch(int status, int count, byte[] groupData,
+			int[] groupMasks) {
+		count = Math.max(0, Math.min(count, Math.min(
+				length(groupData) / JFmRxRdsRing.GROUP_SIZE,
+				groupMasks != null ? groupMasks.length : 0)));
+		if (begin(REC_RAW_RDS_BATCH, (3 + count) * VARINT_MAX + count
+				* JFmRxRdsRing.GROUP_SIZE)) {
+			putInt(status);
+			putInt(count);
+			mBuffer.put(groupData, 0, count * JFmRxRdsRing.GROUP_SIZE);
+			for (int i = 0; i < count; i++) {
+				putInt(groupMasks[i]);
+			}
+			mRecords++;
+		}
+	}
+
+	/* The groups are copied out of the ring, before Java consumes them */
+	synchronized void onRawRdsRing(JFmRxRdsRing ring, int count) {
+		if (ring == null) {
+			return;
+		}
+		count = Math.max(0, Math.min(count, ring.available()));
+		if (begin(REC_RAW_RDS_RING, (1 + 2 * count) * VARINT_MAX + count
+				* JFmRxRdsRing.GROUP_SIZE)) {
+			putInt(count);
+			for (int n = 0; n < count; n++) {
+				putInt(ring.getStatus(n));
+				putInt(ring.getGroupMask(n));
+				for (int i = 0; i < JFmRxRdsRing.GROUP_SIZE; i++) {
+					mBuffer.put((byte) ring.getGroupByte(n, i));
+				}
+			}
+			mRecords++;
+		}
+	}
+
+	synchronized void onRadioText(int status, boolean resetDisplay,
+			byte[] msg, int len, int startIndex, int repertoire) {
+		if (begin(REC_RADIO_TEXT, 6 * VARINT_MAX + length(msg))) {
+			putInt(status);
+			putInt(resetDisplay ? 1 : 0);
+			putInt(len);
+			putInt(startIndex);
+			putInt(repertoire);
+			putBytes(msg, length(msg));
+			mRecords++;
+		}
+	}
+
+	synchronized void onValue(int type, int status, int value) {
+		if (begin(type, 2 * VARINT_MAX)) {
+			putInt(status);
+			putInt(value);
+			mRecords++;
+		}
+	}
+
+	synchronized void onPs(int status, int frequency, byte[] name,
+			int repertoire) {
+		if (begin(REC_PS, 4 * VARINT_MAX + length(name))) {
+			putInt(status);
+			putInt(frequency);
+			putInt(repertoire);
+			putBytes(name, length(name));
+			mRecords++;
+		}
+	}
+
+	synchronized void onAfSwitch(int type, int status, int pi, int tunedFreq,
+			int afFreq) {
+		if (begin(type, 4 * VARINT_MAX)) {
+			putInt(status);
+			putInt(pi);
+			putInt(tunedFreq);
+			putInt(afFreq);
+			mRecords++;
+		}
+	}
+
+	synchronized void onAfList(int status, int pi, byte[] afList,
+			int afListSize) {
+		if (begin(REC_AF_LIST, 4 * VARINT_MAX + length(afList))) {
+			putInt(status);
+			putInt(pi);
+			putInt(afListSize);
+			putBytes(afList, length(afList));
+			mRecords++;
+		}
+	}
+
+	synchronized void onCmdDone(int status, int command, long value) {
+		if (begin(REC_CMD_DONE, 3 * VARINT_MAX)) {
+			putInt(status);
+			putInt(command);
+			putLong(value);
+			mRecords++;
+		}
+	}
+
+	synchronized void onCmdError(int status) {
+		if (begin(REC_CMD_ERROR, VARINT_MAX)) {
+			putInt(status);
+			mRecords++;
+		}
+	}
+
+	synchronized void onCompleteScanDone(int status, int numOfChannels,
+			int[] channelsData) {
+		int length = channelsData != null ? channelsData.length : 0;
+
+		if (begin(REC_COMPLETE_SCAN_DONE, (3 + length) * VARINT_MAX)) {
+			putInt(status);
+			putInt(numOfChannels);
+			putInt(length);
+			for (int i = 0; i < length; i++) {
+				putInt(channelsData[i]);
+			}
+			mRecords++;
+		}
+	}
+
+	/*
+	 * Hands what is buffered to the writer and waits for it to be written and
+	 * the file closed. Records arriving later are ignored.
+	 */
+	void close() {
+		boolean interrupted = false;
+
+		synchronized (this) {
+			if (mClosed) {
+				return;
+			}
+			mClosed = true;
+			mFull.add(mBuffer);
+			mFull.add(mEnd);
+			mBuffer = null;
+		}
+		for (;;) {
+			try {
+				mWriter.join();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this) {
+			Log.i(TAG, "captured " + mRecords + " records, " + mBytes
+					+ " bytes, dropped " + mDropped);
+		}
+	}
+
+	synchronized long getRecords() {
+		return mRecords;
+	}
+
+	/*
+	 * Starts a record of at most payload bytes after the type and time.
+	 * Returns false if the record cannot be written.
+	 */
+	private boolean begin(int type, int payload) {
+		long now = System.nanoTime();
+		long deltaUs = (now - mLastNs) / 1000;
+
+		if (mClosed || mFailed) {
+			return false;
+		}
+		if (mBuffer.remaining() < 1 + VARINT_MAX + payload) {
+			if (!handOff()
+					|| mBuffer.remaining() < 1 + VARINT_MAX + payload) {
+				mDropped++;
+				return false;
+			}
+		}
+		mLastNs += deltaUs * 1000;
+		mBuffer.put((byte) type);
+		putVarint(deltaUs);
+		return true;
+	}
+
+	/*
+	 * Queues the buffer being filled for the writer and goes on with a free
+	 * one. Never waits: returns false if the writer has none to give back.
+	 */
+	private boolean handOff() {
+		ByteBuffer next;
+
+		if (mBuffer.position() == 0) {
+			return false;
+		}
+		next = mFree.poll();
+		if (next == null) {
+			return false;
+		}
+		mFull.add(mBuffer);
+		mBuffer = next;
+		return true;
+	}
+
+	/* Writer thread: writes the full buffers in order until close() */
+	private void write() {
+		for (;;) {
+			ByteBuffer buffer;
+			try {
+				buffer = mFull.take();
+			} catch (InterruptedException e) {
+				continue;
+			}
+			if (buffer == mEnd) {
+				break;
+			}
+			buffer.flip();
+			try {
+				while (!mFailed && buffer.hasRemaining()) {
+					mBytes += mChannel.write(buffer);
+				}
+			} catch (IOException e) {
+				Log.e(TAG, "capture stopped: " + e.toString());
+				mFailed = true;
+			}
+			buffer.clear();
+			mFree.offer(buffer);
+		}
+		try {
+			mChannel.close();
+			mStream.close();
+		} catch (IOException e) {
+			Log.e(TAG, "close: " + e.toString());
+		}
+	}
+
+	private void putInt(int value) {
+		putLong(value);
+	}
+
+	private void putLong(long value) {
+		putVarint((value << 1) ^ (value >> 63));
+	}
+
+	private void putVarint(long value) {
+		while ((value & ~0x7FL) != 0) {
+			mBuffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		mBuffer.put((byte) value);
+	}
+
+	private void putBytes(byte[] data, int length) {
+		putInt(length);
+		if (length > 0) {
+			mBuffer.put(data, 0, length);
+		}
+	}
+
+	private static int length(byte[] data) {
+		return data != null ? data.length : 0;
+	}
+}
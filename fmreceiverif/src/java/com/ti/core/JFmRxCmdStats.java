@@ -0,0 +1,367 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxCmdStats.java
+ *
+ *   BRIEF:          Latency, error and timeout counters per JFmRxCommand.
+ *
+ *   DESCRIPTION:    JFmRx stamps every command before handing it to the
+ *                   backend and matches the fmRxCmdDone of the same command
+ *                   id in FIFO order, as the stack completes them. The
+ *                   latency of each round trip goes to a histogram of
+ *                   power of two buckets. All counters are atomics, so
+ *                   recording never blocks the caller or the callback
+ *                   thread.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class JFmRxCmdStats {
+
+	public static final int NUM_COMMANDS = JFmRxCommand.LAST_API_CMD + 1;
+
+	/* Bucket n counts latencies below 256 us << n, the last one the rest */
+	public static final int NUM_BUCKETS = 16;
+	private static final int FIRST_BUCKET_SHIFT = 8;
+
+	/* Issue times kept per command; more commands in flight share slots */
+	private static final int SLOTS = 16;
+	private static final long CANCELLED = -1;
+
+	/* An older command still in flight behind a completion was lost */
+	private static final long LOST_NS = 10L * 1000 * 1000 * 1000;
+
+	private static final String[] NAMES = { "ENABLE", "DISABLE", "SET_BAND",
+			"GET_BAND", "SET_MONO_STEREO_MODE", "GET_MONO_STEREO_MODE",
+			"SET_MUTE_MODE", "GET_MUTE_MODE", "SET_RF_DEPENDENT_MUTE_MODE",
+			"GET_RF_DEPENDENT_MUTE_MODE", "SET_RSSI_THRESHOLD",
+			"GET_RSSI_THRESHOLD", "SET_DEEMPHASIS_FILTER",
+			"GET_DEEMPHASIS_FILTER", "SET_VOLUME", "GET_VOLUME", "TUNE",
+			"GET_TUNED_FREQUENCY", "SEEK", "STOP_SEEK", "GET_RSSI",
+			"ENABLE_RDS", "DISABLE_RDS", "SET_RDS_SYSTEM", "GET_RDS_SYSTEM",
+			"SET_RDS_GROUP_MASK", "GET_RDS_GROUP_MASK",
+			"SET_RDS_AF_SWITCH_MODE", "GET_RDS_AF_SWITCH_MODE",
+			"ENABLE_AUDIO", "DISABLE_AUDIO", "DESTROY", "CHANGE_AUDIO_TARGET",
+			"CHANGE_DIGITAL_AUDIO_CONFIGURATION", "INIT_ASYNC", "INIT",
+			"DEINIT", "SET_CHANNEL_SPACING", "GET_CHANNEL_SPACING",
+			"GET_FW_VERSION", "IS_CHANNEL_VALID", "COMPLETE_SCAN",
+			"COMPLETE_SCAN_PROGRESS", "STOP_COMPLETE_SCAN" };
+
+	private final AtomicLongArray mIssueNs = new AtomicLongArray(NUM_COMMANDS
+			* SLOTS);
+	private final AtomicLongArray mIssueSeq = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mDoneSeq = new AtomicLongArray(NUM_COMMANDS);
+
+	private final AtomicLongArray mIssued = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mCompleted = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mInFlight = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mRejected = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mErrors = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mTimeouts = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mLost = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mTotalUs = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mMaxUs = new AtomicLongArray(NUM_COMMANDS);
+	private final AtomicLongArray mHistogram = new AtomicLongArray(
+			NUM_COMMANDS * NUM_BUCKETS);
+	private final AtomicLong mCmdErrors = new AtomicLong();
+
+	/* Upper limit of bucket n in us, Long.MAX_VALUE for the last one */
+	public static long getBucketLimitUs(int n) {
+		return n < NUM_BUCKETS - 1 ? 1L << (FIRST_BUCKET_SHIFT + n)
+				: Long.MAX_VALUE;
+	}
+
+	public static String getName(int command) {
+		return command >= 0 && command < NUM_COMMANDS ? NAMES[command]
+				: Integer.toString(command);
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			Recording
+	 *------------------------------------------------------------------------*/
+
+	/*
+	 * Called right before the command is handed to the backend, so that a
+	 * completion arriving before the call returns finds its issue time.
+	 * Returns the ticket to pass to issued().
+	 */
+	long begin(int command) {
+		if (command < 0 || command >= NUM_COMMANDS) {
+			return -1;
+		}
+		long seq = mIssueSeq.getAndIncrement(command);
+		mIssueNs.set(slot(command, seq), System.nanoTime());
+		mInFlight.incrementAndGet(command);
+		return seq;
+	}
+
+	/* Called with the status the backend returned for the ticket of begin() */
+	void issued(int command, long seq, JFmRxStatus status) {
+		if (seq < 0) {
+			return;
+		}
+		if (status == JFmRxStatus.PENDING) {
+			mIssued.incrementAndGet(command);
+			return;
+		}
+		/* No fmRxCmdDone will follow */
+		mIssueNs.set(slot(command, seq), CANCELLED);
+		mInFlight.decrementAndGet(command);
+		if (status != JFmRxStatus.SUCCESS) {
+			mRejected.incrementAndGet(command);
+		}
+	}
+
+	/* Called from the callback thread for each fmRxCmdDone */
+	void onCmdDone(int command, JFmRxStatus status) {
+		long now = System.nanoTime();
+		long issueNs;
+
+		if (command < 0 || command >= NUM_COMMANDS) {
+			return;
+		}
+
+		issueNs = take(command, now);
+		mCompleted.incrementAndGet(command);
+		if (issueNs >= 0) {
+			mInFlight.decrementAndGet(command);
+		}
+		if (!isSuccess(status)) {
+			mErrors.incrementAndGet(command);
+		}
+		if (issueNs > 0) {
+			record(command, (now - issueNs) / 1000);
+		}
+
+		/* The stopped command gets no completion of its own */
+		if (command == JFmRxCommand.CMD_STOP_SEEK
+				&& (status == JFmRxStatus.SUCCESS || status == JFmRxStatus.SEEK_STOPPED)) {
+			discard(JFmRxCommand.CMD_SEEK);
+		} else if (command == JFmRxCommand.CMD_STOP_COMPLETE_SCAN
+				&& (status == JFmRxStatus.SUCCESS || status == JFmRxStatus.COMPLETE_SCAN_STOPPED)) {
+			discard(JFmRxCommand.CMD_COMPLETE_SCAN);
+		}
+	}
+
+	/* Called for each fmRxCmdError, which names no command */
+	void onCmdError() {
+		mCmdErrors.incrementAndGet();
+	}
+
+	/** Counts a caller giving up on the completion of command */
+	public void onTimeout(int command) {
+		if (command >= 0 && command < NUM_COMMANDS) {
+			mTimeouts.incrementAndGet(command);
+		}
+	}
+
+	/*
+	 * Returns the issue time of the oldest command in flight and releases its
+	 * slot, 0 if unknown and -1 if none is in flight. Commands stuck far
+	 * longer than the one completing are taken as lost.
+	 */
+	private long take(int command, long now) {
+		while (true) {
+			long seq = mDoneSeq.get(command);
+			if (seq >= mIssueSeq.get(command)) {
+				return -1;
+			}
+			if (!mDoneSeq.compareAndSet(command, seq, seq + 1)) {
+				continue;
+			}
+			long issueNs = mIssueNs.getAndSet(slot(command, seq), 0);
+			if (issueNs == CANCELLED) {
+				continue;
+			}
+			if (issueNs > 0 && now - issueNs > LOST_NS
+					&& mInFlight.get(command) > 1) {
+				mLost.incrementAndGet(command);
+				mInFlight.decrementAndGet(command);
+				continue;
+			}
+			return issueNs;
+		}
+	}
+
+	/* Drops the commands of command still in flight, without a sample */
+	private void discard(int command) {
+		long now = System.nanoTime();
+
+		while (take(command, now) >= 0) {
+			mInFlight.decrementAndGet(command);
+		}
+	}
+
+	private void record(int command, long latencyUs) {
+		int bucket = 64 - Long.numberOfLeadingZeros(latencyUs >> FIRST_BUCKET_SHIFT);
+		long max;
+
+		if (bucket >= NUM_BUCKETS) {
+			bucket = NUM_BUCKETS - 1;
+		}
+		mHistogram.incrementAndGet(command * NUM_BUCKETS + bucket);
+		mTotalUs.addAndGet(command, latencyUs);
+		while ((max = mMaxUs.get(command)) < latencyUs
+				&& !mMaxUs.compareAndSet(command, max, latencyUs)) {
+		}
+	}
+
+	private static int slot(int command, long seq) {
+		return command * SLOTS + (int) (seq & (SLOTS - 1));
+	}
+
+	private static boolean isSuccess(JFmRxStatus status) {
+		return status == JFmRxStatus.SUCCESS
+				|| status == JFmRxStatus.SEEK_STOPPED
+				|| status == JFmRxStatus.SEEK_REACHED_BAND_LIMIT
+				|| status == JFmRxStatus.COMPLETE_SCAN_STOPPED;
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			Queries
+	 *------------------------------------------------------------------------*/
+
+	/* Commands accepted by the stack, which owe a completion */
+	public long getIssued(int command) {
+		return mIssued.get(command);
+	}
+
+	public long getCompleted(int command) {
+		return mCompleted.get(command);
+	}
+
+	/* Commands refused when issued */
+	public long getRejected(int command) {
+		return mRejected.get(command);
+	}
+
+	/* Completions with a failure status */
+	public long getErrors(int command) {
+		return mErrors.get(command);
+	}
+
+	public long getTimeouts(int command) {
+		return mTimeouts.get(command);
+	}
+
+	/* Commands that never got their completion */
+	public long getLost(int command) {
+		return mLost.get(command);
+	}
+
+	public long getInFlight(int command) {
+		return Math.max(0, mInFlight.get(command));
+	}
+
+	public long getTotalInFlight() {
+		long total = 0;
+
+		for (int i = 0; i < NUM_COMMANDS; i++) {
+			total += getInFlight(i);
+		}
+		return total;
+	}
+
+	/* How long the oldest command in flight has waited, 0 if none */
+	public long getOldestInFlightNs(int command) {
+		for (long seq = mDoneSeq.get(command); seq < mIssueSeq.get(command); seq++) {
+			long issueNs = mIssueNs.get(slot(command, seq));
+			if (issueNs > 0) {
+				return System.nanoTime() - issueNs;
+			}
+		}
+		return 0;
+	}
+
+	public long getCmdErrors() {
+		return mCmdErrors.get();
+	}
+
+	/* Completions with a known latency, which the histogram holds */
+	public long getSamples(int command) {
+		long count = 0;
+
+		for (int n = 0; n < NUM_BUCKETS; n++) {
+			count += getBucket(command, n);
+		}
+		return count;
+	}
+
+	public long getTotalUs(int command) {
+		return mTotalUs.get(command);
+	}
+
+	public long getMaxUs(int command) {
+		return mMaxUs.get(command);
+	}
+
+	public long getBucket(int command, int bucket) {
+		return mHistogram.get(command * NUM_BUCKETS + bucket);
+	}
+
+	/*
+	 * Upper limit in us of the bucket holding the given percentile of the
+	 * latencies of command, at most the largest one, 0 if none was recorded.
+	 */
+	public long getPercentileUs(int command, int percent) {
+		long count = getSamples(command);
+		long seen = 0;
+
+		if (count == 0) {
+			return 0;
+		}
+		for (int n = 0; n < NUM_BUCKETS; n++) {
+			seen += getBucket(command, n);
+			if (seen * 100 >= count * percent) {
+				return Math.min(getBucketLimitUs(n), getMaxUs(command));
+			}
+		}
+		return getMaxUs(command);
+	}
+
+	/* One line per command used so far */
+	public void dump(PrintWriter pw, String prefix) {
+		pw.println(prefix + "in flight " + getTotalInFlight()
+				+ ", cmd errors " + getCmdErrors());
+		for (int i = 0; i < NUM_COMMANDS; i++) {
+			long completed = getCompleted(i);
+			long samples = getSamples(i);
+
+			if (getIssued(i) == 0 && completed == 0 && getRejected(i) == 0) {
+				continue;
+			}
+			pw.println(prefix + getName(i) + ": issued " + getIssued(i)
+					+ " done " + completed + " inflight " + getInFlight(i)
+					+ " rejected " + getRejected(i) + " errors " + getErrors(i)
+					+ " timeouts " + getTimeouts(i) + " lost " + getLost(i)
+					+ " avg " + (samples > 0 ? getTotalUs(i) / samples : 0)
+					+ "us p50<" + getPercentileUs(i, 50) + "us p90<"
+					+ getPercentileUs(i, 90) + "us p99<"
+					+ getPercentileUs(i, 99) + "us max " + getMaxUs(i) + "us"
+					+ (getInFlight(i) > 0 ? " oldest "
+							+ getOldestInFlightNs(i) / 1000000 + "ms" : ""));
+		}
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxFuture.java
+ *
+ *   BRIEF:          Pending result of a single JFmRx command.
+ *
+ *   DESCRIPTION:    Returned by JFmRxAsync. Completed with the status and
+ *                   value reported by fmRxCmdDone for the command, or right
+ *                   away when the command could not be issued.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public final class JFmRxFuture implements Future<Long> {
+
+	/** Called once the command completes, on the completing thread */
+	public interface Listener {
+		void onComplete(JFmRxFuture future);
+	}
+
+	private final int command;
+	private final long submitTimeNs;
+
+	private JFmRxStatus issueStatus = JFmRxStatus.PENDING;
+	private JFmRxStatus status = JFmRxStatus.PENDING;
+	private long value = 0;
+	private long completeTimeNs = 0;
+	private boolean done = false;
+	private boolean cancelled = false;
+	private Listener listener = null;
+	/* Callers waiting on the command, a read may be shared by several */
+	private int holders = 1;
+
+	JFmRxFuture(int command) {
+		this.command = command;
+		this.submitTimeNs = System.nanoTime();
+	}
+
+	/** The JFmRxCommand id this future waits for */
+	public int getCommand() {
+		return command;
+	}
+
+	/**
+	 * Status returned by JFmRx when the command was issued - PENDING if it was
+	 * accepted and a completion is expected.
+	 */
+	public synchronized JFmRxStatus getIssueStatus() {
+		return issueStatus;
+	}
+
+	/**
+	 * Completion status - PENDING while in flight, the issue status if the
+	 * command was rejected, otherwise the status reported by fmRxCmdDone.
+	 */
+	public synchronized JFmRxStatus getStatus() {
+		return status;
+	}
+
+	/** Value reported by fmRxCmdDone, 0 until completed */
+	public synchronized long getValue() {
+		return value;
+	}
+
+	/** Time from submission to completion, -1 while not completed */
+	public synchronized long getLatencyNs() {
+		return (done && !cancelled) ? completeTimeNs - submitTimeNs : -1;
+	}
+
+	long getSubmitTimeNs() {
+		return submitTimeNs;
+	}
+
+	public synchronized boolean isSuccess() {
+		return done && !cancelled && status == JFmRxStatus.SUCCESS;
+	}
+
+	public synchronized boolean isDone() {
+		return done;
+	}
+
+	public synchronized boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Waits up to timeoutMs for the completion. Returns false on timeout; the
+	 * future is then still pending and may be cancelled by the caller.
+	 */
+	public synchronized boolean await(long timeoutMs)
+			throws InterruptedException {
+		/* Monotonic, a wall clock change must not shorten or extend the wait */
+		long deadline = System.nanoTime() + timeoutMs * 1000000L;
+		long remaining = timeoutMs;
+
+		while (!done && remaining > 0) {
+			wait(remaining);
+			remaining = (deadline - System.nanoTime() + 999999) / 1000000;
+		}
+		return done;
+	}
+
+	/**
+	 * Gives up on the command for every caller. The completion, when it
+	 * arrives, is still matched to this future and dropped, so it cannot
+	 * reach a later caller. A caller that may share the future uses release().
+	 */
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			cancelled = true;
+			done = true;
+			notifyAll();
+		}
+		return true;
+	}
+
+	/**
+	 * Gives up on the command for the calling holder only, each with its own
+	 * deadline: the future is cancelled once the last one has released it.
+	 * Returns false if it completed first.
+	 */
+	public boolean release() {
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			if (--holders > 0) {
+				return true;
+			}
+		}
+		return cancel(false);
+	}
+
+	/* Adds a holder to a read still in flight, false if it is done */
+	synchronized boolean join() {
+		if (done) {
+			return false;
+		}
+		holders++;
+		return true;
+	}
+
+	public Long get() throws InterruptedException, ExecutionException {
+		synchronized (this) {
+			while (!done) {
+				wait();
+			}
+		}
+		return result();
+	}
+
+	public Long get(long timeout, TimeUnit unit) throws InterruptedException,
+			ExecutionException, TimeoutException {
+		if (!await(unit.toMillis(timeout))) {
+			throw new TimeoutException("JFmRx command " + command
+					+ " timed out");
+		}
+		return result();
+	}
+
+	/**
+	 * Registers the completion listener. It is called immediately if the
+	 * command has already completed.
+	 */
+	public void setListener(Listener listener) {
+		boolean callNow;
+
+		synchronized (this) {
+			this.listener = listener;
+			callNow = done && !cancelled;
+		}
+		if (callNow && listener != null) {
+			listener.onComplete(this);
+		}
+	}
+
+	/* Unregisters listener if it is still the registered one */
+	public synchronized void removeListener(Listener listener) {
+		if (this.listener == listener) {
+			this.listener = null;
+		}
+	}
+
+	synchronized void setIssueStatus(JFmRxStatus status) {
+		issueStatus = status;
+	}
+
+	/* Returns false if the future was already done (e.g. cancelled) */
+	boolean complete(JFmRxStatus status, long value) {
+		Listener l;
+
+		synchronized (this) {
+			if (done) {
+				return false;
+			}
+			this.status = status;
+			this.value = value;
+			this.completeTimeNs = System.nanoTime();
+			done = true;
+			l = listener;
+			notifyAll();
+		}
+		if (l != null) {
+			l.onComplete(this);
+		}
+		return true;
+	}
+
+	private synchronized Long result() throws ExecutionException {
+		if (cancelled) {
+			throw new CancellationException();
+		}
+		if (status != JFmRxStatus.SUCCESS) {
+			throw new ExecutionException("JFmRx command " + command
+					+ " failed: " + status, null);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxRdsRing.java
+ *
+ *   BRIEF:          Raw RDS group ring shared with JFmRxNative.cpp.
+ *
+ *   DESCRIPTION:    A direct ByteBuffer the native stack writes raw RDS groups
+ *                   into in place. The native side only advances the write
+ *                   counter, Java only advances the read counter.
+ *
+ *                   Layout (native byte order):
+ *                     header  [0]  write counter   (native)
+ *                             [4]  read counter    (Java)
+ *                             [8]  overrun counter (native)
+ *                     slot    [0]  blocks A..D, 2 bytes each, MSB first
+ *                             [8]  event status
+ *                             [12] group type bit (JFmRxRdsGroupTypeMask)
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public final class JFmRxRdsRing {
+
+	public static final int HEADER_SIZE = 16;
+	public static final int SLOT_SIZE = 16;
+	public static final int GROUP_SIZE = 8;
+
+	static final int WRITE_COUNT_OFFSET = 0;
+	static final int READ_COUNT_OFFSET = 4;
+	static final int OVERRUN_COUNT_OFFSET = 8;
+
+	private static final int STATUS_OFFSET = 8;
+	private static final int GROUP_MASK_OFFSET = 12;
+
+	private final ByteBuffer buffer;
+	private final int slots;
+	private final int slotMask;
+
+	private JFmRxRdsRing(int slots) {
+		this.slots = slots;
+		this.slotMask = slots - 1;
+		this.buffer = ByteBuffer.allocateDirect(HEADER_SIZE + slots * SLOT_SIZE)
+				.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Allocates a ring of at least minSlots groups, rounded up to a power of
+	 * two.
+	 */
+	public static JFmRxRdsRing allocate(int minSlots) {
+		int slots = 1;
+		while (slots < minSlots) {
+			slots <<= 1;
+		}
+		return new JFmRxRdsRing(slots);
+	}
+
+	public ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	public int getSlots() {
+		return slots;
+	}
+
+	/**
+	 * Number of groups written by the native side and not consumed yet. Read it
+	 * from the fmRxRawRdsAvailable() callback thread, or after handing the
+	 * ring over to another thread through a synchronized section.
+	 */
+	public int available() {
+		return loadAcquire(buffer, WRITE_COUNT_OFFSET)
+				- buffer.getInt(READ_COUNT_OFFSET);
+	}
+
+	/** Number of groups the native side dropped because the ring was full */
+	public int getOverruns() {
+		return buffer.getInt(OVERRUN_COUNT_OFFSET);
+	}
+
+	/** Returns block (0..3 for A..D) of the n-th unread group */
+	public int getBlock(int n, int block) {
+		int offset = slotOffset(n) + block * 2;
+		return ((buffer.get(offset) & 0xFF) << 8)
+				| (buffer.get(offset + 1) & 0xFF);
+	}
+
+	/** Returns byte i (0..7) of the n-th unread group */
+	public int getGroupByte(int n, int i) {
+		return buffer.get(slotOffset(n) + i) & 0xFF;
+	}
+
+	/** Returns the event status (JFmRxStatus value) of the n-th unread group */
+	public int getStatus(int n) {
+		return buffer.get(slotOffset(n) + STATUS_OFFSET) & 0xFF;
+	}
+
+	/** Returns the group type bit (JFmRxRdsGroupTypeMask value) */
+	public int getGroupMask(int n) {
+		return buffer.getInt(slotOffset(n) + GROUP_MASK_OFFSET);
+	}
+
+	/** Releases the first count unread groups back to the native side */
+	public void consume(int count) {
+		storeRelease(buffer, READ_COUNT_OFFSET, buffer
+				.getInt(READ_COUNT_OFFSET)
+				+ count);
+	}
+
+	/*
+	 * The counters are shared with another thread without a lock. The writer
+	 * fills a slot and then publishes writeCount with release semantics, the
+	 * reader loads writeCount with acquire semantics before reading the slot,
+	 * and the same pairing on readCount hands consumed slots back.
+	 *
+	 * The ByteBuffer API has no ordered accesses, so they are made by
+	 * JFmRxNative.cpp with the atomics its writer uses. Without the library,
+	 * both sides are Java (the simulated stack) and the buffer's monitor
+	 * orders them instead.
+	 */
+	static int loadAcquire(ByteBuffer ring, int offset) {
+		if (JFmRx.isNativeLoaded()) {
+			return JFmRx.nativeJFmRx_RdsRingLoadAcquire(ring, offset);
+		}
+		synchronized (ring) {
+			return ring.getInt(offset);
+		}
+	}
+
+	static void storeRelease(ByteBuffer ring, int offset, int value) {
+		if (JFmRx.isNativeLoaded()) {
+			JFmRx.nativeJFmRx_RdsRingStoreRelease(ring, offset, value);
+			return;
+		}
+		synchronized (ring) {
+			ring.putInt(offset, value);
+		}
+	}
+
+	private int slotOffset(int n) {
+		return HEADER_SIZE
+				+ ((buffer.getInt(READ_COUNT_OFFSET) + n) & slotMask)
+				* SLOT_SIZE;
+	}
+}
@@ -0,0 +1,380 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxReplay.java
+ *
+ *   BRIEF:          Plays a JFmRxCapture file back into a JFmRx.ICallback.
+ *
+ *   DESCRIPTION:    The callbacks are issued in the captured order, either at
+ *                   the captured pace or as fast as the callback consumes
+ *                   them, to benchmark or debug the service without the chip.
+ *                   Command records are only counted. Ring records are
+ *                   delivered through fmRxRawRdsBatch.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import android.util.Log;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import com.ti.jfm.core.JFmRx.JFmRxAfFreq;
+import com.ti.jfm.core.JFmRx.JFmRxAfListSize;
+import com.ti.jfm.core.JFmRx.JFmRxFreq;
+import com.ti.jfm.core.JFmRx.JFmRxMonoStereoMode;
+import com.ti.jfm.core.JFmRx.JFmRxRdsGroupTypeMask;
+import com.ti.jfm.core.JFmRx.JFmRxRdsPiCode;
+import com.ti.jfm.core.JFmRx.JFmRxRdsPtyCode;
+import com.ti.jfm.core.JFmRx.JFmRxRepertoire;
+import com.ti.jfm.core.JFmRx.JFmRxTuneFreq;
+
+public final class JFmRxReplay {
+
+	private static final String TAG = "JFmRxReplay";
+
+	/* Ring records are split into batches of at most this many groups */
+	private static final int MAX_BATCH = 64;
+
+	private final JFmRx.ICallback mCallback;
+	private final ByteBuffer mBuffer;
+	private final long mStartTimeMs;
+
+	/* Reused for every callback, as JFmRx does */
+	private final JFmRxRdsPiCode mPiCode = new JFmRxRdsPiCode(0);
+	private final JFmRxRdsPtyCode mPtyCode = new JFmRxRdsPtyCode(0);
+	private final JFmRxFreq mFreq = new JFmRxFreq(0);
+	private final JFmRxTuneFreq mTuneFreq = new JFmRxTuneFreq(0);
+	private final JFmRxAfFreq mAfFreq = new JFmRxAfFreq(0);
+	private final JFmRxAfListSize mAfListSize = new JFmRxAfListSize(0);
+	private final byte[] mBatchData = new byte[MAX_BATCH
+			* JFmRxRdsRing.GROUP_SIZE];
+	private final int[] mBatchMasks = new int[MAX_BATCH];
+
+	private volatile boolean mStopped = false;
+	private long mEvents = 0;
+	private long mCommands = 0;
+	private long mRecordedNs = 0;
+	private long mElapsedNs = 0;
+
+	public JFmRxReplay(String path, JFmRx.ICallback callback)
+			throws IOException {
+		this(new FileInputStream(path), path, callback);
+	}
+
+	/* Replays a capture opened by the caller, such as one of a client */
+	public JFmRxReplay(FileInputStream stream, JFmRx.ICallback callback)
+			throws IOException {
+		this(stream, "stream", callback);
+	}
+
+	/* The stream is closed once mapped */
+	private JFmRxReplay(FileInputStream stream, String name,
+			JFmRx.ICallback callback) throws IOException {
+		try {
+			FileChannel channel = stream.getChannel();
+			mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		} finally {
+			stream.close();
+		}
+		mCallback = callback;
+
+		if (mBuffer.remaining() < JFmRxCapture.HEADER_SIZE
+				|| mBuffer.getInt() != JFmRxCapture.MAGIC) {
+			throw new IOException(name + " is not a JFmRx capture");
+		}
+		if (mBuffer.getInt() != JFmRxCapture.VERSION) {
+			throw new IOException(name + ": unsupported capture version");
+		}
+		mStartTimeMs = mBuffer.getLong();
+	}
+
+	/**
+	 * Issues every callback of the capture on the calling thread. With
+	 * realTime the captured intervals are kept, otherwise the callbacks are
+	 * issued back to back. Returns false if the capture is truncated or
+	 * stop() was called.
+	 */
+	public boolean play(boolean realTime) {
+		long start = System.nanoTime();
+
+		mBuffer.position(JFmRxCapture.HEADER_SIZE);
+		mEvents = 0;
+		mCommands = 0;
+		mRecordedNs = 0;
+
+		try {
+			while (mBuffer.hasRemaining()) {
+				if (mStopped) {
+					return false;
+				}
+
+				int type = mBuffer.get();
+				mRecordedNs += getVarint() * 1000;
+
+				if (realTime) {
+					long waitNs = mRecordedNs - (System.nanoTime() - start);
+					if (waitNs > 0) {
+						Thread.sleep(waitNs / 1000000, (int) (waitNs % 1000000));
+					}
+				}
+
+				if (type == JFmRxCapture.REC_COMMAND) {
+					skipCommand();
+					mCommands++;
+				} else {
+					dispatch(type);
+				}
+			}
+		} catch (RuntimeException e) {
+			/* BufferUnderflowException and corrupt lengths */
+			Log.e(TAG, "play: truncated capture (" + e.toString() + ")");
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			mElapsedNs = System.nanoTime() - start;
+		}
+
+		return true;
+	}
+
+	/** Makes play() return before the next record */
+	public void stop() {
+		mStopped = true;
+	}
+
+	/** Wall clock time the capture was started at, in ms */
+	public long getStartTimeMs() {
+		return mStartTimeMs;
+	}
+
+	/** Callbacks issued by the last play() */
+	public long getEvents() {
+		return mEvents;
+	}
+
+	/** Command records met by the last play() */
+	public long getCommands() {
+		return mCommands;
+	}
+
+	/** Duration of the records played by the last play(), as captured */
+	public long getRecordedNs() {
+		return mRecordedNs;
+	}
+
+	/** Time the last play() took */
+	public long getElapsedNs() {
+		return mElapsedNs;
+	}
+
+	private void dispatch(int type) {
+		JFmRxStatus status;
+
+		switch (type) {
+		case JFmRxCapture.REC_RAW_RDS: {
+			status = getStatus();
+			int mask = getInt();
+			byte[] groupData = getBytes();
+			mCallback.fmRxRawRDS(status, JFmUtils.getEnumConst(
+					JFmRxRdsGroupTypeMask.class, (long) mask), groupData);
+			break;
+		}
+		case JFmRxCapture.REC_RAW_RDS_BATCH: {
+			status = getStatus();
+			int count = getInt();
+			byte[] groupData = new byte[count * JFmRxRdsRing.GROUP_SIZE];
+			int[] groupMasks = new int[count];
+			mBuffer.get(groupData);
+			for (int i = 0; i < count; i++) {
+				groupMasks[i] = getInt();
+			}
+			mCallback.fmRxRawRdsBatch(status, count, groupData, groupMasks);
+			break;
+		}
+		case JFmRxCapture.REC_RAW_RDS_RING:
+			replayRing();
+			/* Counted per batch */
+			return;
+		case JFmRxCapture.REC_RADIO_TEXT: {
+			status = getStatus();
+			boolean resetDisplay = getInt() != 0;
+			int len = getInt();
+			int startIndex = getInt();
+			int repertoire = getInt();
+			byte[] msg = getBytes();
+			mCallback.fmRxRadioText(status, resetDisplay, msg, len,
+					startIndex, JFmUtils.getEnumConst(JFmRxRepertoire.class,
+							repertoire));
+			break;
+		}
+		case JFmRxCapture.REC_PI_CODE:
+			status = getStatus();
+			mPiCode.setValue(getInt());
+			mCallback.fmRxPiCodeChanged(status, mPiCode);
+			break;
+		case JFmRxCapture.REC_PTY_CODE:
+			status = getStatus();
+			mPtyCode.setValue(getInt());
+			mCallback.fmRxPtyCodeChanged(status, mPtyCode);
+			break;
+		case JFmRxCapture.REC_PS: {
+			status = getStatus();
+			mFreq.setValue(getInt());
+			int repertoire = getInt();
+			byte[] name = getBytes();
+			mCallback.fmRxPsChanged(status, mFreq, name, JFmUtils
+					.getEnumConst(JFmRxRepertoire.class, repertoire));
+			break;
+		}
+		case JFmRxCapture.REC_MONO_STEREO_MODE:
+			status = getStatus();
+			mCallback.fmRxMonoStereoModeChanged(status, JFmUtils
+					.getEnumConst(JFmRxMonoStereoMode.class, getInt()));
+			break;
+		case JFmRxCapture.REC_AF_SWITCH_FREQ_FAILED:
+		case JFmRxCapture.REC_AF_SWITCH_START:
+		case JFmRxCapture.REC_AF_SWITCH_COMPLETE:
+			status = getStatus();
+			mPiCode.setValue(getInt());
+			mTuneFreq.setTuneFreq(getInt());
+			mAfFreq.setAfFreq(getInt());
+			if (type == JFmRxCapture.REC_AF_SWITCH_FREQ_FAILED) {
+				mCallback.fmRxAfSwitchFreqFailed(status, mPiCode, mTuneFreq,
+						mAfFreq);
+			} else if (type == JFmRxCapture.REC_AF_SWITCH_START) {
+				mCallback.fmRxAfSwitchStart(status, mPiCode, mTuneFreq,
+						mAfFreq);
+			} else {
+				mCallback.fmRxAfSwitchComplete(status, mPiCode, mTuneFreq,
+						mAfFreq);
+			}
+			break;
+		case JFmRxCapture.REC_AF_LIST: {
+			status = getStatus();
+			mPiCode.setValue(getInt());
+			mAfListSize.setValue(getInt());
+			byte[] afList = getBytes();
+			mCallback.fmRxAfListChanged(status, mPiCode, afList, mAfListSize);
+			break;
+		}
+		case JFmRxCapture.REC_CMD_DONE: {
+			status = getStatus();
+			int command = getInt();
+			mCallback.fmRxCmdDone(status, command, getLong());
+			break;
+		}
+		case JFmRxCapture.REC_CMD_ERROR:
+			mCallback.fmRxCmdError(getStatus());
+			break;
+		case JFmRxCapture.REC_COMPLETE_SCAN_DONE: {
+			status = getStatus();
+			int numOfChannels = getInt();
+			int[] channels = new int[getInt()];
+			for (int i = 0; i < channels.length; i++) {
+				channels[i] = getInt();
+			}
+			mCallback.fmRxCompleteScanDone(status, numOfChannels, channels);
+			break;
+		}
+		default:
+			throw new IllegalStateException("unknown record type " + type);
+		}
+		mEvents++;
+	}
+
+	private void replayRing() {
+		int count = getInt();
+		int batched = 0;
+
+		for (int n = 0; n < count; n++) {
+			int status = getInt();
+			int mask = getInt();
+
+			if (status != JFmRxStatus.SUCCESS.getValue()) {
+				/* The ring consumer drops the failed groups as well */
+				mBuffer.position(mBuffer.position() + JFmRxRdsRing.GROUP_SIZE);
+				continue;
+			}
+			mBuffer.get(mBatchData, batched * JFmRxRdsRing.GROUP_SIZE,
+					JFmRxRdsRing.GROUP_SIZE);
+			mBatchMasks[batched++] = mask;
+			if (batched == MAX_BATCH) {
+				flushBatch(batched);
+				batched = 0;
+			}
+		}
+		if (batched > 0) {
+			flushBatch(batched);
+		}
+	}
+
+	private void flushBatch(int count) {
+		mCallback.fmRxRawRdsBatch(JFmRxStatus.SUCCESS, count, mBatchData,
+				mBatchMasks);
+		mEvents++;
+	}
+
+	private void skipCommand() {
+		getInt(); /* op */
+		getInt(); /* status */
+		for (int args = getInt(); args > 0; args--) {
+			getVarint();
+		}
+	}
+
+	private JFmRxStatus getStatus() {
+		return JFmUtils.getEnumConst(JFmRxStatus.class, getInt());
+	}
+
+	private int getInt() {
+		return (int) getLong();
+	}
+
+	private long getLong() {
+		long value = getVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private long getVarint() {
+		long value = 0;
+		int shift = 0;
+		int b;
+
+		do {
+			b = mBuffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	private byte[] getBytes() {
+		byte[] data = new byte[getInt()];
+		mBuffer.get(data);
+		return data;
+	}
+}
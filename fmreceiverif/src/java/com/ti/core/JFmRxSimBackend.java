@@ -0,0 +1,1145 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxSimBackend.java
+ *
+ *   BRIEF:          FM stack simulated in Java, for running without the chip.
+ *
+ *   DESCRIPTION:    Implements IJFmRxBackend against a band model made of
+ *                   stations with an RSSI, and optionally a PI, PTY, PS,
+ *                   RadioText, AF list and extra raw groups. A station is
+ *                   also heard on the channels next to it, weaker.
+ *
+ *                   Commands answer PENDING and complete on the simulator
+ *                   thread through the same JFmRx.nativeCb_* upcalls as
+ *                   JFmRxNative.cpp, in order, after the configured latency
+ *                   plus a random jitter. Seeks and complete scans step one
+ *                   channel at a time. While RDS is enabled and the tuned
+ *                   channel has a station with a PI, its groups are sent at
+ *                   the RDS group rate, as raw groups (per group, batched or
+ *                   through the ring, as set up) and as the PI, PTY, PS, RT
+ *                   and AF list events decoded by the stack.
+ *
+ *                   Only needs the JVM, so the library and the service can
+ *                   be run and profiled without FM hardware.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+public final class JFmRxSimBackend implements IJFmRxBackend {
+
+	/** A station of the band model */
+	public static final class Station {
+		private final int frequency;
+		private int rssi;
+		private int pi = 0;
+		private int pty = 0;
+		private String ps = null;
+		private String radioText = null;
+		private int[] afList = new int[0];
+		private final ArrayList<int[]> groups = new ArrayList<int[]>();
+		/* Groups sent in a loop, built on first use */
+		private int[][] cycle = null;
+
+		public Station(int frequency, int rssi) {
+			this.frequency = frequency;
+			this.rssi = rssi;
+		}
+
+		public int getFrequency() {
+			return frequency;
+		}
+
+		public synchronized Station setRssi(int rssi) {
+			this.rssi = rssi;
+			return this;
+		}
+
+		/** Without a PI (the default) the station sends no RDS */
+		public synchronized Station setPi(int pi) {
+			this.pi = pi;
+			cycle = null;
+			return this;
+		}
+
+		public synchronized Station setPty(int pty) {
+			this.pty = pty;
+			cycle = null;
+			return this;
+		}
+
+		/** Programme service name, padded to 8 characters */
+		public synchronized Station setPs(String ps) {
+			this.ps = ps;
+			cycle = null;
+			return this;
+		}
+
+		/** Up to 64 characters, ended with 0x0D when shorter */
+		public synchronized Station setRadioText(String radioText) {
+			this.radioText = radioText;
+			cycle = null;
+			return this;
+		}
+
+		/** Alternative frequencies in kHz, sent in the 0A groups */
+		public synchronized Station setAfList(int... frequencies) {
+			this.afList = frequencies.clone();
+			cycle = null;
+			return this;
+		}
+
+		/** Adds a raw group (blocks B to D, block A is the PI) to the loop */
+		public synchronized Station addGroup(int blockB, int blockC,
+				int blockD) {
+			groups.add(new int[] { blockB, blockC, blockD });
+			cycle = null;
+			return this;
+		}
+
+		synchronized int getRssi() {
+			return rssi;
+		}
+
+		synchronized int getPi() {
+			return pi;
+		}
+
+		synchronized int getPty() {
+			return pty;
+		}
+
+		synchronized String getPs() {
+			return ps;
+		}
+
+		synchronized String getRadioText() {
+			return radioText;
+		}
+
+		synchronized int[] getAfList() {
+			return afList;
+		}
+
+		/* Blocks A to D of each group of the loop */
+		synchronized int[][] getCycle() {
+			if (cycle == null) {
+				cycle = buildCycle();
+			}
+			return cycle;
+		}
+
+		private int[][] buildCycle() {
+			ArrayList<int[]> psGroups = new ArrayList<int[]>();
+			ArrayList<int[]> rtGroups = new ArrayList<int[]>();
+			ArrayList<int[]> all = new ArrayList<int[]>();
+			String name = ps != null ? ps : "";
+			int[] afCodes = afCodes();
+			int psCount = Math.max(4, (afCodes.length + 1) / 2);
+
+			/* 0A: PS in block D, AF codes in block C */
+			psCount = (psCount + 3) & ~3;
+			for (int i = 0; i < psCount; i++) {
+				int segment = i & 3;
+				int blockB = (0 << 12) | (pty << 5) | segment;
+				int blockC = (code(afCodes, 2 * i) << 8)
+						| code(afCodes, 2 * i + 1);
+				int blockD = (psChar(name, 2 * segment) << 8)
+						| psChar(name, 2 * segment + 1);
+				psGroups.add(new int[] { pi, blockB, blockC, blockD });
+			}
+
+			/* 2A: 4 RadioText characters each, up to the one holding 0x0D */
+			if (radioText != null) {
+				String text = radioText.length() > 64 ? radioText.substring(0,
+						64) : radioText;
+				int segments = text.length() < 64 ? text.length() / 4 + 1 : 16;
+
+				for (int segment = 0; segment < segments; segment++) {
+					int blockB = (2 << 12) | (pty << 5) | segment;
+					int blockC = (rtChar(text, 4 * segment) << 8)
+							| rtChar(text, 4 * segment + 1);
+					int blockD = (rtChar(text, 4 * segment + 2) << 8)
+							| rtChar(text, 4 * segment + 3);
+					rtGroups.add(new int[] { pi, blockB, blockC, blockD });
+				}
+			}
+
+			for (int i = 0; i < Math.max(psGroups.size(), rtGroups.size()); i++) {
+				if (i < psGroups.size()) {
+					all.add(psGroups.get(i));
+				}
+				if (i < rtGroups.size()) {
+					all.add(rtGroups.get(i));
+				}
+			}
+			for (int[] group : groups) {
+				all.add(new int[] { pi, group[0], group[1], group[2] });
+			}
+			return all.toArray(new int[all.size()][]);
+		}
+
+		/* Number of AFs code, then one code per AF */
+		private int[] afCodes() {
+			int[] codes;
+
+			if (afList.length == 0) {
+				return new int[0];
+			}
+			codes = new int[afList.length + 1];
+			codes[0] = AF_COUNT_BASE + afList.length;
+			for (int i = 0; i < afList.length; i++) {
+				codes[i + 1] = afCode(afList[i]);
+			}
+			return codes;
+		}
+
+		private static int code(int[] codes, int i) {
+			return i < codes.length ? codes[i] : AF_FILLER;
+		}
+
+		private static int psChar(String name, int i) {
+			return i < name.length() ? name.charAt(i) & 0xFF : ' ';
+		}
+
+		private static int rtChar(String text, int i) {
+			if (i < text.length()) {
+				return text.charAt(i) & 0xFF;
+			}
+			return i == text.length() ? 0x0D : ' ';
+		}
+	}
+
+	/* AF codes of the 0A groups */
+	private static final int AF_COUNT_BASE = 224;
+	private static final int AF_FILLER = 205;
+
+	private static final int BAND_EUROPE_US = 0;
+	private static final int[] BAND_FIRST = { 87500, 76000 };
+	private static final int[] BAND_LAST = { 108000, 90000 };
+
+	private static final int CONTEXT_VALUE = 1;
+	private static final int FW_VERSION = 0;
+
+	private static final int SUCCESS = JFmRxStatus.SUCCESS.getValue();
+	private static final int PENDING = JFmRxStatus.PENDING.getValue();
+
+	private final ScheduledThreadPoolExecutor mExecutor;
+	private final Random mRandom = new Random(0);
+	private final TreeMap<Integer, Station> mStations = new TreeMap<Integer, Station>();
+
+	/* Model parameters */
+	private int mLatencyMs = 2;
+	private int mJitterMs = 0;
+	private int mStepMs = 5;
+	private int mGroupIntervalMs = 88;
+	private int mNoiseRssi = 0;
+	private int mAdjacentLossDb = 12;
+
+	/* Chip state */
+	private boolean mCreated = false;
+	private boolean mEnabled = false;
+	private int mBand = BAND_EUROPE_US;
+	private int mFreq = BAND_FIRST[BAND_EUROPE_US];
+	private int mSpacing = JFmRx.JFmRxChannelSpacing.FMC_CHANNEL_SPACING_100_KHZ
+			.getValue();
+	private int mRssiThreshold = 7;
+	private int mMonoStereoMode = 0;
+	private int mMuteMode = 0;
+	private int mRfDependentMuteMode = 0;
+	private int mVolume = 0;
+	private int mDeEmphasisFilter = 0;
+	private int mRdsSystem = 0;
+	private long mRdsGroupMask = 0xFFFFFFFFL;
+	private int mRdsAfSwitchMode = 0;
+	private boolean mRdsEnabled = false;
+
+	/* Completions are sent in the order of the commands */
+	private long mLastDoneNs = 0;
+
+	/* Seek or complete scan stepping through the band */
+	private ScheduledFuture<?> mStepTask = null;
+	private boolean mSeeking = false;
+	private int mSeekDirection = 0;
+	private boolean mScanning = false;
+	private int mScanStartFreq;
+	private final ArrayList<Integer> mScanChannels = new ArrayList<Integer>();
+
+	/* RDS of the tuned station */
+	private ScheduledFuture<?> mRdsTask = null;
+	private Station mRdsStation = null;
+	private int mRdsIndex;
+	private int mPsReceived;
+	private int mRtReceived;
+	private boolean mPiSent;
+	private boolean mPsSent;
+	private boolean mRtSent;
+	private boolean mAfSent;
+	private final byte[] mGroupData = new byte[8];
+
+	/*
+	 * Raw RDS delivery, as set by setRawRdsRing and setRawRdsBatching. Only
+	 * used on the simulator thread.
+	 */
+	private ByteBuffer mRing = null;
+	private int mRingSlots = 0;
+	private int mBatchSize = 0;
+	private int mBatchLatencyMs = 0;
+	private long mBatchMask = 0xFFFFFFFFL;
+	private final byte[] mBatchData = new byte[JFmRx.RDS_BATCH_MAX * 8];
+	private final int[] mBatchMasks = new int[JFmRx.RDS_BATCH_MAX];
+	private int mBatchCount = 0;
+	private ScheduledFuture<?> mBatchFlush = null;
+
+	/* Dispatcher statistics, see JFmRx.DISPATCH_STAT_* */
+	private final long[] mStats = new long[JFmRx.DISPATCH_STAT_NUM];
+
+	public JFmRxSimBackend() {
+		mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "JFmRxSim");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			Band model
+	 *------------------------------------------------------------------------*/
+
+	public synchronized JFmRxSimBackend addStation(Station station) {
+		mStations.put(station.getFrequency(), station);
+		return this;
+	}
+
+	public synchronized JFmRxSimBackend removeStation(int frequency) {
+		mStations.remove(frequency);
+		return this;
+	}
+
+	public synchronized JFmRxSimBackend clearStations() {
+		mStations.clear();
+		return this;
+	}
+
+	/**
+	 * Every command completes latencyMs after it was issued, plus up to
+	 * jitterMs drawn from a generator seeded with seed.
+	 */
+	public synchronized JFmRxSimBackend setCommandLatency(int latencyMs,
+			int jitterMs, long seed) {
+		mLatencyMs = latencyMs;
+		mJitterMs = jitterMs;
+		mRandom.setSeed(seed);
+		return this;
+	}
+
+	/** Time a seek or a complete scan spends on each channel */
+	public synchronized JFmRxSimBackend setStepMs(int stepMs) {
+		mStepMs = stepMs;
+		return this;
+	}
+
+	/** Time between two RDS groups, 88 ms at the RDS bit rate */
+	public synchronized JFmRxSimBackend setRdsGroupIntervalMs(int intervalMs) {
+		mGroupIntervalMs = intervalMs;
+		return this;
+	}
+
+	/**
+	 * RSSI where no station is heard, and RSSI lost per 50 kHz away from a
+	 * station.
+	 */
+	public synchronized JFmRxSimBackend setNoise(int noiseRssi,
+			int adjacentLossDb) {
+		mNoiseRssi = noiseRssi;
+		mAdjacentLossDb = adjacentLossDb;
+		return this;
+	}
+
+	/** Stops the simulator thread, pending completions are dropped */
+	public void shutdown() {
+		mExecutor.shutdownNow();
+	}
+
+	/* RSSI heard on freq: the strongest station, less its distance */
+	private int rssiAt(int freq) {
+		int rssi = mNoiseRssi;
+
+		if (mAdjacentLossDb <= 0) {
+			Station station = mStations.get(freq);
+			return station != null ? Math.max(rssi, station.getRssi()) : rssi;
+		}
+		int reach = 50 * (128 / mAdjacentLossDb + 1);
+		for (Map.Entry<Integer, Station> entry : mStations.subMap(freq - reach,
+				true, freq + reach, true).entrySet()) {
+			int distance = Math.abs(entry.getKey() - freq) / 50;
+			rssi = Math.max(rssi, entry.getValue().getRssi() - distance
+					* mAdjacentLossDb);
+		}
+		return rssi;
+	}
+
+	private int first() {
+		return BAND_FIRST[mBand];
+	}
+
+	private int last() {
+		return BAND_LAST[mBand];
+	}
+
+	private int spacingKhz() {
+		return mSpacing * 50;
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			IJFmRxBackend
+	 *------------------------------------------------------------------------*/
+
+	public synchronized int create(JFmContext contextValue) {
+		if (mCreated) {
+			return JFmRxStatus.CONTEXT_NOT_DESTROYED.getValue();
+		}
+		mCreated = true;
+		contextValue.setValue(CONTEXT_VALUE);
+		return SUCCESS;
+	}
+
+	public synchronized int destroy(long contextValue) {
+		if (mEnabled) {
+			return JFmRxStatus.CONTEXT_NOT_DISABLED.getValue();
+		}
+		mCreated = false;
+		return SUCCESS;
+	}
+
+	public synchronized int enable(long contextValue) {
+		if (!mCreated) {
+			return JFmRxStatus.CONTEXT_DOESNT_EXIST.getValue();
+		}
+		if (mEnabled) {
+			return JFmRxStatus.CONTEXT_NOT_DISABLED.getValue();
+		}
+		mEnabled = true;
+		mFreq = first();
+		return complete(JFmRxCommand.CMD_ENABLE, SUCCESS, 0);
+	}
+
+	public synchronized int disable(long contextValue) {
+		if (!mEnabled) {
+			return JFmRxStatus.CONTEXT_NOT_ENABLED.getValue();
+		}
+		mEnabled = false;
+		mRdsEnabled = false;
+		stopStepping();
+		stopRds();
+		return complete(JFmRxCommand.CMD_DISABLE, SUCCESS, 0);
+	}
+
+	public synchronized int setBand(long contextValue, int jFmBand) {
+		if (jFmBand < 0 || jFmBand >= BAND_FIRST.length) {
+			return JFmRxStatus.INVALID_PARM.getValue();
+		}
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		mBand = jFmBand;
+		mFreq = Math.max(first(), Math.min(last(), mFreq));
+		return complete(JFmRxCommand.CMD_SET_BAND, SUCCESS, 0);
+	}
+
+	public synchronized int getBand(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_BAND, mBand);
+	}
+
+	public synchronized int tune(long contextValue, int jFmFreq) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		if (jFmFreq < first() || jFmFreq > last()) {
+			return JFmRxStatus.INVALID_PARM.getValue();
+		}
+		stopStepping();
+		mFreq = jFmFreq;
+		stopRds();
+		int status = complete(JFmRxCommand.CMD_TUNE, SUCCESS, jFmFreq);
+		startRds();
+		return status;
+	}
+
+	public synchronized int getTunedFrequency(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_TUNED_FREQUENCY, mFreq);
+	}
+
+	public synchronized int setMonoStereoMode(long contextValue,
+			int jFmMonoStereoMode) {
+		mMonoStereoMode = jFmMonoStereoMode;
+		return set(JFmRxCommand.CMD_SET_MONO_STEREO_MODE);
+	}
+
+	public synchronized int getMonoStereoMode(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_MONO_STEREO_MODE, mMonoStereoMode);
+	}
+
+	public synchronized int setMuteMode(long contextValue, int jFmMuteMode) {
+		mMuteMode = jFmMuteMode;
+		return set(JFmRxCommand.CMD_SET_MUTE_MODE);
+	}
+
+	public synchronized int getMuteMode(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_MUTE_MODE, mMuteMode);
+	}
+
+	public synchronized int setRssiThreshold(long contextValue, int jFmRssi) {
+		mRssiThreshold = jFmRssi;
+		return set(JFmRxCommand.CMD_SET_RSSI_THRESHOLD);
+	}
+
+	public synchronized int getRssiThreshold(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_RSSI_THRESHOLD, mRssiThreshold);
+	}
+
+	public synchronized int getRssi(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_RSSI, rssiAt(mFreq));
+	}
+
+	public synchronized int setVolume(long contextValue, int jFmVolume) {
+		mVolume = jFmVolume;
+		return set(JFmRxCommand.CMD_SET_VOLUME);
+	}
+
+	public synchronized int getVolume(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_VOLUME, mVolume);
+	}
+
+	public synchronized int setChannelSpacing(long contextValue,
+			int jFmChannelSpacing) {
+		if (jFmChannelSpacing != 1 && jFmChannelSpacing != 2
+				&& jFmChannelSpacing != 4) {
+			return JFmRxStatus.INVALID_PARM.getValue();
+		}
+		mSpacing = jFmChannelSpacing;
+		return set(JFmRxCommand.CMD_SET_CHANNEL_SPACING);
+	}
+
+	public synchronized int getChannelSpacing(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_CHANNEL_SPACING, mSpacing);
+	}
+
+	public synchronized int setDeEmphasisFilter(long contextValue,
+			int jFmEmphasisFilter) {
+		mDeEmphasisFilter = jFmEmphasisFilter;
+		return set(JFmRxCommand.CMD_SET_DEEMPHASIS_FILTER);
+	}
+
+	public synchronized int getDeEmphasisFilter(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER, mDeEmphasisFilter);
+	}
+
+	public synchronized int seek(long contextValue, int jFmDirection) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		if (mSeeking || mScanning) {
+			return JFmRxStatus.SEEK_IN_PROGRESS.getValue();
+		}
+		mSeeking = true;
+		mSeekDirection = jFmDirection;
+		stopRds();
+		mStepTask = mExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				seekStep();
+			}
+		}, nextDoneDelayMs(), mStepMs, TimeUnit.MILLISECONDS);
+		return PENDING;
+	}
+
+	public synchronized int stopSeek(long contextValue) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		if (!mSeeking) {
+			return JFmRxStatus.SEEK_IS_NOT_IN_PROGRESS.getValue();
+		}
+		stopStepping();
+		/* As the stack does, the seek ends with the stop seek event */
+		int status = complete(JFmRxCommand.CMD_STOP_SEEK,
+				JFmRxStatus.SEEK_STOPPED.getValue(), mFreq);
+		startRds();
+		return status;
+	}
+
+	public synchronized int enableRDS(long contextValue) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		mRdsEnabled = true;
+		int status = complete(JFmRxCommand.CMD_ENABLE_RDS, SUCCESS, 0);
+		startRds();
+		return status;
+	}
+
+	public synchronized int disableRDS(long contextValue) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		mRdsEnabled = false;
+		stopRds();
+		return complete(JFmRxCommand.CMD_DISABLE_RDS, SUCCESS, 0);
+	}
+
+	public synchronized int enableAudioRouting(long contextValue) {
+		return set(JFmRxCommand.CMD_ENABLE_AUDIO);
+	}
+
+	public synchronized int disableAudioRouting(long contextValue) {
+		return set(JFmRxCommand.CMD_DISABLE_AUDIO);
+	}
+
+	public synchronized int setRdsAfSwitchMode(long contextValue,
+			int jRdsAfSwitchMode) {
+		mRdsAfSwitchMode = jRdsAfSwitchMode;
+		return set(JFmRxCommand.CMD_SET_RDS_AF_SWITCH_MODE);
+	}
+
+	public synchronized int getRdsAfSwitchMode(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE, mRdsAfSwitchMode);
+	}
+
+	public synchronized int changeAudioTarget(long contextValue,
+			int audioTargetMask, int digitalConfig) {
+		return set(JFmRxCommand.CMD_CHANGE_AUDIO_TARGET);
+	}
+
+	public synchronized int changeDigitalTargetConfiguration(
+			long contextValue, int digitalConfig) {
+		return set(JFmRxCommand.CMD_CHANGE_DIGITAL_AUDIO_CONFIGURATION);
+	}
+
+	public synchronized int setRfDependentMuteMode(long contextValue, int mode) {
+		mRfDependentMuteMode = mode;
+		return set(JFmRxCommand.CMD_SET_RF_DEPENDENT_MUTE_MODE);
+	}
+
+	public synchronized int getRfDependentMute(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE,
+				mRfDependentMuteMode);
+	}
+
+	public synchronized int setRdsSystem(long contextValue, int rdsSystem) {
+		mRdsSystem = rdsSystem;
+		return set(JFmRxCommand.CMD_SET_RDS_SYSTEM);
+	}
+
+	public synchronized int getRdsSystem(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_RDS_SYSTEM, mRdsSystem);
+	}
+
+	public synchronized int setRdsGroupMask(long contextValue, long groupMask) {
+		mRdsGroupMask = groupMask;
+		return set(JFmRxCommand.CMD_SET_RDS_GROUP_MASK);
+	}
+
+	public synchronized int getRdsGroupMask(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_RDS_GROUP_MASK, mRdsGroupMask);
+	}
+
+	public synchronized int isValidChannel(long contextValue) {
+		return get(JFmRxCommand.CMD_IS_CHANNEL_VALID,
+				rssiAt(mFreq) >= mRssiThreshold ? 1 : 0);
+	}
+
+	public synchronized int completeScan(long contextValue) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		if (mSeeking || mScanning) {
+			return JFmRxStatus.IN_PROGRESS.getValue();
+		}
+		mScanning = true;
+		mScanStartFreq = mFreq;
+		mScanChannels.clear();
+		mFreq = first();
+		stopRds();
+		mStepTask = mExecutor.scheduleWithFixedDelay(new Runnable() {
+			public void run() {
+				scanStep();
+			}
+		}, nextDoneDelayMs(), mStepMs, TimeUnit.MILLISECONDS);
+		return PENDING;
+	}
+
+	public synchronized int getFwVersion(long contextValue) {
+		return get(JFmRxCommand.CMD_GET_FW_VERSION, FW_VERSION);
+	}
+
+	public synchronized int getCompleteScanProgress(long contextValue) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		if (!mScanning) {
+			return JFmRxStatus.COMPLETE_SCAN_IS_NOT_IN_PROGRESS.getValue();
+		}
+		return get(JFmRxCommand.CMD_COMPLETE_SCAN_PROGRESS, mFreq);
+	}
+
+	public synchronized int stopCompleteScan(long contextValue) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		if (!mScanning) {
+			return JFmRxStatus.COMPLETE_SCAN_IS_NOT_IN_PROGRESS.getValue();
+		}
+		stopStepping();
+		mFreq = mScanStartFreq;
+		/* As the stack does, no complete scan done event follows */
+		int status = complete(JFmRxCommand.CMD_STOP_COMPLETE_SCAN,
+				JFmRxStatus.COMPLETE_SCAN_STOPPED.getValue(), mFreq);
+		startRds();
+		return status;
+	}
+
+	public synchronized int getDispatcherStats(long[] stats) {
+		if (stats == null || stats.length < JFmRx.DISPATCH_STAT_NUM) {
+			return JFmRxStatus.INVALID_PARM.getValue();
+		}
+		mStats[JFmRx.DISPATCH_STAT_QUEUE_DEPTH] = mExecutor.getQueue().size();
+		System.arraycopy(mStats, 0, stats, 0, JFmRx.DISPATCH_STAT_NUM);
+		return SUCCESS;
+	}
+
+	public int setRawRdsRing(final ByteBuffer buffer, final int slots) {
+		if (buffer != null
+				&& (!buffer.isDirect() || slots <= 0
+						|| (slots & (slots - 1)) != 0 || buffer
+						.capacity() < JFmRxRdsRing.HEADER_SIZE + slots
+						* JFmRxRdsRing.SLOT_SIZE)) {
+			return JFmRxStatus.INVALID_PARM.getValue();
+		}
+		/* Applied on the simulator thread, before the next group */
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				mRing = buffer;
+				mRingSlots = buffer != null ? slots : 0;
+			}
+		});
+		return SUCCESS;
+	}
+
+	public int setRawRdsBatching(final int batchSize, final int maxLatencyMs,
+			final long groupMask) {
+		if (batchSize < 0 || batchSize > JFmRx.RDS_BATCH_MAX
+				|| maxLatencyMs < 0) {
+			return JFmRxStatus.INVALID_PARM.getValue();
+		}
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				flushBatch();
+				mBatchSize = batchSize;
+				mBatchLatencyMs = maxLatencyMs;
+				mBatchMask = groupMask;
+			}
+		});
+		return SUCCESS;
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			Commands
+	 *------------------------------------------------------------------------*/
+
+	private int notEnabled() {
+		return JFmRxStatus.CONTEXT_NOT_ENABLED.getValue();
+	}
+
+	private int set(int command) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		return complete(command, SUCCESS, 0);
+	}
+
+	private int get(int command, long value) {
+		if (!mEnabled) {
+			return notEnabled();
+		}
+		return complete(command, SUCCESS, value);
+	}
+
+	/* Delay to the next completion, never before the previous one */
+	private long nextDoneDelayMs() {
+		long now = System.nanoTime();
+		long done = now + (mLatencyMs + (mJitterMs > 0 ? mRandom
+				.nextInt(mJitterMs + 1) : 0)) * 1000000L;
+
+		if (done < mLastDoneNs) {
+			done = mLastDoneNs;
+		}
+		mLastDoneNs = done;
+		return (done - now) / 1000000L;
+	}
+
+	/* Sends fmRxCmdDone for command once its latency has passed */
+	private int complete(final int command, final int status, final long value) {
+		post(new Runnable() {
+			public void run() {
+				JFmRx.nativeCb_fmRxCmdDone(status, command, value);
+			}
+		}, nextDoneDelayMs());
+		return PENDING;
+	}
+
+	/* Runs an upcall on the simulator thread, accounted as a native event */
+	private void post(final Runnable upcall, long delayMs) {
+		final long dueNs = System.nanoTime() + delayMs * 1000000L;
+
+		mExecutor.schedule(new Runnable() {
+			public void run() {
+				upcall.run();
+				account(dueNs);
+			}
+		}, delayMs, TimeUnit.MILLISECONDS);
+		long depth = mExecutor.getQueue().size();
+		if (depth > mStats[JFmRx.DISPATCH_STAT_MAX_QUEUE_DEPTH]) {
+			mStats[JFmRx.DISPATCH_STAT_MAX_QUEUE_DEPTH] = depth;
+		}
+	}
+
+	private synchronized void account(long dueNs) {
+		long latency = Math.max(0, System.nanoTime() - dueNs);
+
+		mStats[JFmRx.DISPATCH_STAT_EVENTS]++;
+		mStats[JFmRx.DISPATCH_STAT_TOTAL_LATENCY_NS] += latency;
+		if (latency > mStats[JFmRx.DISPATCH_STAT_MAX_LATENCY_NS]) {
+			mStats[JFmRx.DISPATCH_STAT_MAX_LATENCY_NS] = latency;
+		}
+	}
+
+	private void stopStepping() {
+		if (mStepTask != null) {
+			mStepTask.cancel(false);
+			mStepTask = null;
+		}
+		mSeeking = false;
+		mScanning = false;
+	}
+
+	/* One channel of a seek, on the simulator thread */
+	private void seekStep() {
+		int status;
+		int freq;
+
+		synchronized (this) {
+			if (!mSeeking) {
+				return;
+			}
+			freq = mFreq + (mSeekDirection != 0 ? spacingKhz() : -spacingKhz());
+			if (freq > last() || freq < first()) {
+				mFreq = freq > last() ? last() : first();
+				status = JFmRxStatus.SEEK_REACHED_BAND_LIMIT.getValue();
+			} else {
+				mFreq = freq;
+				if (rssiAt(freq) < mRssiThreshold) {
+					return;
+				}
+				status = SUCCESS;
+			}
+			stopStepping();
+			freq = mFreq;
+		}
+		JFmRx.nativeCb_fmRxCmdDone(status, JFmRxCommand.CMD_SEEK, freq);
+		synchronized (this) {
+			startRds();
+		}
+	}
+
+	/* One channel of a complete scan, on the simulator thread */
+	private void scanStep() {
+		int[] channels;
+
+		synchronized (this) {
+			if (!mScanning) {
+				return;
+			}
+			if (rssiAt(mFreq) >= mRssiThreshold) {
+				mScanChannels.add(mFreq);
+			}
+			if (mFreq + spacingKhz() <= last()) {
+				mFreq += spacingKhz();
+				return;
+			}
+			stopStepping();
+			mFreq = mScanStartFreq;
+			channels = new int[mScanChannels.size()];
+			for (int i = 0; i < channels.length; i++) {
+				channels[i] = mScanChannels.get(i);
+			}
+		}
+		JFmRx.nativeCb_fmRxCompleteScanDone(SUCCESS, channels.length,
+				channels);
+		synchronized (this) {
+			startRds();
+		}
+	}
+
+	/*--------------------------------------------------------------------------
+	 *			RDS
+	 *------------------------------------------------------------------------*/
+
+	/* Starts the groups of the station on the tuned channel, if any */
+	private void startRds() {
+		Station station;
+
+		stopRds();
+		station = mStations.get(mFreq);
+		if (!mEnabled || !mRdsEnabled || station == null
+				|| station.getPi() == 0
+				|| rssiAt(mFreq) < mRssiThreshold) {
+			return;
+		}
+		mRdsStation = station;
+		mRdsIndex = 0;
+		mPsReceived = 0;
+		mRtReceived = 0;
+		mPiSent = false;
+		mPsSent = false;
+		mRtSent = false;
+		mAfSent = false;
+		mRdsTask = mExecutor.scheduleAtFixedRate(new Runnable() {
+			public void run() {
+				rdsGroup();
+			}
+		}, nextDoneDelayMs() + mGroupIntervalMs, mGroupIntervalMs,
+				TimeUnit.MILLISECONDS);
+	}
+
+	private void stopRds() {
+		if (mRdsTask != null) {
+			mRdsTask.cancel(false);
+			mRdsTask = null;
+		}
+		mRdsStation = null;
+		mExecutor.execute(new Runnable() {
+			public void run() {
+				flushBatch();
+			}
+		});
+	}
+
+	/*
+	 * Sends the next group of the station, on the simulator thread. The
+	 * upcalls are made without holding the lock, as JFmRxNative.cpp does.
+	 */
+	private void rdsGroup() {
+		Station station;
+		int[] group;
+		int type;
+		int mask;
+		int freq;
+		boolean raw;
+		boolean sendPi = false;
+		boolean sendPs = false;
+		boolean sendAf = false;
+		boolean sendRt = false;
+
+		synchronized (this) {
+			station = mRdsStation;
+			if (station == null) {
+				return;
+			}
+			int[][] cycle = station.getCycle();
+			if (cycle.length == 0) {
+				return;
+			}
+			group = cycle[mRdsIndex++ % cycle.length];
+			type = (group[1] >> 11) & 0x1F;
+			mask = 1 << type;
+			raw = (mRdsGroupMask & (mask & 0xFFFFFFFFL)) != 0;
+			freq = mFreq;
+
+			if (!mPiSent) {
+				mPiSent = sendPi = true;
+			}
+			if (type == 0) { /* 0A */
+				mPsReceived |= 1 << (group[1] & 3);
+				if (mPsReceived == 0xF && !mPsSent) {
+					mPsSent = sendPs = true;
+				}
+				/* The whole AF list is known once the loop went round */
+				if (mPsReceived == 0xF && !mAfSent
+						&& station.getAfList().length > 0
+						&& mRdsIndex >= cycle.length) {
+					mAfSent = sendAf = true;
+				}
+			} else if (type == 4) { /* 2A */
+				mRtReceived |= 1 << (group[1] & 0xF);
+				if (!mRtSent && station.getRadioText() != null
+						&& mRtReceived == rtSegmentsMask(station)) {
+					mRtSent = sendRt = true;
+				}
+			}
+		}
+
+		for (int i = 0; i < 4; i++) {
+			mGroupData[2 * i] = (byte) (group[i] >> 8);
+			mGroupData[2 * i + 1] = (byte) group[i];
+		}
+		if (raw) {
+			rawGroup(mask);
+		}
+		if (sendPi) {
+			JFmRx.nativeCb_fmRxPiCodeChanged(SUCCESS, group[0]);
+			JFmRx.nativeCb_fmRxPtyCodeChanged(SUCCESS, (group[1] >> 5) & 0x1F);
+		}
+		if (sendPs) {
+			JFmRx.nativeCb_fmRxPsChanged(SUCCESS, freq, psBytes(station), 0);
+		}
+		if (sendAf) {
+			int[] af = station.getAfList();
+			byte[] codes = new byte[af.length];
+
+			for (int i = 0; i < af.length; i++) {
+				codes[i] = (byte) afCode(af[i]);
+			}
+			JFmRx.nativeCb_fmRxAfListChanged(SUCCESS, group[0], codes,
+					af.length);
+		}
+		if (sendRt) {
+			byte[] text = rtBytes(station);
+
+			JFmRx.nativeCb_fmRxRadioText(SUCCESS, true, text, text.length, 0,
+					0);
+		}
+	}
+
+	/*
+	 * Delivers a raw group as set up by setRawRdsRing or setRawRdsBatching.
+	 * The batch is only touched on the simulator thread; the ring counters
+	 * are shared with the consumer and go through JFmRxRdsRing like the
+	 * native side does.
+	 */
+	private void rawGroup(int mask) {
+		if (mRing != null) {
+			int write = mRing.getInt(JFmRxRdsRing.WRITE_COUNT_OFFSET);
+			int read = JFmRxRdsRing.loadAcquire(mRing,
+					JFmRxRdsRing.READ_COUNT_OFFSET);
+
+			if (write - read >= mRingSlots) {
+				mRing.putInt(JFmRxRdsRing.OVERRUN_COUNT_OFFSET, mRing
+						.getInt(JFmRxRdsRing.OVERRUN_COUNT_OFFSET) + 1);
+			} else {
+				int slot = JFmRxRdsRing.HEADER_SIZE
+						+ (write & (mRingSlots - 1)) * JFmRxRdsRing.SLOT_SIZE;
+
+				for (int i = 0; i < 8; i++) {
+					mRing.put(slot + i, mGroupData[i]);
+				}
+				mRing.put(slot + 8, (byte) SUCCESS);
+				mRing.putInt(slot + 12, mask);
+				JFmRxRdsRing.storeRelease(mRing,
+						JFmRxRdsRing.WRITE_COUNT_OFFSET, ++write);
+			}
+			JFmRx.nativeCb_fmRxRawRdsRingAvailable(write - read);
+			return;
+		}
+
+		if (mBatchSize > 0) {
+			if ((mBatchMask & (mask & 0xFFFFFFFFL)) == 0) {
+				return;
+			}
+			System.arraycopy(mGroupData, 0, mBatchData, mBatchCount * 8, 8);
+			mBatchMasks[mBatchCount++] = mask;
+			if (mBatchCount >= mBatchSize) {
+				flushBatch();
+			} else if (mBatchFlush == null) {
+				mBatchFlush = mExecutor.schedule(new Runnable() {
+					public void run() {
+						mBatchFlush = null;
+						flushBatch();
+					}
+				}, mBatchLatencyMs, TimeUnit.MILLISECONDS);
+			}
+			return;
+		}
+
+		JFmRx.nativeCb_fmRxRawRDS(SUCCESS, mask, mGroupData);
+	}
+
+	private void flushBatch() {
+		if (mBatchFlush != null) {
+			mBatchFlush.cancel(false);
+			mBatchFlush = null;
+		}
+		if (mBatchCount > 0) {
+			int count = mBatchCount;
+
+			mBatchCount = 0;
+			JFmRx.nativeCb_fmRxRawRdsBatch(SUCCESS, count, mBatchData,
+					mBatchMasks);
+		}
+	}
+
+	private static int afCode(int frequency) {
+		return (frequency - 87500) / 100;
+	}
+
+	private static byte[] psBytes(Station station) {
+		String ps = station.getPs() != null ? station.getPs() : "";
+		byte[] name = new byte[8];
+
+		for (int i = 0; i < 8; i++) {
+			name[i] = (byte) (i < ps.length() ? ps.charAt(i) : ' ');
+		}
+		return name;
+	}
+
+	/* Ends with the 0x0D the native side adds when the text is shorter */
+	private static byte[] rtBytes(Station station) {
+		String text = station.getRadioText();
+		int length = Math.min(64, text.length());
+		byte[] bytes = new byte[length < 64 ? length + 1 : length];
+
+		for (int i = 0; i < length; i++) {
+			bytes[i] = (byte) text.charAt(i);
+		}
+		if (length < 64) {
+			bytes[length] = 0x0D;
+		}
+		return bytes;
+	}
+
+	private static int rtSegmentsMask(Station station) {
+		int length = Math.min(64, station.getRadioText().length());
+		int segments = length < 64 ? length / 4 + 1 : 16;
+
+		return (1 << segments) - 1;
+	}
+}
@@ -0,0 +1,525 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      JFmRxTrace.java
+ *
+ *   BRIEF:          Always-on trace of the JFmRx commands and upcalls.
+ *
+ *   DESCRIPTION:    A fixed ring of the last RING_SIZE records, allocated once
+ *                   and written with atomic array stores: the time, what was
+ *                   called, its status and one value. Every call into the
+ *                   backend (the nativeJFmRx_* functions unless replaced) and
+ *                   every nativeCb_* upcall is recorded, so the ring shows
+ *                   what led to a timeout without enabling the DBG logs.
+ *
+ *                   Writers claim a slot with one atomic increment and never
+ *                   block. A slot works as a seqlock: its sequence number is
+ *                   swapped for BUSY before the record is written and
+ *                   published last. A writer a whole ring late, which finds
+ *                   the slot busy or holding a later record, drops its own.
+ *                   All the fields are volatile accesses of AtomicLongArrays,
+ *                   which keep them in program order, so a reader checking
+ *                   the sequence number again after its copy skips the
+ *                   records still being written or overwritten meanwhile.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.jfm.core;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class JFmRxTrace {
+
+	/** Records kept, a power of two */
+	public static final int RING_SIZE = 4096;
+
+	/* Kinds of record, with the IJFmRxBackend op or the JFmRx upcall id */
+	public static final int KIND_CALL = 0;
+	public static final int KIND_UPCALL = 1;
+
+	private static final int MASK = RING_SIZE - 1;
+
+	private static final AtomicLong sNext = new AtomicLong();
+	/* Sequence number + 1 of the record in each slot, BUSY while written */
+	private static final long BUSY = -1;
+	private static final AtomicLongArray sSeq = new AtomicLongArray(RING_SIZE);
+	private static final AtomicLongArray sTimeNs = new AtomicLongArray(
+			RING_SIZE);
+	/* kind << 56 | id << 48 | aux << 32 | status */
+	private static final AtomicLongArray sEvent = new AtomicLongArray(
+			RING_SIZE);
+	private static final AtomicLongArray sValue = new AtomicLongArray(
+			RING_SIZE);
+
+	private JFmRxTrace() {
+	}
+
+	/** Records a call into the backend of the given JFmRxCapture.OP_* */
+	public static void call(int op, int status, long value) {
+		record(KIND_CALL, op, 0, status, value);
+	}
+
+	/** Records a nativeCb_* upcall of the given JFmRx.UPCALL_* */
+	public static void upcall(int upcall, int status, long value) {
+		record(KIND_UPCALL, upcall, 0, status, value);
+	}
+
+	/** Records the fmRxCmdDone upcall of a JFmRxCommand */
+	public static void cmdDone(int command, int status, long value) {
+		record(KIND_UPCALL, JFmRx.UPCALL_CMD_DONE, command, status, value);
+	}
+
+	private static void record(int kind, int id, int aux, int status,
+			long value) {
+		long seq = sNext.getAndIncrement();
+		int slot = (int) seq & MASK;
+		long last;
+
+		/* The record must not be seen before the slot is marked as written */
+		do {
+			last = sSeq.get(slot);
+			if (last == BUSY || last > seq) {
+				return;
+			}
+		} while (!sSeq.compareAndSet(slot, last, BUSY));
+		sTimeNs.set(slot, System.nanoTime());
+		sEvent.set(slot, ((long) kind << 56) | ((long) (id & 0xFF) << 48)
+				| ((long) (aux & 0xFFFF) << 32) | (status & 0xFFFFFFFFL));
+		sValue.set(slot, value);
+		sSeq.lazySet(slot, seq + 1);
+	}
+
+	/** Records written so far, including the ones overwritten */
+	public static long getCount() {
+		return sNext.get();
+	}
+
+	/*
+	 * Copies up to max of the latest records, oldest first, into the arrays
+	 * and returns how many were copied. Each record is given as its time in
+	 * ns, its event (getKind(), getId(), getAux(), getStatus()) and its
+	 * value.
+	 */
+	public static int snapshot(int max, long[] timeNs, long[] event,
+			long[] value) {
+		long end = sNext.get();
+		long seq = Math.max(0, end - Math.min(max, RING_SIZE));
+		int count = 0;
+
+		for (; seq < end; seq++) {
+			int slot = (int) seq & MASK;
+
+			if (sSeq.get(slot) != seq + 1) {
+				continue;
+			}
+			timeNs[count] = sTimeNs.get(slot);
+			event[count] = sEvent.get(slot);
+			value[count] = sValue.get(slot);
+			/* Overwritten while copied */
+			if (sSeq.get(slot) != seq + 1) {
+				continue;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	public static int getKind(long event) {
+		return (int) (event >>> 56);
+	}
+
+	public static int getId(long event) {
+		return (int) (event >>> 48) & 0xFF;
+	}
+
+	/* The JFmRxCommand of an fmRxCmdDone record */
+	public static int getAux(long event) {
+		return (int) (event >>> 32) & 0xFFFF;
+	}
+
+	public static int getStatus(long event) {
+		return (int) event;
+	}
+
+	/* Name of what a record traced */
+	public static String getName(long event) {
+		int id = getId(event);
+
+		if (getKind(event) == KIND_UPCALL) {
+			if (id == JFmRx.UPCALL_CMD_DONE) {
+				return JFmRx.getUpcallName(id) + " "
+						+ JFmRxCmdStats.getName(getAux(event));
+			}
+			return id < JFmRx.NUM_UPCALLS ? JFmRx.getUpcallName(id) : "upcall "
+					+ id;
+		}
+		return id < JFmRxCapture.OP_NAMES.length ? JFmRxCapture.OP_NAMES[id]
+				: "call " + id;
+	}
+
+	/** Prints up to max of the latest records, oldest first */
+	public static void dump(PrintWriter pw, String prefix, int max) {
+		long[] timeNs = new long[Math.min(max, RING_SIZE)];
+		long[] event = new long[timeNs.length];
+		long[] value = new long[timeNs.length];
+		int count = snapshot(timeNs.length, timeNs, event, value);
+		long now = System.nanoTime();
+
+		pw.println(prefix + count + " of " + getCount() + " records:");
+		for (int i = 0; i < count; i++) {
+			pw.println(prefix + format(now, timeNs[i], event[i], value[i]));
+		}
+	}
+
+	/** Logs up to max of the latest records, e.g. when a command timed out */
+	public static void log(String tag, int max) {
+		long[] timeNs = new long[Math.min(max, RING_SIZE)];
+		long[] event = new long[timeNs.length];
+		long[] value = new long[timeNs.length];
+		int count = snapshot(timeNs.length, timeNs, event, value);
+		long now = System.nanoTime();
+
+		Log.w(tag, "last " + count + " of " + getCount() + " JFmRx records:");
+		for (int i = 0; i < count; i++) {
+			Log.w(tag, format(now, timeNs[i], event[i], value[i]));
+		}
+	}
+
+	private static String format(long now, long timeNs, long event, long value) {
+		JFmRxStatus status = JFmUtils.getEnumConst(JFmRxStatus.class,
+				getStatus(event));
+
+		return "-" + (now - timeNs) / 1000 + "us "
+				+ (getKind(event) == KIND_UPCALL ? "<- " : "-> ")
+				+ getName(event) + " "
+				+ (status != null ? status.toString() : Integer
+						.toString(getStatus(event))) + " " + value;
+	}
+
+	/* Traces the calls into target */
+	static final class Backend implements IJFmRxBackend {
+		private final IJFmRxBackend mTarget;
+
+		Backend(IJFmRxBackend target) {
+			mTarget = target;
+		}
+
+		IJFmRxBackend getTarget() {
+			return mTarget;
+		}
+
+		public int create(JFmContext contextValue) {
+			int status = mTarget.create(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_CREATE, status, 0);
+			return status;
+		}
+
+		public int destroy(long contextValue) {
+			int status = mTarget.destroy(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_DESTROY, status, 0);
+			return status;
+		}
+
+		public int enable(long contextValue) {
+			int status = mTarget.enable(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_ENABLE, status, 0);
+			return status;
+		}
+
+		public int disable(long contextValue) {
+			int status = mTarget.disable(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_DISABLE, status, 0);
+			return status;
+		}
+
+		public int setBand(long contextValue, int jFmBand) {
+			int status = mTarget.setBand(contextValue, jFmBand);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_BAND, status, jFmBand);
+			return status;
+		}
+
+		public int getBand(long contextValue) {
+			int status = mTarget.getBand(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_BAND, status, 0);
+			return status;
+		}
+
+		public int tune(long contextValue, int jFmFreq) {
+			int status = mTarget.tune(contextValue, jFmFreq);
+			JFmRxTrace.call(JFmRxCapture.OP_TUNE, status, jFmFreq);
+			return status;
+		}
+
+		public int getTunedFrequency(long contextValue) {
+			int status = mTarget.getTunedFrequency(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_TUNED_FREQUENCY, status, 0);
+			return status;
+		}
+
+		public int setMonoStereoMode(long contextValue, int jFmMonoStereoMode) {
+			int status = mTarget.setMonoStereoMode(contextValue,
+					jFmMonoStereoMode);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_MONO_STEREO_MODE, status,
+					jFmMonoStereoMode);
+			return status;
+		}
+
+		public int getMonoStereoMode(long contextValue) {
+			int status = mTarget.getMonoStereoMode(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_MONO_STEREO_MODE, status, 0);
+			return status;
+		}
+
+		public int setMuteMode(long contextValue, int jFmMuteMode) {
+			int status = mTarget.setMuteMode(contextValue, jFmMuteMode);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_MUTE_MODE, status, jFmMuteMode);
+			return status;
+		}
+
+		public int getMuteMode(long contextValue) {
+			int status = mTarget.getMuteMode(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_MUTE_MODE, status, 0);
+			return status;
+		}
+
+		public int setRssiThreshold(long contextValue, int jFmRssi) {
+			int status = mTarget.setRssiThreshold(contextValue, jFmRssi);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RSSI_THRESHOLD, status,
+					jFmRssi);
+			return status;
+		}
+
+		public int getRssiThreshold(long contextValue) {
+			int status = mTarget.getRssiThreshold(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_RSSI_THRESHOLD, status, 0);
+			return status;
+		}
+
+		public int getRssi(long contextValue) {
+			int status = mTarget.getRssi(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_RSSI, status, 0);
+			return status;
+		}
+
+		public int setVolume(long contextValue, int jFmVolume) {
+			int status = mTarget.setVolume(contextValue, jFmVolume);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_VOLUME, status, jFmVolume);
+			return status;
+		}
+
+		public int getVolume(long contextValue) {
+			int status = mTarget.getVolume(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_VOLUME, status, 0);
+			return status;
+		}
+
+		public int setChannelSpacing(long contextValue, int jFmChannelSpacing) {
+			int status = mTarget.setChannelSpacing(contextValue,
+					jFmChannelSpacing);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_CHANNEL_SPACING, status,
+					jFmChannelSpacing);
+			return status;
+		}
+
+		public int getChannelSpacing(long contextValue) {
+			int status = mTarget.getChannelSpacing(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_CHANNEL_SPACING, status, 0);
+			return status;
+		}
+
+		public int setDeEmphasisFilter(long contextValue,
+				int jFmEmphasisFilter) {
+			int status = mTarget.setDeEmphasisFilter(contextValue,
+					jFmEmphasisFilter);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_DE_EMPHASIS_FILTER, status,
+					jFmEmphasisFilter);
+			return status;
+		}
+
+		public int getDeEmphasisFilter(long contextValue) {
+			int status = mTarget.getDeEmphasisFilter(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_DE_EMPHASIS_FILTER, status, 0);
+			return status;
+		}
+
+		public int seek(long contextValue, int jFmDirection) {
+			int status = mTarget.seek(contextValue, jFmDirection);
+			JFmRxTrace.call(JFmRxCapture.OP_SEEK, status, jFmDirection);
+			return status;
+		}
+
+		public int stopSeek(long contextValue) {
+			int status = mTarget.stopSeek(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_STOP_SEEK, status, 0);
+			return status;
+		}
+
+		public int enableRDS(long contextValue) {
+			int status = mTarget.enableRDS(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_ENABLE_RDS, status, 0);
+			return status;
+		}
+
+		public int disableRDS(long contextValue) {
+			int status = mTarget.disableRDS(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_DISABLE_RDS, status, 0);
+			return status;
+		}
+
+		public int enableAudioRouting(long contextValue) {
+			int status = mTarget.enableAudioRouting(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_ENABLE_AUDIO_ROUTING, status, 0);
+			return status;
+		}
+
+		public int disableAudioRouting(long contextValue) {
+			int status = mTarget.disableAudioRouting(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_DISABLE_AUDIO_ROUTING, status, 0);
+			return status;
+		}
+
+		public int setRdsAfSwitchMode(long contextValue, int jRdsAfSwitchMode) {
+			int status = mTarget.setRdsAfSwitchMode(contextValue,
+					jRdsAfSwitchMode);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RDS_AF_SWITCH_MODE, status,
+					jRdsAfSwitchMode);
+			return status;
+		}
+
+		public int getRdsAfSwitchMode(long contextValue) {
+			int status = mTarget.getRdsAfSwitchMode(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_RDS_AF_SWITCH_MODE, status, 0);
+			return status;
+		}
+
+		public int changeAudioTarget(long contextValue, int audioTargetMask,
+				int digitalConfig) {
+			int status = mTarget.changeAudioTarget(contextValue, audioTargetMask,
+					digitalConfig);
+			JFmRxTrace.call(JFmRxCapture.OP_CHANGE_AUDIO_TARGET, status,
+					audioTargetMask);
+			return status;
+		}
+
+		public int changeDigitalTargetConfiguration(long contextValue,
+				int digitalConfig) {
+			int status = mTarget.changeDigitalTargetConfiguration(contextValue,
+					digitalConfig);
+			JFmRxTrace.call(JFmRxCapture.OP_CHANGE_DIGITAL_TARGET_CONFIGURATION, status,
+					digitalConfig);
+			return status;
+		}
+
+		public int setRfDependentMuteMode(long contextValue, int mode) {
+			int status = mTarget.setRfDependentMuteMode(contextValue, mode);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RF_DEPENDENT_MUTE_MODE, status,
+					mode);
+			return status;
+		}
+
+		public int getRfDependentMute(long contextValue) {
+			int status = mTarget.getRfDependentMute(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_RF_DEPENDENT_MUTE, status, 0);
+			return status;
+		}
+
+		public int setRdsSystem(long contextValue, int rdsSystem) {
+			int status = mTarget.setRdsSystem(contextValue, rdsSystem);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RDS_SYSTEM, status, rdsSystem);
+			return status;
+		}
+
+		public int getRdsSystem(long contextValue) {
+			int status = mTarget.getRdsSystem(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_RDS_SYSTEM, status, 0);
+			return status;
+		}
+
+		public int setRdsGroupMask(long contextValue, long groupMask) {
+			int status = mTarget.setRdsGroupMask(contextValue, groupMask);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RDS_GROUP_MASK, status,
+					groupMask);
+			return status;
+		}
+
+		public int getRdsGroupMask(long contextValue) {
+			int status = mTarget.getRdsGroupMask(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_RDS_GROUP_MASK, status, 0);
+			return status;
+		}
+
+		public int isValidChannel(long contextValue) {
+			int status = mTarget.isValidChannel(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_IS_VALID_CHANNEL, status, 0);
+			return status;
+		}
+
+		public int completeScan(long contextValue) {
+			int status = mTarget.completeScan(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_COMPLETE_SCAN, status, 0);
+			return status;
+		}
+
+		public int getFwVersion(long contextValue) {
+			int status = mTarget.getFwVersion(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_FW_VERSION, status, 0);
+			return status;
+		}
+
+		public int getCompleteScanProgress(long contextValue) {
+			int status = mTarget.getCompleteScanProgress(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_COMPLETE_SCAN_PROGRESS, status,
+					0);
+			return status;
+		}
+
+		public int stopCompleteScan(long contextValue) {
+			int status = mTarget.stopCompleteScan(contextValue);
+			JFmRxTrace.call(JFmRxCapture.OP_STOP_COMPLETE_SCAN, status, 0);
+			return status;
+		}
+
+		public int getDispatcherStats(long[] stats) {
+			int status = mTarget.getDispatcherStats(stats);
+			JFmRxTrace.call(JFmRxCapture.OP_GET_DISPATCHER_STATS, status, 0);
+			return status;
+		}
+
+		public int setRawRdsRing(ByteBuffer buffer, int slots) {
+			int status = mTarget.setRawRdsRing(buffer, slots);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RAW_RDS_RING, status, slots);
+			return status;
+		}
+
+		public int setRawRdsBatching(int batchSize, int maxLatencyMs,
+				long groupMask) {
+			int status = mTarget.setRawRdsBatching(batchSize, maxLatencyMs,
+					groupMask);
+			JFmRxTrace.call(JFmRxCapture.OP_SET_RAW_RDS_BATCHING, status,
+					batchSize);
+			return status;
+		}
+	}
+}
@@ -32,13 +32,32 @@ package com.ti.jfm.core;
 
 import java.lang.Enum;
 import java.util.EnumSet;
+import java.util.HashMap;
 
 public final class JFmUtils {
 
 	private static final String TAG = "JFmUtils";
 
+	/*
+	 * Values below this bound are resolved through a direct array index, all
+	 * others (e.g. the 32 bit RDS group masks) through an open addressed table.
+	 */
+	private static final int DIRECT_TABLE_LIMIT = 256;
+
+	/*
+	 * Lookup tables are built once per enum type and then only read. The map
+	 * is replaced as a whole when a new type is added, so readers never take a
+	 * lock and never allocate.
+	 */
+	private static volatile HashMap<Class<?>, EnumTable> mEnumTables = new HashMap<Class<?>, EnumTable>();
+
 	public static <V, E extends Enum<E> & IJFmEnum<V>> E getEnumConst(
 			Class<E> enumType, V constValue) {
+
+		if (constValue instanceof Integer || constValue instanceof Long) {
+			return getEnumConst(enumType, ((Number) constValue).longValue());
+		}
+
 		EnumSet<E> es = EnumSet.allOf(enumType);
 
 		E matchingConst = null;
@@ -56,4 +75,122 @@ public final class JFmUtils {
 		}
 		return matchingConst;
 	}
+
+	/*
+	 * Primitive overload used by the callback path - resolves the constant in
+	 * O(1) without boxing the value or walking the enum constants.
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends Enum<E> & IJFmEnum<?>> E getEnumConst(
+			Class<E> enumType, long constValue) {
+		return (E) getEnumTable(enumType).get(constValue);
+	}
+
+	private static EnumTable getEnumTable(Class<?> enumType) {
+		EnumTable table = mEnumTables.get(enumType);
+
+		if (table == null) {
+			synchronized (JFmUtils.class) {
+				table = mEnumTables.get(enumType);
+				if (table == null) {
+					table = new EnumTable(enumType.getEnumConstants());
+					HashMap<Class<?>, EnumTable> tables = new HashMap<Class<?>, EnumTable>(
+							mEnumTables);
+					tables.put(enumType, table);
+					mEnumTables = tables;
+				}
+			}
+		}
+		return table;
+	}
+
+	/*
+	 * Precomputed value -> constant table of a single IJFmEnum type. When two
+	 * constants share a value the first declared one wins, as with the linear
+	 * scan.
+	 */
+	private static final class EnumTable {
+
+		private final Object[] direct;
+
+		private final long[] keys;
+
+		private final Object[] values;
+
+		private final int mask;
+
+		EnumTable(Object[] constants) {
+			long max = -1;
+			boolean dense = true;
+
+			for (Object c : constants) {
+				long value = valueOf(c);
+				if (value < 0 || value >= DIRECT_TABLE_LIMIT) {
+					dense = false;
+				} else if (value > max) {
+					max = value;
+				}
+			}
+
+			if (dense) {
+				direct = new Object[(int) max + 1];
+				for (Object c : constants) {
+					int index = (int) valueOf(c);
+					if (direct[index] == null) {
+						direct[index] = c;
+					}
+				}
+				keys = null;
+				values = null;
+				mask = 0;
+			} else {
+				int size = 1;
+				while (size < constants.length * 4) {
+					size <<= 1;
+				}
+				direct = null;
+				keys = new long[size];
+				values = new Object[size];
+				mask = size - 1;
+				for (Object c : constants) {
+					long value = valueOf(c);
+					int slot = hash(value) & mask;
+					while (values[slot] != null && keys[slot] != value) {
+						slot = (slot + 1) & mask;
+					}
+					if (values[slot] == null) {
+						keys[slot] = value;
+						values[slot] = c;
+					}
+				}
+			}
+		}
+
+		Object get(long value) {
+			if (direct != null) {
+				if (value < 0 || value >= direct.length) {
+					return null;
+				}
+				return direct[(int) value];
+			}
+
+			int slot = hash(value) & mask;
+			while (values[slot] != null) {
+				if (keys[slot] == value) {
+					return values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			return null;
+		}
+
+		private static long valueOf(Object enumConst) {
+			return ((Number) ((IJFmEnum<?>) enumConst).getValue()).longValue();
+		}
+
+		private static int hash(long value) {
+			long h = value * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+	}
 }
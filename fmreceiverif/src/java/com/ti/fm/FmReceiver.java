@@ -35,10 +35,16 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.os.Bundle;
 import android.os.IBinder;
+import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 import android.util.Log;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
 /**
  * The Android FmReceiver API is not finalized, and *will* change. Use at your
  * own risk.
@@ -818,4 +824,322 @@ public class FmReceiver {
         return false;
     }
 
+    /**
+     * The get APIs are answered from the configuration last confirmed by the
+     * chip. This drops it and reads every value back from the chip, for
+     * diagnostics. Returns false if some value could not be read.
+     */
+    public boolean refreshConfigCache() {
+
+        if (mService != null) {
+            try {
+                return mService.refreshConfigCache();
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Applies the fields set in config with a single call to the service.
+     * Only the values that differ from the current chip configuration are
+     * sent to the chip. Returns once they have all completed, with the
+     * FmRxConfiguration.FIELD_* bits of the fields that failed (0 on success).
+     */
+    public int applyConfiguration(FmRxConfiguration config) {
+
+        if (mService != null) {
+            try {
+                return mService.applyConfiguration(config);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return config.getFields();
+    }
+
+    /**
+     * Delivers the receiver events to callback with a oneway binder call
+     * instead of a broadcast. actions lists the FmReceiverIntent actions
+     * the client wants, or is null for all of them. Registering the same
+     * callback again replaces its filter.
+     */
+    public boolean registerCallback(IFmReceiverCallback callback, String[] actions) {
+
+        if (mService != null) {
+            try {
+                return mService.registerCallback(callback, actions);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    public boolean unregisterCallback(IFmReceiverCallback callback) {
+
+        if (mService != null) {
+            try {
+                return mService.unregisterCallback(callback);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Also receive RDS_TEXT_CHANGED_ACTION for radio text still being received.
+     * Such intents carry a RADIOTEXT_PROGRESS below 100.
+     */
+    public boolean setRadioTextPartialMode(boolean enable) {
+
+        if (mService != null) {
+            try {
+                return mService.setRadioTextPartialMode(enable);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Returns the results of the last complete scan of the current band and
+     * channel spacing without scanning. SCAN_STALE is set when they are older
+     * than maxAgeMs, in which case a complete scan is started and reported
+     * with COMPLETE_SCAN_DONE_ACTION. Returns null if not connected to the
+     * FmReceiver service.
+     */
+    public Bundle getCachedScan(long maxAgeMs) {
+
+        if (mService != null) {
+            try {
+                return mService.getCachedScan(maxAgeMs);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return null;
+    }
+
+    /**
+     * Scans the band like completeScan(), reporting each station with
+     * SCAN_CHANNEL_FOUND_ACTION as soon as it is found and the progress with
+     * SCAN_PROGRESS_ACTION. COMPLETE_SCAN_DONE_ACTION ends the scan, which
+     * stopCompleteScan() stops.
+     */
+    public boolean startStreamingScan() {
+
+        if (mService != null) {
+            try {
+                return mService.startStreamingScan();
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Scans the channel grid of the current band and spacing from the
+     * service, tuned by options (null for the defaults). Reports like
+     * startStreamingScan(); stopCompleteScan() stops it and a later scan
+     * with FmRxScanOptions.setResume() goes on from there.
+     */
+    public boolean startSoftwareScan(FmRxScanOptions options) {
+
+        if (mService != null) {
+            try {
+                return mService.startSoftwareScan(options);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Starts recording the commands sent to the FM stack and its callbacks
+     * into the file at path, for replayCapture(). The file is opened here,
+     * with the rights of the caller, and handed to the service.
+     */
+    public boolean startCapture(String path) {
+
+        if (mService != null) {
+            ParcelFileDescriptor fd = openCapture(path,
+                    ParcelFileDescriptor.MODE_WRITE_ONLY
+                            | ParcelFileDescriptor.MODE_CREATE
+                            | ParcelFileDescriptor.MODE_TRUNCATE);
+            if (fd == null) {
+                return false;
+            }
+            try {
+                return mService.startCapture(fd);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            } finally {
+                closeCapture(fd);
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Stops the recording started by startCapture().
+     */
+    public boolean stopCapture() {
+
+        if (mService != null) {
+            try {
+                return mService.stopCapture();
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Feeds the callbacks recorded at path to the service as if they came
+     * from the stack, at the recorded pace with realTime or as fast as they
+     * are handled otherwise. The rate achieved is logged at the end. Fails
+     * unless the radio is disabled and the service runs on the simulated
+     * stack, see JFmRx.setBackend(); enable() fails while a replay runs.
+     * Like for startCapture(), the file is opened by the caller.
+     */
+    public boolean replayCapture(String path, boolean realTime) {
+
+        if (mService != null) {
+            ParcelFileDescriptor fd = openCapture(path,
+                    ParcelFileDescriptor.MODE_READ_ONLY);
+            if (fd == null) {
+                return false;
+            }
+            try {
+                return mService.replayCapture(fd, realTime);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            } finally {
+                closeCapture(fd);
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /* Opens a capture file for the service, null on error */
+    private static ParcelFileDescriptor openCapture(String path, int mode) {
+        if (path == null) {
+            Log.e(TAG, "No capture path");
+            return null;
+        }
+        try {
+            return ParcelFileDescriptor.open(new File(path), mode);
+        } catch (FileNotFoundException e) {
+            Log.e(TAG, e.toString());
+            return null;
+        }
+    }
+
+    /* The service got its own copy of the descriptor */
+    private static void closeCapture(ParcelFileDescriptor fd) {
+        try {
+            fd.close();
+        } catch (IOException e) {
+            Log.e(TAG, e.toString());
+        }
+    }
+
+    /**
+     * Returns the latency histogram, error, timeout and in-flight counters
+     * of every FM stack command, keyed by the FmReceiverIntent.CMD_STATS_*
+     * names. Returns null if not connected to the FmReceiver service.
+     */
+    public Bundle getCommandStats() {
+
+        if (mService != null) {
+            try {
+                return mService.getCommandStats();
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return null;
+    }
+
+    /**
+     * Starts or stops decoding the RDS-TMC traffic messages. Events are then
+     * reported with TMC_EVENT_CHANGED_ACTION and TMC_EVENT_REMOVED_ACTION.
+     */
+    public boolean setTmcEnabled(boolean enable) {
+
+        if (mService != null) {
+            try {
+                return mService.setTmcEnabled(enable);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return false;
+    }
+
+    /**
+     * Returns the active TMC events at locationCode, or all of them for -1.
+     * Returns an empty array if not connected to the FmReceiver service.
+     */
+    public FmRxTmcEvent[] getTmcEvents(int locationCode) {
+
+        if (mService != null) {
+            try {
+                return mService.getTmcEvents(locationCode);
+            } catch (RemoteException e) {
+                Log.e(TAG, e.toString());
+            }
+        } else {
+            Log.w(TAG, "Proxy not attached to service");
+            if (DBG) Log.d(TAG, Log.getStackTraceString(new Throwable()));
+        }
+        return new FmRxTmcEvent[0];
+    }
+
 }
@@ -55,6 +55,27 @@ public interface FmReceiverIntent {
 
     public static final String PI = "com.ti.fm.rx.intent.PI";
 
+    public static final String PTY = "com.ti.fm.rx.intent.PTY";
+
+    public static final String ECC = "com.ti.fm.rx.intent.ECC";
+
+    public static final String PIN_DAY = "com.ti.fm.rx.intent.PIN_DAY";
+
+    public static final String PIN_HOUR = "com.ti.fm.rx.intent.PIN_HOUR";
+
+    public static final String PIN_MINUTE = "com.ti.fm.rx.intent.PIN_MINUTE";
+
+    public static final String CT_MJD = "com.ti.fm.rx.intent.CT_MJD";
+
+    public static final String CT_HOUR = "com.ti.fm.rx.intent.CT_HOUR";
+
+    public static final String CT_MINUTE = "com.ti.fm.rx.intent.CT_MINUTE";
+
+    /* Local time offset in half hours */
+    public static final String CT_LOCAL_OFFSET = "com.ti.fm.rx.intent.CT_LOCAL_OFFSET";
+
+    public static final String PTYN = "com.ti.fm.rx.intent.PTYN";
+
     public static final String REPERTOIRE = "com.ti.fm.rx.intent.REPERTOIRE";
 
     public static final String MUTE = "com.ti.fm.rx.intent.MUTE";
@@ -71,6 +92,12 @@ public interface FmReceiverIntent {
 
     public static final String RADIOTEXT_CONVERTED = "com.ti.fm.rx.intent.RADIOTEXT_CONVERTED_VALUE";
 
+    /* Percentage of the radio text received, 100 unless in partial mode */
+    public static final String RADIOTEXT_PROGRESS = "com.ti.fm.rx.intent.RADIOTEXT_PROGRESS";
+
+    /* FmRxTmcEvent of the TMC intents */
+    public static final String TMC_EVENT = "com.ti.fm.rx.intent.TMC_EVENT";
+
     public static final String PS_CONVERTED = "com.ti.fm.rx.intent.PS_CONVERTED_VALUE";
 
     public static final String GET_BAND = "com.ti.fm.rx.intent.GET_BAND";
@@ -101,6 +128,52 @@ public interface FmReceiverIntent {
 
     public static final String SCAN_PROGRESS = "com.ti.fm.rx.intent.SCAN_PROGRESS";
 
+    /* Cached scan results, per channel of SCAN_LIST; -1 when not seen yet */
+    public static final String SCAN_RSSI_LIST = "com.ti.fm.rx.intent.SCAN_RSSI_LIST";
+
+    public static final String SCAN_PI_LIST = "com.ti.fm.rx.intent.SCAN_PI_LIST";
+
+    public static final String SCAN_PS_LIST = "com.ti.fm.rx.intent.SCAN_PS_LIST";
+
+    public static final String SCAN_SEEN_LIST = "com.ti.fm.rx.intent.SCAN_SEEN_LIST";
+
+    public static final String SCAN_TIME = "com.ti.fm.rx.intent.SCAN_TIME";
+
+    public static final String SCAN_STALE = "com.ti.fm.rx.intent.SCAN_STALE";
+
+    public static final String SCAN_REFRESHING = "com.ti.fm.rx.intent.SCAN_REFRESHING";
+
+    /* Station found by a streaming scan */
+    public static final String SCAN_CHANNEL_FREQUENCY = "com.ti.fm.rx.intent.SCAN_CHANNEL_FREQUENCY";
+
+    public static final String SCAN_CHANNEL_RSSI = "com.ti.fm.rx.intent.SCAN_CHANNEL_RSSI";
+
+    public static final String SCAN_CHANNEL_INDEX = "com.ti.fm.rx.intent.SCAN_CHANNEL_INDEX";
+
+    /* Command statistics, long arrays indexed by JFmRxCommand id */
+    public static final String CMD_STATS_ISSUED = "com.ti.fm.rx.intent.CMD_STATS_ISSUED";
+
+    public static final String CMD_STATS_COMPLETED = "com.ti.fm.rx.intent.CMD_STATS_COMPLETED";
+
+    public static final String CMD_STATS_IN_FLIGHT = "com.ti.fm.rx.intent.CMD_STATS_IN_FLIGHT";
+
+    public static final String CMD_STATS_REJECTED = "com.ti.fm.rx.intent.CMD_STATS_REJECTED";
+
+    public static final String CMD_STATS_ERRORS = "com.ti.fm.rx.intent.CMD_STATS_ERRORS";
+
+    public static final String CMD_STATS_TIMEOUTS = "com.ti.fm.rx.intent.CMD_STATS_TIMEOUTS";
+
+    public static final String CMD_STATS_TOTAL_US = "com.ti.fm.rx.intent.CMD_STATS_TOTAL_US";
+
+    public static final String CMD_STATS_MAX_US = "com.ti.fm.rx.intent.CMD_STATS_MAX_US";
+
+    public static final String CMD_STATS_HISTOGRAM = "com.ti.fm.rx.intent.CMD_STATS_HISTOGRAM";
+
+    public static final String CMD_STATS_BUCKET_LIMITS_US = "com.ti.fm.rx.intent.CMD_STATS_BUCKET_LIMITS_US";
+
+    /* Count of fmRxCmdError, which names no command */
+    public static final String CMD_STATS_CMD_ERRORS = "com.ti.fm.rx.intent.CMD_STATS_CMD_ERRORS";
+
     /**
      * ******** fM tx *****************
      */
@@ -187,6 +260,33 @@ public interface FmReceiverIntent {
     @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
     public static final String PI_CODE_CHANGED_ACTION = "com.ti.fm.rx.intent.action.PI_CODE_CHANGED_ACTION";
 
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String PTY_CODE_CHANGED_ACTION = "com.ti.fm.rx.intent.action.PTY_CODE_CHANGED_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String RDS_PIN_CHANGED_ACTION = "com.ti.fm.rx.intent.action.RDS_PIN_CHANGED_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String RDS_CLOCK_TIME_ACTION = "com.ti.fm.rx.intent.action.RDS_CLOCK_TIME_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String RDS_PTYN_CHANGED_ACTION = "com.ti.fm.rx.intent.action.RDS_PTYN_CHANGED_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String RDS_EON_PS_CHANGED_ACTION = "com.ti.fm.rx.intent.action.RDS_EON_PS_CHANGED_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String SCAN_CHANNEL_FOUND_ACTION = "com.ti.fm.rx.intent.action.SCAN_CHANNEL_FOUND_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String SCAN_PROGRESS_ACTION = "com.ti.fm.rx.intent.action.SCAN_PROGRESS_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String TMC_EVENT_CHANGED_ACTION = "com.ti.fm.rx.intent.action.TMC_EVENT_CHANGED_ACTION";
+
+    @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
+    public static final String TMC_EVENT_REMOVED_ACTION = "com.ti.fm.rx.intent.action.TMC_EVENT_REMOVED_ACTION";
+
     @SdkConstant(SdkConstantType.BROADCAST_INTENT_ACTION)
     public static final String MASTER_VOLUME_CHANGED_ACTION = "com.ti.fm.rx.intent.action.MASTER_VOLUME_CHANGED_ACTION";
 
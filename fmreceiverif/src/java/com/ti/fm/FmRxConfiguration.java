@@ -0,0 +1,194 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2011 Texas Instruments, Inc. - http://www.ti.com/
+ * Copyright 2010, 2011 Sony Ericsson Mobile Communications AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxConfiguration.java
+ *
+ *   BRIEF:          Receiver configuration applied in one IFmReceiver call.
+ *
+ *   DESCRIPTION:    Holds the values of the fields that were set; fields that
+ *                   were never set are left untouched by applyConfiguration.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.fm;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Configuration passed to {@link FmReceiver#applyConfiguration}.
+ *
+ * @hide
+ */
+public final class FmRxConfiguration implements Parcelable {
+
+    /* Field bits, also used in the failure mask of applyConfiguration */
+    public static final int FIELD_BAND = 0x01;
+    public static final int FIELD_DEEMPHASIS_FILTER = 0x02;
+    public static final int FIELD_MONO_STEREO_MODE = 0x04;
+    public static final int FIELD_CHANNEL_SPACING = 0x08;
+    public static final int FIELD_RDS_ENABLED = 0x10;
+    public static final int FIELD_RDS_SYSTEM = 0x20;
+    public static final int FIELD_RDS_AF_SWITCH_MODE = 0x40;
+    public static final int FIELD_RSSI_THRESHOLD = 0x80;
+    public static final int FIELD_ALL = 0xFF;
+
+    private int mFields = 0;
+    private int mBand;
+    private int mDeEmphasisFilter;
+    private int mMonoStereoMode;
+    private int mChannelSpacing;
+    private boolean mRdsEnabled;
+    private int mRdsSystem;
+    private int mRdsAfSwitchMode;
+    private int mRssiThreshold;
+
+    public FmRxConfiguration() {
+    }
+
+    private FmRxConfiguration(Parcel in) {
+        mFields = in.readInt();
+        mBand = in.readInt();
+        mDeEmphasisFilter = in.readInt();
+        mMonoStereoMode = in.readInt();
+        mChannelSpacing = in.readInt();
+        mRdsEnabled = in.readInt() != 0;
+        mRdsSystem = in.readInt();
+        mRdsAfSwitchMode = in.readInt();
+        mRssiThreshold = in.readInt();
+    }
+
+    /** Bit mask of the FIELD_* values that were set */
+    public int getFields() {
+        return mFields;
+    }
+
+    public boolean has(int field) {
+        return (mFields & field) != 0;
+    }
+
+    public FmRxConfiguration setBand(int band) {
+        mBand = band;
+        mFields |= FIELD_BAND;
+        return this;
+    }
+
+    public int getBand() {
+        return mBand;
+    }
+
+    public FmRxConfiguration setDeEmphasisFilter(int filter) {
+        mDeEmphasisFilter = filter;
+        mFields |= FIELD_DEEMPHASIS_FILTER;
+        return this;
+    }
+
+    public int getDeEmphasisFilter() {
+        return mDeEmphasisFilter;
+    }
+
+    public FmRxConfiguration setMonoStereoMode(int mode) {
+        mMonoStereoMode = mode;
+        mFields |= FIELD_MONO_STEREO_MODE;
+        return this;
+    }
+
+    public int getMonoStereoMode() {
+        return mMonoStereoMode;
+    }
+
+    public FmRxConfiguration setChannelSpacing(int channelSpace) {
+        mChannelSpacing = channelSpace;
+        mFields |= FIELD_CHANNEL_SPACING;
+        return this;
+    }
+
+    public int getChannelSpacing() {
+        return mChannelSpacing;
+    }
+
+    public FmRxConfiguration setRdsEnabled(boolean enabled) {
+        mRdsEnabled = enabled;
+        mFields |= FIELD_RDS_ENABLED;
+        return this;
+    }
+
+    public boolean isRdsEnabled() {
+        return mRdsEnabled;
+    }
+
+    public FmRxConfiguration setRdsSystem(int system) {
+        mRdsSystem = system;
+        mFields |= FIELD_RDS_SYSTEM;
+        return this;
+    }
+
+    public int getRdsSystem() {
+        return mRdsSystem;
+    }
+
+    public FmRxConfiguration setRdsAfSwitchMode(int mode) {
+        mRdsAfSwitchMode = mode;
+        mFields |= FIELD_RDS_AF_SWITCH_MODE;
+        return this;
+    }
+
+    public int getRdsAfSwitchMode() {
+        return mRdsAfSwitchMode;
+    }
+
+    public FmRxConfiguration setRssiThreshold(int threshold) {
+        mRssiThreshold = threshold;
+        mFields |= FIELD_RSSI_THRESHOLD;
+        return this;
+    }
+
+    public int getRssiThreshold() {
+        return mRssiThreshold;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(mFields);
+        out.writeInt(mBand);
+        out.writeInt(mDeEmphasisFilter);
+        out.writeInt(mMonoStereoMode);
+        out.writeInt(mChannelSpacing);
+        out.writeInt(mRdsEnabled ? 1 : 0);
+        out.writeInt(mRdsSystem);
+        out.writeInt(mRdsAfSwitchMode);
+        out.writeInt(mRssiThreshold);
+    }
+
+    public static final Parcelable.Creator<FmRxConfiguration> CREATOR =
+            new Parcelable.Creator<FmRxConfiguration>() {
+        public FmRxConfiguration createFromParcel(Parcel in) {
+            return new FmRxConfiguration(in);
+        }
+
+        public FmRxConfiguration[] newArray(int size) {
+            return new FmRxConfiguration[size];
+        }
+    };
+}
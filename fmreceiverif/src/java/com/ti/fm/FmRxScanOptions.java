@@ -0,0 +1,193 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2011 Texas Instruments, Inc. - http://www.ti.com/
+ * Copyright 2010, 2011 Sony Ericsson Mobile Communications AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxScanOptions.java
+ *
+ *   BRIEF:          Tuning of the software scan run by the FM Rx service.
+ *
+ *   DESCRIPTION:    Trades scan time against accuracy: how long each channel
+ *                   is listened to, how channels close to the RSSI threshold
+ *                   are confirmed, and whether a station needs a PI.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.fm;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Options passed to {@link FmReceiver#startSoftwareScan}.
+ *
+ * @hide
+ */
+public final class FmRxScanOptions implements Parcelable {
+
+    private int mDwellMs = 10;
+    private int mRssiMargin = 3;
+    private int mConfirmReads = 3;
+    private int mConfirmDwellMs = 30;
+    private int mPiTimeoutMs = 0;
+    private boolean mResume = false;
+    private int mCoarseStepKhz = 0;
+    private boolean mMergeAdjacent = false;
+
+    public FmRxScanOptions() {
+    }
+
+    private FmRxScanOptions(Parcel in) {
+        mDwellMs = in.readInt();
+        mRssiMargin = in.readInt();
+        mConfirmReads = in.readInt();
+        mConfirmDwellMs = in.readInt();
+        mPiTimeoutMs = in.readInt();
+        mResume = in.readInt() != 0;
+        mCoarseStepKhz = in.readInt();
+        mMergeAdjacent = in.readInt() != 0;
+    }
+
+    /** Time between the tune and the first RSSI read of a channel */
+    public FmRxScanOptions setDwellMs(int dwellMs) {
+        mDwellMs = dwellMs;
+        return this;
+    }
+
+    public int getDwellMs() {
+        return mDwellMs;
+    }
+
+    /**
+     * Channels whose first RSSI is within margin of the RSSI threshold are
+     * read again and checked with isValidChannel before being kept.
+     */
+    public FmRxScanOptions setRssiMargin(int margin) {
+        mRssiMargin = margin;
+        return this;
+    }
+
+    public int getRssiMargin() {
+        return mRssiMargin;
+    }
+
+    /** Extra RSSI reads of a channel close to the threshold, averaged */
+    public FmRxScanOptions setConfirmReads(int reads) {
+        mConfirmReads = reads;
+        return this;
+    }
+
+    public int getConfirmReads() {
+        return mConfirmReads;
+    }
+
+    public FmRxScanOptions setConfirmDwellMs(int dwellMs) {
+        mConfirmDwellMs = dwellMs;
+        return this;
+    }
+
+    public int getConfirmDwellMs() {
+        return mConfirmDwellMs;
+    }
+
+    /**
+     * When not 0, a channel is only kept once its PI is received within
+     * timeoutMs. Needs RDS to be enabled.
+     */
+    public FmRxScanOptions setPiTimeoutMs(int timeoutMs) {
+        mPiTimeoutMs = timeoutMs;
+        return this;
+    }
+
+    public int getPiTimeoutMs() {
+        return mPiTimeoutMs;
+    }
+
+    /**
+     * Continues a stopped scan of the same band and spacing from where it
+     * stopped, keeping the stations found so far.
+     */
+    public FmRxScanOptions setResume(boolean resume) {
+        mResume = resume;
+        return this;
+    }
+
+    public boolean getResume() {
+        return mResume;
+    }
+
+    /**
+     * When not 0, the band is first sampled every stepKhz with a single RSSI
+     * read, and only the channels around the samples that may hold a station
+     * are then scanned at the channel spacing. Must be a multiple of the
+     * channel spacing, 200 kHz is a good choice. A station between two
+     * samples is only found if they still hear it at the RSSI threshold less
+     * twice the RSSI margin, so a weak one half way between them can be
+     * missed. Each station found costs a few channels of the fine pass, the
+     * saving shrinks on a crowded band.
+     */
+    public FmRxScanOptions setCoarseStepKhz(int stepKhz) {
+        mCoarseStepKhz = stepKhz;
+        return this;
+    }
+
+    public int getCoarseStepKhz() {
+        return mCoarseStepKhz;
+    }
+
+    /**
+     * Reports a station heard on neighbouring channels once, on the channel
+     * with the highest RSSI. Channels with different PIs are kept apart. The
+     * stations are then only reported when the scan is done.
+     */
+    public FmRxScanOptions setMergeAdjacent(boolean merge) {
+        mMergeAdjacent = merge;
+        return this;
+    }
+
+    public boolean getMergeAdjacent() {
+        return mMergeAdjacent;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(mDwellMs);
+        out.writeInt(mRssiMargin);
+        out.writeInt(mConfirmReads);
+        out.writeInt(mConfirmDwellMs);
+        out.writeInt(mPiTimeoutMs);
+        out.writeInt(mResume ? 1 : 0);
+        out.writeInt(mCoarseStepKhz);
+        out.writeInt(mMergeAdjacent ? 1 : 0);
+    }
+
+    public static final Parcelable.Creator<FmRxScanOptions> CREATOR =
+            new Parcelable.Creator<FmRxScanOptions>() {
+        public FmRxScanOptions createFromParcel(Parcel in) {
+            return new FmRxScanOptions(in);
+        }
+
+        public FmRxScanOptions[] newArray(int size) {
+            return new FmRxScanOptions[size];
+        }
+    };
+}
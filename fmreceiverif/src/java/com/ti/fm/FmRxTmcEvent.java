@@ -0,0 +1,156 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2011 Texas Instruments, Inc. - http://www.ti.com/
+ * Copyright 2010, 2011 Sony Ericsson Mobile Communications AB.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxTmcEvent.java
+ *
+ *   BRIEF:          RDS-TMC traffic event held by the FM Rx service.
+ *
+ *   DESCRIPTION:    One ALERT-C event of the TMC service carried in group
+ *                   8A, as decoded from the raw RDS groups. Location codes
+ *                   refer to the location table given by getLocationTable().
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.fm;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * Traffic event returned by {@link FmReceiver#getTmcEvents} and carried by
+ * the TMC intents.
+ *
+ * @hide
+ */
+public final class FmRxTmcEvent implements Parcelable {
+
+    /* Flag bits */
+    public static final int FLAG_NEGATIVE_DIRECTION = 0x01;
+    public static final int FLAG_DIVERSION = 0x02;
+    public static final int FLAG_MULTI_GROUP = 0x04;
+
+    /** Location table number not announced yet */
+    public static final int NO_LOCATION_TABLE = -1;
+
+    private final int mPi;
+    private final int mLocationTable;
+    private final int mLocation;
+    private final int mEvent;
+    private final int mExtent;
+    private final int mFlags;
+    private final int mDuration;
+    private final long mExpiryTime;
+
+    public FmRxTmcEvent(int pi, int locationTable, int location, int event,
+            int extent, int flags, int duration, long expiryTime) {
+        mPi = pi;
+        mLocationTable = locationTable;
+        mLocation = location;
+        mEvent = event;
+        mExtent = extent;
+        mFlags = flags;
+        mDuration = duration;
+        mExpiryTime = expiryTime;
+    }
+
+    private FmRxTmcEvent(Parcel in) {
+        mPi = in.readInt();
+        mLocationTable = in.readInt();
+        mLocation = in.readInt();
+        mEvent = in.readInt();
+        mExtent = in.readInt();
+        mFlags = in.readInt();
+        mDuration = in.readInt();
+        mExpiryTime = in.readLong();
+    }
+
+    /** PI of the station the event was received from */
+    public int getPi() {
+        return mPi;
+    }
+
+    public int getLocationTable() {
+        return mLocationTable;
+    }
+
+    /** Primary location code */
+    public int getLocation() {
+        return mLocation;
+    }
+
+    /** ALERT-C event code */
+    public int getEvent() {
+        return mEvent;
+    }
+
+    /** Number of locations the event spreads over from the primary one */
+    public int getExtent() {
+        return mExtent;
+    }
+
+    /** Bit mask of the FLAG_* values */
+    public int getFlags() {
+        return mFlags;
+    }
+
+    /** Duration and persistence code, 0..7 */
+    public int getDuration() {
+        return mDuration;
+    }
+
+    /** System.currentTimeMillis() time the event expires if not repeated */
+    public long getExpiryTime() {
+        return mExpiryTime;
+    }
+
+    public String toString() {
+        return "FmRxTmcEvent pi=" + Integer.toHexString(mPi) + " ltn="
+                + mLocationTable + " location=" + mLocation + " event="
+                + mEvent + " extent=" + mExtent + " flags=" + mFlags
+                + " duration=" + mDuration + " expiry=" + mExpiryTime;
+    }
+
+    public int describeContents() {
+        return 0;
+    }
+
+    public void writeToParcel(Parcel out, int flags) {
+        out.writeInt(mPi);
+        out.writeInt(mLocationTable);
+        out.writeInt(mLocation);
+        out.writeInt(mEvent);
+        out.writeInt(mExtent);
+        out.writeInt(mFlags);
+        out.writeInt(mDuration);
+        out.writeLong(mExpiryTime);
+    }
+
+    public static final Parcelable.Creator<FmRxTmcEvent> CREATOR =
+            new Parcelable.Creator<FmRxTmcEvent>() {
+        public FmRxTmcEvent createFromParcel(Parcel in) {
+            return new FmRxTmcEvent(in);
+        }
+
+        public FmRxTmcEvent[] newArray(int size) {
+            return new FmRxTmcEvent[size];
+        }
+    };
+}
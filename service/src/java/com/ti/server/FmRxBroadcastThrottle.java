@@ -0,0 +1,205 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxBroadcastThrottle.java
+ *
+ *   BRIEF:          Change suppression and rate limiting of RDS broadcasts.
+ *
+ *   DESCRIPTION:    Each field (PS, RT, PI, PTY, mono/stereo) is broadcast
+ *                   only when its value differs from the one last delivered,
+ *                   and at most once per minimum interval. A value arriving
+ *                   inside the interval is held, replaced by newer values,
+ *                   and flushed when the interval expires, so the final value
+ *                   always reaches the receivers.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import android.content.Intent;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Arrays;
+
+final class FmRxBroadcastThrottle {
+
+	private static final String TAG = "FmRxBroadcastThrottle";
+	private static final boolean DBG = false;
+
+	/* Throttled fields */
+	static final int PS = 0;
+	static final int RT = 1;
+	static final int PI = 2;
+	static final int PTY = 3;
+	static final int MONO_STEREO = 4;
+	static final int NUM_FIELDS = 5;
+
+	private static final String[] FIELD_NAMES = { "PS", "RT", "PI", "PTY",
+			"MONO_STEREO" };
+
+	/* Default minimum time between two broadcasts of a field */
+	private static final long[] DEFAULT_MIN_INTERVAL_MS = { 250, 500, 250,
+			1000, 250 };
+
+	/** Delivers an event that passed the throttle */
+	interface Sender {
+		void send(Intent intent);
+	}
+
+	private final Sender mSender;
+	private final Handler mHandler;
+
+	private final long[] mMinIntervalMs = new long[NUM_FIELDS];
+	private final Object[] mLastKey = new Object[NUM_FIELDS];
+	private final long[] mLastDeliveredMs = new long[NUM_FIELDS];
+	private final Object[] mPendingKey = new Object[NUM_FIELDS];
+	private final Intent[] mPendingIntent = new Intent[NUM_FIELDS];
+	private final Runnable[] mFlush = new Runnable[NUM_FIELDS];
+
+	private final long[] mDelivered = new long[NUM_FIELDS];
+	private final long[] mSuppressed = new long[NUM_FIELDS];
+
+	FmRxBroadcastThrottle(Sender sender, Handler handler) {
+		mSender = sender;
+		mHandler = handler;
+
+		for (int i = 0; i < NUM_FIELDS; i++) {
+			final int field = i;
+
+			mMinIntervalMs[i] = DEFAULT_MIN_INTERVAL_MS[i];
+			mFlush[i] = new Runnable() {
+				public void run() {
+					flush(field);
+				}
+			};
+		}
+	}
+
+	/* 0 disables the rate limit of the field, leaving only the dedupe */
+	synchronized void setMinIntervalMs(int field, long ms) {
+		mMinIntervalMs[field] = ms;
+	}
+
+	/*
+	 * Broadcasts intent unless key equals the value last delivered for field.
+	 * Byte array keys are compared by content; the key and the extras of
+	 * intent are kept past the call, so neither may hold an upcall array.
+	 */
+	void submit(int field, Object key, Intent intent) {
+		long now = SystemClock.uptimeMillis();
+		long due;
+
+		synchronized (this) {
+			if (mPendingIntent[field] != null) {
+				/* Either replaced below or dropped as a no-op */
+				mSuppressed[field]++;
+				mPendingIntent[field] = null;
+				mPendingKey[field] = null;
+				mHandler.removeCallbacks(mFlush[field]);
+			}
+			if (keyEquals(mLastKey[field], key)) {
+				mSuppressed[field]++;
+				return;
+			}
+			due = mLastDeliveredMs[field] + mMinIntervalMs[field];
+			if (mLastKey[field] != null && now < due) {
+				mPendingKey[field] = key;
+				mPendingIntent[field] = intent;
+				mHandler.postAtTime(mFlush[field], due);
+				return;
+			}
+			markDelivered(field, key, now);
+		}
+		send(field, intent);
+	}
+
+	/* Forgets the delivered values, e.g. when the station changes */
+	synchronized void reset() {
+		for (int i = 0; i < NUM_FIELDS; i++) {
+			mLastKey[i] = null;
+			mPendingKey[i] = null;
+			mPendingIntent[i] = null;
+			mHandler.removeCallbacks(mFlush[i]);
+		}
+	}
+
+	synchronized long getDelivered(int field) {
+		return mDelivered[field];
+	}
+
+	synchronized long getSuppressed(int field) {
+		return mSuppressed[field];
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < NUM_FIELDS; i++) {
+			if (i > 0) {
+				sb.append(' ');
+			}
+			sb.append(FIELD_NAMES[i]).append(' ').append(mDelivered[i])
+					.append('/').append(mSuppressed[i]);
+		}
+		return sb.append(" (delivered/suppressed)").toString();
+	}
+
+	private void flush(int field) {
+		Intent intent;
+
+		synchronized (this) {
+			intent = mPendingIntent[field];
+			if (intent == null) {
+				return;
+			}
+			markDelivered(field, mPendingKey[field], SystemClock
+					.uptimeMillis());
+			mPendingIntent[field] = null;
+			mPendingKey[field] = null;
+		}
+		send(field, intent);
+	}
+
+	private void markDelivered(int field, Object key, long now) {
+		mLastKey[field] = key;
+		mLastDeliveredMs[field] = now;
+		mDelivered[field]++;
+	}
+
+	private void send(int field, Intent intent) {
+		if (DBG)
+			Log.d(TAG, "sending " + FIELD_NAMES[field] + " intent "
+					+ intent.getAction());
+		mSender.send(intent);
+	}
+
+	private static boolean keyEquals(Object a, Object b) {
+		if (a == null || b == null) {
+			return a == b;
+		}
+		if (a instanceof byte[] && b instanceof byte[]) {
+			return Arrays.equals((byte[]) a, (byte[]) b);
+		}
+		return a.equals(b);
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxConfigCache.java
+ *
+ *   BRIEF:          Chip configuration as last confirmed by fmRxCmdDone.
+ *
+ *   DESCRIPTION:    Set commands record the requested value when issued and
+ *                   commit it when their completion reports success. Get
+ *                   completions refresh the value read from the chip. The
+ *                   whole cache is dropped on enable/disable, with the sets
+ *                   in flight, and a band change drops every other value.
+ *                   The late completion of a set given up on, or issued
+ *                   before the cache was dropped, leaves its entry unknown.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import java.io.PrintWriter;
+
+import com.ti.jfm.core.JFmRxCommand;
+import com.ti.jfm.core.JFmRxStatus;
+
+final class FmRxConfigCache {
+
+	/* Cached configuration entries */
+	static final int BAND = 0;
+	static final int MONO_STEREO_MODE = 1;
+	static final int MUTE_MODE = 2;
+	static final int RF_DEPENDENT_MUTE_MODE = 3;
+	static final int RSSI_THRESHOLD = 4;
+	static final int DEEMPHASIS_FILTER = 5;
+	static final int VOLUME = 6;
+	static final int CHANNEL_SPACING = 7;
+	static final int RDS_SYSTEM = 8;
+	static final int RDS_GROUP_MASK = 9;
+	static final int RDS_AF_SWITCH_MODE = 10;
+	/* Not readable from the chip, only known from enable/disable RDS */
+	static final int RDS_ENABLED = 11;
+	static final int NUM_READABLE_ENTRIES = 11;
+	static final int NUM_ENTRIES = 12;
+
+	private static final String[] NAMES = { "band", "monoStereoMode",
+			"muteMode", "rfDependentMuteMode", "rssiThreshold",
+			"deemphasisFilter", "volume", "channelSpacing", "rdsSystem",
+			"rdsGroupMask", "rdsAfSwitchMode", "rdsEnabled" };
+
+	/** Returned by get() for an entry that is not known */
+	static final long NONE = Long.MIN_VALUE;
+
+	private static final int[] SET_CMD_ENTRY = new int[JFmRxCommand.LAST_API_CMD + 1];
+	private static final int[] GET_CMD_ENTRY = new int[JFmRxCommand.LAST_API_CMD + 1];
+
+	static {
+		for (int i = 0; i <= JFmRxCommand.LAST_API_CMD; i++) {
+			SET_CMD_ENTRY[i] = -1;
+			GET_CMD_ENTRY[i] = -1;
+		}
+		map(JFmRxCommand.CMD_SET_BAND, JFmRxCommand.CMD_GET_BAND, BAND);
+		map(JFmRxCommand.CMD_SET_MONO_STEREO_MODE,
+				JFmRxCommand.CMD_GET_MONO_STEREO_MODE, MONO_STEREO_MODE);
+		map(JFmRxCommand.CMD_SET_MUTE_MODE, JFmRxCommand.CMD_GET_MUTE_MODE,
+				MUTE_MODE);
+		map(JFmRxCommand.CMD_SET_RF_DEPENDENT_MUTE_MODE,
+				JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE,
+				RF_DEPENDENT_MUTE_MODE);
+		map(JFmRxCommand.CMD_SET_RSSI_THRESHOLD,
+				JFmRxCommand.CMD_GET_RSSI_THRESHOLD, RSSI_THRESHOLD);
+		map(JFmRxCommand.CMD_SET_DEEMPHASIS_FILTER,
+				JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER, DEEMPHASIS_FILTER);
+		map(JFmRxCommand.CMD_SET_VOLUME, JFmRxCommand.CMD_GET_VOLUME, VOLUME);
+		map(JFmRxCommand.CMD_SET_CHANNEL_SPACING,
+				JFmRxCommand.CMD_GET_CHANNEL_SPACING, CHANNEL_SPACING);
+		map(JFmRxCommand.CMD_SET_RDS_SYSTEM, JFmRxCommand.CMD_GET_RDS_SYSTEM,
+				RDS_SYSTEM);
+		map(JFmRxCommand.CMD_SET_RDS_GROUP_MASK,
+				JFmRxCommand.CMD_GET_RDS_GROUP_MASK, RDS_GROUP_MASK);
+		map(JFmRxCommand.CMD_SET_RDS_AF_SWITCH_MODE,
+				JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE, RDS_AF_SWITCH_MODE);
+		SET_CMD_ENTRY[JFmRxCommand.CMD_ENABLE_RDS] = RDS_ENABLED;
+		SET_CMD_ENTRY[JFmRxCommand.CMD_DISABLE_RDS] = RDS_ENABLED;
+	}
+
+	private static void map(int setCmd, int getCmd, int entry) {
+		SET_CMD_ENTRY[setCmd] = entry;
+		GET_CMD_ENTRY[getCmd] = entry;
+	}
+
+	private final long[] mValues = new long[NUM_ENTRIES];
+	private final boolean[] mValid = new boolean[NUM_ENTRIES];
+	private final long[] mRequested = new long[NUM_ENTRIES];
+	private final int[] mSetsInFlight = new int[NUM_ENTRIES];
+	/* Sets given up on whose completion may still arrive */
+	private final int[] mSetsAbandoned = new int[NUM_ENTRIES];
+
+	private long mHits = 0;
+	private long mMisses = 0;
+
+	/** Returns the cached value of entry, or NONE if it must be read */
+	synchronized long get(int entry) {
+		if (mValid[entry]) {
+			mHits++;
+			return mValues[entry];
+		}
+		mMisses++;
+		return NONE;
+	}
+
+	/*
+	 * Called right before a set command is issued. The entry is unknown until
+	 * the completion arrives.
+	 */
+	synchronized void onSetIssued(int entry, long value) {
+		mRequested[entry] = value;
+		mSetsInFlight[entry]++;
+		mValid[entry] = false;
+	}
+
+	/* Called when the set command could not be issued */
+	synchronized void onSetRejected(int entry) {
+		if (mSetsInFlight[entry] > 0) {
+			mSetsInFlight[entry]--;
+		}
+	}
+
+	/*
+	 * Called when the caller stopped waiting for a command, on timeout. A set
+	 * no longer counts as in flight; its completion, if it still arrives, is
+	 * the next one of the entry since the chip completes them in order.
+	 */
+	synchronized void onCmdAbandoned(int command) {
+		int entry;
+
+		if (command < 0 || command > JFmRxCommand.LAST_API_CMD) {
+			return;
+		}
+		entry = SET_CMD_ENTRY[command];
+		if (entry >= 0 && mSetsInFlight[entry] > 0) {
+			mSetsInFlight[entry]--;
+			mSetsAbandoned[entry]++;
+			mValid[entry] = false;
+		}
+	}
+
+	/* Feeds every fmRxCmdDone completion */
+	synchronized void onCmdDone(JFmRxStatus status, int command, long value) {
+		int entry;
+
+		switch (command) {
+		case JFmRxCommand.CMD_ENABLE:
+		case JFmRxCommand.CMD_DISABLE:
+			invalidateAll();
+			return;
+		}
+
+		if (command < 0 || command > JFmRxCommand.LAST_API_CMD) {
+			return;
+		}
+
+		entry = SET_CMD_ENTRY[command];
+		if (entry >= 0) {
+			/* The requested value of an abandoned or dropped set is lost */
+			boolean lost = false;
+
+			if (mSetsAbandoned[entry] > 0) {
+				mSetsAbandoned[entry]--;
+				lost = true;
+			} else if (mSetsInFlight[entry] > 0) {
+				mSetsInFlight[entry]--;
+			} else {
+				lost = true;
+			}
+			if (status != JFmRxStatus.SUCCESS) {
+				mValid[entry] = false;
+				return;
+			}
+			if (entry == BAND) {
+				/*
+				 * The chip reloads its band dependent defaults. The sets in
+				 * flight are still tracked, they complete after the band.
+				 */
+				for (int i = 0; i < NUM_ENTRIES; i++) {
+					mValid[i] = false;
+				}
+			}
+			/* With sets still queued the final value is not settled yet */
+			if (!lost && mSetsInFlight[entry] == 0) {
+				mValues[entry] = mRequested[entry];
+				mValid[entry] = true;
+			} else if (lost) {
+				mValid[entry] = false;
+			}
+			return;
+		}
+
+		entry = GET_CMD_ENTRY[command];
+		if (entry >= 0 && status == JFmRxStatus.SUCCESS
+				&& mSetsInFlight[entry] == 0 && mSetsAbandoned[entry] == 0) {
+			mValues[entry] = value;
+			mValid[entry] = true;
+		}
+	}
+
+	/* Drops every entry and forgets the sets in flight */
+	synchronized void invalidateAll() {
+		for (int i = 0; i < NUM_ENTRIES; i++) {
+			mValid[i] = false;
+			mRequested[i] = 0;
+			mSetsInFlight[i] = 0;
+			mSetsAbandoned[i] = 0;
+		}
+	}
+
+	/* True when every entry that can be read from the chip is known */
+	synchronized boolean isComplete() {
+		for (int i = 0; i < NUM_READABLE_ENTRIES; i++) {
+			if (!mValid[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	synchronized long getHits() {
+		return mHits;
+	}
+
+	synchronized long getMisses() {
+		return mMisses;
+	}
+
+	/* One line per entry, without counting as a hit or miss */
+	synchronized void dump(PrintWriter pw, String prefix) {
+		pw.println(prefix + "hits " + mHits + ", misses " + mMisses);
+		for (int i = 0; i < NUM_ENTRIES; i++) {
+			pw.println(prefix + NAMES[i] + ": "
+					+ (mValid[i] ? Long.toString(mValues[i]) : "unknown")
+					+ (mSetsInFlight[i] > 0 ? " (" + mSetsInFlight[i]
+							+ " set in flight, " + mRequested[i] + ")" : "")
+					+ (mSetsAbandoned[i] > 0 ? " (" + mSetsAbandoned[i]
+							+ " set abandoned)" : ""));
+		}
+	}
+}
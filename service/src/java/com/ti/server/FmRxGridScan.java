@@ -0,0 +1,615 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxGridScan.java
+ *
+ *   BRIEF:          Software band scan over the channel grid.
+ *
+ *   DESCRIPTION:    Tunes to every channel of the grid and reads its RSSI
+ *                   after a short dwell. Channels clearly above or below the
+ *                   RSSI threshold are decided on that single read; the ones
+ *                   close to it are read again, averaged and checked with
+ *                   isValidChannel. A station can also be required to send
+ *                   its PI. A stopped scan can be resumed from the channel
+ *                   it stopped at.
+ *
+ *                   With a coarse step, a first pass samples the band at
+ *                   that step with a single read each, and the second pass
+ *                   only scans the channels within one coarse step of the
+ *                   samples that may hold a station. A weak station half
+ *                   way between two samples is heard on neither and is
+ *                   missed, stronger ones give the same stations as the
+ *                   scan of the whole grid. Neighbouring channels found for
+ *                   the same station can be merged into the one with the
+ *                   highest RSSI.
+ *
+ *                   Commands are chained from their completions on the
+ *                   handler, no thread blocks while the scan runs.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import android.os.Handler;
+import android.util.Log;
+
+import java.util.Arrays;
+
+import com.ti.fm.FmRxScanOptions;
+import com.ti.jfm.core.JFmRx;
+import com.ti.jfm.core.JFmRxAsync;
+import com.ti.jfm.core.JFmRxCommand;
+import com.ti.jfm.core.JFmRxFuture;
+import com.ti.jfm.core.JFmRxStatus;
+
+final class FmRxGridScan implements FmRxScanEngine, JFmRxFuture.Listener {
+
+	private static final String TAG = "FmRxGridScan";
+	private static final boolean DBG = false;
+
+	/* No chip command takes longer than this */
+	private static final long STEP_TIMEOUT_MS = 4000;
+
+	private static final int MAX_CHANNELS = 128;
+	private static final int NONE = -1;
+
+	private static final int PHASE_GRID = 0;
+	private static final int PHASE_COARSE = 1;
+	private static final int PHASE_FINE = 2;
+
+	private final Handler mHandler;
+	private final JFmRxAsync mJFmRxAsync;
+	private final FmRxScanListener mListener;
+
+	private final Runnable mTimeout = new Runnable() {
+		public void run() {
+			onTimeout();
+		}
+	};
+
+	private final Runnable mReadRssi = new Runnable() {
+		public void run() {
+			readRssi();
+		}
+	};
+
+	private boolean mRunning = false;
+	private boolean mStopRequested = false;
+	private JFmRxFuture mStep = null;
+	private boolean mWaitingPi = false;
+
+	private FmRxScanOptions mOptions = new FmRxScanOptions();
+	private int mFirstFreq = NONE;
+	private int mLastFreq = NONE;
+	private int mStepKhz = 0;
+	private int mCoarseStepKhz = 0;
+	private int mRssiThreshold;
+	private int mPhase = PHASE_GRID;
+
+	/* Channel being checked */
+	private int mFreq = NONE;
+	private int mReads;
+	private int mRssiSum;
+	private int mChannelPi;
+	private long mChannelStartMs;
+
+	/* Coarse pass: RSSI of each sample, then the sample being refined */
+	private int[] mCoarseRssi;
+	private int mPeak;
+	private int mWindowEnd;
+	/* Channels already decided by the fine pass */
+	private boolean[] mVisited;
+
+	private final int[] mChannels = new int[MAX_CHANNELS];
+	private final int[] mRssi = new int[MAX_CHANNELS];
+	private final int[] mPi = new int[MAX_CHANNELS];
+	private int mCount = 0;
+	private int mProgress = 0;
+
+	/* Per channel timing, in ms from the tune to the decision */
+	private int mChannelTimeMin;
+	private int mChannelTimeMax;
+	private long mChannelTimeSum;
+	private int mChecked;
+	private int mConfirmed;
+	private int mValidated;
+	private int mPiTimeouts;
+	private int mSamples;
+	private int mMerged;
+	private long mStartTimeMs;
+
+	FmRxGridScan(Handler handler, JFmRxAsync jFmRxAsync,
+			FmRxScanListener listener) {
+		mHandler = handler;
+		mJFmRxAsync = jFmRxAsync;
+		mListener = listener;
+	}
+
+	/*
+	 * Scans [firstFreq, lastFreq] in steps of stepKhz. With
+	 * options.getResume(), a scan of the same grid that was stopped goes on
+	 * from where it stopped. Returns false, without calling the listener, if
+	 * the scan did not start.
+	 */
+	synchronized boolean start(int firstFreq, int lastFreq, int stepKhz,
+			int rssiThreshold, FmRxScanOptions options) {
+		int coarseStepKhz = options.getCoarseStepKhz();
+		JFmRxFuture future;
+
+		if (mRunning || stepKhz <= 0) {
+			return false;
+		}
+		if (coarseStepKhz != 0
+				&& (coarseStepKhz <= stepKhz || coarseStepKhz % stepKhz != 0)) {
+			Log.w(TAG, "coarse step " + coarseStepKhz
+					+ " not a multiple of the spacing " + stepKhz + ", ignored");
+			coarseStepKhz = 0;
+		}
+		boolean resume = options.getResume() && mFreq != NONE
+				&& firstFreq == mFirstFreq && lastFreq == mLastFreq
+				&& stepKhz == mStepKhz && coarseStepKhz == mCoarseStepKhz;
+
+		mOptions = options;
+		mRssiThreshold = rssiThreshold;
+		mRunning = true;
+		mStopRequested = false;
+		if (!resume) {
+			mFirstFreq = firstFreq;
+			mLastFreq = lastFreq;
+			mStepKhz = stepKhz;
+			mCoarseStepKhz = coarseStepKhz;
+			mFreq = firstFreq;
+			if (coarseStepKhz != 0) {
+				mPhase = PHASE_COARSE;
+				mCoarseRssi = new int[(lastFreq - firstFreq) / coarseStepKhz + 1];
+				mVisited = new boolean[(lastFreq - firstFreq) / stepKhz + 1];
+			} else {
+				mPhase = PHASE_GRID;
+				mCoarseRssi = null;
+				mVisited = null;
+			}
+			mCount = 0;
+			mProgress = 0;
+			mChannelTimeMin = Integer.MAX_VALUE;
+			mChannelTimeMax = 0;
+			mChannelTimeSum = 0;
+			mChecked = 0;
+			mConfirmed = 0;
+			mValidated = 0;
+			mPiTimeouts = 0;
+			mSamples = 0;
+			mMerged = 0;
+		}
+		mStartTimeMs = System.currentTimeMillis();
+		Log.i(TAG, (resume ? "resuming at " : "starting at ") + mFreq);
+		/* A scan that did not start is only reported by the return value */
+		future = tuneCommand();
+		if (future.getIssueStatus() != JFmRxStatus.PENDING) {
+			Log.e(TAG, "start: tune not issued, status "
+					+ future.getIssueStatus());
+			mRunning = false;
+			return false;
+		}
+		issue(future);
+		return true;
+	}
+
+	public synchronized void stop() {
+		if (!mRunning) {
+			return;
+		}
+		mStopRequested = true;
+		if (mWaitingPi) {
+			/* Nothing in flight, the channel is checked again on resume */
+			finish(JFmRxStatus.SEEK_STOPPED);
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return mRunning;
+	}
+
+	public synchronized int getProgress() {
+		return mProgress;
+	}
+
+	/*
+	 * PI received while tuned to freq. Called on the JNI callback thread,
+	 * the scan goes on on the handler like for command completions.
+	 */
+	void onPi(final int freq, final int pi) {
+		mHandler.post(new Runnable() {
+			public void run() {
+				onChannelPi(freq, pi);
+			}
+		});
+	}
+
+	private synchronized void onChannelPi(int freq, int pi) {
+		/* A PI of the previous channel may still be on its way */
+		if (!mRunning || freq != mFreq) {
+			return;
+		}
+		mChannelPi = pi;
+		if (mWaitingPi) {
+			mWaitingPi = false;
+			mHandler.removeCallbacks(mTimeout);
+			found();
+		}
+	}
+
+	public synchronized String toString() {
+		return "samples=" + mSamples + " channels=" + mChecked
+				+ " confirmed=" + mConfirmed
+				+ " validated=" + mValidated + " piTimeouts=" + mPiTimeouts
+				+ " found=" + mCount + " merged=" + mMerged
+				+ " channelMs(min/avg/max)="
+				+ (mChecked > 0 ? mChannelTimeMin : 0) + "/"
+				+ (mChecked > 0 ? mChannelTimeSum / mChecked : 0) + "/"
+				+ mChannelTimeMax;
+	}
+
+	/* Completions arrive on the JNI thread, the scan goes on on the handler */
+	public void onComplete(final JFmRxFuture future) {
+		mHandler.post(new Runnable() {
+			public void run() {
+				onStepDone(future);
+			}
+		});
+	}
+
+	private synchronized void onStepDone(JFmRxFuture future) {
+		JFmRxStatus status = future.getStatus();
+		int rssi;
+
+		if (future != mStep) {
+			return;
+		}
+		mHandler.removeCallbacks(mTimeout);
+		mStep = null;
+		if (DBG)
+			Log.d(TAG, mFreq + ": command " + future.getCommand() + " "
+					+ status + " " + future.getValue());
+
+		if (status != JFmRxStatus.SUCCESS) {
+			finish(status);
+			return;
+		}
+
+		switch (future.getCommand()) {
+		case JFmRxCommand.CMD_TUNE:
+			if (mStopRequested) {
+				finish(JFmRxStatus.SEEK_STOPPED);
+			} else {
+				mHandler.postDelayed(mReadRssi, mOptions.getDwellMs());
+			}
+			break;
+
+		case JFmRxCommand.CMD_GET_RSSI:
+			rssi = (int) future.getValue();
+			if (mPhase == PHASE_COARSE) {
+				mCoarseRssi[(mFreq - mFirstFreq) / mCoarseStepKhz] = rssi;
+				mSamples++;
+				nextSample();
+				break;
+			}
+			mReads++;
+			mRssiSum += rssi;
+			if (mReads == 1) {
+				if (rssi < mRssiThreshold - mOptions.getRssiMargin()) {
+					next();
+				} else if (rssi >= mRssiThreshold + mOptions.getRssiMargin()) {
+					candidate();
+				} else {
+					/* Close to the threshold, listen longer */
+					mConfirmed++;
+					confirm();
+				}
+			} else if (mReads <= mOptions.getConfirmReads()) {
+				confirm();
+			} else if (mRssiSum / mReads >= mRssiThreshold
+					- mOptions.getRssiMargin()) {
+				mValidated++;
+				issue(mJFmRxAsync.isValidChannel());
+			} else {
+				next();
+			}
+			break;
+
+		case JFmRxCommand.CMD_IS_CHANNEL_VALID:
+			if (future.getValue() > 0) {
+				candidate();
+			} else {
+				next();
+			}
+			break;
+
+		default:
+			finish(JFmRxStatus.FAILED);
+			break;
+		}
+	}
+
+	private void tune() {
+		issue(tuneCommand());
+	}
+
+	/* Starts checking the channel at mFreq */
+	private JFmRxFuture tuneCommand() {
+		mReads = 0;
+		mRssiSum = 0;
+		mChannelPi = NONE;
+		mChannelStartMs = System.currentTimeMillis();
+		return mJFmRxAsync.tune(new JFmRx.JFmRxFreq(mFreq));
+	}
+
+	private synchronized void readRssi() {
+		if (!mRunning) {
+			return;
+		}
+		if (mStopRequested) {
+			finish(JFmRxStatus.SEEK_STOPPED);
+			return;
+		}
+		issue(mJFmRxAsync.getRssi());
+	}
+
+	private void confirm() {
+		if (mStopRequested) {
+			finish(JFmRxStatus.SEEK_STOPPED);
+			return;
+		}
+		mHandler.postDelayed(mReadRssi, mOptions.getConfirmDwellMs());
+	}
+
+	/* The RSSI says station, a PI may still be needed */
+	private void candidate() {
+		if (mOptions.getPiTimeoutMs() <= 0 || mChannelPi != NONE) {
+			found();
+			return;
+		}
+		mWaitingPi = true;
+		mHandler.postDelayed(mTimeout, mOptions.getPiTimeoutMs());
+	}
+
+	private void found() {
+		int rssi = mRssiSum / Math.max(1, mReads);
+
+		if (mCount < MAX_CHANNELS) {
+			mChannels[mCount] = mFreq;
+			mRssi[mCount] = rssi;
+			mPi[mCount] = mChannelPi;
+		}
+		if (!mOptions.getMergeAdjacent()) {
+			mListener.onChannelFound(mFreq, rssi, mCount);
+		}
+		mCount++;
+		next();
+	}
+
+	/* Done with the current channel, moves to the next one */
+	private void next() {
+		int time = (int) (System.currentTimeMillis() - mChannelStartMs);
+
+		mChecked++;
+		mChannelTimeSum += time;
+		mChannelTimeMin = Math.min(mChannelTimeMin, time);
+		mChannelTimeMax = Math.max(mChannelTimeMax, time);
+
+		if (mPhase == PHASE_FINE) {
+			mVisited[(mFreq - mFirstFreq) / mStepKhz] = true;
+			mFreq += mStepKhz;
+			nextInWindow();
+			return;
+		}
+		mFreq += mStepKhz;
+		progress();
+		if (mFreq > mLastFreq) {
+			finish(JFmRxStatus.SUCCESS);
+		} else if (mStopRequested) {
+			finish(JFmRxStatus.SEEK_STOPPED);
+		} else {
+			tune();
+		}
+	}
+
+	/* Coarse pass: moves to the next sample, then to the fine pass */
+	private void nextSample() {
+		mFreq += mCoarseStepKhz;
+		if (mFreq > mLastFreq) {
+			mPhase = PHASE_FINE;
+			mPeak = -1;
+			mWindowEnd = NONE;
+			mFreq = mFirstFreq;
+			nextInWindow();
+			return;
+		}
+		progress();
+		if (mStopRequested) {
+			finish(JFmRxStatus.SEEK_STOPPED);
+		} else {
+			tune();
+		}
+	}
+
+	/*
+	 * Fine pass: tunes to the next channel of the current window not decided
+	 * yet, moving on to the window of the next sample when done.
+	 */
+	private void nextInWindow() {
+		int samples = mCoarseRssi.length;
+
+		for (;;) {
+			while (mWindowEnd != NONE && mFreq <= mWindowEnd
+					&& mVisited[(mFreq - mFirstFreq) / mStepKhz]) {
+				mFreq += mStepKhz;
+			}
+			if (mWindowEnd != NONE && mFreq <= mWindowEnd) {
+				break;
+			}
+			/*
+			 * A station between two samples is heard off channel by both, so
+			 * a sample qualifies with twice the margin below the threshold.
+			 */
+			do {
+				mPeak++;
+			} while (mPeak < samples
+					&& mCoarseRssi[mPeak] < mRssiThreshold - 2
+					* mOptions.getRssiMargin());
+			if (mPeak >= samples) {
+				progress();
+				finish(JFmRxStatus.SUCCESS);
+				return;
+			}
+			mFreq = Math.max(mFirstFreq, mFirstFreq + mPeak * mCoarseStepKhz
+					- mCoarseStepKhz + mStepKhz);
+			mWindowEnd = Math.min(mLastFreq, mFirstFreq + mPeak
+					* mCoarseStepKhz + mCoarseStepKhz - mStepKhz);
+		}
+		progress();
+		if (mStopRequested) {
+			finish(JFmRxStatus.SEEK_STOPPED);
+		} else {
+			tune();
+		}
+	}
+
+	/*
+	 * Copies the stations found into channels and rssi, keeping one channel
+	 * out of each run of neighbouring channels whose PIs do not differ: the
+	 * one with the highest RSSI. Returns the number of stations copied.
+	 */
+	private int merge(int count, int[] channels, int[] rssi) {
+		int kept = 0;
+		int runEnd = NONE;
+		int runPi = NONE;
+
+		for (int i = 0; i < count; i++) {
+			if (kept > 0 && mChannels[i] - runEnd == mStepKhz
+					&& (mPi[i] == NONE || runPi == NONE || mPi[i] == runPi)) {
+				if (mRssi[i] > rssi[kept - 1]) {
+					channels[kept - 1] = mChannels[i];
+					rssi[kept - 1] = mRssi[i];
+				}
+				if (runPi == NONE) {
+					runPi = mPi[i];
+				}
+				runEnd = mChannels[i];
+				continue;
+			}
+			channels[kept] = mChannels[i];
+			rssi[kept] = mRssi[i];
+			runEnd = mChannels[i];
+			runPi = mPi[i];
+			kept++;
+		}
+		return kept;
+	}
+
+	/* The coarse pass counts for the first half of the progress */
+	private void progress() {
+		int span = Math.max(1, mLastFreq - mFirstFreq);
+		int done = Math.min(mFreq, mLastFreq) - mFirstFreq;
+		int percent;
+
+		switch (mPhase) {
+		case PHASE_COARSE:
+			percent = (int) (done * 50L / span);
+			break;
+		case PHASE_FINE:
+			percent = mPeak >= mCoarseRssi.length ? 100
+					: 50 + (int) (done * 50L / span);
+			break;
+		default:
+			percent = (int) (done * 100L / span);
+			break;
+		}
+		if (percent > mProgress) {
+			mProgress = percent;
+			mListener.onScanProgress(percent, Math.min(mFreq, mLastFreq));
+		}
+	}
+
+	private synchronized void onTimeout() {
+		if (mWaitingPi) {
+			mWaitingPi = false;
+			mPiTimeouts++;
+			next();
+			return;
+		}
+		Log.e(TAG, "no completion for " + mStep);
+		finish(JFmRxStatus.FAILED);
+	}
+
+	private void issue(JFmRxFuture future) {
+		JFmRxStatus status = future.getIssueStatus();
+
+		if (status != JFmRxStatus.PENDING) {
+			Log.e(TAG, "command " + future.getCommand()
+					+ " not issued, status " + status);
+			finish(status);
+			return;
+		}
+		mStep = future;
+		mHandler.postDelayed(mTimeout, STEP_TIMEOUT_MS);
+		future.setListener(this);
+	}
+
+	private synchronized void finish(JFmRxStatus status) {
+		int count = Math.min(mCount, MAX_CHANNELS);
+		int[] channels = new int[count];
+		int[] rssi = new int[count];
+
+		if (!mRunning) {
+			return;
+		}
+		mHandler.removeCallbacks(mTimeout);
+		mHandler.removeCallbacks(mReadRssi);
+		/* The step may be a read shared with a binder caller */
+		if (mStep != null) {
+			mStep.removeListener(this);
+			mStep.release();
+			mStep = null;
+		}
+		mWaitingPi = false;
+		mRunning = false;
+		if (status == JFmRxStatus.SUCCESS) {
+			/* Nothing left to resume */
+			mFreq = NONE;
+		}
+		if (mOptions.getMergeAdjacent()) {
+			int merged = merge(count, channels, rssi);
+
+			mMerged = count - merged;
+			count = merged;
+			channels = Arrays.copyOf(channels, count);
+			rssi = Arrays.copyOf(rssi, count);
+			for (int i = 0; i < count; i++) {
+				mListener.onChannelFound(channels[i], rssi[i], i);
+			}
+		} else {
+			System.arraycopy(mChannels, 0, channels, 0, count);
+			System.arraycopy(mRssi, 0, rssi, 0, count);
+		}
+		Log.i(TAG, "scan " + status + " in "
+				+ (System.currentTimeMillis() - mStartTimeMs) + " ms: " + this);
+		mListener.onScanDone(status, channels, rssi, count);
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxScanCache.java
+ *
+ *   BRIEF:          Persistent results of the complete scan.
+ *
+ *   DESCRIPTION:    Keeps the channels found by the last complete scan of
+ *                   each band and channel spacing, with the RSSI, PI and PS
+ *                   last seen on each channel while tuned to it. Results are
+ *                   stored in shared preferences so they survive a restart;
+ *                   a scan is saved right away, channel updates when flush()
+ *                   is called.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import com.ti.fm.FmReceiverIntent;
+
+import java.util.HashMap;
+
+final class FmRxScanCache {
+
+	private static final String TAG = "FmRxScanCache";
+
+	/** RSSI or PI not seen yet */
+	static final int UNKNOWN = -1;
+
+	/* Results of one band and spacing */
+	private static final class Scan {
+		long scanTime;
+		int count;
+		int[] frequency;
+		int[] rssi;
+		int[] pi;
+		String[] ps;
+		long[] seen;
+
+		Scan(int count) {
+			this.count = count;
+			frequency = new int[count];
+			rssi = new int[count];
+			pi = new int[count];
+			ps = new String[count];
+			seen = new long[count];
+		}
+
+		int indexOf(int freq) {
+			for (int i = 0; i < count; i++) {
+				if (frequency[i] == freq) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private final SharedPreferences mPrefs;
+	private final HashMap<String, Scan> mScans = new HashMap<String, Scan>();
+	private boolean mDirty = false;
+
+	FmRxScanCache(SharedPreferences prefs) {
+		mPrefs = prefs;
+	}
+
+	/*
+	 * Replaces the channels of band and spacing with a new scan. What is
+	 * known of the channels found again is kept.
+	 */
+	synchronized void onScanDone(int band, int spacing, int[] frequencies,
+			int count, long now) {
+		String key = key(band, spacing);
+		Scan old = get(key);
+		Scan scan = new Scan(count);
+		int index;
+
+		scan.scanTime = now;
+		for (int i = 0; i < count; i++) {
+			scan.frequency[i] = frequencies[i];
+			index = old != null ? old.indexOf(frequencies[i]) : -1;
+			if (index >= 0) {
+				scan.rssi[i] = old.rssi[index];
+				scan.pi[i] = old.pi[index];
+				scan.ps[i] = old.ps[index];
+				scan.seen[i] = old.seen[index];
+			} else {
+				scan.rssi[i] = UNKNOWN;
+				scan.pi[i] = UNKNOWN;
+				scan.ps[i] = "";
+				scan.seen[i] = now;
+			}
+		}
+		mScans.put(key, scan);
+		save(key, scan);
+	}
+
+	/* Updates a channel of the last scan, ignored if it was not found */
+	synchronized void onRssi(int band, int spacing, int freq, int rssi,
+			long now) {
+		Scan scan = get(key(band, spacing));
+		int index = scan != null ? scan.indexOf(freq) : -1;
+
+		if (index >= 0) {
+			scan.rssi[index] = rssi;
+			scan.seen[index] = now;
+			mDirty = true;
+		}
+	}
+
+	synchronized void onPi(int band, int spacing, int freq, int pi, long now) {
+		Scan scan = get(key(band, spacing));
+		int index = scan != null ? scan.indexOf(freq) : -1;
+
+		if (index >= 0) {
+			scan.pi[index] = pi;
+			scan.seen[index] = now;
+			mDirty = true;
+		}
+	}
+
+	synchronized void onPs(int band, int spacing, int freq, String ps,
+			long now) {
+		Scan scan = get(key(band, spacing));
+		int index = scan != null ? scan.indexOf(freq) : -1;
+
+		if (index >= 0 && ps != null) {
+			scan.ps[index] = ps;
+			scan.seen[index] = now;
+			mDirty = true;
+		}
+	}
+
+	/* Time of the last scan of band and spacing, 0 if never scanned */
+	synchronized long getScanTime(int band, int spacing) {
+		Scan scan = get(key(band, spacing));
+
+		return scan != null ? scan.scanTime : 0;
+	}
+
+	/*
+	 * Fills b the way COMPLETE_SCAN_DONE_ACTION is, plus what is known of
+	 * each channel. Returns false if band and spacing were never scanned.
+	 */
+	synchronized boolean fill(int band, int spacing, Bundle b) {
+		Scan scan = get(key(band, spacing));
+
+		if (scan == null) {
+			b.putInt(FmReceiverIntent.SCAN_LIST_COUNT, 0);
+			return false;
+		}
+		b.putIntArray(FmReceiverIntent.SCAN_LIST, scan.frequency.clone());
+		b.putInt(FmReceiverIntent.SCAN_LIST_COUNT, scan.count);
+		b.putIntArray(FmReceiverIntent.SCAN_RSSI_LIST, scan.rssi.clone());
+		b.putIntArray(FmReceiverIntent.SCAN_PI_LIST, scan.pi.clone());
+		b.putStringArray(FmReceiverIntent.SCAN_PS_LIST, scan.ps.clone());
+		b.putLongArray(FmReceiverIntent.SCAN_SEEN_LIST, scan.seen.clone());
+		b.putLong(FmReceiverIntent.SCAN_TIME, scan.scanTime);
+		return true;
+	}
+
+	/* Saves the channel updates */
+	synchronized void flush() {
+		if (!mDirty) {
+			return;
+		}
+		for (String key : mScans.keySet()) {
+			save(key, mScans.get(key));
+		}
+		mDirty = false;
+	}
+
+	private static String key(int band, int spacing) {
+		return "scan_" + band + "_" + spacing;
+	}
+
+	/* Loads the scan from the preferences on first use */
+	private Scan get(String key) {
+		Scan scan = mScans.get(key);
+
+		if (scan == null && !mScans.containsKey(key)) {
+			scan = load(key);
+			mScans.put(key, scan);
+		}
+		return scan;
+	}
+
+	/*
+	 * Format: scanTime;freq,rssi,pi,seen,ps;... with the PS chars as four
+	 * hex digits each.
+	 */
+	private void save(String key, Scan scan) {
+		StringBuilder sb = new StringBuilder(32 + scan.count * 64);
+
+		sb.append(scan.scanTime);
+		for (int i = 0; i < scan.count; i++) {
+			sb.append(';').append(scan.frequency[i]).append(',').append(
+					scan.rssi[i]).append(',').append(scan.pi[i]).append(',')
+					.append(scan.seen[i]).append(',');
+			for (int c = 0; c < scan.ps[i].length(); c++) {
+				String hex = Integer.toHexString(scan.ps[i].charAt(c) | 0x10000);
+				sb.append(hex, 1, 5);
+			}
+		}
+		/* Written in the background, save() runs on the callback thread */
+		mPrefs.edit().putString(key, sb.toString()).apply();
+	}
+
+	private Scan load(String key) {
+		String value = mPrefs.getString(key, null);
+		String[] records;
+		String[] fields;
+		Scan scan;
+
+		if (value == null) {
+			return null;
+		}
+		try {
+			records = value.split(";");
+			scan = new Scan(records.length - 1);
+			scan.scanTime = Long.parseLong(records[0]);
+			for (int i = 0; i < scan.count; i++) {
+				fields = records[i + 1].split(",", -1);
+				scan.frequency[i] = Integer.parseInt(fields[0]);
+				scan.rssi[i] = Integer.parseInt(fields[1]);
+				scan.pi[i] = Integer.parseInt(fields[2]);
+				scan.seen[i] = Long.parseLong(fields[3]);
+				StringBuilder ps = new StringBuilder(fields[4].length() / 4);
+				for (int c = 0; c + 4 <= fields[4].length(); c += 4) {
+					ps.append((char) Integer.parseInt(fields[4].substring(c,
+							c + 4), 16));
+				}
+				scan.ps[i] = ps.toString();
+			}
+		} catch (RuntimeException e) {
+			/* A corrupt entry only costs a new scan */
+			Log.e(TAG, "load: dropping " + key + ": " + e.toString());
+			return null;
+		}
+		return scan;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxScanEngine.java
+ *
+ *   BRIEF:          Common control of the scans run by the service.
+ *
+ *   DESCRIPTION:    Implemented by each scan that walks the band from the
+ *                   service; the scan reports to an FmRxScanListener.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+interface FmRxScanEngine {
+
+	boolean isRunning();
+
+	/* Ends the scan after the current step, onScanDone follows */
+	void stop();
+
+	/* Share of the band walked so far, in percent */
+	int getProgress();
+}
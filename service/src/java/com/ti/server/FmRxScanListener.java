@@ -0,0 +1,48 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxScanListener.java
+ *
+ *   BRIEF:          Events of the scans run by the service.
+ *
+ *   DESCRIPTION:    Called on the scan handler thread while a scan walks
+ *                   the band, and once when it ends.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import com.ti.jfm.core.JFmRxStatus;
+
+interface FmRxScanListener {
+
+	/* A station was found, index counts the stations from 0 */
+	void onChannelFound(int frequency, int rssi, int index);
+
+	/* Share of the band walked so far, never decreasing during a scan */
+	void onScanProgress(int percent, int frequency);
+
+	/*
+	 * The scan ended. status is SUCCESS once the whole band was walked,
+	 * SEEK_STOPPED if it was stopped, otherwise the failure. rssi holds the
+	 * RSSI of each channel.
+	 */
+	void onScanDone(JFmRxStatus status, int[] channels, int[] rssi, int count);
+}
@@ -0,0 +1,270 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxSeekScan.java
+ *
+ *   BRIEF:          Band scan reporting each station as soon as it is found.
+ *
+ *   DESCRIPTION:    Tunes to the start of the band and seeks up until the
+ *                   band limit is reached. Every seek stop is a station; its
+ *                   RSSI is read and reported right away, together with the
+ *                   progress derived from the frequency reached. Commands
+ *                   are chained from their completions on the handler, no
+ *                   thread blocks while the scan runs.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.ti.jfm.core.JFmRx;
+import com.ti.jfm.core.JFmRxAsync;
+import com.ti.jfm.core.JFmRxCommand;
+import com.ti.jfm.core.JFmRxFuture;
+import com.ti.jfm.core.JFmRxStatus;
+
+final class FmRxSeekScan implements FmRxScanEngine, JFmRxFuture.Listener {
+
+	private static final String TAG = "FmRxSeekScan";
+	private static final boolean DBG = false;
+
+	/* A seek across the whole band completes well within this */
+	private static final long STEP_TIMEOUT_MS = 10000;
+
+	private static final int MAX_CHANNELS = 128;
+
+	private final Handler mHandler;
+	private final JFmRxAsync mJFmRxAsync;
+	private final FmRxScanListener mListener;
+
+	private final Runnable mTimeout = new Runnable() {
+		public void run() {
+			Log.e(TAG, "no completion for " + mStep);
+			finish(JFmRxStatus.FAILED);
+		}
+	};
+
+	private boolean mRunning = false;
+	private boolean mStopRequested = false;
+	private JFmRxFuture mStep = null;
+	private int mFirstFreq;
+	private int mLastFreq;
+	private int mRssiThreshold;
+	/* Frequency the RSSI is being read for */
+	private int mCandidate;
+	private int mProgress;
+
+	private final int[] mChannels = new int[MAX_CHANNELS];
+	private final int[] mRssi = new int[MAX_CHANNELS];
+	private int mCount;
+
+	private long mStartTimeMs;
+
+	FmRxSeekScan(Handler handler, JFmRxAsync jFmRxAsync,
+			FmRxScanListener listener) {
+		mHandler = handler;
+		mJFmRxAsync = jFmRxAsync;
+		mListener = listener;
+	}
+
+	/*
+	 * Scans [firstFreq, lastFreq] in kHz. The first frequency is reported as
+	 * a station when its RSSI reaches rssiThreshold, the seek stops are.
+	 * Returns false, without calling the listener, if the scan did not start.
+	 */
+	synchronized boolean start(int firstFreq, int lastFreq, int rssiThreshold) {
+		JFmRxFuture future;
+
+		if (mRunning) {
+			return false;
+		}
+		mRunning = true;
+		mStopRequested = false;
+		mFirstFreq = firstFreq;
+		mLastFreq = lastFreq;
+		mRssiThreshold = rssiThreshold;
+		mCandidate = firstFreq;
+		mProgress = 0;
+		mCount = 0;
+		mStartTimeMs = System.currentTimeMillis();
+		future = mJFmRxAsync.tune(new JFmRx.JFmRxFreq(firstFreq));
+		if (future.getIssueStatus() != JFmRxStatus.PENDING) {
+			Log.e(TAG, "start: tune not issued, status "
+					+ future.getIssueStatus());
+			mRunning = false;
+			return false;
+		}
+		return issue(future);
+	}
+
+	public synchronized void stop() {
+		if (!mRunning) {
+			return;
+		}
+		mStopRequested = true;
+		if (mStep != null && mStep.getCommand() == JFmRxCommand.CMD_SEEK) {
+			/* The seek then completes with SEEK_STOPPED */
+			mJFmRxAsync.stopSeek();
+		}
+	}
+
+	public synchronized boolean isRunning() {
+		return mRunning;
+	}
+
+	public synchronized int getProgress() {
+		return mProgress;
+	}
+
+	/* Completions arrive on the JNI thread, the scan goes on on the handler */
+	public void onComplete(final JFmRxFuture future) {
+		mHandler.post(new Runnable() {
+			public void run() {
+				onStepDone(future);
+			}
+		});
+	}
+
+	private synchronized void onStepDone(JFmRxFuture future) {
+		JFmRxStatus status = future.getStatus();
+		int freq;
+
+		if (future != mStep) {
+			return;
+		}
+		mHandler.removeCallbacks(mTimeout);
+		mStep = null;
+		if (DBG)
+			Log.d(TAG, "command " + future.getCommand() + " " + status + " "
+					+ future.getValue());
+
+		switch (future.getCommand()) {
+		case JFmRxCommand.CMD_TUNE:
+			if (status != JFmRxStatus.SUCCESS) {
+				finish(status);
+			} else if (!mStopRequested) {
+				issue(mJFmRxAsync.getRssi());
+			} else {
+				finish(JFmRxStatus.SEEK_STOPPED);
+			}
+			break;
+
+		case JFmRxCommand.CMD_GET_RSSI:
+			/* Seek stops are stations, the band start has to be checked */
+			if (status == JFmRxStatus.SUCCESS
+					&& (mCandidate != mFirstFreq || (int) future.getValue() >= mRssiThreshold)) {
+				found(mCandidate, (int) future.getValue());
+			}
+			if (mStopRequested) {
+				finish(JFmRxStatus.SEEK_STOPPED);
+			} else {
+				issue(mJFmRxAsync
+						.seek(JFmRx.JFmRxSeekDirection.FM_RX_SEEK_DIRECTION_UP));
+			}
+			break;
+
+		case JFmRxCommand.CMD_SEEK:
+			freq = (int) future.getValue();
+
+			if (status == JFmRxStatus.SUCCESS && freq > mCandidate
+					&& freq <= mLastFreq && !mStopRequested) {
+				progress(freq);
+				mCandidate = freq;
+				issue(mJFmRxAsync.getRssi());
+			} else if (mStopRequested) {
+				finish(JFmRxStatus.SEEK_STOPPED);
+			} else if (status == JFmRxStatus.SUCCESS
+					|| status == JFmRxStatus.SEEK_REACHED_BAND_LIMIT) {
+				/* A seek that wrapped around also means the band is done */
+				finish(JFmRxStatus.SUCCESS);
+			} else {
+				finish(status);
+			}
+			break;
+
+		default:
+			finish(JFmRxStatus.FAILED);
+			break;
+		}
+	}
+
+	private boolean issue(JFmRxFuture future) {
+		JFmRxStatus status = future.getIssueStatus();
+
+		if (status != JFmRxStatus.PENDING) {
+			Log.e(TAG, "command " + future.getCommand()
+					+ " not issued, status " + status);
+			finish(status);
+			return false;
+		}
+		mStep = future;
+		mHandler.postDelayed(mTimeout, STEP_TIMEOUT_MS);
+		future.setListener(this);
+		return true;
+	}
+
+	private void found(int freq, int rssi) {
+		if (mCount < MAX_CHANNELS) {
+			mChannels[mCount] = freq;
+			mRssi[mCount] = rssi;
+		}
+		mListener.onChannelFound(freq, rssi, mCount);
+		mCount++;
+	}
+
+	private void progress(int freq) {
+		int percent = (int) ((freq - mFirstFreq) * 100L / Math.max(1,
+				mLastFreq - mFirstFreq));
+
+		if (percent > mProgress) {
+			mProgress = Math.min(percent, 100);
+			mListener.onScanProgress(mProgress, freq);
+		}
+	}
+
+	private synchronized void finish(JFmRxStatus status) {
+		int count = Math.min(mCount, MAX_CHANNELS);
+		int[] channels = new int[count];
+		int[] rssi = new int[count];
+
+		if (!mRunning) {
+			return;
+		}
+		mHandler.removeCallbacks(mTimeout);
+		/* The step may be a read shared with a binder caller */
+		if (mStep != null) {
+			mStep.removeListener(this);
+			mStep.release();
+			mStep = null;
+		}
+		mRunning = false;
+		if (status == JFmRxStatus.SUCCESS && mProgress < 100) {
+			mProgress = 100;
+			mListener.onScanProgress(100, mLastFreq);
+		}
+		System.arraycopy(mChannels, 0, channels, 0, count);
+		System.arraycopy(mRssi, 0, rssi, 0, count);
+		Log.i(TAG, "scan " + status + ": " + count + " channels in "
+				+ (System.currentTimeMillis() - mStartTimeMs) + " ms");
+		mListener.onScanDone(status, channels, rssi, count);
+	}
+}
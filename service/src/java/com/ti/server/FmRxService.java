@@ -36,6 +36,8 @@ import android.content.Intent;
 import android.os.IBinder;
 import android.os.RemoteException;
 import android.util.Log;
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import com.ti.fm.IFmReceiver;
 import com.ti.server.StubFmRxService;
 
@@ -81,4 +83,12 @@ public final class FmRxService extends Service {
 	public IBinder onBind(final Intent arg) {
 		return mBinder;
 	}
+
+	/**
+	 * Called by dumpsys for this service.
+	 */
+	@Override
+	protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+		((StubFmRxService) mBinder).dump(fd, pw, args);
+	}
 }
@@ -0,0 +1,123 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxServiceStats.java
+ *
+ *   BRIEF:          Broadcast, radio on and wakelock accounting for dumpsys.
+ *
+ *   DESCRIPTION:    Counts the events sent per action and the callbacks they
+ *                   reached, and sums the time the radio was enabled and the
+ *                   time the service held its wakelock. Times are taken from
+ *                   SystemClock.elapsedRealtime(), so they include sleep.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+final class FmRxServiceStats {
+
+	/* Per action: events sent, callbacks reached */
+	private final HashMap<String, long[]> mBroadcasts = new HashMap<String, long[]>();
+
+	private long mRadioOnSinceMs = 0;
+	private long mRadioOnMs = 0;
+	private long mEnables = 0;
+
+	private long mWakeLockSinceMs = 0;
+	private long mWakeLockMs = 0;
+	private long mWakeLockAcquires = 0;
+
+	synchronized void onBroadcast(String action, int callbacks) {
+		long[] counts = mBroadcasts.get(action);
+
+		if (counts == null) {
+			counts = new long[2];
+			mBroadcasts.put(action, counts);
+		}
+		counts[0]++;
+		counts[1] += callbacks;
+	}
+
+	synchronized void onRadioEnabled() {
+		if (mRadioOnSinceMs == 0) {
+			mRadioOnSinceMs = SystemClock.elapsedRealtime();
+			mEnables++;
+		}
+	}
+
+	synchronized void onRadioDisabled() {
+		if (mRadioOnSinceMs != 0) {
+			mRadioOnMs += SystemClock.elapsedRealtime() - mRadioOnSinceMs;
+			mRadioOnSinceMs = 0;
+		}
+	}
+
+	/* The wakelock is not reference counted, acquiring it twice is one hold */
+	synchronized void onWakeLockAcquired() {
+		if (mWakeLockSinceMs == 0) {
+			mWakeLockSinceMs = SystemClock.elapsedRealtime();
+			mWakeLockAcquires++;
+		}
+	}
+
+	synchronized void onWakeLockReleased() {
+		if (mWakeLockSinceMs != 0) {
+			mWakeLockMs += SystemClock.elapsedRealtime() - mWakeLockSinceMs;
+			mWakeLockSinceMs = 0;
+		}
+	}
+
+	/* Time the radio has been enabled, including the current session */
+	synchronized long getRadioOnMs() {
+		return mRadioOnMs
+				+ (mRadioOnSinceMs != 0 ? SystemClock.elapsedRealtime()
+						- mRadioOnSinceMs : 0);
+	}
+
+	synchronized long getWakeLockMs() {
+		return mWakeLockMs
+				+ (mWakeLockSinceMs != 0 ? SystemClock.elapsedRealtime()
+						- mWakeLockSinceMs : 0);
+	}
+
+	synchronized void dump(PrintWriter pw, String prefix) {
+		long now = SystemClock.elapsedRealtime();
+
+		pw.println(prefix + "since boot " + now + " ms, radio on "
+				+ getRadioOnMs() + " ms in " + mEnables + " sessions"
+				+ (mRadioOnSinceMs != 0 ? " (on for " + (now - mRadioOnSinceMs)
+						+ " ms)" : ""));
+		pw.println(prefix + "wakelock held " + getWakeLockMs() + " ms, "
+				+ mWakeLockAcquires + " times"
+				+ (mWakeLockSinceMs != 0 ? " (held for "
+						+ (now - mWakeLockSinceMs) + " ms)" : ""));
+		pw.println(prefix + "broadcasts (sent/callbacks):");
+		for (Map.Entry<String, long[]> e : mBroadcasts.entrySet()) {
+			pw.println(prefix + "  " + e.getKey() + ": " + e.getValue()[0]
+					+ "/" + e.getValue()[1]);
+		}
+	}
+}
@@ -0,0 +1,233 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      FmRxVolumeCoalescer.java
+ *
+ *   BRIEF:          Latest-wins pipeline for volume key bursts.
+ *
+ *   DESCRIPTION:    Keeps at most one set volume command in flight. Requests
+ *                   arriving meanwhile overwrite each other, and only the
+ *                   last one is sent when the command completes. A level the
+ *                   chip already holds is not sent at all. The time from the
+ *                   oldest request served by a command to its completion is
+ *                   recorded as the key-to-chip latency.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import android.os.Handler;
+import android.util.Log;
+
+import com.ti.jfm.core.JFmRxFuture;
+
+final class FmRxVolumeCoalescer implements JFmRxFuture.Listener {
+
+	private static final String TAG = "FmRxVolumeCoalescer";
+	private static final boolean DBG = false;
+
+	private static final int NONE = -1;
+
+	/* A command without completion for this long no longer blocks the next */
+	private static final long IN_FLIGHT_TIMEOUT_NS = 4000000000L;
+
+	/** Sends one set volume command, returns null if it was not accepted */
+	interface Issuer {
+		JFmRxFuture issue(int volume);
+
+		/* Called when a command is given up on before its completion */
+		void abandoned(JFmRxFuture future);
+	}
+
+	private final Handler mHandler;
+	private final Issuer mIssuer;
+
+	private final Runnable mIssueNext = new Runnable() {
+		public void run() {
+			issueNext();
+		}
+	};
+
+	/* Level last confirmed by the chip */
+	private int mChipLevel = NONE;
+	/* Latest requested level not sent yet */
+	private int mPendingLevel = NONE;
+	private long mPendingSinceNs = 0;
+	/* Command in flight */
+	private JFmRxFuture mInFlight = null;
+	private int mInFlightLevel = NONE;
+	private long mInFlightSinceNs = 0;
+	private long mInFlightIssuedNs = 0;
+
+	private long mRequests = 0;
+	private long mIssued = 0;
+	private long mSkipped = 0;
+	private long mLastLatencyNs = 0;
+	private long mMaxLatencyNs = 0;
+	private long mTotalLatencyNs = 0;
+	private long mCompleted = 0;
+
+	/*
+	 * The handler's thread sends the follow-up commands, so they do not go out
+	 * from the completion callback.
+	 */
+	FmRxVolumeCoalescer(Handler handler, Issuer issuer) {
+		mHandler = handler;
+		mIssuer = issuer;
+	}
+
+	/* Requests the volume level; the latest request wins */
+	void request(int volume) {
+		long now = System.nanoTime();
+
+		synchronized (this) {
+			mRequests++;
+			if (mPendingLevel == NONE) {
+				mPendingSinceNs = now;
+			}
+			mPendingLevel = volume;
+			if (mInFlight != null
+					&& now - mInFlightIssuedNs > IN_FLIGHT_TIMEOUT_NS) {
+				Log.e(TAG, "request: set volume " + mInFlightLevel
+						+ " never completed");
+				if (mInFlight.cancel(false)) {
+					mIssuer.abandoned(mInFlight);
+				}
+				mInFlight = null;
+				mChipLevel = NONE;
+			}
+			if (mInFlight != null) {
+				if (DBG)
+					Log.d(TAG, "request: " + volume + " coalesced");
+				return;
+			}
+		}
+		issueNext();
+	}
+
+	/* The chip level is unknown again, e.g. after enable/disable */
+	synchronized void invalidate() {
+		mChipLevel = NONE;
+		mInFlight = null;
+		mInFlightLevel = NONE;
+	}
+
+	private void issueNext() {
+		int volume;
+		long sinceNs;
+		JFmRxFuture future;
+
+		synchronized (this) {
+			if (mInFlight != null || mPendingLevel == NONE) {
+				return;
+			}
+			volume = mPendingLevel;
+			sinceNs = mPendingSinceNs;
+			mPendingLevel = NONE;
+			if (volume == mChipLevel) {
+				mSkipped++;
+				if (DBG)
+					Log.d(TAG, "issueNext: chip already at " + volume);
+				return;
+			}
+		}
+
+		future = mIssuer.issue(volume);
+		if (future == null) {
+			Log.e(TAG, "issueNext: set volume " + volume + " not accepted");
+			return;
+		}
+
+		synchronized (this) {
+			mIssued++;
+			mInFlight = future;
+			mInFlightLevel = volume;
+			mInFlightSinceNs = sinceNs;
+			mInFlightIssuedNs = System.nanoTime();
+		}
+		future.setListener(this);
+	}
+
+	public void onComplete(JFmRxFuture future) {
+		long latencyNs;
+
+		synchronized (this) {
+			if (future != mInFlight) {
+				return;
+			}
+			mInFlight = null;
+			if (!future.isSuccess()) {
+				Log.e(TAG, "set volume " + mInFlightLevel + " failed: "
+						+ future.getStatus());
+				mChipLevel = NONE;
+			} else {
+				mChipLevel = mInFlightLevel;
+				latencyNs = System.nanoTime() - mInFlightSinceNs;
+				mLastLatencyNs = latencyNs;
+				mTotalLatencyNs += latencyNs;
+				mCompleted++;
+				if (latencyNs > mMaxLatencyNs) {
+					mMaxLatencyNs = latencyNs;
+				}
+				if (DBG)
+					Log.d(TAG, "volume " + mChipLevel + " set, key-to-chip "
+							+ latencyNs / 1000000 + " ms");
+			}
+			if (mPendingLevel == NONE) {
+				return;
+			}
+		}
+		mHandler.post(mIssueNext);
+	}
+
+	synchronized long getRequests() {
+		return mRequests;
+	}
+
+	synchronized long getIssued() {
+		return mIssued;
+	}
+
+	/* Requests that were dropped because the chip already had the level */
+	synchronized long getSkipped() {
+		return mSkipped;
+	}
+
+	synchronized long getLastLatencyNs() {
+		return mLastLatencyNs;
+	}
+
+	synchronized long getMaxLatencyNs() {
+		return mMaxLatencyNs;
+	}
+
+	synchronized long getAverageLatencyNs() {
+		return mCompleted == 0 ? 0 : mTotalLatencyNs / mCompleted;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "requests " + mRequests + " issued " + mIssued + " skipped "
+				+ mSkipped + " latency last/avg/max "
+				+ mLastLatencyNs / 1000000 + "/"
+				+ (mCompleted == 0 ? 0 : mTotalLatencyNs / mCompleted / 1000000)
+				+ "/" + mMaxLatencyNs / 1000000 + " ms";
+	}
+}
@@ -0,0 +1,284 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      RadioTextAssembler.java
+ *
+ *   BRIEF:          Assembles the RadioText fragments reported by the chip.
+ *
+ *   DESCRIPTION:    fmRxRadioText reports the RT in fragments placed by their
+ *                   start index. The fragments are collected per PI into a
+ *                   64 character message of 16 segments, with a bitmap of
+ *                   the segments received. An A/B flag change or a new PI
+ *                   starts a new message. The message is published once all
+ *                   its segments are in and it differs from the last one
+ *                   published, so a station cycling its RT does not cause a
+ *                   broadcast per fragment.
+ *
+ *                   In partial mode every new segment of an incomplete
+ *                   message is published too, with the share received.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import java.util.Arrays;
+
+final class RadioTextAssembler {
+
+	static final int MAX_LENGTH = 64;
+	/* Characters of a 2B group, a 2A group fills two segments */
+	static final int SEGMENT_SIZE = 2;
+	static final int NUM_SEGMENTS = MAX_LENGTH / SEGMENT_SIZE;
+
+	/** PI used until the station reports one */
+	static final int NO_PI = -1;
+
+	private static final byte RT_END = 0x0D;
+	private static final byte SPACE = 0x20;
+
+	/**
+	 * Receives the assembled text. The array is reused by the assembler and
+	 * is only valid during the call. progress is the percentage of the
+	 * segments received, 100 once the message is complete. tag is the one
+	 * given with the last fragment.
+	 */
+	interface Listener {
+		void onRadioText(byte[] text, int length, int progress, Object tag);
+	}
+
+	private final Listener mListener;
+
+	private int mPi = NO_PI;
+	private final byte[] mText = new byte[MAX_LENGTH];
+	/* Bit n set when character n was received */
+	private long mReceived = 0;
+	/* Length of the message, MAX_LENGTH until its end was seen */
+	private int mLength = MAX_LENGTH;
+	private Object mTag = null;
+
+	private final byte[] mPublished = new byte[MAX_LENGTH];
+	private int mPublishedLength = -1;
+	private final byte[] mOut = new byte[MAX_LENGTH];
+
+	private boolean mPartial = false;
+
+	private long mFragments = 0;
+	private long mResets = 0;
+	private long mMessages = 0;
+
+	RadioTextAssembler(Listener listener) {
+		mListener = listener;
+	}
+
+	/* Also publishes each new segment of an incomplete message */
+	synchronized void setPartialMode(boolean partial) {
+		mPartial = partial;
+	}
+
+	synchronized boolean isPartialMode() {
+		return mPartial;
+	}
+
+	/*
+	 * Sets the PI of the station the next fragments belong to. Another PI
+	 * drops the message collected so far.
+	 */
+	synchronized void setPi(int pi) {
+		if (pi != mPi) {
+			mPi = pi;
+			clearMessage();
+			mPublishedLength = -1;
+		}
+	}
+
+	/*
+	 * Adds len characters of msg placed at startIndex of the message.
+	 * abChanged is the A/B flag change reported with the fragment.
+	 */
+	synchronized void onFragment(boolean abChanged, byte[] msg, int len,
+			int startIndex, Object tag) {
+		int end;
+		int segments;
+
+		if (msg == null || startIndex < 0 || startIndex >= MAX_LENGTH) {
+			return;
+		}
+		len = Math.min(Math.min(len, msg.length), MAX_LENGTH - startIndex);
+		if (len < 0) {
+			return;
+		}
+		mFragments++;
+		mTag = tag;
+
+		end = startIndex + len;
+		for (int i = 0; i < len; i++) {
+			if (msg[i] == RT_END) {
+				end = startIndex + i;
+				break;
+			}
+		}
+
+		/*
+		 * Text changed or grew past its end without an A/B flag change: the
+		 * station rewrote its message and what was collected is stale.
+		 */
+		if (abChanged || end > mLength || differs(msg, startIndex, end)) {
+			clearMessage();
+		}
+		segments = getSegments();
+
+		System.arraycopy(msg, 0, mText, startIndex, end - startIndex);
+		mReceived |= charMask(startIndex, end);
+
+		/*
+		 * The stack ends a fragment that ends the text with a 0x0D, whether
+		 * the station sent one or the last index of 2A or 2B was reached.
+		 */
+		if (end < startIndex + len) {
+			mLength = end;
+		}
+
+		if (isComplete()) {
+			publishIfChanged();
+		} else if (mPartial && getSegments() != segments) {
+			publishPartial();
+		}
+	}
+
+	/*
+	 * Publishes a message already assembled, e.g. by RdsGroupDecoder from the
+	 * raw groups.
+	 */
+	synchronized void onMessage(byte[] msg, int len, Object tag) {
+		len = Math.min(Math.min(len, msg.length), MAX_LENGTH);
+		mFragments++;
+		mTag = tag;
+		clearMessage();
+		System.arraycopy(msg, 0, mText, 0, len);
+		mReceived = charMask(0, len);
+		mLength = len;
+		publishIfChanged();
+	}
+
+	/* Drops the message and forgets the last one published, e.g. on tune */
+	synchronized void reset() {
+		mPi = NO_PI;
+		clearMessage();
+		mPublishedLength = -1;
+	}
+
+	/* Bit n set when segment n of the current message is complete */
+	synchronized int getSegments() {
+		int segments = 0;
+		long mask;
+
+		for (int s = 0; s < NUM_SEGMENTS; s++) {
+			mask = charMask(s * SEGMENT_SIZE, Math.min((s + 1) * SEGMENT_SIZE,
+					mLength));
+			if (mask != 0 && (mReceived & mask) == mask) {
+				segments |= 1 << s;
+			}
+		}
+		return segments;
+	}
+
+	/* Percentage of the segments of the current message received */
+	synchronized int getProgress() {
+		int expected = (mLength + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+
+		if (expected == 0) {
+			return 100;
+		}
+		return Integer.bitCount(getSegments()) * 100 / expected;
+	}
+
+	public synchronized String toString() {
+		return "pi=0x" + Integer.toHexString(mPi) + " segments=0x"
+				+ Integer.toHexString(getSegments()) + " fragments="
+				+ mFragments + " resets=" + mResets + " published="
+				+ mMessages;
+	}
+
+	private void clearMessage() {
+		if (mReceived != 0) {
+			mResets++;
+		}
+		Arrays.fill(mText, SPACE);
+		mReceived = 0;
+		mLength = MAX_LENGTH;
+	}
+
+	/* True when characters already received in [from, to) hold others */
+	private boolean differs(byte[] msg, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if ((mReceived & (1L << i)) != 0 && mText[i] != msg[i - from]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isComplete() {
+		long expected = charMask(0, mLength);
+
+		return (mReceived & expected) == expected;
+	}
+
+	private void publishIfChanged() {
+		if (mLength == mPublishedLength) {
+			boolean same = true;
+
+			for (int i = 0; i < mLength; i++) {
+				if (mText[i] != mPublished[i]) {
+					same = false;
+					break;
+				}
+			}
+			if (same) {
+				return;
+			}
+		}
+		System.arraycopy(mText, 0, mPublished, 0, mLength);
+		mPublishedLength = mLength;
+		mMessages++;
+		System.arraycopy(mText, 0, mOut, 0, mLength);
+		mListener.onRadioText(mOut, mLength, 100, mTag);
+	}
+
+	/* The partial text runs up to the last segment received */
+	private void publishPartial() {
+		int length = Math.min((32 - Integer.numberOfLeadingZeros(getSegments()))
+				* SEGMENT_SIZE, mLength);
+
+		System.arraycopy(mText, 0, mOut, 0, length);
+		mListener.onRadioText(mOut, length, getProgress(), mTag);
+	}
+
+	/* Bits of the characters in [from, to) */
+	private static long charMask(int from, int to) {
+		long upTo;
+
+		if (to <= from) {
+			return 0;
+		}
+		upTo = (to >= 64) ? -1L : (1L << to) - 1;
+		return upTo & ~((1L << from) - 1);
+	}
+}
@@ -0,0 +1,484 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      RdsGroupDecoder.java
+ *
+ *   BRIEF:          Streaming decoder of raw RDS groups.
+ *
+ *   DESCRIPTION:    Keeps the RDS state of the current station from the raw
+ *                   groups: PI and PTY from every group, 0A/0B PS, 1A PIN
+ *                   and ECC, 2A/2B radio text, 4A clock time, 10A PTYN and
+ *                   14A/14B EON. Texts are assembled segment by segment in
+ *                   fixed buffers and reported once complete and changed.
+ *                   A new PI starts a new station and clears the state.
+ *
+ *                   onGroup() does not allocate; the listener is only called
+ *                   when a value changes.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import java.util.Arrays;
+
+final class RdsGroupDecoder {
+
+	/** Raw group types (JFmRxRdsGroupTypeMask bits) the decoder uses */
+	static final long GROUP_MASK = 0x00000001L /* 0A */| 0x00000002L /* 0B */
+			| 0x00000004L /* 1A */| 0x00000010L /* 2A */| 0x00000020L /* 2B */
+			| 0x00000100L /* 4A */| 0x00100000L /* 10A */
+			| 0x10000000L /* 14A */| 0x20000000L /* 14B */;
+
+	static final int PS_LENGTH = 8;
+	static final int RT_LENGTH = 64;
+	static final int PTYN_LENGTH = 8;
+	static final int MAX_EON = 8;
+
+	private static final int NONE = -1;
+	private static final byte RT_END = 0x0D;
+
+	/* Values a group changed, collected under the lock for the listener */
+	private static final int EVENT_PI = 0x01;
+	private static final int EVENT_PTY = 0x02;
+	private static final int EVENT_PS = 0x04;
+	private static final int EVENT_RT = 0x08;
+	private static final int EVENT_PIN = 0x10;
+	private static final int EVENT_CLOCK = 0x20;
+	private static final int EVENT_PTYN = 0x40;
+	private static final int EVENT_EON_PS = 0x80;
+
+	/**
+	 * Receives decoded values, on the thread that passed the group and with
+	 * no decoder lock held. Text arrays are copies owned by the listener.
+	 */
+	interface Listener {
+		void onPiChanged(int pi);
+
+		void onPtyChanged(int pty);
+
+		void onPsChanged(byte[] ps);
+
+		void onRadioTextChanged(byte[] rt, int length);
+
+		void onPinChanged(int ecc, int day, int hour, int minute);
+
+		void onClockTime(int mjd, int hour, int minute, int offsetHalfHours);
+
+		void onPtynChanged(byte[] ptyn);
+
+		void onEonPsChanged(int pi, byte[] ps);
+	}
+
+	private final Listener mListener;
+
+	private int mPi = NONE;
+	private int mPty = NONE;
+
+	/* 0A/0B program service name */
+	private final byte[] mPs = new byte[PS_LENGTH];
+	private final byte[] mPsPublished = new byte[PS_LENGTH];
+	private int mPsSegments = 0;
+
+	/* 2A/2B radio text */
+	private final byte[] mRt = new byte[RT_LENGTH];
+	private final byte[] mRtPublished = new byte[RT_LENGTH];
+	private int mRtPublishedLength = NONE;
+	private int mRtSegments = 0;
+	private int mRtAbFlag = NONE;
+	private int mRtVersion = NONE;
+	private int mRtEnd = NONE;
+
+	/* 1A slow labelling code and program item number */
+	private int mEcc = NONE;
+	private int mPin = NONE;
+
+	/* 4A clock time */
+	private int mClockMjd = NONE;
+	private int mClockHour = NONE;
+	private int mClockMinute = NONE;
+
+	/* 10A program type name */
+	private final byte[] mPtyn = new byte[PTYN_LENGTH];
+	private final byte[] mPtynPublished = new byte[PTYN_LENGTH];
+	private int mPtynSegments = 0;
+	private int mPtynAbFlag = NONE;
+
+	/* 14A/14B other networks, indexed by slot */
+	private final int[] mEonPi = new int[MAX_EON];
+	private final byte[][] mEonPs = new byte[MAX_EON][PS_LENGTH];
+	private final byte[][] mEonPsPublished = new byte[MAX_EON][PS_LENGTH];
+	private final int[] mEonPsSegments = new int[MAX_EON];
+	private int mEonCount = 0;
+
+	/* Result of the group being decoded, see onGroup() */
+	private int mEvents = 0;
+	private byte[] mEventText = null;
+	private final int[] mEventValues = new int[4];
+
+	private long mGroups = 0;
+	/* Groups received per type, indexed by type * 2 + version (0A, 0B, 1A...) */
+	private final long[] mGroupsByType = new long[32];
+
+	RdsGroupDecoder(Listener listener) {
+		mListener = listener;
+		reset();
+	}
+
+	/* Drops the state of the current station, e.g. after a tune */
+	synchronized void reset() {
+		mPi = NONE;
+		mPty = NONE;
+		Arrays.fill(mPs, (byte) ' ');
+		Arrays.fill(mPsPublished, (byte) 0);
+		mPsSegments = 0;
+		Arrays.fill(mRt, (byte) ' ');
+		mRtPublishedLength = NONE;
+		mRtSegments = 0;
+		mRtAbFlag = NONE;
+		mRtVersion = NONE;
+		mRtEnd = NONE;
+		mEcc = NONE;
+		mPin = NONE;
+		mClockMjd = NONE;
+		mClockHour = NONE;
+		mClockMinute = NONE;
+		Arrays.fill(mPtyn, (byte) ' ');
+		Arrays.fill(mPtynPublished, (byte) 0);
+		mPtynSegments = 0;
+		mPtynAbFlag = NONE;
+		mEonCount = 0;
+	}
+
+	synchronized long getGroups() {
+		return mGroups;
+	}
+
+	synchronized long getGroups(int typeAndVersion) {
+		return mGroupsByType[typeAndVersion];
+	}
+
+	/*
+	 * Decodes one group given as its four 16 bit blocks. The listener, which
+	 * broadcasts, is called after the lock is released so that reset() and
+	 * the statistics getters are never held up behind a binder call.
+	 */
+	void onGroup(int blockA, int blockB, int blockC, int blockD) {
+		int events;
+		int pi;
+		int pty;
+		byte[] text;
+		int v0, v1, v2, v3;
+
+		synchronized (this) {
+			mEvents = 0;
+			mEventText = null;
+			decode(blockA, blockB, blockC, blockD);
+			events = mEvents;
+			pi = mPi;
+			pty = mPty;
+			text = mEventText;
+			v0 = mEventValues[0];
+			v1 = mEventValues[1];
+			v2 = mEventValues[2];
+			v3 = mEventValues[3];
+		}
+		if (events == 0) {
+			return;
+		}
+
+		if ((events & EVENT_PI) != 0) {
+			mListener.onPiChanged(pi);
+		}
+		if ((events & EVENT_PTY) != 0) {
+			mListener.onPtyChanged(pty);
+		}
+		if ((events & EVENT_PS) != 0) {
+			mListener.onPsChanged(text);
+		}
+		if ((events & EVENT_RT) != 0) {
+			mListener.onRadioTextChanged(text, text.length);
+		}
+		if ((events & EVENT_PIN) != 0) {
+			mListener.onPinChanged(v0, v1, v2, v3);
+		}
+		if ((events & EVENT_CLOCK) != 0) {
+			mListener.onClockTime(v0, v1, v2, v3);
+		}
+		if ((events & EVENT_PTYN) != 0) {
+			mListener.onPtynChanged(text);
+		}
+		if ((events & EVENT_EON_PS) != 0) {
+			mListener.onEonPsChanged(v0, text);
+		}
+	}
+
+	/* Called with the lock held, records what changed in mEvents */
+	private void decode(int blockA, int blockB, int blockC, int blockD) {
+		int type = (blockB >> 12) & 0x0F;
+		boolean versionB = (blockB & 0x0800) != 0;
+		int pty = (blockB >> 5) & 0x1F;
+
+		mGroups++;
+		mGroupsByType[(blockB >> 11) & 0x1F]++;
+
+		if (blockA != mPi) {
+			reset();
+			mPi = blockA;
+			mEvents |= EVENT_PI;
+		}
+		if (pty != mPty) {
+			mPty = pty;
+			mEvents |= EVENT_PTY;
+		}
+
+		switch (type) {
+		case 0:
+			onPsSegment(blockB & 0x03, blockD);
+			break;
+		case 1:
+			if (!versionB) {
+				onSlowLabelling(blockC, blockD);
+			}
+			break;
+		case 2:
+			onRadioTextSegment(blockB, blockC, blockD, versionB);
+			break;
+		case 4:
+			if (!versionB) {
+				onClockTime(blockB, blockC, blockD);
+			}
+			break;
+		case 10:
+			if (!versionB) {
+				onPtynSegment(blockB, blockC, blockD);
+			}
+			break;
+		case 14:
+			/* 14B only signals TA of the other network */
+			if (!versionB) {
+				onEon(blockB & 0x0F, blockC, blockD);
+			}
+			break;
+		default:
+			break;
+		}
+	}
+
+	/* Decodes one group given as 8 bytes, blocks A..D, MSB first */
+	void onGroup(byte[] data, int offset) {
+		onGroup(word(data, offset), word(data, offset + 2), word(data,
+				offset + 4), word(data, offset + 6));
+	}
+
+	private static int word(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+
+	private void onPsSegment(int segment, int blockD) {
+		mPs[segment * 2] = (byte) (blockD >> 8);
+		mPs[segment * 2 + 1] = (byte) blockD;
+		mPsSegments |= 1 << segment;
+
+		if (mPsSegments == 0x0F) {
+			mPsSegments = 0;
+			if (!Arrays.equals(mPs, mPsPublished)) {
+				System.arraycopy(mPs, 0, mPsPublished, 0, PS_LENGTH);
+				mEvents |= EVENT_PS;
+				mEventText = mPsPublished.clone();
+			}
+		}
+	}
+
+	private void onRadioTextSegment(int blockB, int blockC, int blockD,
+			boolean versionB) {
+		int abFlag = (blockB >> 4) & 0x01;
+		int address = blockB & 0x0F;
+		int version = versionB ? 1 : 0;
+		int segmentSize = versionB ? 2 : 4;
+		int position = address * segmentSize;
+		int lastSegment;
+		int length;
+
+		/* A new text starts with a flipped A/B flag */
+		if (abFlag != mRtAbFlag || version != mRtVersion) {
+			mRtAbFlag = abFlag;
+			mRtVersion = version;
+			Arrays.fill(mRt, (byte) ' ');
+			mRtSegments = 0;
+			mRtEnd = NONE;
+		}
+
+		if (versionB) {
+			putRt(position, blockD >> 8);
+			putRt(position + 1, blockD);
+		} else {
+			putRt(position, blockC >> 8);
+			putRt(position + 1, blockC);
+			putRt(position + 2, blockD >> 8);
+			putRt(position + 3, blockD);
+		}
+		mRtSegments |= 1 << address;
+
+		/* Complete once every segment up to the one holding the end is in */
+		length = mRtEnd == NONE ? segmentSize * 16 : mRtEnd;
+		lastSegment = mRtEnd == NONE ? 15 : mRtEnd / segmentSize;
+		if ((mRtSegments & ((2 << lastSegment) - 1)) != (2 << lastSegment) - 1) {
+			return;
+		}
+
+		if (length == mRtPublishedLength
+				&& rangeEquals(mRt, mRtPublished, length)) {
+			return;
+		}
+		System.arraycopy(mRt, 0, mRtPublished, 0, length);
+		mRtPublishedLength = length;
+		mEvents |= EVENT_RT;
+		mEventText = Arrays.copyOf(mRtPublished, length);
+	}
+
+	private void putRt(int position, int value) {
+		byte b = (byte) value;
+
+		mRt[position] = b;
+		if (b == RT_END && (mRtEnd == NONE || position < mRtEnd)) {
+			mRtEnd = position;
+		}
+	}
+
+	private void onSlowLabelling(int blockC, int blockD) {
+		int variant = (blockC >> 12) & 0x07;
+		boolean changed = false;
+
+		if (variant == 0 && (blockC & 0xFF) != mEcc) {
+			mEcc = blockC & 0xFF;
+			changed = true;
+		}
+		if (blockD != mPin) {
+			mPin = blockD;
+			changed = true;
+		}
+		if (changed) {
+			mEvents |= EVENT_PIN;
+			mEventValues[0] = mEcc;
+			mEventValues[1] = (mPin >> 11) & 0x1F;
+			mEventValues[2] = (mPin >> 6) & 0x1F;
+			mEventValues[3] = mPin & 0x3F;
+		}
+	}
+
+	private void onClockTime(int blockB, int blockC, int blockD) {
+		int mjd = ((blockB & 0x03) << 15) | ((blockC >> 1) & 0x7FFF);
+		int hour = ((blockC & 0x01) << 4) | ((blockD >> 12) & 0x0F);
+		int minute = (blockD >> 6) & 0x3F;
+		int offset = blockD & 0x1F;
+
+		if ((blockD & 0x20) != 0) {
+			offset = -offset;
+		}
+		if (hour > 23 || minute > 59) {
+			return;
+		}
+		if (mjd == mClockMjd && hour == mClockHour && minute == mClockMinute) {
+			return;
+		}
+		mClockMjd = mjd;
+		mClockHour = hour;
+		mClockMinute = minute;
+		mEvents |= EVENT_CLOCK;
+		mEventValues[0] = mjd;
+		mEventValues[1] = hour;
+		mEventValues[2] = minute;
+		mEventValues[3] = offset;
+	}
+
+	private void onPtynSegment(int blockB, int blockC, int blockD) {
+		int abFlag = (blockB >> 4) & 0x01;
+		int position = (blockB & 0x01) * 4;
+
+		if (abFlag != mPtynAbFlag) {
+			mPtynAbFlag = abFlag;
+			Arrays.fill(mPtyn, (byte) ' ');
+			mPtynSegments = 0;
+		}
+		mPtyn[position] = (byte) (blockC >> 8);
+		mPtyn[position + 1] = (byte) blockC;
+		mPtyn[position + 2] = (byte) (blockD >> 8);
+		mPtyn[position + 3] = (byte) blockD;
+		mPtynSegments |= 1 << (blockB & 0x01);
+
+		if (mPtynSegments == 0x03) {
+			mPtynSegments = 0;
+			if (!Arrays.equals(mPtyn, mPtynPublished)) {
+				System.arraycopy(mPtyn, 0, mPtynPublished, 0, PTYN_LENGTH);
+				mEvents |= EVENT_PTYN;
+				mEventText = mPtynPublished.clone();
+			}
+		}
+	}
+
+	private void onEon(int variant, int blockC, int blockD) {
+		int slot;
+
+		/* Variants 0..3 carry the PS of the other network, two chars each */
+		if (variant > 3) {
+			return;
+		}
+
+		for (slot = 0; slot < mEonCount; slot++) {
+			if (mEonPi[slot] == blockD) {
+				break;
+			}
+		}
+		if (slot == mEonCount) {
+			if (mEonCount == MAX_EON) {
+				return;
+			}
+			mEonCount++;
+			mEonPi[slot] = blockD;
+			Arrays.fill(mEonPs[slot], (byte) ' ');
+			Arrays.fill(mEonPsPublished[slot], (byte) 0);
+			mEonPsSegments[slot] = 0;
+		}
+
+		mEonPs[slot][variant * 2] = (byte) (blockC >> 8);
+		mEonPs[slot][variant * 2 + 1] = (byte) blockC;
+		mEonPsSegments[slot] |= 1 << variant;
+
+		if (mEonPsSegments[slot] == 0x0F) {
+			mEonPsSegments[slot] = 0;
+			if (!Arrays.equals(mEonPs[slot], mEonPsPublished[slot])) {
+				System.arraycopy(mEonPs[slot], 0, mEonPsPublished[slot], 0,
+						PS_LENGTH);
+				mEvents |= EVENT_EON_PS;
+				mEventValues[0] = blockD;
+				mEventText = mEonPsPublished[slot].clone();
+			}
+		}
+	}
+
+	private static boolean rangeEquals(byte[] a, byte[] b, int length) {
+		for (int i = 0; i < length; i++) {
+			if (a[i] != b[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      RdsTextDecoder.java
+ *
+ *   BRIEF:          Converts PS/RT bytes to strings using the RDS repertoires.
+ *
+ *   DESCRIPTION:    The G0/G1/G2 look up tables of IFmConstants are flattened
+ *                   to one char[256] per repertoire, so a byte is decoded
+ *                   with a single index. Text is decoded into a reusable
+ *                   buffer, and the last string is returned again while the
+ *                   frequency, repertoire and bytes stay the same.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import java.util.Arrays;
+
+import com.ti.fm.IFmConstants;
+import com.ti.jfm.core.JFmRx;
+
+final class RdsTextDecoder {
+
+	private static final char[] TABLE_G0 = flatten(IFmConstants.lookUpTable_G0);
+	private static final char[] TABLE_G1 = flatten(IFmConstants.lookUpTable_G1);
+	private static final char[] TABLE_G2 = flatten(IFmConstants.lookUpTable_G2);
+
+	private char[] mBuffer = new char[64];
+
+	/* Last decoded text */
+	private int mLastFrequency = -1;
+	private JFmRx.JFmRxRepertoire mLastRepertoire = null;
+	private byte[] mLastBytes = null;
+	private String mLastText = null;
+
+	private long mDecoded = 0;
+	private long mCached = 0;
+
+	private static char[] flatten(char[][] table) {
+		char[] flat = new char[256];
+
+		for (int msb = 0; msb < 16; msb++) {
+			for (int lsb = 0; lsb < 16; lsb++) {
+				flat[(msb << 4) | lsb] = table[msb][lsb];
+			}
+		}
+		return flat;
+	}
+
+	private static char[] tableOf(JFmRx.JFmRxRepertoire repertoire) {
+		switch (repertoire) {
+		case FMC_RDS_REPERTOIRE_G0_CODE_TABLE:
+			return TABLE_G0;
+		case FMC_RDS_REPERTOIRE_G1_CODE_TABLE:
+			return TABLE_G1;
+		case FMC_RDS_REPERTOIRE_G2_CODE_TABLE:
+			return TABLE_G2;
+		default:
+			return null;
+		}
+	}
+
+	/* Decodes bytes with the default G0 repertoire, without caching */
+	static String decodeG0(byte[] bytes) {
+		char[] text = new char[bytes.length];
+
+		for (int i = 0; i < bytes.length; i++) {
+			text[i] = TABLE_G0[bytes[i] & 0xFF];
+		}
+		return new String(text);
+	}
+
+	/*
+	 * Returns the text of bytes, received on frequency. An unknown repertoire
+	 * decodes to an empty string.
+	 */
+	synchronized String decode(int frequency, byte[] bytes,
+			JFmRx.JFmRxRepertoire repertoire) {
+		char[] table;
+		int n;
+
+		if (frequency == mLastFrequency && repertoire == mLastRepertoire
+				&& Arrays.equals(bytes, mLastBytes)) {
+			mCached++;
+			return mLastText;
+		}
+
+		table = tableOf(repertoire);
+		if (table == null || bytes == null) {
+			return "";
+		}
+
+		n = bytes.length;
+		if (mBuffer.length < n) {
+			mBuffer = new char[n];
+		}
+		for (int i = 0; i < n; i++) {
+			mBuffer[i] = table[bytes[i] & 0xFF];
+		}
+
+		mLastFrequency = frequency;
+		mLastRepertoire = repertoire;
+		mLastBytes = bytes.clone();
+		mLastText = new String(mBuffer, 0, n);
+		mDecoded++;
+		return mLastText;
+	}
+
+	synchronized long getDecoded() {
+		return mDecoded;
+	}
+
+	/* Decodes answered with the last string */
+	synchronized long getCached() {
+		return mCached;
+	}
+}
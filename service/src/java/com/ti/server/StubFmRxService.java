@@ -34,26 +34,34 @@ package com.ti.server;
 import com.ti.fm.FmReceiver;
 import com.ti.fm.IFmReceiver;
 import com.ti.fm.FmReceiverIntent;
+import com.ti.fm.FmRxConfiguration;
+import com.ti.fm.FmRxScanOptions;
+import com.ti.fm.FmRxTmcEvent;
+import com.ti.fm.IFmReceiverCallback;
 import com.ti.fm.IFmConstants;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.pm.PackageManager;
 import android.os.RemoteException;
 import android.os.Handler;
 import android.media.AudioManager;
 import android.os.IBinder;
 import android.os.Message;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteCallbackList;
 import android.provider.Settings;
 import android.util.Log;
 import android.os.Bundle;
 
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue; /*  (additional packages required) */
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
@@ -88,21 +96,22 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	private static final String FM_RESTORE_VALUES = "com.ti.server.fmrestorecmd";
 
 	private static final int BLOCKING_TIMEOUT_IN_SEC = 4;
+	/* JFmRxTrace records logged when a command times out, and dumped */
+	private static final int TRACE_RECORDS_ON_TIMEOUT = 64;
 
 	private AudioManager mAudioManager = null;
 
 	/*
-	 * variable to make sure that the next volume change happens after the
-	 * current volume request has been completed.
+	 * Coalesces volume key bursts to the latest level, with at most one set
+	 * volume command in flight.
 	 */
-	private boolean mVolState = VOL_REQ_STATE_IDLE;
+	private FmRxVolumeCoalescer mVolumeCoalescer;
 
 	TelephonyManager tmgr;
 
 	private boolean mResumeAfterCall = false; // Varibale to check whether to
 	// resume FM after call.
 
-	private Object mVolumeSynchronizationLock = new Object();
 	private boolean isFmCreated = false;
 
 	// to make the get API
@@ -116,7 +125,13 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	/*  ***********Constants *********************** */
 
 	private JFmRx mJFmRx;
-	private int mState = FmReceiver.STATE_DEFAULT; // State of the FM Service
+	/* Issues the get/set commands and matches their fmRxCmdDone completions */
+	private JFmRxAsync mJFmRxAsync;
+	/* Configuration confirmed by the chip, answers the get APIs */
+	private final FmRxConfigCache mConfigCache = new FmRxConfigCache();
+	/* Broadcast, radio on and wakelock accounting shown by dump() */
+	private final FmRxServiceStats mStats = new FmRxServiceStats();
+	private volatile int mState = FmReceiver.STATE_DEFAULT; // State of the FM Service
 
 	private Context mContext = null;
 	/* Variable to store the current Band */
@@ -133,35 +148,49 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * to the application
 	 */
 	private JFmRx.JFmRxMonoStereoMode mMode = JFmRx.JFmRxMonoStereoMode.FM_RX_STEREO;
-	/*
-	 * Variable to store the PiCode , so that when the value is changed
-	 * ,intimate to the application
-	 */
-	static int last_msg_printed = 255;
+	/* Clients receiving the events over binder, with their action filter */
+	private final RemoteCallbackList<IFmReceiverCallback> mCallbacks = new RemoteCallbackList<IFmReceiverCallback>();
+
+	/* OMAPS00207258/OMAPS00207261: PS and RT byte to string conversion */
+	private final RdsTextDecoder mPsDecoder = new RdsTextDecoder();
+	private final RdsTextDecoder mRtDecoder = new RdsTextDecoder();
+
+	/* Decodes the raw RDS groups, fed through mRdsRing */
+	private static final int RDS_RING_SLOTS = 64;
+	private JFmRxRdsRing mRdsRing = null;
+	private RdsGroupDecoder mRdsGroupDecoder;
+	/* Group mask requested by the client, the decoder groups are added */
+	private volatile long mRdsGroupMask = 0;
+
+	/* RDS-TMC traffic events, decoded once setTmcEnabled() asked for them */
+	private TmcDecoder mTmcDecoder;
+	private volatile boolean mTmcEnabled = false;
+
+	/* Collects the RT fragments, only whole messages are broadcast */
+	private RadioTextAssembler mRtAssembler;
+
+	/* Drops repeated RDS values and rate limits their broadcasts */
+	private FmRxBroadcastThrottle mBroadcastThrottle;
 
 	private IntentFilter mIntentFilter;
 
-	/* Variables to store the return value of the get APIs */
-	private static int getBandValue = FM_BAND_EUROPE_US;
-	private static int getMonoStereoModeValue = 0;
-	private static int getMuteModeValue = FM_NOT_MUTE;
-	private static int getRfDependentMuteModeValue = FM_RF_DEP_MUTE_OFF;
-	private static int getRssiThresholdValue = FM_RSSI_THRESHHOLD;
-	private static int getDeEmphasisFilterValue = 0;
-	private static int getVolumeValue = FM_MAX_VOLUME / 2;
-	private static int getChannelSpaceValue = FM_CHANNEL_SPACE;
-	private static int getTunedFrequencyValue = FM_UNDEFINED_FREQ;
-	private static int getRssiValue = 0;
-	private static int getRdsSystemValue = 0;
-	private static long getRdsGroupMaskValue = FM_UNDEFINED_FREQ;
-	private static int getRdsAfSwitchModeValue = 0;
-	private static double getFwVersion = 0.0;
-	private static int getScanProgress = 0;
-	private static boolean mIsValidChannel = false;
-	private static boolean mIsCompleteScanInProgress = false;
-	private static boolean mIsSeekInProgress = false;
-	private static boolean mIsTuneInProgress = false;
+	/* Read by the get APIs without holding the stub lock */
+	private static volatile boolean mIsCompleteScanInProgress = false;
+	private static volatile boolean mIsSeekInProgress = false;
+	private static volatile boolean mIsTuneInProgress = false;
 	private static int mStopCompleteScanStatus = 0;
+	private volatile JFmRxFuture mStopCompleteScanFuture = null;
+
+	/* Results of the last complete scan, kept across restarts */
+	private FmRxScanCache mScanCache;
+	/* Channel spacing the running complete scan is filed under */
+	private volatile int mScanSpacing = FM_CHANNEL_SPACE;
+	/* Complete scan reporting the stations as they are found */
+	private FmRxSeekScan mSeekScan;
+	/* Software scan over the channel grid */
+	private FmRxGridScan mGridScan;
+	/* Capture being played back by replayCapture(), null if none */
+	private JFmRxReplay mReplay = null;
 
 	/*************************************************************************************************
 	 * // Constructor
@@ -178,6 +207,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		try {
 			// create a single new JFmRx instance
 			mJFmRx = new JFmRx();
+			mJFmRxAsync = new JFmRxAsync(mJFmRx);
 		} catch (Exception e) {
 			Log.e(TAG, "init: Exception thrown during init (" + e.toString()
 					+ ")");
@@ -187,12 +217,46 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		// Save the context to be used later
 		mContext = context;
 		mState = FmReceiver.STATE_DEFAULT;
+		mScanCache = new FmRxScanCache(context.getSharedPreferences(
+				"fmRxScanCache", Context.MODE_PRIVATE));
 
 		// Delayed Disable to avoid clicks
 		mDelayedDisable = new DelayedDisable();
 		mDelayedPauseDisable = new DelayedPauseDisable();
 		mDelayedDisableHandler = new Handler();
 
+		mBroadcastThrottle = new FmRxBroadcastThrottle(
+				new FmRxBroadcastThrottle.Sender() {
+					public void send(Intent intent) {
+						sendFmEvent(intent);
+					}
+				}, new Handler());
+
+		mRdsGroupDecoder = new RdsGroupDecoder(mRdsGroupListener);
+		mSeekScan = new FmRxSeekScan(new Handler(), mJFmRxAsync, mScanListener);
+		mGridScan = new FmRxGridScan(new Handler(), mJFmRxAsync, mScanListener);
+		mTmcDecoder = new TmcDecoder(mTmcListener);
+
+		mRtAssembler = new RadioTextAssembler(
+				new RadioTextAssembler.Listener() {
+					public void onRadioText(byte[] text, int length,
+							int progress, Object tag) {
+						sendRadioText(text, length, progress,
+								(JFmRx.JFmRxRepertoire) tag);
+					}
+				});
+
+		mVolumeCoalescer = new FmRxVolumeCoalescer(new Handler(),
+				new FmRxVolumeCoalescer.Issuer() {
+					public JFmRxFuture issue(int volume) {
+						return setVolume(volume);
+					}
+
+					public void abandoned(JFmRxFuture future) {
+						mConfigCache.onCmdAbandoned(future.getCommand());
+					}
+				});
+
 		PowerManager powerManager = (PowerManager) mContext
 				.getSystemService(Context.POWER_SERVICE);
 		if (powerManager != null) {
@@ -276,6 +340,36 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		return nReturnVal;
 	}
 
+	/*************************************************************************************************
+	 * Waits for the fmRxCmdDone of a command issued through mJFmRxAsync. On
+	 * timeout the command is released, and cancelled once no other caller
+	 * shares it, so its late completion is dropped instead of releasing the
+	 * next caller of the same command.
+	 *************************************************************************************************/
+	private boolean waitCmdDone(JFmRxFuture future) {
+
+		try {
+			if (future.await(BLOCKING_TIMEOUT_IN_SEC * 1000L)) {
+				/* Done by cancel() rather than by its completion */
+				return !future.isCancelled();
+			}
+			Log.e(TAG, "waitCmdDone: timeout on command " + future.getCommand());
+			mJFmRx.getCmdStats().onTimeout(future.getCommand());
+			JFmRxTrace.log(TAG, TRACE_RECORDS_ON_TIMEOUT);
+		} catch (InterruptedException e) {
+			Log.e(TAG, "waitCmdDone: interrupted on command "
+					+ future.getCommand());
+		}
+		/* release() fails if the completion raced with the timeout */
+		if (!future.release()) {
+			return !future.isCancelled();
+		}
+		if (future.isCancelled()) {
+			mConfigCache.onCmdAbandoned(future.getCommand());
+		}
+		return false;
+	}
+
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
@@ -308,6 +402,15 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 								+ status.toString());
 				return false;
 			}
+
+			/* Without the ring, raw groups still arrive through fmRxRawRDS */
+			mRdsRing = JFmRxRdsRing.allocate(RDS_RING_SLOTS);
+			status = mJFmRx.setRawRdsRing(mRdsRing);
+			if (JFmRxStatus.SUCCESS != status) {
+				Log.e(TAG, "mJFmRx.setRawRdsRing returned status "
+						+ status.toString());
+				mRdsRing = null;
+			}
 		} catch (Exception e) {
 			Log.e(TAG, "create: Exception thrown during create ("
 					+ e.toString() + ")");
@@ -325,12 +428,14 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+		if (mReplay != null) {
+			Log.e(TAG, "enable: replay in progress");
+			return false;
+		}
 		/* make sure we turn off any running timers */
 		mDelayedDisableHandler.removeCallbacks(mDelayedDisable);
 		mDelayedDisableHandler.removeCallbacks(mDelayedPauseDisable);
-		if ((mWakeLock != null) && (mWakeLock.isHeld())) {
-			mWakeLock.release();
-		}
+		releaseWakeLock();
 		try {
 			JFmRxStatus status = mJFmRx.enable();
 			if (DBG)
@@ -367,6 +472,12 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		try {
 			mContext.unregisterReceiver(mFmRxIntentReceiver);
 
+			if (mRdsRing != null) {
+				mJFmRx.setRawRdsRing(null);
+				mRdsRing = null;
+			}
+			mScanCache.flush();
+
 			JFmRxStatus status = mJFmRx.destroy();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.destroy returned status "
@@ -385,6 +496,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 
 		mState = FmReceiver.STATE_DEFAULT;
+		mStats.onRadioDisabled();
 
 		return true;
 
@@ -403,24 +515,35 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 
 		mAudioManager.setParameters(FM_RADIO_ACTIVE_KEY + "=off");
 
-		if (mWakeLock != null) {
-			mWakeLock.acquire();
-		}
+		acquireWakeLock();
 		mDelayedDisableHandler.postDelayed(mDelayedDisable, FM_DISABLE_DELAY);
 
 		return true;
 
 	}
 
+	/* Holds the CPU up across the delayed disable */
+	private void acquireWakeLock() {
+		if (mWakeLock != null) {
+			mWakeLock.acquire();
+			mStats.onWakeLockAcquired();
+		}
+	}
+
+	private void releaseWakeLock() {
+		if ((mWakeLock != null) && (mWakeLock.isHeld())) {
+			mWakeLock.release();
+			mStats.onWakeLockReleased();
+		}
+	}
+
 	/*************************************************************************************************
 	 * Implementation DelayedDisable runnable class
 	 *************************************************************************************************/
 	private class DelayedDisable implements Runnable {
 
 		public final void run() {
-			if ((mWakeLock != null) && (mWakeLock.isHeld())) {
-				mWakeLock.release();
-			}
+			releaseWakeLock();
 
 			/* check that state is still valid */
 			if (mState == FmReceiver.STATE_ENABLED) {
@@ -455,9 +578,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	private class DelayedPauseDisable implements Runnable {
 
 		public final void run() {
-			if ((mWakeLock != null) && (mWakeLock.isHeld())) {
-				mWakeLock.release();
-			}
+			releaseWakeLock();
 
 			/* check that state is still valid */
 			if (mState == FmReceiver.STATE_ENABLED) {
@@ -490,10 +611,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetBandSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setBand(int band) {
+		JFmRxFuture future;
+
 		mCurrentBand = band;
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setBand: failed, fm not enabled state " + mState);
@@ -511,27 +631,22 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return false;
 			}
 
-			mSetBandSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setBand(lBand);
+			mConfigCache.onSetIssued(FmRxConfigCache.BAND, band);
+			future = mJFmRxAsync.setBand(lBand);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setBand returned status "
 						+ status.toString());
 			if (JFmRxStatus.PENDING != status) {
 				Log.e(TAG, "mJFmRx.setBand returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.BAND);
 				return false;
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
 
-			try {
-				String syncString = mSetBandSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setBand-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -548,10 +663,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mBandSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized int getBand() {
+	public int getBand() {
+		JFmRxFuture future;
+		long cached;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getBand: failed, fm not enabled  state " + mState);
@@ -559,10 +673,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.BAND);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mBandSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getBand();
+			future = mJFmRxAsync.getBand();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getBand returned status "
 						+ status.toString());
@@ -574,14 +694,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
 
-			try {
-				String syncString = mBandSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getBand-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -590,7 +703,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getBand():--------- Exiting... ");
-		return getBandValue;
+		return (int) future.getValue();
 
 	}
 
@@ -616,6 +729,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						+ lMode);
 				return false;
 			}
+			mConfigCache.onSetIssued(FmRxConfigCache.MONO_STEREO_MODE, mode);
 			JFmRxStatus status = mJFmRx.setMonoStereoMode(lMode);
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setMonoStereoMode returned status "
@@ -623,6 +737,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			if (JFmRxStatus.PENDING != status) {
 				Log.e(TAG, "mJFmRx.setMonoStereoMode returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.MONO_STEREO_MODE);
 				return false;
 			}
 
@@ -641,10 +756,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mMonoStereoModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getMonoStereoMode() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized int getMonoStereoMode() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getMonoStereoMode: failed, fm not enabled  state "
 					+ mState);
@@ -652,10 +767,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.MONO_STEREO_MODE);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mMonoStereoModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getMonoStereoMode();
+			future = mJFmRxAsync.getMonoStereoMode();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getMonoStereoMode returned status "
 						+ status.toString());
@@ -666,14 +787,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				String syncString = mMonoStereoModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getMonoStereoMode-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 
@@ -686,7 +800,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					.d(TAG,
 							"StubFmRxService:getMonoStereoMode(): -------- Exiting ");
 
-		return getMonoStereoModeValue;
+		return (int) future.getValue();
 
 	}
 
@@ -694,10 +808,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mSetMuteModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setMuteMode(int muteMode) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setMuteMode: failed, fm not enabled  state " + mState);
 			return false;
@@ -713,14 +826,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						+ lMode);
 				return false;
 			}
-			mSetMuteModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setMuteMode(lMode);
+			mConfigCache.onSetIssued(FmRxConfigCache.MUTE_MODE, muteMode);
+			future = mJFmRxAsync.setMuteMode(lMode);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.SetMuteMode returned status "
 						+ status.toString());
 			if (JFmRxStatus.PENDING != status) {
 				Log.e(TAG, "mJFmRx.SetMuteMode returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.MUTE_MODE);
 				return false;
 			}
 
@@ -742,14 +857,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 
 			/* OMAPS00207918:implementation to make the set API Synchronous */
 
-			try {
-				String syncString = mSetMuteModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setMuteMode-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -768,20 +876,26 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mMuteModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getMuteMode() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized int getMuteMode() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getMuteMode: failed, fm not enabled  state " + mState);
 			return 0;
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.MUTE_MODE);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mMuteModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getMuteMode();
+			future = mJFmRxAsync.getMuteMode();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getMuteMode returned status "
 						+ status.toString());
@@ -792,14 +906,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mMuteModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getMuteMode-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 
@@ -809,17 +916,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getMuteMode(): -------- Exiting... ");
-		return getMuteModeValue;
+		return (int) future.getValue();
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetRfDependentMuteModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setRfDependentMuteMode(int rfMuteMode) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setRfDependentMuteMode: failed, fm not enabled  state "
 					+ mState);
@@ -838,31 +944,24 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return false;
 			}
 
-			mSetRfDependentMuteModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setRfDependentMuteMode(lrfMute);
+			mConfigCache.onSetIssued(FmRxConfigCache.RF_DEPENDENT_MUTE_MODE,
+					rfMuteMode);
+			future = mJFmRxAsync.setRfDependentMuteMode(lrfMute);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setRfDependentMuteMode returned status "
 						+ status.toString());
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.setRfDependentMuteMode returned status "
 						+ status.toString());
+				mConfigCache
+						.onSetRejected(FmRxConfigCache.RF_DEPENDENT_MUTE_MODE);
 				return false;
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:setRfDependentMuteMode(): -------- Waiting... ");
-				String syncString = mSetRfDependentMuteModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log
-						.e(TAG,
-								"mJFmRx.setRfDependentMuteMode-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setRfDependentMuteMode(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 
@@ -880,10 +979,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mRfDependentMuteModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getRfDependentMuteMode() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized int getRfDependentMuteMode() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getRfDependentMuteMode: failed, fm not enabled  state "
 					+ mState);
@@ -891,10 +990,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.RF_DEPENDENT_MUTE_MODE);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mRfDependentMuteModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getRfDependentMute();
+			future = mJFmRxAsync.getRfDependentMute();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getRfDependentMuteMode returned status "
 						+ status.toString());
@@ -905,16 +1010,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mRfDependentMuteModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log
-						.e(TAG,
-								"mJFmRx.getRfDependentMuteMode-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 
@@ -926,17 +1022,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log
 					.d(TAG,
 							"StubFmRxService:getRfDependentMuteMode(): --------- Exiting... ");
-		return getRfDependentMuteModeValue;
+		return (int) future.getValue();
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetRssiThresholdSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setRssiThreshold(int threshhold) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setRssiThreshold: failed, fm not enabled  state "
 					+ mState);
@@ -955,29 +1050,23 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			if (DBG)
 				Log.d(TAG, "StubFmRxService:setRssiThreshold  "
 						+ lrssiThreshhold);
-			mSetRssiThresholdSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setRssiThreshold(lrssiThreshhold);
+			mConfigCache.onSetIssued(FmRxConfigCache.RSSI_THRESHOLD,
+					threshhold);
+			future = mJFmRxAsync.setRssiThreshold(lrssiThreshhold);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setRssiThreshold returned status "
 						+ status.toString());
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.setRssiThreshold returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.RSSI_THRESHOLD);
 				return false;
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:setRssiThreshold(): -------- Waiting... ");
-				String syncString = mSetRssiThresholdSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setRssiThreshold-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setRssiThreshold(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 
@@ -995,10 +1084,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mRssiThresholdSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized int getRssiThreshold() {
+	public int getRssiThreshold() {
+		JFmRxFuture future;
+		long cached;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getRssiThreshold: failed, fm not enabled  state "
@@ -1007,10 +1095,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.RSSI_THRESHOLD);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mRssiThresholdSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getRssiThreshold();
+			future = mJFmRxAsync.getRssiThreshold();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getRssiThreshold returned status "
 						+ status.toString());
@@ -1021,14 +1115,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mRssiThresholdSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getRssiThreshold-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1038,7 +1125,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		if (DBG)
 			Log.d(TAG,
 					"StubFmRxService:getRssiThreshold(): ---------- Exiting ");
-		return getRssiThresholdValue;
+		return (int) future.getValue();
 
 	}
 
@@ -1046,10 +1133,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mSetDeEmphasisFilterSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setDeEmphasisFilter(int filter) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setDeEmphasisFilter: failed, fm not enabled  state "
 					+ mState);
@@ -1067,31 +1153,22 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 								+ lFilter);
 				return false;
 			}
-			mSetDeEmphasisFilterSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.SetDeEmphasisFilter(lFilter);
+			mConfigCache.onSetIssued(FmRxConfigCache.DEEMPHASIS_FILTER, filter);
+			future = mJFmRxAsync.setDeEmphasisFilter(lFilter);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setDeEmphasisFilter returned status "
 						+ status.toString());
 			if (JFmRxStatus.PENDING != status) {
 				Log.e(TAG, "mJFmRx.setDeEmphasisFilter returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.DEEMPHASIS_FILTER);
 				return false;
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:setDeEmphasisFilter(): -------- Waiting... ");
-				String syncString = mSetDeEmphasisFilterSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log
-						.e(TAG,
-								"mJFmRx.setDeEmphasisFilter-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setDeEmphasisFilter(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1108,10 +1185,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mDeEmphasisFilterSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getDeEmphasisFilter() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized int getDeEmphasisFilter() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getDeEmphasisFilter: failed, fm not enabled  state "
 					+ mState);
@@ -1119,10 +1196,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.DEEMPHASIS_FILTER);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mDeEmphasisFilterSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.GetDeEmphasisFilter();
+			future = mJFmRxAsync.getDeEmphasisFilter();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getDeEmphasisFilter returned status "
 						+ status.toString());
@@ -1132,16 +1215,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mDeEmphasisFilterSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log
-						.e(TAG,
-								"mJFmRx.getDeEmphasisFilter-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1151,7 +1225,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		if (DBG)
 			Log.d(TAG,
 					"StubFmRxService:getDeEmphasisFilter(): -------- Exiting ");
-		return getDeEmphasisFilterValue;
+		return (int) future.getValue();
 
 	}
 
@@ -1159,45 +1233,47 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private boolean setVolume(int volume) {
+	/*
+	 * Issued by mVolumeCoalescer only. Returns the pending command, or null if
+	 * it could not be issued.
+	 */
+	private JFmRxFuture setVolume(int volume) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setVolume: failed, fm not enabled  state " + mState);
-			return false;
+			return null;
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
 
-			JFmRx.JFmRxVolume lVolume = new JFmRx.JFmRxVolume(volume);
-			if (lVolume == null) {
-				Log.e(TAG, "StubFmRxService:setVolume invalid  lVolume " + lVolume);
-				return false;
-			}
-
-			synchronized (mVolumeSynchronizationLock) {
-
-				JFmRxStatus status = mJFmRx.setVolume(lVolume);
-				if (DBG)
-					Log.d(TAG, "mJFmRx.setVolume returned status "
-							+ status.toString());
-				if (JFmRxStatus.PENDING != status) {
-					Log.e(TAG, "mJFmRx.setVolume returned status "
-							+ status.toString());
-					return false;
-				}
+		JFmRx.JFmRxVolume lVolume = new JFmRx.JFmRxVolume(volume);
+		if (lVolume == null) {
+			Log.e(TAG, "StubFmRxService:setVolume invalid  lVolume " + lVolume);
+			return null;
+		}
 
-				mVolState = VOL_REQ_STATE_PENDING;
-			}
+		mConfigCache.onSetIssued(FmRxConfigCache.VOLUME, volume);
+		future = mJFmRxAsync.setVolume(lVolume);
+		JFmRxStatus status = future.getIssueStatus();
+		if (DBG)
+			Log.d(TAG, "mJFmRx.setVolume returned status "
+					+ status.toString());
+		if (JFmRxStatus.PENDING != status) {
+			Log.e(TAG, "mJFmRx.setVolume returned status "
+					+ status.toString());
+			mConfigCache.onSetRejected(FmRxConfigCache.VOLUME);
+			return null;
+		}
 
-		return true;
+		return future;
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetChannelSpacingSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setChannelSpacing(int channelSpace) {
+		JFmRxFuture future;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setChannelSpacing: failed, fm not enabled  state "
@@ -1217,28 +1293,22 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 								+ lChannelSpace);
 				return false;
 			}
-			mSetChannelSpacingSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setChannelSpacing(lChannelSpace);
+			mConfigCache.onSetIssued(FmRxConfigCache.CHANNEL_SPACING,
+					channelSpace);
+			future = mJFmRxAsync.setChannelSpacing(lChannelSpace);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setChannelSpacing returned status "
 						+ status.toString());
 			if (JFmRxStatus.PENDING != status) {
 				Log.e(TAG, "mJFmRx.setChannelSpacing returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.CHANNEL_SPACING);
 				return false;
 			}
 
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:setChannelSpacing(): -------- Waiting... ");
-				String syncString = mSetChannelSpacingSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setChannelSpacing-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setChannelSpacing(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1255,10 +1325,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mVolumeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	private synchronized int getVolume() {
+	private int getVolume() {
+		JFmRxFuture future;
+		long cached;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getVolume: failed, fm not enabled  state " + mState);
@@ -1266,10 +1335,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.VOLUME);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mVolumeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getVolume();
+			future = mJFmRxAsync.getVolume();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getVolume returned status "
 						+ status.toString());
@@ -1281,14 +1356,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mVolumeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getVolume-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1297,7 +1365,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getVolume(): -------- Exiting... ");
-		return getVolumeValue;
+		return (int) future.getValue();
 
 	}
 
@@ -1305,10 +1373,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mChannelSpacingSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getChannelSpacing() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized int getChannelSpacing() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getChannelSpacing: failed, fm not enabled  state "
 					+ mState);
@@ -1316,10 +1384,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.CHANNEL_SPACING);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mChannelSpacingSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getChannelSpacing();
+			future = mJFmRxAsync.getChannelSpacing();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getChannelSpacing returned status "
 						+ status.toString());
@@ -1331,14 +1405,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mChannelSpacingSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getChannelSpacing-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 
@@ -1348,7 +1415,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getChannelSpacing() --Exiting ");
-		return getChannelSpaceValue;
+		return (int) future.getValue();
 
 	}
 
@@ -1403,10 +1470,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mTunedFrequencySyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getTunedFrequency() {
+		JFmRxFuture future;
 
-	public synchronized int getTunedFrequency() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getTunedFrequency: failed, fm not enabled  state "
 					+ mState);
@@ -1416,8 +1482,8 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mTunedFrequencySyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getTunedFrequency();
+			future = mJFmRxAsync.getTunedFrequency();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getTunedFrequency returned status "
 						+ status.toString());
@@ -1428,14 +1494,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mTunedFrequencySyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getTunedFrequency-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1444,7 +1503,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getTunedFrequency(): ------- Exiting ");
-		return getTunedFrequencyValue;
+		return (int) future.getValue();
 
 	}
 
@@ -1484,10 +1543,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mStopSeekSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean stopSeek() {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "stopSeek: failed, fm not enabled  state " + mState);
 			return false;
@@ -1496,23 +1554,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mStopSeekSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.stopSeek();
+			future = mJFmRxAsync.stopSeek();
+			JFmRxStatus status = future.getIssueStatus();
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.stopSeek returned status "
 						+ status.toString());
 				return false;
 			}
 
-			try {
-				Log.i(TAG, "StubFmRxService:stopSeek(): -------- Waiting... ");
-				String syncString = mStopSeekSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.stopSeek-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:stopSeek(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1527,10 +1578,8 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mRssiSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized int getRssi() {
+	public int getRssi() {
+		JFmRxFuture future;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getRssi: failed, fm not enabled  state " + mState);
@@ -1540,8 +1589,8 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mRssiSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getRssi();
+			future = mJFmRxAsync.getRssi();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getRssi returned status "
 						+ status.toString());
@@ -1551,14 +1600,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mRssiSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getRssi-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1567,27 +1609,37 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getRssi(): ---------- Exiting ");
-		return getRssiValue;
+		/*
+		 * FW is sending int8 which is read as uint16 in the stack, so we are
+		 * converting it back to int.RSSI range is -127 to 128
+		 */
+		return convertUnsignedToSignedInt(future.getValue());
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mRdsSystemSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public int getRdsSystem() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized int getRdsSystem() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getRdsSystem: failed, fm not enabled  state " + mState);
 			return 0;
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.RDS_SYSTEM);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mRdsSystemSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getRdsSystem();
+			future = mJFmRxAsync.getRdsSystem();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getRdsSystem returned status "
 						+ status.toString());
@@ -1597,14 +1649,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mRdsSystemSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getRdsSystem-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1613,17 +1658,15 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		if (DBG)
 			Log.d(TAG, "StubFmRxService:getRdsSystem(): ----------- Exiting ");
-		return getRdsSystemValue;
+		return (int) future.getValue();
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetRdsSystemSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setRdsSystem(int system) {
+		JFmRxFuture future;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setRdsSystem: failed, fm not enabled  state " + mState);
@@ -1642,27 +1685,21 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 			if (DBG)
 				Log.d(TAG, "StubFmRxService:setRdsSystem   lSystem " + lSystem);
-			mSetRdsSystemSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setRdsSystem(lSystem);
+			mConfigCache.onSetIssued(FmRxConfigCache.RDS_SYSTEM, system);
+			future = mJFmRxAsync.setRdsSystem(lSystem);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setRdsSystem returned status "
 						+ status.toString());
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.setRdsSystem returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.RDS_SYSTEM);
 				return false;
 			}
 
-			try {
-				Log.i(TAG,
-						"StubFmRxService:setRdsSystem(): -------- Waiting... ");
-				String syncString = mSetRdsSystemSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setRdsSystem-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setRdsSystem(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1678,10 +1715,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mEnableRdsSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean enableRds() {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "enableRds: failed, fm not enabled  state " + mState);
 			return false;
@@ -1690,28 +1726,24 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mEnableRdsSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.enableRDS();
+			mConfigCache.onSetIssued(FmRxConfigCache.RDS_ENABLED, 1);
+			future = mJFmRxAsync.enableRds();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.enableRds returned status "
 						+ status.toString());
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.enableRds returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.RDS_ENABLED);
 				return false;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				Log.d(TAG, "StubFmRxService:enableRds(): -------- Waiting... ");
-				String syncString = mEnableRdsSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.enableRds-- Wait() s Exception!!!");
+			Log.d(TAG, "StubFmRxService:enableRds(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
+			updateRdsGroupMask();
 		} else {
 			Log.e(TAG, "Seek is in progress.cannot call the API");
 			return false;
@@ -1726,10 +1758,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mDisableRdsSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean disableRds() {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "disableRds: failed, fm not enabled  state " + mState);
 			return false;
@@ -1738,28 +1769,21 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mDisableRdsSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.DisableRDS();
+			mConfigCache.onSetIssued(FmRxConfigCache.RDS_ENABLED, 0);
+			future = mJFmRxAsync.disableRds();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.disableRds returned status "
 						+ status.toString());
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.disableRds returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.RDS_ENABLED);
 				return false;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:disableRds(): -------- Waiting... ");
-				String syncString = mDisableRdsSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.disableRds-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:disableRds(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1775,10 +1799,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetRdsGroupMaskSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setRdsGroupMask(int mask) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setRdsGroupMask: failed, fm not enabled  state "
 					+ mState);
@@ -1788,30 +1811,24 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			JFmRx.JFmRxRdsGroupTypeMask lMask = JFmUtils.getEnumConst(
-					JFmRx.JFmRxRdsGroupTypeMask.class, (long) mask);
-			mSetRdsGroupMaskSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setRdsGroupMask(lMask);
+			/* The chip keeps reporting the groups mRdsGroupDecoder needs */
+			long lMask = (mask & 0xFFFFFFFFL) | decoderGroupMask();
+			mRdsGroupMask = mask & 0xFFFFFFFFL;
+			mConfigCache.onSetIssued(FmRxConfigCache.RDS_GROUP_MASK, lMask);
+			future = mJFmRxAsync.setRdsGroupMask(lMask);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setRdsGroupMask returned status "
 						+ status.toString());
 			if (status != JFmRxStatus.PENDING) {
 				Log.e(TAG, "mJFmRx.setRdsGroupMask returned status "
 						+ status.toString());
+				mConfigCache.onSetRejected(FmRxConfigCache.RDS_GROUP_MASK);
 				return false;
 			}
 
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:setRdsGroupMask(): -------- Waiting... ");
-				String syncString = mSetRdsGroupMaskSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setRdsGroupMask-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setRdsGroupMask(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1826,10 +1843,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mRdsGroupMaskSyncQueue = new LinkedBlockingQueue<String>(
-			5);
+	public long getRdsGroupMask() {
+		JFmRxFuture future;
+		long cached;
 
-	public synchronized long getRdsGroupMask() {
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getRdsGroupMask: failed, fm not enabled  state "
 					+ mState);
@@ -1837,10 +1854,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.RDS_GROUP_MASK);
+		if (cached != FmRxConfigCache.NONE) {
+			return clientGroupMask(cached);
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mRdsGroupMaskSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getRdsGroupMask();
+			future = mJFmRxAsync.getRdsGroupMask();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getRdsGroupMask returned status "
 						+ status.toString());
@@ -1850,14 +1873,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mRdsGroupMaskSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getRdsGroupMask-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -1868,17 +1884,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log
 					.d(TAG,
 							"StubFmRxService:getRdsGroupMask(): ---------- Exiting ");
-		return getRdsGroupMaskValue;
+		return clientGroupMask(future.getValue());
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mSetRdsAfSwitchModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
 	public boolean setRdsAfSwitchMode(int mode) {
+		JFmRxFuture future;
+
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "setRdsAfSwitchMode: failed, fm not enabled  state "
 					+ mState);
@@ -1895,8 +1910,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						+ lMode);
 				return false;
 			}
-			mSetRdsAfSwitchModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.setRdsAfSwitchMode(lMode);
+			mConfigCache.onSetIssued(FmRxConfigCache.RDS_AF_SWITCH_MODE, mode);
+			future = mJFmRxAsync.setRdsAfSwitchMode(lMode);
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.setRdsAfSwitchMode returned status "
 						+ status.toString());
@@ -1904,19 +1920,11 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				Log.e(TAG, "mJFmRx.setRdsAfSwitchMode returned status "
 						+ status.toString());
 
+				mConfigCache.onSetRejected(FmRxConfigCache.RDS_AF_SWITCH_MODE);
 				return false;
 			}
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:setRdsAfSwitchMode(): -------- Waiting... ");
-				String syncString = mSetRdsAfSwitchModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.setRdsAfSwitchMode-- Wait() s Exception!!!");
+			Log.i(TAG, "StubFmRxService:setRdsAfSwitchMode(): -------- Waiting... ");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -1931,10 +1939,9 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
 
-	private BlockingQueue<String> mRdsAfSwitchModeSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized int getRdsAfSwitchMode() {
+	public int getRdsAfSwitchMode() {
+		JFmRxFuture future;
+		long cached;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log.e(TAG, "getRdsAfSwitchMode: failed, fm not enabled  state "
@@ -1943,10 +1950,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+
+		cached = mConfigCache.get(FmRxConfigCache.RDS_AF_SWITCH_MODE);
+		if (cached != FmRxConfigCache.NONE) {
+			return (int) cached;
+		}
+
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mRdsAfSwitchModeSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getRdsAfSwitchMode();
+			future = mJFmRxAsync.getRdsAfSwitchMode();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getRdsAfSwitchMode returned status "
 						+ status.toString());
@@ -1957,14 +1970,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mRdsAfSwitchModeSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getRdsAfSwitchMode-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 
@@ -1976,7 +1982,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log
 					.d(TAG,
 							"StubFmRxService:getRdsAfSwitchMode(): ---------- Exiting... ");
-		return getRdsAfSwitchModeValue;
+		return (int) future.getValue();
 
 	}
 
@@ -2156,9 +2162,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 
 			mAudioManager.setParameters(FM_RADIO_ACTIVE_KEY + "=off");
 
-			if (mWakeLock != null) {
-				mWakeLock.acquire();
-			}
+			acquireWakeLock();
 			mDelayedDisableHandler.postDelayed(mDelayedPauseDisable,
 					FM_DISABLE_DELAY);
 
@@ -2171,8 +2175,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mStopCompleteScanSyncQueue = new LinkedBlockingQueue<String>(5);
-
 	public boolean completeScan() {
 
 		if (mState != FmReceiver.STATE_ENABLED) {
@@ -2180,11 +2182,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			return false;
 		}
 
-		mStopCompleteScanSyncQueue.clear();
-
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
 
+		mScanSpacing = getChannelSpacing();
 		JFmRxStatus status = mJFmRx.completeScan();
 		if (DBG)
 			Log.d(TAG, "mJFmRx.completeScan returned status "
@@ -2204,46 +2205,269 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-
-	public int stopCompleteScan() {
+	public boolean startStreamingScan() {
 
 		if (mState != FmReceiver.STATE_ENABLED) {
-			Log.e(TAG, "stopCompleteScan: failed, fm not enabled state "
+			Log.e(TAG, "startStreamingScan: failed, fm not enabled state "
 					+ mState);
-			return 0;
+			return false;
 		}
-
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
-		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)) {
-			Log.i(TAG, "stubFmRxService:stopCompleteScan started");
-			mStopCompleteScanSyncQueue.clear();
+		if ((mIsSeekInProgress == true) || (mIsTuneInProgress == true)
+				|| (mIsCompleteScanInProgress == true)) {
+			Log.e(TAG, "startStreamingScan: seek, tune or scan in progress");
+			return false;
+		}
 
-			JFmRxStatus status = mJFmRx.stopCompleteScan();
-			if (DBG)
-				Log.d(TAG, "mJFmRx.stopCompleteScan returned status "
-						+ status.toString());
-			if (JFmRxStatus.COMPLETE_SCAN_IS_NOT_IN_PROGRESS == status) {
-					if(DBG)
-						Log.d(TAG,"complete scan already stopped");	
-					return status.getValue();
-			} else if(JFmRxStatus.PENDING != status){
-				Log.e(TAG, "mJFmRx.stopCompleteScan returned status "
-						+ status.toString());
-					return 0;
+		mScanSpacing = getChannelSpacing();
+		/* Keeps the other APIs off the chip until fmRxCompleteScanDone */
+		mIsCompleteScanInProgress = true;
+		if (!mSeekScan.start(BaseFreq(), LastFreq(), scanRssiThreshold())) {
+			Log.e(TAG, "startStreamingScan: scan not started");
+			mIsCompleteScanInProgress = activeScan() != null;
+			return false;
+		}
+		return true;
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean startSoftwareScan(FmRxScanOptions options) {
+		int spacing;
+
+		if (mState != FmReceiver.STATE_ENABLED) {
+			Log.e(TAG, "startSoftwareScan: failed, fm not enabled state "
+					+ mState);
+			return false;
+		}
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if ((mIsSeekInProgress == true) || (mIsTuneInProgress == true)
+				|| (mIsCompleteScanInProgress == true)) {
+			Log.e(TAG, "startSoftwareScan: seek, tune or scan in progress");
+			return false;
+		}
+		if (options == null) {
+			options = new FmRxScanOptions();
+		}
+
+		spacing = getChannelSpacing();
+		mScanSpacing = spacing;
+		mIsCompleteScanInProgress = true;
+		/* JFmRxChannelSpacing values count 50 kHz steps */
+		if (!mGridScan.start(BaseFreq(), LastFreq(), spacing * 50,
+				scanRssiThreshold(), options)) {
+			Log.e(TAG, "startSoftwareScan: scan not started");
+			mIsCompleteScanInProgress = activeScan() != null;
+			return false;
+		}
+		return true;
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean startCapture(ParcelFileDescriptor fd) {
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		/* Only write where the caller could: into the file it opened */
+		if (fd == null) {
+			Log.e(TAG, "startCapture: no file");
+			return false;
+		}
+		JFmRxStatus status = JFmRx
+				.startCapture(new ParcelFileDescriptor.AutoCloseOutputStream(fd));
+		if (DBG)
+			Log.d(TAG, "startCapture: status " + status);
+		return status == JFmRxStatus.SUCCESS;
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean stopCapture() {
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		return JFmRx.stopCapture() == JFmRxStatus.SUCCESS;
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean replayCapture(ParcelFileDescriptor fd,
+			final boolean realTime) {
+		final JFmRxReplay replay;
+
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if (fd == null) {
+			Log.e(TAG, "replayCapture: no file");
+			return false;
+		}
+		/* Mapped, and its file closed, right away */
+		try {
+			replay = new JFmRxReplay(
+					new ParcelFileDescriptor.AutoCloseInputStream(fd),
+					StubFmRxService.this);
+		} catch (IOException e) {
+			Log.e(TAG, "replayCapture: " + e.toString());
+			return false;
+		}
+		synchronized (this) {
+			if (mReplay != null) {
+				Log.e(TAG, "replayCapture: replay already in progress");
+				return false;
 			}
+			/*
+			 * The replayed callbacks drive the service state as the stack
+			 * would: keep them away from a radio in use or a real chip.
+			 */
+			if (mState != FmReceiver.STATE_DISABLED
+					&& mState != FmReceiver.STATE_DEFAULT) {
+				Log.e(TAG, "replayCapture: radio not disabled, state "
+						+ mState);
+				return false;
+			}
+			if (!(JFmRx.getBackend() instanceof JFmRxSimBackend)) {
+				Log.e(TAG, "replayCapture: needs the simulated stack");
+				return false;
+			}
+			mReplay = replay;
+		}
 
-			try {
-				Log
-						.i(TAG,
-								"StubFmRxService:stopCompleteScan(): -------- Waiting... ");
-				String syncString = mStopCompleteScanSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string received: " + syncString);
-					return 0;
+		/* The callbacks arrive off the binder thread, as from the stack */
+		new Thread("FmRxReplay") {
+			public void run() {
+				boolean complete = replay.play(realTime);
+				long elapsedNs = Math.max(1, replay.getElapsedNs());
+
+				Log.i(TAG, "replayCapture: " + (complete ? "done" : "aborted")
+						+ ", " + replay.getEvents() + " events in "
+						+ elapsedNs / 1000000 + " ms ("
+						+ replay.getEvents() * 1000000000L / elapsedNs
+						+ " events/s), captured over "
+						+ replay.getRecordedNs() / 1000000 + " ms");
+				synchronized (StubFmRxService.this) {
+					mReplay = null;
 				}
+			}
+		}.start();
+		return true;
+	}
+
+	/* The scan run by the service, null if none */
+	private FmRxScanEngine activeScan() {
+		if (mSeekScan.isRunning()) {
+			return mSeekScan;
+		}
+		if (mGridScan.isRunning()) {
+			return mGridScan;
+		}
+		return null;
+	}
+
+	/* RSSI a station must reach, as set on the chip */
+	private int scanRssiThreshold() {
+		long threshold = mConfigCache.get(FmRxConfigCache.RSSI_THRESHOLD);
+
+		return threshold != FmRxConfigCache.NONE ? (int) threshold
+				: FM_RSSI_THRESHHOLD;
+	}
+
+	/* Publishes the progress of the service scans */
+	private final FmRxScanListener mScanListener = new FmRxScanListener() {
+
+		public void onChannelFound(int frequency, int rssi, int index) {
+			Intent intentFound = new Intent(
+					FmReceiverIntent.SCAN_CHANNEL_FOUND_ACTION);
+			intentFound.putExtra(FmReceiverIntent.SCAN_CHANNEL_FREQUENCY,
+					frequency);
+			intentFound.putExtra(FmReceiverIntent.SCAN_CHANNEL_RSSI, rssi);
+			intentFound.putExtra(FmReceiverIntent.SCAN_CHANNEL_INDEX, index);
+			sendFmEvent(intentFound);
+		}
+
+		public void onScanProgress(int percent, int frequency) {
+			Intent intentProgress = new Intent(
+					FmReceiverIntent.SCAN_PROGRESS_ACTION);
+			intentProgress.putExtra(FmReceiverIntent.SCAN_PROGRESS, percent);
+			intentProgress.putExtra(FmReceiverIntent.SCAN_CHANNEL_FREQUENCY,
+					frequency);
+			sendFmEvent(intentProgress);
+		}
+
+		public void onScanDone(JFmRxStatus status, int[] channels,
+				int[] rssi, int count) {
+			long now = System.currentTimeMillis();
+
+			/* Same end as the chip scan, which also fills the scan cache */
+			fmRxCompleteScanDone(status, count, channels);
+			for (int i = 0; i < count; i++) {
+				mScanCache.onRssi(mCurrentBand, mScanSpacing, channels[i],
+						rssi[i], now);
+			}
+		}
+	};
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+
+	public int stopCompleteScan() {
+		JFmRxFuture future;
+
+		if (mState != FmReceiver.STATE_ENABLED) {
+			Log.e(TAG, "stopCompleteScan: failed, fm not enabled state "
+					+ mState);
+			return 0;
+		}
+
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if (activeScan() != null) {
+			/* COMPLETE_SCAN_DONE_ACTION follows once the current step ends */
+			activeScan().stop();
+			return JFmRxStatus.SUCCESS.getValue();
+		}
+		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)) {
+			Log.i(TAG, "stubFmRxService:stopCompleteScan started");
+
+			future = mJFmRxAsync.stopCompleteScan();
+			mStopCompleteScanFuture = future;
+
+			JFmRxStatus status = future.getIssueStatus();
+			if (DBG)
+				Log.d(TAG, "mJFmRx.stopCompleteScan returned status "
+						+ status.toString());
+			if (JFmRxStatus.COMPLETE_SCAN_IS_NOT_IN_PROGRESS == status) {
+					if(DBG)
+						Log.d(TAG,"complete scan already stopped");	
+					return status.getValue();
+			} else if(JFmRxStatus.PENDING != status){
+				Log.e(TAG, "mJFmRx.stopCompleteScan returned status "
+						+ status.toString());
+					return 0;
+			}
+
+			Log.i(TAG, "StubFmRxService:stopCompleteScan(): -------- Waiting... ");
+			/*
+			 * Not waitCmdDone(): the future may also be released by
+			 * fmRxCompleteScanDone, which cancels it.
+			 */
+			boolean done;
+			try {
+				done = future.await(BLOCKING_TIMEOUT_IN_SEC * 1000L);
 			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.stopCompleteScan-- Wait() s Exception!!!");
+				done = false;
+			}
+			mStopCompleteScanFuture = null;
+			if (!done && future.cancel(false)) {
+				Log.e(TAG, "stopCompleteScan: timeout");
+				mJFmRx.getCmdStats().onTimeout(
+						JFmRxCommand.CMD_STOP_COMPLETE_SCAN);
+				JFmRxTrace.log(TAG, TRACE_RECORDS_ON_TIMEOUT);
 				return 0;
 			}
 
@@ -2256,17 +2480,19 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log
 					.d(TAG,
 							"StubFmRxService:stopCompleteScan(): ---------- Exiting... ");
-		return mStopCompleteScanStatus;
+		/* Cancelled by fmRxCompleteScanDone if the scan ended first */
+		if (future.isCancelled()) {
+			return mStopCompleteScanStatus;
+		}
+		return future.getStatus().getValue();
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mValidChannelSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized boolean isValidChannel() {
+	public boolean isValidChannel() {
+		JFmRxFuture future;
 
 		if (mState != FmReceiver.STATE_ENABLED) {
 			Log
@@ -2279,8 +2505,8 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mValidChannelSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.isValidChannel();
+			future = mJFmRxAsync.isValidChannel();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.isValidChannel returned status "
 						+ status.toString());
@@ -2291,14 +2517,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			/* OMAPS00207918:implementation to make the get/set API Synchronous */
-			try {
-				String syncString = mValidChannelSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return false;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.isValidChannel-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return false;
 			}
 		} else {
@@ -2308,24 +2527,22 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		if (DBG)
 			Log.d(TAG,
 					"StubFmRxService:isValidChannel(): ---------- Exiting... ");
-		return mIsValidChannel;
+		return (future.getValue() > 0);
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mFwVersionSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized double getFwVersion() {
+	public double getFwVersion() {
+		JFmRxFuture future;
 
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)
 				&& (mIsCompleteScanInProgress == false)) {
-			mFwVersionSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getFwVersion();
+			future = mJFmRxAsync.getFwVersion();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getFwVersion returned status "
 						+ status.toString());
@@ -2335,14 +2552,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				return 0;
 			}
 
-			try {
-				String syncString = mFwVersionSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log.e(TAG, "mJFmRx.getFwVersion-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 
@@ -2354,23 +2564,26 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log
 					.d(TAG,
 							"StubFmRxService:getFwVersion(): ---------- Exiting... ");
-		return getFwVersion;
+		return ((double) future.getValue() / 1000);
 
 	}
 
 	/*************************************************************************************************
 	 * Implementation of IFmReceiver IPC interface
 	 *************************************************************************************************/
-	private BlockingQueue<String> mCompleteScanProgressSyncQueue = new LinkedBlockingQueue<String>(
-			5);
-
-	public synchronized int getCompleteScanProgress() {
+	public int getCompleteScanProgress() {
+		JFmRxFuture future;
 
 		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
 				"Need FMRX_ADMIN_PERM permission");
+		FmRxScanEngine scan = activeScan();
+		if (scan != null) {
+			/* Known locally, no need to compete with the scan for the chip */
+			return scan.getProgress();
+		}
 		if ((mIsSeekInProgress == false) && (mIsTuneInProgress == false)) {
-			mCompleteScanProgressSyncQueue.clear();
-			JFmRxStatus status = mJFmRx.getCompleteScanProgress();
+			future = mJFmRxAsync.getCompleteScanProgress();
+			JFmRxStatus status = future.getIssueStatus();
 			if (DBG)
 				Log.d(TAG, "mJFmRx.getCompleteScanProgress returned status "
 						+ status.toString());
@@ -2382,16 +2595,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				} else
 					return 0;
 			}
-			try {
-				String syncString = mCompleteScanProgressSyncQueue.poll(BLOCKING_TIMEOUT_IN_SEC, TimeUnit.SECONDS);
-				if (null == syncString || !syncString.equals("*")) {
-					Log.e(TAG, "wrong sync string receieved: " + syncString);
-					return 0;
-				}
-			} catch (InterruptedException e) {
-				Log
-						.e(TAG,
-								"mJFmRx.getCompleteScanProgress-- Wait() s Exception!!!");
+			if (!waitCmdDone(future)) {
 				return 0;
 			}
 		} else {
@@ -2402,10 +2606,704 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log
 					.d(TAG,
 							"StubFmRxService:getCompleteScanProgress(): ---------- Exiting... ");
-		return getScanProgress;
+		return (int) future.getValue();
 
 	}
 
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean refreshConfigCache() {
+
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if (mState != FmReceiver.STATE_ENABLED) {
+			Log.e(TAG, "refreshConfigCache: failed, fm not enabled state "
+					+ mState);
+			return false;
+		}
+
+		/* Each get API misses the cache, reads the chip and refills its entry */
+		mConfigCache.invalidateAll();
+		getBand();
+		getMonoStereoMode();
+		getMuteMode();
+		getRfDependentMuteMode();
+		getRssiThreshold();
+		getDeEmphasisFilter();
+		getVolume();
+		getChannelSpacing();
+		getRdsSystem();
+		getRdsGroupMask();
+		getRdsAfSwitchMode();
+
+		if (DBG)
+			Log.d(TAG, "refreshConfigCache: hits " + mConfigCache.getHits()
+					+ " misses " + mConfigCache.getMisses());
+		return mConfigCache.isComplete();
+
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public int applyConfiguration(FmRxConfiguration config) {
+		JFmRxFuture[] pending = new JFmRxFuture[8];
+		int[] pendingField = new int[8];
+		int count = 0;
+		int failed = 0;
+		JFmRxFuture future;
+
+		if (mState != FmReceiver.STATE_ENABLED) {
+			Log.e(TAG, "applyConfiguration: failed, fm not enabled state "
+					+ mState);
+			return config.getFields();
+		}
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if ((mIsSeekInProgress == true) || (mIsTuneInProgress == true)
+				|| (mIsCompleteScanInProgress == true)) {
+			Log.e(TAG, "Seek is in progress.cannot call the API");
+			return config.getFields();
+		}
+
+		/*
+		 * A band change makes the chip reload its band dependent defaults, so
+		 * it completes before the rest is compared and issued.
+		 */
+		if (config.has(FmRxConfiguration.FIELD_BAND)
+				&& configDiffers(FmRxConfigCache.BAND, config.getBand())) {
+			JFmRx.JFmRxBand lBand = JFmUtils.getEnumConst(
+					JFmRx.JFmRxBand.class, config.getBand());
+			future = null;
+			if (lBand != null) {
+				mCurrentBand = config.getBand();
+				mConfigCache.onSetIssued(FmRxConfigCache.BAND, config.getBand());
+				future = checkConfigIssued(mJFmRxAsync.setBand(lBand),
+						FmRxConfigCache.BAND);
+			}
+			if (future == null || !waitCmdDone(future) || !future.isSuccess()) {
+				failed |= FmRxConfiguration.FIELD_BAND;
+			}
+		}
+
+		/* The remaining commands are pipelined and awaited together */
+		if (config.has(FmRxConfiguration.FIELD_DEEMPHASIS_FILTER)
+				&& configDiffers(FmRxConfigCache.DEEMPHASIS_FILTER, config
+						.getDeEmphasisFilter())) {
+			JFmRx.JFmRxEmphasisFilter lFilter = JFmUtils.getEnumConst(
+					JFmRx.JFmRxEmphasisFilter.class, config
+							.getDeEmphasisFilter());
+			future = null;
+			if (lFilter != null) {
+				mConfigCache.onSetIssued(FmRxConfigCache.DEEMPHASIS_FILTER,
+						config.getDeEmphasisFilter());
+				future = checkConfigIssued(mJFmRxAsync
+						.setDeEmphasisFilter(lFilter),
+						FmRxConfigCache.DEEMPHASIS_FILTER);
+			}
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_DEEMPHASIS_FILTER;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_DEEMPHASIS_FILTER;
+			}
+		}
+
+		if (config.has(FmRxConfiguration.FIELD_MONO_STEREO_MODE)
+				&& configDiffers(FmRxConfigCache.MONO_STEREO_MODE, config
+						.getMonoStereoMode())) {
+			JFmRx.JFmRxMonoStereoMode lMode = JFmUtils.getEnumConst(
+					JFmRx.JFmRxMonoStereoMode.class, config
+							.getMonoStereoMode());
+			future = null;
+			if (lMode != null) {
+				mConfigCache.onSetIssued(FmRxConfigCache.MONO_STEREO_MODE,
+						config.getMonoStereoMode());
+				future = checkConfigIssued(mJFmRxAsync
+						.setMonoStereoMode(lMode),
+						FmRxConfigCache.MONO_STEREO_MODE);
+			}
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_MONO_STEREO_MODE;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_MONO_STEREO_MODE;
+			}
+		}
+
+		if (config.has(FmRxConfiguration.FIELD_CHANNEL_SPACING)
+				&& configDiffers(FmRxConfigCache.CHANNEL_SPACING, config
+						.getChannelSpacing())) {
+			JFmRx.JFmRxChannelSpacing lChannelSpace = JFmUtils.getEnumConst(
+					JFmRx.JFmRxChannelSpacing.class, config
+							.getChannelSpacing());
+			future = null;
+			if (lChannelSpace != null) {
+				mConfigCache.onSetIssued(FmRxConfigCache.CHANNEL_SPACING,
+						config.getChannelSpacing());
+				future = checkConfigIssued(mJFmRxAsync
+						.setChannelSpacing(lChannelSpace),
+						FmRxConfigCache.CHANNEL_SPACING);
+			}
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_CHANNEL_SPACING;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_CHANNEL_SPACING;
+			}
+		}
+
+		if (config.has(FmRxConfiguration.FIELD_RDS_SYSTEM)
+				&& configDiffers(FmRxConfigCache.RDS_SYSTEM, config
+						.getRdsSystem())) {
+			JFmRx.JFmRxRdsSystem lSystem = JFmUtils.getEnumConst(
+					JFmRx.JFmRxRdsSystem.class, config.getRdsSystem());
+			future = null;
+			if (lSystem != null) {
+				mConfigCache.onSetIssued(FmRxConfigCache.RDS_SYSTEM, config
+						.getRdsSystem());
+				future = checkConfigIssued(mJFmRxAsync.setRdsSystem(lSystem),
+						FmRxConfigCache.RDS_SYSTEM);
+			}
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_RDS_SYSTEM;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_RDS_SYSTEM;
+			}
+		}
+
+		if (config.has(FmRxConfiguration.FIELD_RDS_AF_SWITCH_MODE)
+				&& configDiffers(FmRxConfigCache.RDS_AF_SWITCH_MODE, config
+						.getRdsAfSwitchMode())) {
+			JFmRx.JFmRxRdsAfSwitchMode lAfMode = JFmUtils.getEnumConst(
+					JFmRx.JFmRxRdsAfSwitchMode.class, config
+							.getRdsAfSwitchMode());
+			future = null;
+			if (lAfMode != null) {
+				mConfigCache.onSetIssued(FmRxConfigCache.RDS_AF_SWITCH_MODE,
+						config.getRdsAfSwitchMode());
+				future = checkConfigIssued(mJFmRxAsync
+						.setRdsAfSwitchMode(lAfMode),
+						FmRxConfigCache.RDS_AF_SWITCH_MODE);
+			}
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_RDS_AF_SWITCH_MODE;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_RDS_AF_SWITCH_MODE;
+			}
+		}
+
+		if (config.has(FmRxConfiguration.FIELD_RSSI_THRESHOLD)
+				&& configDiffers(FmRxConfigCache.RSSI_THRESHOLD, config
+						.getRssiThreshold())) {
+			mConfigCache.onSetIssued(FmRxConfigCache.RSSI_THRESHOLD, config
+					.getRssiThreshold());
+			future = checkConfigIssued(mJFmRxAsync
+					.setRssiThreshold(new JFmRx.JFmRxRssi(config
+							.getRssiThreshold())),
+					FmRxConfigCache.RSSI_THRESHOLD);
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_RSSI_THRESHOLD;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_RSSI_THRESHOLD;
+			}
+		}
+
+		/* Last, so RDS starts with the system and AF mode above */
+		if (config.has(FmRxConfiguration.FIELD_RDS_ENABLED)
+				&& configDiffers(FmRxConfigCache.RDS_ENABLED, config
+						.isRdsEnabled() ? 1 : 0)) {
+			mConfigCache.onSetIssued(FmRxConfigCache.RDS_ENABLED, config
+					.isRdsEnabled() ? 1 : 0);
+			future = checkConfigIssued(config.isRdsEnabled() ? mJFmRxAsync
+					.enableRds() : mJFmRxAsync.disableRds(),
+					FmRxConfigCache.RDS_ENABLED);
+			if (future == null) {
+				failed |= FmRxConfiguration.FIELD_RDS_ENABLED;
+			} else {
+				pending[count] = future;
+				pendingField[count++] = FmRxConfiguration.FIELD_RDS_ENABLED;
+			}
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (!waitCmdDone(pending[i]) || !pending[i].isSuccess()) {
+				failed |= pendingField[i];
+			}
+		}
+
+		if (config.has(FmRxConfiguration.FIELD_RDS_ENABLED)
+				&& config.isRdsEnabled()
+				&& (failed & FmRxConfiguration.FIELD_RDS_ENABLED) == 0) {
+			updateRdsGroupMask();
+		}
+
+		if (DBG)
+			Log.d(TAG, "applyConfiguration: fields 0x"
+					+ Integer.toHexString(config.getFields()) + " issued "
+					+ count + " failed 0x" + Integer.toHexString(failed));
+		return failed;
+
+	}
+
+	/*
+	 * The chip only reports the raw groups in its group mask. Adds the groups
+	 * of mRdsGroupDecoder to the mask requested by the client, if missing.
+	 */
+	private void updateRdsGroupMask() {
+		long mask = mRdsGroupMask | decoderGroupMask();
+		JFmRxFuture future;
+
+		if (!configDiffers(FmRxConfigCache.RDS_GROUP_MASK, mask)) {
+			return;
+		}
+		mConfigCache.onSetIssued(FmRxConfigCache.RDS_GROUP_MASK, mask);
+		future = mJFmRxAsync.setRdsGroupMask(mask);
+		JFmRxStatus status = future.getIssueStatus();
+		if (status != JFmRxStatus.PENDING) {
+			Log.e(TAG, "updateRdsGroupMask: mJFmRx.setRdsGroupMask returned status "
+					+ status.toString());
+			mConfigCache.onSetRejected(FmRxConfigCache.RDS_GROUP_MASK);
+			return;
+		}
+		if (!waitCmdDone(future) || !future.isSuccess()) {
+			Log.e(TAG, "updateRdsGroupMask: raw RDS groups not enabled");
+		}
+	}
+
+	/* Channel spacing the scan cache files the current channel under */
+	private int scanCacheSpacing() {
+		long spacing = mConfigCache.get(FmRxConfigCache.CHANNEL_SPACING);
+
+		return spacing != FmRxConfigCache.NONE ? (int) spacing : mScanSpacing;
+	}
+
+	/* Raw groups the service decodes on top of those the client asked for */
+	private long decoderGroupMask() {
+		return RdsGroupDecoder.GROUP_MASK
+				| (mTmcEnabled ? TmcDecoder.GROUP_MASK : 0);
+	}
+
+	/*
+	 * The config cache mirrors the chip, whose mask includes the groups of
+	 * decoderGroupMask(). The client only sees the groups it asked for.
+	 */
+	private long clientGroupMask(long chipMask) {
+		return chipMask & (mRdsGroupMask | ~decoderGroupMask());
+	}
+
+	/* True unless the chip is known to already hold value for entry */
+	private boolean configDiffers(int entry, long value) {
+		return mConfigCache.get(entry) != value;
+	}
+
+	/*
+	 * Returns the future of a set command issued by applyConfiguration, or
+	 * null if it was rejected, in which case the cache entry is released.
+	 */
+	private JFmRxFuture checkConfigIssued(JFmRxFuture future, int entry) {
+		JFmRxStatus status = future.getIssueStatus();
+
+		if (status != JFmRxStatus.PENDING) {
+			Log.e(TAG, "applyConfiguration: command " + future.getCommand()
+					+ " returned status " + status.toString());
+			mConfigCache.onSetRejected(entry);
+			return null;
+		}
+		return future;
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean registerCallback(IFmReceiverCallback callback,
+			String[] actions) {
+		HashSet<String> filter = null;
+
+		mContext.enforceCallingOrSelfPermission(FMRX_PERM,
+				"Need FMRX_PERM permission");
+		if (callback == null) {
+			Log.e(TAG, "registerCallback: null callback");
+			return false;
+		}
+		if (actions != null) {
+			filter = new HashSet<String>();
+			for (String action : actions) {
+				filter.add(action);
+			}
+		}
+
+		/* A client registering again replaces its filter */
+		synchronized (mCallbacks) {
+			mCallbacks.unregister(callback);
+			return mCallbacks.register(callback, filter);
+		}
+	}
+
+	/*************************************************************************************************
+	 * Implementation of IFmReceiver IPC interface
+	 *************************************************************************************************/
+	public boolean unregisterCallback(IFmReceiverCallback callback) {
+
+		if (callback == null) {
+			return false;
+		}
+		synchronized (mCallbacks) {
+			return mCallbacks.unregister(callback);
+		}
+	}
+
+	/*
+	 * Returns the cached complete scan of the current band and spacing, with
+	 * SCAN_STALE set when it is older than maxAgeMs or missing. A stale cache
+	 * starts a complete scan in the background unless one is running;
+	 * COMPLETE_SCAN_DONE_ACTION then carries the new results.
+	 */
+	public Bundle getCachedScan(long maxAgeMs) {
+		Bundle b = new Bundle();
+		int spacing;
+		boolean found;
+		boolean stale;
+		boolean refreshing = false;
+
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		spacing = scanCacheSpacing();
+		found = mScanCache.fill(mCurrentBand, spacing, b);
+		stale = !found
+				|| System.currentTimeMillis()
+						- mScanCache.getScanTime(mCurrentBand, spacing) > maxAgeMs;
+
+		if (stale && mState == FmReceiver.STATE_ENABLED
+				&& mIsCompleteScanInProgress == false
+				&& mIsSeekInProgress == false && mIsTuneInProgress == false) {
+			refreshing = completeScan();
+		}
+		b.putBoolean(FmReceiverIntent.SCAN_STALE, stale);
+		b.putBoolean(FmReceiverIntent.SCAN_REFRESHING, refreshing
+				|| mIsCompleteScanInProgress);
+		if (DBG)
+			Log.d(TAG, "getCachedScan: found " + found + " stale " + stale
+					+ " refreshing " + refreshing);
+		return b;
+	}
+
+	/*
+	 * Round trip statistics of every JFmRxCommand, as long arrays indexed by
+	 * command id. CMD_STATS_HISTOGRAM holds JFmRxCmdStats.NUM_BUCKETS counts
+	 * per command, bucket n counting latencies below
+	 * CMD_STATS_BUCKET_LIMITS_US[n].
+	 */
+	public Bundle getCommandStats() {
+		Bundle b = new Bundle();
+		JFmRxCmdStats stats;
+		int num = JFmRxCmdStats.NUM_COMMANDS;
+		long[] issued = new long[num];
+		long[] completed = new long[num];
+		long[] inFlight = new long[num];
+		long[] rejected = new long[num];
+		long[] errors = new long[num];
+		long[] timeouts = new long[num];
+		long[] totalUs = new long[num];
+		long[] maxUs = new long[num];
+		long[] histogram = new long[num * JFmRxCmdStats.NUM_BUCKETS];
+		long[] limits = new long[JFmRxCmdStats.NUM_BUCKETS];
+
+		mContext.enforceCallingOrSelfPermission(FMRX_PERM,
+				"Need FMRX_PERM permission");
+		if (mJFmRx == null) {
+			return b;
+		}
+		stats = mJFmRx.getCmdStats();
+		for (int i = 0; i < num; i++) {
+			issued[i] = stats.getIssued(i);
+			completed[i] = stats.getCompleted(i);
+			inFlight[i] = stats.getInFlight(i);
+			rejected[i] = stats.getRejected(i);
+			errors[i] = stats.getErrors(i);
+			timeouts[i] = stats.getTimeouts(i) + stats.getLost(i);
+			totalUs[i] = stats.getTotalUs(i);
+			maxUs[i] = stats.getMaxUs(i);
+			for (int n = 0; n < JFmRxCmdStats.NUM_BUCKETS; n++) {
+				histogram[i * JFmRxCmdStats.NUM_BUCKETS + n] = stats
+						.getBucket(i, n);
+			}
+		}
+		for (int n = 0; n < JFmRxCmdStats.NUM_BUCKETS; n++) {
+			limits[n] = JFmRxCmdStats.getBucketLimitUs(n);
+		}
+
+		b.putLongArray(FmReceiverIntent.CMD_STATS_ISSUED, issued);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_COMPLETED, completed);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_IN_FLIGHT, inFlight);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_REJECTED, rejected);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_ERRORS, errors);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_TIMEOUTS, timeouts);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_TOTAL_US, totalUs);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_MAX_US, maxUs);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_HISTOGRAM, histogram);
+		b.putLongArray(FmReceiverIntent.CMD_STATS_BUCKET_LIMITS_US, limits);
+		b.putLong(FmReceiverIntent.CMD_STATS_CMD_ERRORS, stats.getCmdErrors());
+		return b;
+	}
+
+	/* Printed by dumpsys activity service FmRxService */
+	@Override
+	protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+		if (mContext == null) {
+			pw.println("FmRxService not initialized");
+			return;
+		}
+		if (mContext.checkCallingOrSelfPermission(
+				android.Manifest.permission.DUMP) != PackageManager.PERMISSION_GRANTED) {
+			pw.println("Permission Denial: can't dump FmRxService");
+			return;
+		}
+
+		JFmRx jFmRx = mJFmRx;
+		FmRxScanEngine scan = activeScan();
+		long radioOnMs = Math.max(1, mStats.getRadioOnMs());
+
+		pw.println("State:");
+		pw.println("  state " + mState + ", frequency " + mCurrentFrequency
+				+ " kHz, band " + mCurrentBand);
+		pw.println("  seek " + mIsSeekInProgress + ", tune "
+				+ mIsTuneInProgress + ", complete scan "
+				+ mIsCompleteScanInProgress
+				+ (scan != null ? " (service scan at " + scan.getProgress()
+						+ "%)" : ""));
+		pw.println("  tmc " + mTmcEnabled + ", replay " + (mReplay != null));
+
+		pw.println("Configuration cache:");
+		mConfigCache.dump(pw, "  ");
+
+		pw.println("Commands:");
+		if (jFmRx != null) {
+			long[] dispatch = new long[JFmRx.DISPATCH_STAT_NUM];
+
+			jFmRx.getCmdStats().dump(pw, "  ");
+			if (jFmRx.getDispatcherStats(dispatch) == JFmRxStatus.SUCCESS) {
+				pw.println("  dispatcher: queue "
+						+ dispatch[JFmRx.DISPATCH_STAT_QUEUE_DEPTH]
+						+ " max "
+						+ dispatch[JFmRx.DISPATCH_STAT_MAX_QUEUE_DEPTH]
+						+ ", events " + dispatch[JFmRx.DISPATCH_STAT_EVENTS]
+						+ " dropped " + dispatch[JFmRx.DISPATCH_STAT_DROPPED]
+						+ ", max latency "
+						+ dispatch[JFmRx.DISPATCH_STAT_MAX_LATENCY_NS] / 1000
+						+ " us");
+			}
+		}
+		pw.println("  volume: " + mVolumeCoalescer);
+
+		pw.println("Upcalls:");
+		for (int i = 0; i < JFmRx.NUM_UPCALLS; i++) {
+			long count = JFmRx.getUpcallCount(i);
+			if (count != 0) {
+				pw.println("  " + JFmRx.getUpcallName(i) + ": " + count);
+			}
+		}
+
+		/* Rates are per second of radio on time */
+		pw.println("RDS:");
+		pw.println("  groups " + mRdsGroupDecoder.getGroups() + " ("
+				+ mRdsGroupDecoder.getGroups() * 1000 / radioOnMs + "/s)");
+		for (int i = 0; i < 32; i++) {
+			long count = mRdsGroupDecoder.getGroups(i);
+			if (count != 0) {
+				pw.println("  " + (i >> 1) + ((i & 1) == 0 ? "A" : "B") + ": "
+						+ count + " (" + count * 1000 / radioOnMs + "/s)");
+			}
+		}
+		pw.println("  broadcasts " + mBroadcastThrottle);
+		pw.println("  radio text " + mRtAssembler);
+		if (mTmcEnabled) {
+			pw.println("  tmc " + mTmcDecoder);
+		}
+
+		pw.println("Service:");
+		mStats.dump(pw, "  ");
+
+		/* "dumpsys activity service FmRxService trace" prints the whole ring */
+		boolean fullTrace = args != null && args.length > 0
+				&& "trace".equals(args[0]);
+		pw.println("Trace:");
+		JFmRxTrace.dump(pw, "  ", fullTrace ? JFmRxTrace.RING_SIZE
+				: TRACE_RECORDS_ON_TIMEOUT);
+	}
+
+	/*
+	 * Adds the TMC groups to the raw RDS groups reported by the chip. Events
+	 * are then sent as TMC_EVENT_CHANGED_ACTION and TMC_EVENT_REMOVED_ACTION.
+	 * Disabling drops the events received so far.
+	 */
+	public boolean setTmcEnabled(boolean enable) {
+
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if (DBG)
+			Log.d(TAG, "setTmcEnabled " + enable + " " + mTmcDecoder);
+		mTmcEnabled = enable;
+		if (!enable) {
+			mTmcDecoder.reset();
+		}
+		/* Otherwise applied when RDS gets enabled */
+		if (mState == FmReceiver.STATE_ENABLED && mIsSeekInProgress == false
+				&& mIsTuneInProgress == false
+				&& mIsCompleteScanInProgress == false
+				&& mConfigCache.get(FmRxConfigCache.RDS_ENABLED) == 1) {
+			updateRdsGroupMask();
+		}
+		return true;
+	}
+
+	/* Active TMC events at locationCode, or all of them for -1 */
+	public FmRxTmcEvent[] getTmcEvents(int locationCode) {
+
+		mContext.enforceCallingOrSelfPermission(FMRX_PERM,
+				"Need FMRX_PERM permission");
+		return mTmcDecoder.getEvents(locationCode);
+	}
+
+	/*
+	 * With partial mode on, RDS_TEXT_CHANGED_ACTION is also sent for RT
+	 * messages still being received, with their RADIOTEXT_PROGRESS below 100.
+	 */
+	public boolean setRadioTextPartialMode(boolean enable) {
+
+		mContext.enforceCallingOrSelfPermission(FMRX_ADMIN_PERM,
+				"Need FMRX_ADMIN_PERM permission");
+		if (DBG)
+			Log.d(TAG, "setRadioTextPartialMode " + enable + " " + mRtAssembler);
+		mRtAssembler.setPartialMode(enable);
+		return true;
+	}
+
+	/*
+	 * Sends a receiver event as a broadcast for the intent receivers, and as a
+	 * oneway call to every registered callback whose filter accepts it.
+	 */
+	private void sendFmEvent(Intent intent) {
+		String action = intent.getAction();
+		Bundle extras = null;
+		int reached = 0;
+		int n;
+
+		mContext.sendBroadcast(intent, FMRX_PERM);
+
+		/* beginBroadcast() cannot be nested, events come from several threads */
+		synchronized (mCallbacks) {
+			n = mCallbacks.beginBroadcast();
+			try {
+				for (int i = 0; i < n; i++) {
+					Object filter = mCallbacks.getBroadcastCookie(i);
+					if (filter != null
+							&& !((HashSet<?>) filter).contains(action)) {
+						continue;
+					}
+					if (extras == null) {
+						extras = intent.getExtras();
+					}
+					try {
+						mCallbacks.getBroadcastItem(i).onEvent(action, extras);
+						reached++;
+					} catch (RemoteException e) {
+						/* The list drops the dead client by itself */
+						Log.e(TAG, "sendFmEvent: " + action + " failed: "
+								+ e.toString());
+					}
+				}
+			} finally {
+				mCallbacks.finishBroadcast();
+			}
+		}
+		mStats.onBroadcast(action, reached);
+	}
+
+	/*
+	 * Publishes what mRdsGroupDecoder decodes. PI, PTY, PS and RT go through
+	 * the same path as the values pre-digested by the chip.
+	 */
+	private final RdsGroupDecoder.Listener mRdsGroupListener = new RdsGroupDecoder.Listener() {
+
+		public void onPiChanged(int pi) {
+			fmRxPiCodeChanged(JFmRxStatus.SUCCESS, new JFmRx.JFmRxRdsPiCode(pi));
+		}
+
+		public void onPtyChanged(int pty) {
+			fmRxPtyCodeChanged(JFmRxStatus.SUCCESS,
+					new JFmRx.JFmRxRdsPtyCode(pty));
+		}
+
+		public void onPsChanged(byte[] ps) {
+			fmRxPsChanged(JFmRxStatus.SUCCESS, new JFmRx.JFmRxFreq(
+					mCurrentFrequency), ps,
+					JFmRx.JFmRxRepertoire.FMC_RDS_REPERTOIRE_G0_CODE_TABLE);
+		}
+
+		public void onRadioTextChanged(byte[] rt, int length) {
+			mRtAssembler.onMessage(rt, length,
+					JFmRx.JFmRxRepertoire.FMC_RDS_REPERTOIRE_G0_CODE_TABLE);
+		}
+
+		public void onPinChanged(int ecc, int day, int hour, int minute) {
+			Intent intentPin = new Intent(FmReceiverIntent.RDS_PIN_CHANGED_ACTION);
+			intentPin.putExtra(FmReceiverIntent.ECC, ecc);
+			intentPin.putExtra(FmReceiverIntent.PIN_DAY, day);
+			intentPin.putExtra(FmReceiverIntent.PIN_HOUR, hour);
+			intentPin.putExtra(FmReceiverIntent.PIN_MINUTE, minute);
+			sendFmEvent(intentPin);
+		}
+
+		public void onClockTime(int mjd, int hour, int minute,
+				int offsetHalfHours) {
+			Intent intentCt = new Intent(FmReceiverIntent.RDS_CLOCK_TIME_ACTION);
+			intentCt.putExtra(FmReceiverIntent.CT_MJD, mjd);
+			intentCt.putExtra(FmReceiverIntent.CT_HOUR, hour);
+			intentCt.putExtra(FmReceiverIntent.CT_MINUTE, minute);
+			intentCt.putExtra(FmReceiverIntent.CT_LOCAL_OFFSET, offsetHalfHours);
+			sendFmEvent(intentCt);
+		}
+
+		public void onPtynChanged(byte[] ptyn) {
+			Intent intentPtyn = new Intent(FmReceiverIntent.RDS_PTYN_CHANGED_ACTION);
+			intentPtyn.putExtra(FmReceiverIntent.PTYN, RdsTextDecoder
+					.decodeG0(ptyn));
+			sendFmEvent(intentPtyn);
+		}
+
+		public void onEonPsChanged(int pi, byte[] ps) {
+			Intent intentEon = new Intent(
+					FmReceiverIntent.RDS_EON_PS_CHANGED_ACTION);
+			intentEon.putExtra(FmReceiverIntent.PI, pi);
+			intentEon.putExtra(FmReceiverIntent.PS_CONVERTED, RdsTextDecoder
+					.decodeG0(ps));
+			sendFmEvent(intentEon);
+		}
+	};
+
+	/* Publishes the traffic event changes of mTmcDecoder */
+	private final TmcDecoder.Listener mTmcListener = new TmcDecoder.Listener() {
+
+		public void onTmcEventChanged(FmRxTmcEvent event) {
+			Intent intentTmc = new Intent(
+					FmReceiverIntent.TMC_EVENT_CHANGED_ACTION);
+			intentTmc.putExtra(FmReceiverIntent.TMC_EVENT, event);
+			sendFmEvent(intentTmc);
+		}
+
+		public void onTmcEventRemoved(FmRxTmcEvent event) {
+			Intent intentTmc = new Intent(
+					FmReceiverIntent.TMC_EVENT_REMOVED_ACTION);
+			intentTmc.putExtra(FmReceiverIntent.TMC_EVENT, event);
+			sendFmEvent(intentTmc);
+		}
+	};
+
 	/*************************************************************************************************
 	 * JFmRxlback interface for receiving its events and for broadcasting them
 	 * as intents
@@ -2423,6 +3321,51 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					+ bitInMaskValue.getValue());
 		}
 
+		if (status == JFmRxStatus.SUCCESS && groupData != null
+				&& groupData.length >= JFmRxRdsRing.GROUP_SIZE) {
+			mRdsGroupDecoder.onGroup(groupData, 0);
+			if (mTmcEnabled) {
+				mTmcDecoder.onGroup(groupData, 0);
+			}
+		}
+	}
+
+	public void fmRxRawRdsAvailable(JFmRxRdsRing ring, int count) {
+
+		if (DBG)
+			Log.d(TAG, "StubFmRxService:fmRxRawRdsAvailable count = " + count);
+
+		for (int n = 0; n < count; n++) {
+			if (ring.getStatus(n) == JFmRxStatus.SUCCESS.getValue()) {
+				int blockA = ring.getBlock(n, 0);
+				int blockB = ring.getBlock(n, 1);
+				int blockC = ring.getBlock(n, 2);
+				int blockD = ring.getBlock(n, 3);
+
+				mRdsGroupDecoder.onGroup(blockA, blockB, blockC, blockD);
+				if (mTmcEnabled) {
+					mTmcDecoder.onGroup(blockA, blockB, blockC, blockD);
+				}
+			}
+		}
+		ring.consume(count);
+	}
+
+	public void fmRxRawRdsBatch(JFmRxStatus status, int count,
+			byte[] groupData, int[] groupMasks) {
+
+		if (DBG)
+			Log.d(TAG, "StubFmRxService:fmRxRawRdsBatch status = "
+					+ status.toString() + " count = " + count);
+
+		if (status == JFmRxStatus.SUCCESS) {
+			for (int n = 0; n < count; n++) {
+				mRdsGroupDecoder.onGroup(groupData, n * JFmRxRdsRing.GROUP_SIZE);
+				if (mTmcEnabled) {
+					mTmcDecoder.onGroup(groupData, n * JFmRxRdsRing.GROUP_SIZE);
+				}
+			}
+		}
 	}
 
 	public void fmRxRadioText(JFmRxStatus status, boolean resetDisplay,
@@ -2434,29 +3377,48 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					"StubFmRxService:fmRxRadioText status = , msg1 =  ,len =  , startIndex  = "
 							+ status.toString() + " " + /* + msg1 + " " */" "
 							+ len + " " + startIndex);
-			Log
-					.d(TAG,
-							"StubFmRxService:sending intent RDS_TEXT_CHANGED_ACTION");
 		}
 
+		if (status == JFmRxStatus.SUCCESS) {
+			mRtAssembler.onFragment(resetDisplay, msg1, len, startIndex,
+					repertoire);
+		}
+	}
+
+	/*
+	 * Broadcasts a RadioText message from mRtAssembler. progress is below 100
+	 * for the partial messages.
+	 */
+	private void sendRadioText(byte[] text, int length, int progress,
+			JFmRx.JFmRxRepertoire repertoire) {
+		byte[] msg = new byte[length];
+
+		if (DBG)
+			Log.d(TAG, "StubFmRxService:sending intent RDS_TEXT_CHANGED_ACTION"
+					+ " progress = " + progress);
+
+		System.arraycopy(text, 0, msg, 0, length);
 		Intent intentRds = new Intent(FmReceiverIntent.RDS_TEXT_CHANGED_ACTION);
 		if (FM_SEND_RDS_IN_BYTEARRAY == true) {
 			Bundle b = new Bundle();
-			b.putByteArray(FmReceiverIntent.RDS, msg1);// Send Byte Array to App
+			b.putByteArray(FmReceiverIntent.RDS, msg);// Send Byte Array to App
 			intentRds.putExtras(b);
 		} else {
 			/*
 			 * OMAPS00207258/OMAPS00207261: Convert the received Byte Array to
 			 * appropriate String
 			 */
-			String radioTextString = findFromLookupTable(msg1, repertoire);
+			String radioTextString = mRtDecoder.decode(mCurrentFrequency,
+					msg, repertoire);
 			intentRds.putExtra(FmReceiverIntent.RADIOTEXT_CONVERTED,
 					radioTextString);// converted String
 		}
 
-		intentRds.putExtra(FmReceiverIntent.STATUS, status.getValue());// Status
+		intentRds.putExtra(FmReceiverIntent.RADIOTEXT_PROGRESS, progress);
+		intentRds.putExtra(FmReceiverIntent.STATUS,
+				JFmRxStatus.SUCCESS.getValue());// Status
 
-		mContext.sendBroadcast(intentRds, FMRX_PERM);
+		mBroadcastThrottle.submit(FmRxBroadcastThrottle.RT, msg, intentRds);
 	}
 
 	public void fmRxPiCodeChanged(JFmRxStatus status, JFmRx.JFmRxRdsPiCode pi) {
@@ -2469,18 +3431,17 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		}
 
 		if (status == JFmRxStatus.SUCCESS) {
-			/* simple mechanism to prevent displaying repetitious messages */
-			if (pi.getValue() != last_msg_printed) {
-				last_msg_printed = pi.getValue();
-				Log
-						.d(TAG,
-								"StubFmRxService:sending intent PI_CODE_CHANGED_ACTION");
-				Intent intentPi = new Intent(
-						FmReceiverIntent.PI_CODE_CHANGED_ACTION);
-				intentPi.putExtra(FmReceiverIntent.PI, pi.getValue());
-				intentPi.putExtra(FmReceiverIntent.STATUS, status.getValue());
-				mContext.sendBroadcast(intentPi, FMRX_PERM);
-			}
+			if (DBG)
+				Log.d(TAG, "StubFmRxService:sending intent PI_CODE_CHANGED_ACTION");
+			Intent intentPi = new Intent(FmReceiverIntent.PI_CODE_CHANGED_ACTION);
+			mRtAssembler.setPi(pi.getValue());
+			mGridScan.onPi(mCurrentFrequency, pi.getValue());
+			mScanCache.onPi(mCurrentBand, scanCacheSpacing(),
+					mCurrentFrequency, pi.getValue(), System.currentTimeMillis());
+			intentPi.putExtra(FmReceiverIntent.PI, pi.getValue());
+			intentPi.putExtra(FmReceiverIntent.STATUS, status.getValue());
+			mBroadcastThrottle.submit(FmRxBroadcastThrottle.PI, Integer
+					.valueOf(pi.getValue()), intentPi);
 		}
 	}
 
@@ -2493,6 +3454,15 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					+ pty.getValue());
 		}
 
+		if (status == JFmRxStatus.SUCCESS) {
+			if (DBG)
+				Log.d(TAG, "StubFmRxService:sending intent PTY_CODE_CHANGED_ACTION");
+			Intent intentPty = new Intent(FmReceiverIntent.PTY_CODE_CHANGED_ACTION);
+			intentPty.putExtra(FmReceiverIntent.PTY, pty.getValue());
+			intentPty.putExtra(FmReceiverIntent.STATUS, status.getValue());
+			mBroadcastThrottle.submit(FmRxBroadcastThrottle.PTY, Integer
+					.valueOf(pty.getValue()), intentPty);
+		}
 	}
 
 	public void fmRxPsChanged(JFmRxStatus status, JFmRx.JFmRxFreq frequency,
@@ -2509,18 +3479,29 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			Log.d(TAG, "StubFmRxService:sending intent PS_CHANGED_ACTION");
 		}
 
+		/*
+		 * OMAPS00207258/OMAPS00207261:Convert the received Byte Array to
+		 * appropriate String
+		 */
+		String psString = mPsDecoder.decode(frequency.getValue(), name,
+				repertoire);
+		/*
+		 * name is the native dispatcher's shared array, overwritten by the
+		 * next upcall; the throttle keeps the key and may queue the Intent.
+		 */
+		byte[] ps = name != null ? name.clone() : null;
+		if (status == JFmRxStatus.SUCCESS) {
+			mScanCache.onPs(mCurrentBand, scanCacheSpacing(), frequency
+					.getValue(), psString, System.currentTimeMillis());
+		}
+
 		Intent intentPs = new Intent(FmReceiverIntent.PS_CHANGED_ACTION);
 		if (FM_SEND_RDS_IN_BYTEARRAY == true) {
 			Bundle b = new Bundle();
-			b.putByteArray(FmReceiverIntent.PS, name);// Send Byte Array to App
+			b.putByteArray(FmReceiverIntent.PS, ps);// Send Byte Array to App
 			intentPs.putExtras(b);
 		} else {
-			/*
-			 * OMAPS00207258/OMAPS00207261:Convert the received Byte Array to
-			 * appropriate String Broadcast the PS data Byte Array, Converted
-			 * string to App
-			 */
-			String psString = findFromLookupTable(name, repertoire);
+			/* Broadcast the PS data Byte Array, Converted string to App */
 			if (DBG)
 				Log.d(TAG, "fmRxPsChanged--> psString = " + psString);
 			intentPs.putExtra(FmReceiverIntent.PS_CONVERTED, psString);// converted
@@ -2531,7 +3512,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		intentPs.putExtra(FmReceiverIntent.REPERTOIRE, repertoire.getValue());// repertoire
 		intentPs.putExtra(FmReceiverIntent.STATUS, status.getValue());// status
 
-		mContext.sendBroadcast(intentPs, FMRX_PERM);
+		mBroadcastThrottle.submit(FmRxBroadcastThrottle.PS, ps, intentPs);
 
 	}
 
@@ -2547,10 +3528,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					+ mode.getValue());
 		}
 
-		/* simple mechanism to prevent displaying repetitious messages */
-		if (mode == mMode)
-			return;
-
+		/* Repeated modes are dropped by mBroadcastThrottle */
 		mMode = mode;
 		switch (mMode) {
 		case FM_RX_MONO:
@@ -2574,7 +3552,8 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				FmReceiverIntent.DISPLAY_MODE_MONO_STEREO_ACTION);
 		intentMode.putExtra(FmReceiverIntent.MODE_MONO_STEREO, mode.getValue());
 		intentMode.putExtra(FmReceiverIntent.STATUS, status.getValue());
-		mContext.sendBroadcast(intentMode, FMRX_PERM);
+		mBroadcastThrottle.submit(FmRxBroadcastThrottle.MONO_STEREO, mode,
+				intentMode);
 	}
 
 	public void fmRxAfSwitchFreqFailed(JFmRxStatus status,
@@ -2657,6 +3636,12 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 								+ i + "  " + +channelsData[i]);
 		}
 
+		if (status == JFmRxStatus.SUCCESS && channelsData != null) {
+			mScanCache.onScanDone(mCurrentBand, mScanSpacing, channelsData,
+					Math.min(numOfChannels, channelsData.length), System
+							.currentTimeMillis());
+		}
+
 		Intent intentscan = new Intent(
 				FmReceiverIntent.COMPLETE_SCAN_DONE_ACTION);
 		Bundle b = new Bundle();
@@ -2664,13 +3649,14 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 		b.putInt(FmReceiverIntent.STATUS, status.getValue());
 		b.putInt(FmReceiverIntent.SCAN_LIST_COUNT, numOfChannels);
 		intentscan.putExtras(b);
-		mContext.sendBroadcast(intentscan, FMRX_PERM);
-		try {
-			mStopCompleteScanSyncQueue.put("*");
-		} catch (InterruptedException e) {
-			Log.e(TAG, "InterruptedException on queue wakeup!");
+		sendFmEvent(intentscan);
+
+		/* A stopCompleteScan() waiter is released here as well */
+		JFmRxFuture stopFuture = mStopCompleteScanFuture;
+		if (stopFuture != null) {
+			mStopCompleteScanStatus = status.getValue();
+			stopFuture.cancel(false);
 		}
-		;
 
 	}
 
@@ -2685,6 +3671,10 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 
 	}
 
+	/*
+	 * Callers blocked in waitCmdDone() are released by mJFmRxAsync, with the
+	 * status and value, after this returns.
+	 */
 	public void fmRxCmdDone(JFmRxStatus status, int command, long value) {
 
 		if (DBG) {
@@ -2693,12 +3683,16 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					+ value);
 		}
 
+		mConfigCache.onCmdDone(status, command, value);
+
 		switch (command) {
 		case JFmRxCommand.CMD_ENABLE:
 			if (DBG)
 				Log.d(TAG, "StubFmRxService:fmRxCmdDone  JFmRxCommand.CMD_ENABLE");
 
 			mState = FmReceiver.STATE_ENABLED;
+			mStats.onRadioEnabled();
+			mVolumeCoalescer.invalidate();
 
 			if (DBG)
 				Log.d(TAG, "Sending restore values intent");
@@ -2714,12 +3708,17 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			mState = FmReceiver.STATE_DISABLED;
+			mStats.onRadioDisabled();
+			mScanCache.flush();
+			mVolumeCoalescer.invalidate();
+			mBroadcastThrottle.reset();
+			mRtAssembler.reset();
 
 			if (DBG)
 				Log.d(TAG, "StubFmRxService:sending intent FM_DISABLED_ACTION");
 			Intent intentDisable = new Intent(FmReceiverIntent.FM_DISABLED_ACTION);
 			intentDisable.putExtra(FmReceiverIntent.STATUS, status.getValue());
-			mContext.sendBroadcast(intentDisable, FMRX_PERM);
+			sendFmEvent(intentDisable);
 			break;
 
 		case JFmRxCommand.CMD_SET_BAND:
@@ -2731,14 +3730,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						+ command + "" + status + "" + value);
 				Log.d(TAG, "StubFmRxService:sending intent BAND_CHANGE_ACTION");
 			}
-
-			/* OMAPS00207918:implementation to make the set API Synchronous */
-			try {
-				mSetBandSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_BAND:
@@ -2749,18 +3740,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				Log.d(TAG, "  fmRxCmdGetBand ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
 			}
-
-			getBandValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mBandSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetBand ( getBandValue: )" + getBandValue);
 			break;
 
 		case JFmRxCommand.CMD_SET_MONO_STEREO_MODE:
@@ -2783,20 +3762,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetMonoStereoMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			getMonoStereoModeValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mMonoStereoModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetMonoStereoMode ( getMonoStereoModeValue: )"
-								+ getMonoStereoModeValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_MUTE_MODE:
@@ -2809,14 +3774,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetMuteMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			/* OMAPS00207918:implementation to make the set API Synchronous */
-			try {
-				mSetMuteModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_MUTE_MODE:
@@ -2828,19 +3785,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetMuteMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			getMuteModeValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mMuteModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetMuteMode ( getMuteModeValue: )"
-						+ getMuteModeValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_RF_DEPENDENT_MUTE_MODE:
@@ -2852,14 +3796,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetRfDependentMuteMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			/* OMAPS00207918:implementation to make the set API Synchronous */
-			try {
-				mSetRfDependentMuteModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_RF_DEPENDENT_MUTE_MODE:
@@ -2872,21 +3808,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetRfDependentMuteMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getRfDependentMuteModeValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mRfDependentMuteModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetRfDependentMuteMode ( getRfDependentMuteModeValue: )"
-								+ getRfDependentMuteModeValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_RSSI_THRESHOLD:
@@ -2898,14 +3819,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetRssiThreshhold ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mSetRssiThresholdSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_RSSI_THRESHOLD:
@@ -2917,21 +3830,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"fmRxCmdGetRssiThreshhold ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getRssiThresholdValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mRssiThresholdSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetRssiThreshhold ( getRssiThresholdValue: )"
-								+ getRssiThresholdValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_DEEMPHASIS_FILTER:
@@ -2943,13 +3841,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetDeemphasisFilter ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mSetDeEmphasisFilterSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_DEEMPHASIS_FILTER:
@@ -2961,42 +3852,24 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetDeemphasisFilter ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getDeEmphasisFilterValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mDeEmphasisFilterSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetDeemphasisFilter ( getDeEmphasisFilterValue: )"
-								+ getDeEmphasisFilterValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_VOLUME:
 
 			/*
-			 * volume change will be completed here. So set the state to idle,
-			 * so that user can set other volume.
+			 * The completion also reaches mVolumeCoalescer, which then sends
+			 * the latest level requested meanwhile, if any.
 			 */
-			synchronized (mVolumeSynchronizationLock) {
-				mVolState = VOL_REQ_STATE_IDLE;
-			}
 			if (DBG) {
 				Log
 						.d(TAG,
 								"StubFmRxService:fmRxCmdDone  JFmRxCommand.CMD_SET_VOLUME");
 				Log.d(TAG, "  fmRxCmdSetVolume ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
+				Log.d(TAG, "  volume pipeline: " + mVolumeCoalescer);
 				Log.d(TAG,
 						"StubFmRxService:sending intent VOLUME_CHANGED_ACTION");
 			}
-
 			break;
 
 		case JFmRxCommand.CMD_SET_CHANNEL_SPACING:
@@ -3008,12 +3881,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetChannelSpacing ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			try {
-				mSetChannelSpacingSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_VOLUME:
@@ -3023,20 +3890,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 								"StubFmRxService:fmRxCmdDone  JFmRxCommand.CMD_GET_VOLUME");
 				Log.d(TAG, "  fmRxCmdGetVolume ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
-				getVolumeValue = (int) value;
-			}
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mVolumeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
 			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetVolume ( getVolumeValue: )"
-						+ getVolumeValue);
-
 			break;
 
 		case JFmRxCommand.CMD_GET_CHANNEL_SPACING:
@@ -3048,19 +3902,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetChannelSpacing ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			getChannelSpaceValue = (int) value;
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mChannelSpacingSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetChannelSpacing ( getChannelSpaceValue: )"
-								+ getChannelSpaceValue);
-
 			break;
 
 		case JFmRxCommand.CMD_TUNE:
@@ -3070,15 +3911,24 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 								"StubFmRxService:fmRxCmdDone  JFmRxCommand.CMD_TUNE");
 				Log.d(TAG, "  fmRxCmdTune ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
+				Log.d(TAG, "  RDS broadcasts " + mBroadcastThrottle);
 				Log.d(TAG,
 						"StubFmRxService:sending intent TUNE_COMPLETE_ACTION");
 			}
 			mIsTuneInProgress = false;
 			mCurrentFrequency = (int) value;
+			/* RDS of the new station is broadcast even if it matches the old */
+			mBroadcastThrottle.reset();
+			mRdsGroupDecoder.reset();
+			mRtAssembler.reset();
+			/* The steps of a service scan are reported as scan events */
+			if (activeScan() != null) {
+				break;
+			}
 			Intent intentTune = new Intent(FmReceiverIntent.TUNE_COMPLETE_ACTION);
 			intentTune.putExtra(FmReceiverIntent.TUNED_FREQUENCY, mCurrentFrequency);
 			intentTune.putExtra(FmReceiverIntent.STATUS, status.getValue());
-			mContext.sendBroadcast(intentTune, FMRX_PERM);
+			sendFmEvent(intentTune);
 
 			break;
 
@@ -3091,20 +3941,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetTunedFrequency ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			getTunedFrequencyValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mTunedFrequencySyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetTunedFrequency ( getTunedFrequencyValue: )"
-								+ getTunedFrequencyValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SEEK:
@@ -3117,6 +3953,12 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 			mIsSeekInProgress = false;
 			mCurrentFrequency = (int) value;
+			mBroadcastThrottle.reset();
+			mRdsGroupDecoder.reset();
+			mRtAssembler.reset();
+			if (activeScan() != null) {
+				break;
+			}
 			if (DBG)
 				Log.d(TAG, "StubFmRxService:sending intent SEEK_ACTION");
 			
@@ -3124,7 +3966,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			intentstart.putExtra(FmReceiverIntent.SEEK_FREQUENCY,
 					mCurrentFrequency);
 			intentstart.putExtra(FmReceiverIntent.STATUS, status.getValue());
-			mContext.sendBroadcast(intentstart, FMRX_PERM);
+			sendFmEvent(intentstart);
 
 			break;
 
@@ -3136,12 +3978,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				Log.d(TAG, "  fmRxCmdStopSeek ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
 			}
-			try {
-				mStopSeekSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_RSSI:
@@ -3152,23 +3988,11 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				Log.d(TAG, "  fmRxCmdGetRssi ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
 			}
-
-			/*
-			 * FW is sending int8 which is read as uint16 in the stack, so we
-			 * are converting it back to int.RSSI range is -127 to 128
-			 */
-                     
-			getRssiValue = convertUnsignedToSignedInt(value);
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mRssiSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
+			if (status == JFmRxStatus.SUCCESS) {
+				mScanCache.onRssi(mCurrentBand, scanCacheSpacing(),
+						mCurrentFrequency, (int) value, System
+								.currentTimeMillis());
 			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetRssi ( getRssiValue: )" + getRssiValue);
 			break;
 
 		case JFmRxCommand.CMD_ENABLE_RDS:
@@ -3179,13 +4003,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				Log.d(TAG, "  fmRxCmdEnableRds ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
 			}
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mEnableRdsSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_DISABLE_RDS:
@@ -3197,14 +4014,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdDisableRds ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mDisableRdsSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_SET_RDS_SYSTEM:
@@ -3216,12 +4025,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetRdsSystem ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			try {
-				mSetRdsSystemSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_RDS_SYSTEM:
@@ -3233,20 +4036,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetRdsSystem ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getRdsSystemValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mRdsSystemSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetRdsSystem ( getRdsSystemValue: )"
-						+ getRdsSystemValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_RDS_GROUP_MASK:
@@ -3258,12 +4047,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetRdsGroupMask ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			try {
-				mSetRdsGroupMaskSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_RDS_GROUP_MASK:
@@ -3275,20 +4058,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetRdsGroupMask ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getRdsGroupMaskValue = value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mRdsGroupMaskSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetRdsGroupMask ( getRdsGroupMaskValue: )"
-						+ getRdsGroupMaskValue);
-
 			break;
 
 		case JFmRxCommand.CMD_SET_RDS_AF_SWITCH_MODE:
@@ -3300,12 +4069,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdSetRdsAfSwitchMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			try {
-				mSetRdsAfSwitchModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
 			break;
 
 		case JFmRxCommand.CMD_GET_RDS_AF_SWITCH_MODE:
@@ -3317,20 +4080,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetRdsAfSwitchMode ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			getRdsAfSwitchModeValue = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mRdsAfSwitchModeSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetRdsAfSwitchMode ( getRdsAfSwitchModeValue: )"
-								+ getRdsAfSwitchModeValue);
-
 			break;
 
 		case JFmRxCommand.CMD_ENABLE_AUDIO:
@@ -3350,7 +4099,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdDisableAudio ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
 			break;
 
 		case JFmRxCommand.CMD_DESTROY:
@@ -3361,7 +4109,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 				Log.d(TAG, "  fmRxCmdDestroy ( command: , status: , value: )"
 						+ command + "" + status + "" + value);
 			}
-
 			break;
 
 		case JFmRxCommand.CMD_CHANGE_AUDIO_TARGET:
@@ -3381,7 +4128,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdChangeDigitalAudioConfiguration ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
 			break;
 
 		case JFmRxCommand.CMD_GET_FW_VERSION:
@@ -3391,20 +4137,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetFwVersion ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getFwVersion = ((double) value / 1000);
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mFwVersionSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdGetFwVersion ( getFwVersion: )"
-						+ getFwVersion);
-
 			break;
 
 		case JFmRxCommand.CMD_COMPLETE_SCAN_PROGRESS:
@@ -3416,22 +4148,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdGetCompleteScanProgress ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-
-			getScanProgress = (int) value;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mCompleteScanProgressSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdGetCompleteScanProgress ( getScanProgress: )"
-								+ getScanProgress);
-
 			break;
 
 		case JFmRxCommand.CMD_STOP_COMPLETE_SCAN:
@@ -3444,18 +4160,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			mIsCompleteScanInProgress = false;
-			mStopCompleteScanStatus = status.getValue();
 
-			try {
-				mStopCompleteScanSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG,
-						"  fmRxCmdStopCompleteScan ( mStopCompleteScanStatus: )"
-								+ mStopCompleteScanStatus);
 			break;
 
 		case JFmRxCommand.CMD_IS_CHANNEL_VALID:
@@ -3465,22 +4170,6 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 						"  fmRxCmdIsValidChannel- ( command: , status: , value: )"
 								+ command + "" + status + "" + value);
 			}
-			if (value > 0)
-				mIsValidChannel = true;
-			else
-				mIsValidChannel = false;
-
-			/* OMAPS00207918:implementation to make the get API Synchronous */
-			try {
-				mValidChannelSyncQueue.put("*");
-			} catch (InterruptedException e) {
-				Log.e(TAG, "InterruptedException on queue wakeup!");
-			}
-			;
-			if (DBG)
-				Log.d(TAG, "  fmRxCmdIsValidChannel ( isValidChannel: )"
-						+ mIsValidChannel);
-
 			break;
 
 		default:
@@ -3539,7 +4228,7 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 					Log.d(TAG, "sending intent FM_ENABLED_ACTION");
 				Intent intentEnable = new Intent(
 							FmReceiverIntent.FM_ENABLED_ACTION);
-				mContext.sendBroadcast(intentEnable, FMRX_PERM);
+				sendFmEvent(intentEnable);
 
 				/*
 				 * Tell the Audio Hardware interface that FM is enabled, so that
@@ -3549,92 +4238,25 @@ public class StubFmRxService extends IFmReceiver.Stub implements
 			}
 
 			if (setVolume) {
-				boolean volState;
-
-				synchronized (mVolumeSynchronizationLock) {
-					volState = mVolState;
+				int mVolume = intent.getIntExtra(AudioManager.EXTRA_VOLUME_STREAM_VALUE, 0);
+				if (mVolume == 0) {
+					Log.i(TAG, "no volume setting in intent");
+					// read the current volume
+					mVolume = mAudioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
 				}
-				if (mVolState) {
-					int mVolume = intent.getIntExtra(AudioManager.EXTRA_VOLUME_STREAM_VALUE, 0);
-					if (mVolume == 0) {
-						Log.i(TAG, "no volume setting in intent");
-						// read the current volume
-						mVolume = mAudioManager.getStreamVolume(AudioManager.STREAM_MUSIC);
-					}
-					Log.i(TAG, " mVolume  " + mVolume);
-					// Convert the stream volume to the FM specific volume.
+				Log.i(TAG, " mVolume  " + mVolume);
+				// Convert the stream volume to the FM specific volume.
 
-					mVolume = (mVolume * FM_MAX_VOLUME)
-							/ (mAudioManager
-									.getStreamMaxVolume(AudioManager.STREAM_MUSIC));
-					if (DBG)
-						Log.d(TAG, " mVolume  " + mVolume);
-					
-					if (!setVolume(mVolume)) {
-						Log.e(TAG, "Not able, to set volume ");
-					}
-				} // mVolState
-				else {
-					Log.e(TAG, "previous volume set not complete ");
-				}
+				mVolume = (mVolume * FM_MAX_VOLUME)
+						/ (mAudioManager
+								.getStreamMaxVolume(AudioManager.STREAM_MUSIC));
+				if (DBG)
+					Log.d(TAG, " mVolume  " + mVolume);
+				
+				/* Bursts from the volume keys collapse to the last level */
+				mVolumeCoalescer.request(mVolume);
 			}
 		}
 	};
 
-	/***************************************************************
-	 * OMAPS00207258/OMAPS00207261 findAndPrintFromLookup():
-	 * 
-	 ****************************************************************/
-	public String findFromLookupTable(byte[] indexArray,
-			JFmRx.JFmRxRepertoire repertoire) {
-		StringBuilder sb = new StringBuilder("");
-		// TextView tv = (TextView)findViewById(R.id.hello_text);
-
-		switch (repertoire) {
-		case FMC_RDS_REPERTOIRE_G0_CODE_TABLE:
-			if (DBG)
-				Log.d(TAG, "Repertoire= " + repertoire);
-			
-			for (int i = 0; i < indexArray.length; i++) {
-				int msb = (indexArray[i] & 0xF0) >> 4;
-				int lsb = (indexArray[i] & 0x0F);
-				sb.append(lookUpTable_G0[msb][lsb]);
-			}
-			break;
-
-		case FMC_RDS_REPERTOIRE_G1_CODE_TABLE:
-			if (DBG)
-				Log.d(TAG, "Repertoire= " + repertoire);
-			
-			for (int i = 0; i < indexArray.length; i++) {
-				int msb = (indexArray[i] & 0xF0) >> 4;
-				int lsb = (indexArray[i] & 0x0F);
-				sb.append(lookUpTable_G1[msb][lsb]);
-			}
-			break;
-
-		case FMC_RDS_REPERTOIRE_G2_CODE_TABLE:
-			if (DBG)
-				Log.d(TAG, "Repertoire= " + repertoire);
-
-			for (int i = 0; i < indexArray.length; i++) {
-				int msb = (indexArray[i] & 0xF0) >> 4;
-				int lsb = (indexArray[i] & 0x0F);
-				sb.append(lookUpTable_G2[msb][lsb]);
-			}
-			break;
-
-		default:
-			if (DBG)
-				Log.d(TAG, "Incorrect Repertoire received...");
-			
-			String convertedPsString = "???????????";
-			break;
-		}
-
-		String convertedString = sb.toString();
-		return convertedString;
-
-	}
-
 }
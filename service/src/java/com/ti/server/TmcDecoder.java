@@ -0,0 +1,510 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+/*******************************************************************************\
+ *
+ *   FILE NAME:      TmcDecoder.java
+ *
+ *   BRIEF:          RDS-TMC decoder and store of the active traffic events.
+ *
+ *   DESCRIPTION:    Decodes the ALERT-C messages of group 8A, single group
+ *                   and multi group ones, and the TMC ODA announcement of
+ *                   group 3A for the location table number. Active events
+ *                   are kept in an open addressing table keyed by location
+ *                   code, direction and event code. A repeated message only
+ *                   refreshes the expiry of its event; the listener is
+ *                   called when an event appears, changes, is cancelled or
+ *                   expires. A new PI drops all events.
+ *
+ *                   onGroup() does not allocate unless an event changes.
+ *
+ *   AUTHOR:
+ *
+ \*******************************************************************************/
+package com.ti.server;
+
+import com.ti.fm.FmRxTmcEvent;
+
+import java.util.ArrayList;
+
+final class TmcDecoder {
+
+	/** Raw group types (JFmRxRdsGroupTypeMask bits) the decoder uses */
+	static final long GROUP_MASK = 0x00000040L /* 3A */| 0x00010000L /* 8A */;
+
+	/** Events kept at most, the one closest to expiry is dropped beyond */
+	static final int MAX_EVENTS = 256;
+
+	/** getEvents() location matching every event */
+	static final int ALL_LOCATIONS = -1;
+
+	/* The null message cancels the events of its location and direction */
+	private static final int EVENT_CANCEL = 2047;
+
+	private static final int TMC_AID = 0xCD46;
+	private static final int TMC_AID_ALT = 0xCD47;
+
+	/* Table of twice MAX_EVENTS slots keeps the probe sequences short */
+	private static final int TABLE_SIZE = MAX_EVENTS * 2;
+	private static final int EMPTY = -1;
+
+	/*
+	 * Expiry of the duration and persistence codes, in minutes. Code 7 lasts
+	 * until the end of the day and is kept for a full day.
+	 */
+	private static final int[] DP_MINUTES = { 15, 15, 30, 60, 120, 180, 240,
+			1440 };
+
+	/* Free format label lengths in bits, label 0 is the duration */
+	private static final int[] LABEL_BITS = { 3, 3, 5, 5, 5, 8, 8, 8, 8, 11,
+			16, 16, 16, 16, 0, 0 };
+	private static final int FREE_BITS_PER_GROUP = 28;
+	private static final int MAX_FOLLOWING_GROUPS = 4;
+
+	/**
+	 * Receives the event changes, in order, after the decoder lock has been
+	 * released.
+	 */
+	interface Listener {
+		void onTmcEventChanged(FmRxTmcEvent event);
+
+		void onTmcEventRemoved(FmRxTmcEvent event);
+	}
+
+	/* Event change waiting for the lock to be released */
+	private static final class Change {
+		final FmRxTmcEvent event;
+		final boolean removed;
+
+		Change(FmRxTmcEvent event, boolean removed) {
+			this.event = event;
+			this.removed = removed;
+		}
+	}
+
+	private final Listener mListener;
+	private ArrayList<Change> mChanges = new ArrayList<Change>();
+
+	private int mPi = EMPTY;
+	private int mLocationTable = FmRxTmcEvent.NO_LOCATION_TABLE;
+
+	/* Last 8A group, for the immediate repetitions */
+	private int mLastB = EMPTY;
+	private int mLastC = EMPTY;
+	private int mLastD = EMPTY;
+
+	/* Multi group message being received */
+	private int mMultiCi = EMPTY;
+	private int mMultiKey;
+	private int mMultiExtent;
+	private int mMultiFlags;
+	private int mMultiGroups;
+	private final int[] mFree = new int[MAX_FOLLOWING_GROUPS];
+
+	/* Event table, key is location << 12 | direction << 11 | event */
+	private final int[] mKeys = new int[TABLE_SIZE];
+	private final int[] mExtent = new int[TABLE_SIZE];
+	private final int[] mFlags = new int[TABLE_SIZE];
+	private final int[] mDuration = new int[TABLE_SIZE];
+	private final long[] mExpiry = new long[TABLE_SIZE];
+	private int mCount = 0;
+	private long mNextExpiry = Long.MAX_VALUE;
+
+	private long mGroups = 0;
+	private long mRepeats = 0;
+	private long mMessages = 0;
+
+	TmcDecoder(Listener listener) {
+		mListener = listener;
+		clear();
+	}
+
+	/* Decodes one group given as its four 16 bit blocks */
+	void onGroup(int blockA, int blockB, int blockC, int blockD) {
+		ArrayList<Change> changes;
+
+		synchronized (this) {
+			decode(blockA, blockB, blockC, blockD);
+			changes = takeChanges();
+		}
+		dispatch(changes);
+	}
+
+	private void decode(int blockA, int blockB, int blockC, int blockD) {
+		int type = (blockB >> 11) & 0x1F;
+		long now;
+
+		if (type != 0x10 /* 8A */&& type != 0x06 /* 3A */) {
+			return;
+		}
+		mGroups++;
+
+		if (blockA != mPi) {
+			/* Location codes and events belong to the service of the station */
+			removeAll();
+			mPi = blockA;
+			mLocationTable = FmRxTmcEvent.NO_LOCATION_TABLE;
+		}
+
+		if (type == 0x06) {
+			onOdaAnnouncement(blockB, blockC, blockD);
+			return;
+		}
+
+		/* Every message is sent several times in a row */
+		if (blockB == mLastB && blockC == mLastC && blockD == mLastD) {
+			mRepeats++;
+			return;
+		}
+		mLastB = blockB;
+		mLastC = blockC;
+		mLastD = blockD;
+
+		now = System.currentTimeMillis();
+		if (now >= mNextExpiry) {
+			removeExpired(now);
+		}
+
+		/* T set: tuning information, not an event */
+		if ((blockB & 0x10) != 0) {
+			return;
+		}
+		if ((blockB & 0x08) != 0) {
+			mMultiCi = EMPTY;
+			onMessage(key(blockC, blockD), (blockC >> 11) & 0x07,
+					(blockC & 0x8000) != 0 ? FmRxTmcEvent.FLAG_DIVERSION : 0,
+					blockB & 0x07, now);
+		} else {
+			onMultiGroup(blockB & 0x07, blockC, blockD, now);
+		}
+	}
+
+	/* Decodes one group given as 8 bytes, blocks A..D, MSB first */
+	void onGroup(byte[] data, int offset) {
+		onGroup(word(data, offset), word(data, offset + 2), word(data,
+				offset + 4), word(data, offset + 6));
+	}
+
+	/*
+	 * Returns the active events at location, or all of them for
+	 * ALL_LOCATIONS.
+	 */
+	FmRxTmcEvent[] getEvents(int location) {
+		ArrayList<FmRxTmcEvent> events = new ArrayList<FmRxTmcEvent>();
+		ArrayList<Change> changes;
+
+		synchronized (this) {
+			removeExpired(System.currentTimeMillis());
+			for (int i = 0; i < TABLE_SIZE; i++) {
+				if (mKeys[i] != EMPTY
+						&& (location == ALL_LOCATIONS || (mKeys[i] >>> 12) == location)) {
+					events.add(toEvent(i));
+				}
+			}
+			changes = takeChanges();
+		}
+		dispatch(changes);
+		return events.toArray(new FmRxTmcEvent[events.size()]);
+	}
+
+	synchronized int getCount() {
+		return mCount;
+	}
+
+	/* Drops every event, the listener is told about each */
+	void reset() {
+		ArrayList<Change> changes;
+
+		synchronized (this) {
+			removeAll();
+			mPi = EMPTY;
+			mLocationTable = FmRxTmcEvent.NO_LOCATION_TABLE;
+			changes = takeChanges();
+		}
+		dispatch(changes);
+	}
+
+	public synchronized String toString() {
+		return "events=" + mCount + " groups=" + mGroups + " repeats="
+				+ mRepeats + " messages=" + mMessages + " ltn="
+				+ mLocationTable;
+	}
+
+	private void onOdaAnnouncement(int blockB, int blockC, int blockD) {
+		/* Variant 0 of the TMC system information carries the LTN */
+		if ((blockD == TMC_AID || blockD == TMC_AID_ALT)
+				&& ((blockC >> 14) & 0x03) == 0) {
+			mLocationTable = (blockC >> 6) & 0x3F;
+		}
+	}
+
+	private void onMultiGroup(int ci, int blockC, int blockD, long now) {
+		int gsi;
+
+		if ((blockC & 0x8000) != 0) {
+			/* First group: event and location as in a single group message */
+			mMultiCi = ci;
+			mMultiKey = key(blockC, blockD);
+			mMultiExtent = (blockC >> 11) & 0x07;
+			mMultiFlags = FmRxTmcEvent.FLAG_MULTI_GROUP;
+			mMultiGroups = 0;
+			return;
+		}
+		if (ci != mMultiCi || mMultiGroups >= MAX_FOLLOWING_GROUPS) {
+			/* Following group of a message whose first group was missed */
+			mMultiCi = EMPTY;
+			return;
+		}
+		/* The second group is flagged, later ones must not be */
+		if (((blockC & 0x4000) != 0) != (mMultiGroups == 0)) {
+			mMultiCi = EMPTY;
+			return;
+		}
+		mFree[mMultiGroups++] = ((blockC & 0x0FFF) << 16) | blockD;
+
+		gsi = (blockC >> 12) & 0x03;
+		if (gsi == 0) {
+			mMultiCi = EMPTY;
+			onMessage(mMultiKey, mMultiExtent, mMultiFlags, freeDuration(), now);
+		}
+	}
+
+	/* Duration of the free format label 0, 0 when absent */
+	private int freeDuration() {
+		int total = mMultiGroups * FREE_BITS_PER_GROUP;
+		int pos = 0;
+		int label;
+
+		while (pos + 4 <= total) {
+			label = bits(pos, 4);
+			pos += 4;
+			if (label == 0) {
+				return pos + 3 <= total ? bits(pos, 3) : 0;
+			}
+			pos += LABEL_BITS[label];
+		}
+		return 0;
+	}
+
+	private int bits(int pos, int count) {
+		int value = 0;
+		int chunk;
+		int bit;
+
+		for (int i = 0; i < count; i++, pos++) {
+			chunk = pos / FREE_BITS_PER_GROUP;
+			bit = FREE_BITS_PER_GROUP - 1 - pos % FREE_BITS_PER_GROUP;
+			value = (value << 1) | ((mFree[chunk] >> bit) & 1);
+		}
+		return value;
+	}
+
+	private void onMessage(int key, int extent, int flags, int duration,
+			long now) {
+		long expiry = now + DP_MINUTES[duration] * 60000L;
+		int slot;
+
+		mMessages++;
+		if ((key & 0x7FF) == EVENT_CANCEL) {
+			removeLocation(key >>> 11);
+			return;
+		}
+
+		slot = find(key);
+		if (slot >= 0) {
+			mExpiry[slot] = expiry;
+			if (mExtent[slot] == extent && mFlags[slot] == flags
+					&& mDuration[slot] == duration) {
+				return;
+			}
+		} else {
+			if (mCount >= MAX_EVENTS) {
+				removeSlot(soonestExpiry());
+			}
+			slot = insert(key);
+		}
+		mExtent[slot] = extent;
+		mFlags[slot] = flags;
+		mDuration[slot] = duration;
+		mExpiry[slot] = expiry;
+		if (expiry < mNextExpiry) {
+			mNextExpiry = expiry;
+		}
+		mChanges.add(new Change(toEvent(slot), false));
+	}
+
+	/* Called with the lock held, null when nothing changed */
+	private ArrayList<Change> takeChanges() {
+		ArrayList<Change> changes = mChanges;
+
+		if (changes.isEmpty()) {
+			return null;
+		}
+		mChanges = new ArrayList<Change>();
+		return changes;
+	}
+
+	/* Called without the lock, the listener broadcasts */
+	private void dispatch(ArrayList<Change> changes) {
+		if (changes == null) {
+			return;
+		}
+		for (Change change : changes) {
+			if (change.removed) {
+				mListener.onTmcEventRemoved(change.event);
+			} else {
+				mListener.onTmcEventChanged(change.event);
+			}
+		}
+	}
+
+	private FmRxTmcEvent toEvent(int slot) {
+		int key = mKeys[slot];
+		int flags = mFlags[slot];
+
+		if ((key & 0x800) != 0) {
+			flags |= FmRxTmcEvent.FLAG_NEGATIVE_DIRECTION;
+		}
+		return new FmRxTmcEvent(mPi, mLocationTable, key >>> 12, key & 0x7FF,
+				mExtent[slot], flags, mDuration[slot], mExpiry[slot]);
+	}
+
+	/* Block C holds direction and event, block D the location */
+	private static int key(int blockC, int blockD) {
+		return ((blockD & 0xFFFF) << 12) | (blockC & 0x4000) >> 3
+				| (blockC & 0x7FF);
+	}
+
+	private static int hash(int key) {
+		int h = key * 0x9E3779B1;
+
+		return (h ^ (h >>> 16)) & (TABLE_SIZE - 1);
+	}
+
+	private int find(int key) {
+		for (int i = hash(key);; i = (i + 1) & (TABLE_SIZE - 1)) {
+			if (mKeys[i] == key) {
+				return i;
+			}
+			if (mKeys[i] == EMPTY) {
+				return -1;
+			}
+		}
+	}
+
+	private int insert(int key) {
+		int i = hash(key);
+
+		while (mKeys[i] != EMPTY) {
+			i = (i + 1) & (TABLE_SIZE - 1);
+		}
+		mKeys[i] = key;
+		mCount++;
+		return i;
+	}
+
+	/* Backward shift deletion, the table never holds tombstones */
+	private void removeSlot(int slot) {
+		int next;
+		int home;
+
+		mChanges.add(new Change(toEvent(slot), true));
+		mKeys[slot] = EMPTY;
+		mCount--;
+		for (next = (slot + 1) & (TABLE_SIZE - 1); mKeys[next] != EMPTY; next = (next + 1)
+				& (TABLE_SIZE - 1)) {
+			home = hash(mKeys[next]);
+			/* Move the entry back unless its home lies in (slot, next] */
+			if (((next - home) & (TABLE_SIZE - 1)) >= ((next - slot) & (TABLE_SIZE - 1))) {
+				mKeys[slot] = mKeys[next];
+				mExtent[slot] = mExtent[next];
+				mFlags[slot] = mFlags[next];
+				mDuration[slot] = mDuration[next];
+				mExpiry[slot] = mExpiry[next];
+				mKeys[next] = EMPTY;
+				slot = next;
+			}
+		}
+	}
+
+	/* locationDirection is the key without its event code */
+	private void removeLocation(int locationDirection) {
+		int i = 0;
+
+		/* A removal can shift a later entry into slot i, look at it again */
+		while (i < TABLE_SIZE) {
+			if (mKeys[i] != EMPTY && (mKeys[i] >>> 11) == locationDirection) {
+				removeSlot(i);
+			} else {
+				i++;
+			}
+		}
+	}
+
+	private void removeExpired(long now) {
+		int i = 0;
+
+		mNextExpiry = Long.MAX_VALUE;
+		while (i < TABLE_SIZE) {
+			if (mKeys[i] != EMPTY && mExpiry[i] <= now) {
+				removeSlot(i);
+				continue;
+			}
+			if (mKeys[i] != EMPTY && mExpiry[i] < mNextExpiry) {
+				mNextExpiry = mExpiry[i];
+			}
+			i++;
+		}
+	}
+
+	private void removeAll() {
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			if (mKeys[i] != EMPTY) {
+				mChanges.add(new Change(toEvent(i), true));
+			}
+		}
+		clear();
+	}
+
+	private int soonestExpiry() {
+		int soonest = -1;
+
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			if (mKeys[i] != EMPTY
+					&& (soonest < 0 || mExpiry[i] < mExpiry[soonest])) {
+				soonest = i;
+			}
+		}
+		return soonest;
+	}
+
+	private void clear() {
+		for (int i = 0; i < TABLE_SIZE; i++) {
+			mKeys[i] = EMPTY;
+		}
+		mCount = 0;
+		mNextExpiry = Long.MAX_VALUE;
+		mMultiCi = EMPTY;
+		mLastB = EMPTY;
+		mLastC = EMPTY;
+		mLastD = EMPTY;
+	}
+
+	private static int word(byte[] data, int offset) {
+		return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+	}
+}
@@ -44,6 +44,8 @@ extern "C" {
 #include <stdlib.h>
 #include <limits.h>
 #include <fcntl.h>
+#include <pthread.h>
+#include <time.h>
 #include "bluetooth.h"
 #include <cutils/properties.h>
 
@@ -77,6 +79,8 @@ static jmethodID _sMethodId_nativeCb_fmRxAfSwitchComplete;
 static jmethodID _sMethodId_nativeCb_fmRxAfListChanged;
 static jmethodID _sMethodId_nativeCb_fmRxCmdDone;
 static jmethodID _sMethodId_nativeCb_fmRxCompleteScanDone;
+static jmethodID _sMethodId_nativeCb_fmRxRawRdsRingAvailable;
+static jmethodID _sMethodId_nativeCb_fmRxRawRdsBatch;
 static jmethodID _sMethodId_nativeCb_fmapp_rx_callback;
     static jmethodID _sMethodId_nativeCb_fmrx_error_callback;
     static jmethodID _sMethodId_nativeCb_fmRxCmdError;
@@ -131,6 +135,951 @@ out:
 	return ret;
 }
 
+//##############################################################################
+//								 CALLBACK DISPATCHER
+//##############################################################################
+
+/*
+ * Stack events are copied into a fixed size queue by the stack thread and
+ * delivered to Java by a single dispatcher thread. The dispatcher is attached
+ * to the VM once for the lifetime of the stack context, instead of attaching
+ * and detaching the stack thread around every event.
+ */
+
+#define FMRX_DISPATCH_QUEUE_SIZE		(64)
+#define FMRX_DISPATCH_PAYLOAD_MAX		(256)
+
+/* Pseudo event type used to route fmrx_error_callback through the queue */
+#define FMRX_DISPATCH_EVENT_ERROR		((FmRxEventType)0xFF)
+
+/* Pseudo event type notifying Java that the raw RDS ring has new groups */
+#define FMRX_DISPATCH_EVENT_RDS_RING		((FmRxEventType)0xFE)
+
+/* RadioText length and the end character the stack strips off */
+#define FMRX_RT_MAX_LENGTH			(64)
+#define FMRX_RT_END				(0x0D)
+
+/* Indexes of the values returned by nativeJFmRx_GetDispatcherStats */
+#define FMRX_DISPATCH_STAT_QUEUE_DEPTH		(0)
+#define FMRX_DISPATCH_STAT_MAX_QUEUE_DEPTH	(1)
+#define FMRX_DISPATCH_STAT_EVENTS		(2)
+#define FMRX_DISPATCH_STAT_DROPPED		(3)
+#define FMRX_DISPATCH_STAT_TOTAL_LATENCY_NS	(4)
+#define FMRX_DISPATCH_STAT_MAX_LATENCY_NS	(5)
+#define FMRX_DISPATCH_STAT_NUM			(6)
+
+typedef struct {
+	fm_rx_event_s event;
+
+	/* Copy of the data the event points to (PS name, RT, AF list) */
+	jsize payloadLen;
+	FMC_U8 payload[FMRX_DISPATCH_PAYLOAD_MAX];
+
+	/* CLOCK_MONOTONIC time at which the stack reported the event */
+	jlong enqueueTimeNs;
+} fmrx_dispatch_entry_s;
+
+static fmrx_dispatch_entry_s _sDispatchQueue[FMRX_DISPATCH_QUEUE_SIZE];
+static fmrx_dispatch_entry_s _sDispatchCurrent;
+static unsigned int _sDispatchHead = 0;
+static unsigned int _sDispatchCount = 0;
+static pthread_mutex_t _sDispatchLock = PTHREAD_MUTEX_INITIALIZER;
+static pthread_cond_t _sDispatchNotEmpty = PTHREAD_COND_INITIALIZER;
+static pthread_cond_t _sDispatchNotFull = PTHREAD_COND_INITIALIZER;
+static pthread_t _sDispatchThread;
+static bool _sDispatchRunning = false;
+static bool _sDispatchStop = false;
+static jlong _sDispatchStats[FMRX_DISPATCH_STAT_NUM];
+
+/*
+ * Arrays handed to the Java callbacks. They are only touched by the
+ * dispatcher thread and are reused for every payload of the same length, so
+ * Java must not keep a reference to them past the callback.
+ */
+static jbyteArray _sByteArrayCache[FMRX_DISPATCH_PAYLOAD_MAX + 1];
+static jintArray _sChannelsArray = NULL;
+
+/*
+ * Raw RDS batching (JFmRx.setRawRdsBatching). Groups are collected by the
+ * dispatcher thread and delivered in one upcall once the batch is full or
+ * the oldest group has waited for the configured latency. The configuration
+ * is protected by _sDispatchLock, the batch itself is only touched by the
+ * dispatcher thread.
+ */
+#define FMRX_RDS_BATCH_MAX			(64)
+#define FMRX_RDS_GROUP_SIZE			(8)
+
+static jint _sRdsBatchSize = 0;
+static jlong _sRdsBatchLatencyNs = 0;
+static jint _sRdsBatchMask = (jint)0xFFFFFFFF;
+static FMC_U8 _sRdsBatchData[FMRX_RDS_BATCH_MAX * FMRX_RDS_GROUP_SIZE];
+static jint _sRdsBatchMasks[FMRX_RDS_BATCH_MAX];
+static jint _sRdsBatchCount = 0;
+static jint _sRdsBatchStatus = FMC_STATUS_SUCCESS;
+static jlong _sRdsBatchDeadlineNs = 0;
+static jbyteArray _sRdsBatchDataArray = NULL;
+static jintArray _sRdsBatchMaskArray = NULL;
+
+/*
+ * Raw RDS ring registered through JFmRx.setRawRdsRing(). The layout must
+ * match JFmRxRdsRing.java. Groups are written in place by the stack thread,
+ * the dispatcher only sends a single "groups available" notification until
+ * Java has been told about them.
+ *
+ * Java reads and consumes without taking _sRdsRingLock: writeCount is
+ * stored with release semantics after the slot is filled and readCount is
+ * loaded with acquire semantics before a slot is reused, pairing with
+ * nativeJFmRx_RdsRingLoadAcquire()/nativeJFmRx_RdsRingStoreRelease(), which
+ * JFmRxRdsRing.java uses for its side of the counters.
+ */
+typedef struct {
+	volatile jint writeCount;
+	volatile jint readCount;
+	volatile jint overrunCount;
+	jint reserved;
+} fmrx_rds_ring_header_s;
+
+typedef struct {
+	FMC_U8 groupData[8];
+	FMC_U8 status;
+	FMC_U8 reserved[3];
+	jint groupBitInMask;
+} fmrx_rds_ring_slot_s;
+
+static jobject _sRdsRingBuffer = NULL;
+static fmrx_rds_ring_header_s *_sRdsRingHeader = NULL;
+static fmrx_rds_ring_slot_s *_sRdsRingSlots = NULL;
+static jint _sRdsRingSlotMask = 0;
+static bool _sRdsRingNotifyPending = false;
+static pthread_mutex_t _sRdsRingLock = PTHREAD_MUTEX_INITIALIZER;
+
+/*
+ * Stores a raw RDS group in the ring. Returns false when no ring is
+ * registered. notify is set when the dispatcher has to be woken up.
+ */
+static bool fmrx_rds_ring_put(const fm_rx_event_s *event, bool *notify)
+{
+	fmrx_rds_ring_slot_s *slot;
+	jint writeCount;
+
+	*notify = false;
+
+	pthread_mutex_lock(&_sRdsRingLock);
+
+	if (_sRdsRingHeader == NULL) {
+		pthread_mutex_unlock(&_sRdsRingLock);
+		return false;
+	}
+
+	writeCount = _sRdsRingHeader->writeCount;
+
+	if (writeCount - __atomic_load_n(&_sRdsRingHeader->readCount,
+					 __ATOMIC_ACQUIRE) > _sRdsRingSlotMask) {
+		__atomic_store_n(&_sRdsRingHeader->overrunCount,
+				 _sRdsRingHeader->overrunCount + 1,
+				 __ATOMIC_RELAXED);
+	} else {
+		slot = &_sRdsRingSlots[writeCount & _sRdsRingSlotMask];
+		memcpy(slot->groupData, event->p.rawRdsGroupData.groupData,
+		       sizeof(slot->groupData));
+		slot->status = (FMC_U8)event->status;
+		slot->groupBitInMask = (jint)event->p.rawRdsGroupData.groupBitInMask;
+
+		/* Publish the slot before the counter that makes it visible */
+		__atomic_store_n(&_sRdsRingHeader->writeCount, writeCount + 1,
+				 __ATOMIC_RELEASE);
+	}
+
+	if (_sRdsRingNotifyPending == false) {
+		_sRdsRingNotifyPending = true;
+		*notify = true;
+	}
+
+	pthread_mutex_unlock(&_sRdsRingLock);
+
+	return true;
+}
+
+/* Returns the number of unread groups and re-arms the notification */
+static jint fmrx_rds_ring_take_notification(void)
+{
+	jint available = 0;
+
+	pthread_mutex_lock(&_sRdsRingLock);
+
+	_sRdsRingNotifyPending = false;
+	if (_sRdsRingHeader != NULL) {
+		available = _sRdsRingHeader->writeCount -
+			    __atomic_load_n(&_sRdsRingHeader->readCount,
+					    __ATOMIC_ACQUIRE);
+	}
+
+	pthread_mutex_unlock(&_sRdsRingLock);
+
+	return available;
+}
+
+static int nativeJFmRx_SetRawRdsRing(JNIEnv *env, jobject obj,
+				     jobject jBuffer, jint slots)
+{
+	void *address = NULL;
+	jlong capacity = 0;
+	int status = FMC_STATUS_SUCCESS;
+
+	FM_LOGD("%s: Entered, slots %d", __func__, slots);
+
+	if (jBuffer != NULL) {
+		address = env->GetDirectBufferAddress(jBuffer);
+		capacity = env->GetDirectBufferCapacity(jBuffer);
+
+		if (address == NULL || slots <= 0 || (slots & (slots - 1)) != 0 ||
+		    capacity < (jlong)(sizeof(fmrx_rds_ring_header_s) +
+				       slots * sizeof(fmrx_rds_ring_slot_s))) {
+			LOGE("%s: invalid ring buffer", __func__);
+			return FMC_STATUS_INVALID_PARM;
+		}
+	}
+
+	pthread_mutex_lock(&_sRdsRingLock);
+
+	if (_sRdsRingBuffer != NULL) {
+		env->DeleteGlobalRef(_sRdsRingBuffer);
+		_sRdsRingBuffer = NULL;
+	}
+	_sRdsRingHeader = NULL;
+	_sRdsRingSlots = NULL;
+	_sRdsRingSlotMask = 0;
+	_sRdsRingNotifyPending = false;
+
+	if (jBuffer != NULL) {
+		_sRdsRingBuffer = env->NewGlobalRef(jBuffer);
+		if (_sRdsRingBuffer == NULL) {
+			status = FMC_STATUS_NO_RESOURCES;
+		} else {
+			_sRdsRingHeader = (fmrx_rds_ring_header_s *)address;
+			_sRdsRingSlots = (fmrx_rds_ring_slot_s *)(_sRdsRingHeader + 1);
+			_sRdsRingSlotMask = slots - 1;
+			memset(_sRdsRingHeader, 0, sizeof(fmrx_rds_ring_header_s));
+		}
+	}
+
+	pthread_mutex_unlock(&_sRdsRingLock);
+
+	return status;
+}
+
+/* Acquire load of the ring counter at offset, for JFmRxRdsRing.java */
+static jint nativeJFmRx_RdsRingLoadAcquire(JNIEnv *env, jobject obj,
+					   jobject jBuffer, jint offset)
+{
+	char *address = (char *)env->GetDirectBufferAddress(jBuffer);
+
+	if (address == NULL) {
+		return 0;
+	}
+
+	return __atomic_load_n((jint *)(address + offset), __ATOMIC_ACQUIRE);
+}
+
+/* Release store of the ring counter at offset, for JFmRxRdsRing.java */
+static void nativeJFmRx_RdsRingStoreRelease(JNIEnv *env, jobject obj,
+					    jobject jBuffer, jint offset,
+					    jint value)
+{
+	char *address = (char *)env->GetDirectBufferAddress(jBuffer);
+
+	if (address == NULL) {
+		return;
+	}
+
+	__atomic_store_n((jint *)(address + offset), value, __ATOMIC_RELEASE);
+}
+
+static jlong fmrx_dispatch_now_ns(void)
+{
+	struct timespec ts;
+
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+
+	return (jlong)ts.tv_sec * 1000000000LL + ts.tv_nsec;
+}
+
+static jbyteArray fmrx_dispatch_byte_array(JNIEnv *env, jsize len)
+{
+	jbyteArray localArray;
+
+	if (_sByteArrayCache[len] == NULL) {
+		localArray = env->NewByteArray(len);
+		if (localArray == NULL) {
+			return NULL;
+		}
+		_sByteArrayCache[len] = (jbyteArray)env->NewGlobalRef(localArray);
+		env->DeleteLocalRef(localArray);
+	}
+
+	return _sByteArrayCache[len];
+}
+
+static jintArray fmrx_dispatch_channels_array(JNIEnv *env, jsize len)
+{
+	jintArray localArray;
+
+	if (_sChannelsArray == NULL) {
+		localArray = env->NewIntArray(len);
+		if (localArray == NULL) {
+			return NULL;
+		}
+		_sChannelsArray = (jintArray)env->NewGlobalRef(localArray);
+		env->DeleteLocalRef(localArray);
+	}
+
+	return _sChannelsArray;
+}
+
+static void fmrx_dispatch_release_arrays(JNIEnv *env)
+{
+	for (int i = 0; i <= FMRX_DISPATCH_PAYLOAD_MAX; i++) {
+		if (_sByteArrayCache[i] != NULL) {
+			env->DeleteGlobalRef(_sByteArrayCache[i]);
+			_sByteArrayCache[i] = NULL;
+		}
+	}
+
+	if (_sChannelsArray != NULL) {
+		env->DeleteGlobalRef(_sChannelsArray);
+		_sChannelsArray = NULL;
+	}
+
+	if (_sRdsBatchDataArray != NULL) {
+		env->DeleteGlobalRef(_sRdsBatchDataArray);
+		_sRdsBatchDataArray = NULL;
+	}
+
+	if (_sRdsBatchMaskArray != NULL) {
+		env->DeleteGlobalRef(_sRdsBatchMaskArray);
+		_sRdsBatchMaskArray = NULL;
+	}
+}
+
+/* Delivers the collected raw RDS groups. Dispatcher thread only. */
+static void fmrx_rds_batch_flush(JNIEnv *env)
+{
+	jbyteArray localData;
+	jintArray localMasks;
+
+	if (_sRdsBatchCount == 0) {
+		return;
+	}
+
+	if (_sRdsBatchDataArray == NULL) {
+		localData = env->NewByteArray(FMRX_RDS_BATCH_MAX * FMRX_RDS_GROUP_SIZE);
+		localMasks = env->NewIntArray(FMRX_RDS_BATCH_MAX);
+		if (localData == NULL || localMasks == NULL) {
+			LOGE("%s: Failed allocating batch arrays", __func__);
+			goto CLEANUP;
+		}
+		_sRdsBatchDataArray = (jbyteArray)env->NewGlobalRef(localData);
+		_sRdsBatchMaskArray = (jintArray)env->NewGlobalRef(localMasks);
+		env->DeleteLocalRef(localData);
+		env->DeleteLocalRef(localMasks);
+	}
+
+	env->SetByteArrayRegion(_sRdsBatchDataArray,
+			0,
+			_sRdsBatchCount * FMRX_RDS_GROUP_SIZE,
+			(jbyte*)_sRdsBatchData);
+	env->SetIntArrayRegion(_sRdsBatchMaskArray,
+			0,
+			_sRdsBatchCount,
+			_sRdsBatchMasks);
+
+	FM_LOGD("%s: delivering %d raw RDS groups", __func__, _sRdsBatchCount);
+
+	env->CallStaticVoidMethod(_sJClass,
+			_sMethodId_nativeCb_fmRxRawRdsBatch,
+			(jint)_sRdsBatchStatus,
+			(jint)_sRdsBatchCount,
+			_sRdsBatchDataArray,
+			_sRdsBatchMaskArray);
+
+CLEANUP:
+	if (env->ExceptionOccurred()) {
+		LOGE("%s: ExceptionOccurred", __func__);
+		env->ExceptionDescribe();
+		env->ExceptionClear();
+	}
+	_sRdsBatchCount = 0;
+}
+
+/* Adds a raw group to the current batch. Dispatcher thread only. */
+static void fmrx_rds_batch_add(JNIEnv *env, const fm_rx_event_s *event,
+			       jint batchSize, jint groupMask, jlong latencyNs)
+{
+	if (((jint)event->p.rawRdsGroupData.groupBitInMask & groupMask) == 0) {
+		return;
+	}
+
+	if (_sRdsBatchCount == 0) {
+		_sRdsBatchDeadlineNs = fmrx_dispatch_now_ns() + latencyNs;
+	}
+
+	memcpy(&_sRdsBatchData[_sRdsBatchCount * FMRX_RDS_GROUP_SIZE],
+	       event->p.rawRdsGroupData.groupData, FMRX_RDS_GROUP_SIZE);
+	_sRdsBatchMasks[_sRdsBatchCount] =
+		(jint)event->p.rawRdsGroupData.groupBitInMask;
+	_sRdsBatchStatus = (jint)event->status;
+	_sRdsBatchCount++;
+
+	if (_sRdsBatchCount >= batchSize) {
+		fmrx_rds_batch_flush(env);
+	}
+}
+
+/* Waits on the dispatcher condition until the given monotonic deadline */
+static void fmrx_dispatch_wait_until(jlong deadlineNs)
+{
+	struct timespec ts;
+	jlong waitNs = deadlineNs - fmrx_dispatch_now_ns();
+
+	if (waitNs <= 0) {
+		return;
+	}
+
+	clock_gettime(CLOCK_REALTIME, &ts);
+	waitNs += ts.tv_nsec;
+	ts.tv_sec += (time_t)(waitNs / 1000000000LL);
+	ts.tv_nsec = (long)(waitNs % 1000000000LL);
+
+	pthread_cond_timedwait(&_sDispatchNotEmpty, &_sDispatchLock, &ts);
+}
+
+/*
+ * Copies an event into the queue. Called on the stack thread. Raw RDS groups
+ * are dropped when the queue is full, all other events wait for room so that
+ * no command completion is ever lost.
+ */
+static void fmrx_dispatch_enqueue(const fm_rx_event_s *event)
+{
+	fmrx_dispatch_entry_s *entry;
+	const FMC_U8 *payload = NULL;
+	jsize len = 0;
+
+	pthread_mutex_lock(&_sDispatchLock);
+
+	if (_sDispatchRunning == false) {
+		pthread_mutex_unlock(&_sDispatchLock);
+		LOGE("%s: dispatcher not running, dropping event %d", __func__,
+		     event->eventType);
+		return;
+	}
+
+	while (_sDispatchCount == FMRX_DISPATCH_QUEUE_SIZE) {
+		if (event->eventType == FM_RX_EVENT_RAW_RDS || _sDispatchStop) {
+			_sDispatchStats[FMRX_DISPATCH_STAT_DROPPED]++;
+			pthread_mutex_unlock(&_sDispatchLock);
+			return;
+		}
+		pthread_cond_wait(&_sDispatchNotFull, &_sDispatchLock);
+	}
+
+	entry = &_sDispatchQueue[(_sDispatchHead + _sDispatchCount) %
+				 FMRX_DISPATCH_QUEUE_SIZE];
+	memcpy(&entry->event, event, sizeof(entry->event));
+
+	switch (event->eventType) {
+	case FM_RX_EVENT_AF_LIST_CHANGED:
+		payload = (const FMC_U8 *)event->p.afListData.afList;
+		len = event->p.afListData.afListSize;
+		entry->event.p.afListData.afList = NULL;
+		break;
+
+	case FM_RX_EVENT_PS_CHANGED:
+		payload = event->p.psData.name;
+		len = strlen((const char *)event->p.psData.name);
+		entry->event.p.psData.name = NULL;
+		break;
+
+	case FM_RX_EVENT_RADIO_TEXT:
+		payload = event->p.radioTextData.msg;
+		len = event->p.radioTextData.len;
+		entry->event.p.radioTextData.msg = NULL;
+		break;
+
+	default:
+		break;
+	}
+
+	if (len > FMRX_DISPATCH_PAYLOAD_MAX) {
+		LOGE("%s: payload of event %d truncated (%d)", __func__,
+		     event->eventType, len);
+		len = FMRX_DISPATCH_PAYLOAD_MAX;
+	}
+	if (payload != NULL && len > 0) {
+		memcpy(entry->payload, payload, len);
+	}
+	/*
+	 * Java finds the end of a RadioText the way RDS marks it: restore the
+	 * 0x0D when the stack reports the end before the last character.
+	 */
+	if (event->eventType == FM_RX_EVENT_RADIO_TEXT &&
+	    event->p.radioTextData.endOfText &&
+	    event->p.radioTextData.startIndex + len < FMRX_RT_MAX_LENGTH) {
+		entry->payload[len++] = FMRX_RT_END;
+	}
+	entry->payloadLen = len;
+	entry->enqueueTimeNs = fmrx_dispatch_now_ns();
+
+	_sDispatchCount++;
+	if (_sDispatchCount > _sDispatchStats[FMRX_DISPATCH_STAT_MAX_QUEUE_DEPTH]) {
+		_sDispatchStats[FMRX_DISPATCH_STAT_MAX_QUEUE_DEPTH] = _sDispatchCount;
+	}
+
+	pthread_cond_signal(&_sDispatchNotEmpty);
+	pthread_mutex_unlock(&_sDispatchLock);
+}
+
+/* Delivers one queued event to Java. Runs on the dispatcher thread only. */
+static void fmrx_dispatch_event(JNIEnv *env, fmrx_dispatch_entry_s *entry)
+{
+	const fm_rx_event_s *event = &entry->event;
+	jbyteArray jPayload = NULL;
+	jintArray jChannelsData = NULL;
+	jsize len;
+
+	FM_LOGD("%s: Entered, got event %d", __func__, event->eventType);
+
+	switch (event->eventType) {
+	case FMRX_DISPATCH_EVENT_RDS_RING:
+
+		len = fmrx_rds_ring_take_notification();
+
+		FM_LOGD("%s: %d raw RDS groups available in ring", __func__, len);
+
+		if (len > 0) {
+			env->CallStaticVoidMethod(_sJClass,
+					_sMethodId_nativeCb_fmRxRawRdsRingAvailable,
+					(jint)len);
+		}
+		break;
+
+	case FMRX_DISPATCH_EVENT_ERROR:
+
+		FM_LOGD("%s: Calling nativeCb_fmRxCmdError", __func__);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxCmdError,
+				(jint)event->status);
+		break;
+
+	case FM_RX_EVENT_CMD_DONE:
+
+		FM_LOGD("%s: Calling CallStaticVoidMethod", __func__);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxCmdDone,
+				(jint)event->status,
+				(jint)event->p.cmdDone.cmd,
+				(jlong)event->p.cmdDone.value);
+		break;
+
+	case FM_RX_EVENT_MONO_STEREO_MODE_CHANGED:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_MONO_STEREO_MODE_CHANGED",
+		     __func__);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxMonoStereoModeChanged,
+				(jint)event->status,
+				(jint)event->p.monoStereoMode.mode);
+		break;
+
+	case FM_RX_EVENT_PI_CODE_CHANGED:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_PI_CODE_CHANGED", __func__);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxPiCodeChanged,
+				(jint)event->status,
+				(jint)event->p.piChangedData.pi);
+		break;
+
+	case FM_RX_EVENT_AF_SWITCH_START:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_SWITCH_START", __func__);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxAfSwitchStart,
+				(jint)event->status,
+				(jint)event->p.afSwitchData.pi,
+				(jint)event->p.afSwitchData.tunedFreq,
+				(jint)event->p.afSwitchData.afFreq);
+		break;
+
+	case FM_RX_EVENT_AF_SWITCH_TO_FREQ_FAILED:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_SWITCH_TO_FREQ_FAILED",
+		      __func__);
+		FM_LOGD("AF switch to %d failed", event->p.afSwitchData.afFreq);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxAfSwitchFreqFailed,
+				(jint)event->status,
+				(jint)event->p.afSwitchData.pi,
+				(jint)event->p.afSwitchData.tunedFreq,
+				(jint)event->p.afSwitchData.afFreq);
+		break;
+
+	case FM_RX_EVENT_AF_SWITCH_COMPLETE:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_SWITCH_COMPLETE", __func__);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxAfSwitchComplete,
+				(jint)event->status,
+				(jint)event->p.afSwitchData.pi,
+				(jint)event->p.afSwitchData.tunedFreq,
+				(jint)event->p.afSwitchData.afFreq);
+		break;
+
+	case FM_RX_EVENT_AF_LIST_CHANGED:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_LIST_CHANGED", __func__);
+
+		jPayload = fmrx_dispatch_byte_array(env, entry->payloadLen);
+		if (jPayload == NULL) {
+			LOGE("%s: Failed converting elements", __func__);
+			goto CLEANUP;
+		}
+
+		env->SetByteArrayRegion(jPayload,
+				0,
+				entry->payloadLen,
+				(jbyte*)entry->payload);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxAfListChanged,
+				(jint)event->status,
+				(jint)event->p.afListData.pi,
+				jPayload,
+				(jint)entry->payloadLen);
+		break;
+
+	case FM_RX_EVENT_PS_CHANGED:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_PS_CHANGED len %d", __func__,
+		     entry->payloadLen);
+
+		jPayload = fmrx_dispatch_byte_array(env, entry->payloadLen);
+		if (jPayload == NULL) {
+			LOGE("%s: Failed converting elements", __func__);
+			goto CLEANUP;
+		}
+
+		env->SetByteArrayRegion(jPayload,
+				0,
+				entry->payloadLen,
+				(jbyte*)entry->payload);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxPsChanged,
+				(jint)event->status,
+				(jint)event->p.psData.frequency,
+				jPayload,
+				(jint)event->p.psData.repertoire);
+		break;
+
+	case FM_RX_EVENT_RADIO_TEXT:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_RADIO_TEXT", __func__);
+
+		jPayload = fmrx_dispatch_byte_array(env, entry->payloadLen);
+		if (jPayload == NULL) {
+			LOGE("%s: Failed converting elements", __func__);
+			goto CLEANUP;
+		}
+
+		env->SetByteArrayRegion(jPayload,
+				0,
+				entry->payloadLen,
+				(jbyte*)entry->payload);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxRadioText,
+				(jint)event->status,
+				(jboolean)event->p.radioTextData.resetDisplay,
+				jPayload,
+				(jint)entry->payloadLen,
+				(jint)event->p.radioTextData.startIndex,
+				(jint)event->p.radioTextData.repertoire);
+		break;
+
+	case FM_RX_EVENT_RAW_RDS:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_RAW_RDS", __func__);
+
+		len = sizeof(event->p.rawRdsGroupData.groupData);
+
+		jPayload = fmrx_dispatch_byte_array(env, len);
+		if (jPayload == NULL) {
+			LOGE("%s: Failed converting elements", __func__);
+			goto CLEANUP;
+		}
+
+		env->SetByteArrayRegion(jPayload,
+				0,
+				len,
+				(jbyte*)event->p.rawRdsGroupData.groupData);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxRawRDS,
+				(jint)event->status,
+				(jint)event->p.rawRdsGroupData.groupBitInMask,
+				jPayload);
+		break;
+
+	case FM_RX_EVENT_AUDIO_PATH_CHANGED:
+
+		FM_LOGD("Audio Path Changed Event received");
+
+		break;
+
+	case FM_RX_EVENT_PTY_CODE_CHANGED:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_PTY_CODE_CHANGED", __func__);
+		FM_LOGD("RDS PTY Code has changed to %d",
+		     event->p.ptyChangedData.pty);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxPtyCodeChanged,
+				(jint)event->status,
+				(jint)event->p.ptyChangedData.pty);
+		break;
+
+	case FM_RX_EVENT_COMPLETE_SCAN_DONE:
+
+		FM_LOGD("%s: EVENT FM_RX_EVENT_COMPLETE_SCAN_DONE", __func__);
+
+		len = sizeof(event->p.completeScanData.channelsData) /
+			sizeof(int);
+
+		jChannelsData = fmrx_dispatch_channels_array(env, len);
+		if (jChannelsData == NULL) {
+			LOGE("%s: Failed converting elements", __func__);
+			goto CLEANUP;
+		}
+
+		env->SetIntArrayRegion(jChannelsData,
+				0,
+				len,
+				(jint*)event->p.completeScanData.channelsData);
+
+		env->CallStaticVoidMethod(_sJClass,
+				_sMethodId_nativeCb_fmRxCompleteScanDone,
+				(jint)event->status,
+				(jint)event->p.completeScanData.numOfChannels,
+				jChannelsData);
+		break;
+
+	default:
+
+		FM_LOGD("%s: unhandled fm event %d", __func__, event->eventType);
+
+		break;
+	} //end switch
+
+CLEANUP:
+	if (env->ExceptionOccurred()) {
+		LOGE("%s: ExceptionOccurred while handling event %d", __func__,
+		     event->eventType);
+		env->ExceptionDescribe();
+		env->ExceptionClear();
+	}
+}
+
+static void *fmrx_dispatch_thread(void *arg)
+{
+	JNIEnv *env = NULL;
+	JavaVMAttachArgs attachArgs;
+	jlong latency;
+	jint batchSize;
+	jint batchMask;
+	jlong batchLatencyNs;
+
+	(void)arg;
+
+	attachArgs.version = JNI_VERSION_1_4;
+	attachArgs.name = (char *)"FmRxDispatcher";
+	attachArgs.group = NULL;
+
+	if (g_jVM->AttachCurrentThread(&env, &attachArgs) != JNI_OK ||
+	    env == NULL) {
+		LOGE("%s: failed to attach dispatcher thread", __func__);
+		pthread_mutex_lock(&_sDispatchLock);
+		_sDispatchRunning = false;
+		pthread_cond_broadcast(&_sDispatchNotFull);
+		pthread_mutex_unlock(&_sDispatchLock);
+		return NULL;
+	}
+
+	FM_LOGD("%s: dispatcher attached, jEnv %p", __func__, (void *)env);
+
+	pthread_mutex_lock(&_sDispatchLock);
+
+	/* Events queued before the stop request are still delivered */
+	while (_sDispatchStop == false || _sDispatchCount > 0) {
+
+		if (_sDispatchCount == 0) {
+			if (_sRdsBatchCount == 0) {
+				pthread_cond_wait(&_sDispatchNotEmpty, &_sDispatchLock);
+			} else if (_sRdsBatchSize == 0 || _sDispatchStop ||
+				   fmrx_dispatch_now_ns() >= _sRdsBatchDeadlineNs) {
+				/* Latency cap reached or batching switched off */
+				pthread_mutex_unlock(&_sDispatchLock);
+				fmrx_rds_batch_flush(env);
+				pthread_mutex_lock(&_sDispatchLock);
+			} else {
+				fmrx_dispatch_wait_until(_sRdsBatchDeadlineNs);
+			}
+			continue;
+		}
+
+		memcpy(&_sDispatchCurrent, &_sDispatchQueue[_sDispatchHead],
+		       sizeof(_sDispatchCurrent));
+		_sDispatchHead = (_sDispatchHead + 1) % FMRX_DISPATCH_QUEUE_SIZE;
+		_sDispatchCount--;
+		pthread_cond_signal(&_sDispatchNotFull);
+
+		batchSize = _sRdsBatchSize;
+		batchMask = _sRdsBatchMask;
+		batchLatencyNs = _sRdsBatchLatencyNs;
+
+		pthread_mutex_unlock(&_sDispatchLock);
+
+		if (_sDispatchCurrent.event.eventType == FM_RX_EVENT_RAW_RDS &&
+		    batchSize > 0) {
+			fmrx_rds_batch_add(env, &_sDispatchCurrent.event, batchSize,
+					   batchMask, batchLatencyNs);
+		} else {
+			fmrx_dispatch_event(env, &_sDispatchCurrent);
+		}
+		latency = fmrx_dispatch_now_ns() - _sDispatchCurrent.enqueueTimeNs;
+
+		pthread_mutex_lock(&_sDispatchLock);
+
+		_sDispatchStats[FMRX_DISPATCH_STAT_EVENTS]++;
+		_sDispatchStats[FMRX_DISPATCH_STAT_TOTAL_LATENCY_NS] += latency;
+		if (latency > _sDispatchStats[FMRX_DISPATCH_STAT_MAX_LATENCY_NS]) {
+			_sDispatchStats[FMRX_DISPATCH_STAT_MAX_LATENCY_NS] = latency;
+		}
+	}
+
+	pthread_mutex_unlock(&_sDispatchLock);
+
+	fmrx_rds_batch_flush(env);
+	fmrx_dispatch_release_arrays(env);
+
+	FM_LOGD("%s: Exiting, Calling DetachCurrentThread", __func__);
+
+	g_jVM->DetachCurrentThread();
+
+	return NULL;
+}
+
+static bool fmrx_dispatch_start(void)
+{
+	bool ret = true;
+
+	pthread_mutex_lock(&_sDispatchLock);
+
+	if (_sDispatchRunning == false) {
+		_sDispatchHead = 0;
+		_sDispatchCount = 0;
+		_sDispatchStop = false;
+		memset(_sDispatchStats, 0, sizeof(_sDispatchStats));
+
+		if (pthread_create(&_sDispatchThread, NULL,
+				   fmrx_dispatch_thread, NULL) != 0) {
+			LOGE("%s: failed to create dispatcher thread", __func__);
+			ret = false;
+		} else {
+			_sDispatchRunning = true;
+		}
+	}
+
+	pthread_mutex_unlock(&_sDispatchLock);
+
+	return ret;
+}
+
+static void fmrx_dispatch_stop(void)
+{
+	pthread_mutex_lock(&_sDispatchLock);
+
+	if (_sDispatchRunning == false) {
+		pthread_mutex_unlock(&_sDispatchLock);
+		return;
+	}
+
+	_sDispatchStop = true;
+	pthread_cond_broadcast(&_sDispatchNotEmpty);
+	pthread_cond_broadcast(&_sDispatchNotFull);
+
+	pthread_mutex_unlock(&_sDispatchLock);
+
+	pthread_join(_sDispatchThread, NULL);
+
+	pthread_mutex_lock(&_sDispatchLock);
+	_sDispatchRunning = false;
+	pthread_mutex_unlock(&_sDispatchLock);
+}
+
+static int nativeJFmRx_SetRawRdsBatching(JNIEnv *env, jobject obj,
+					 jint batchSize, jint maxLatencyMs,
+					 jlong groupMask)
+{
+	FM_LOGD("%s: batchSize %d, maxLatencyMs %d, groupMask 0x%x", __func__,
+	     batchSize, maxLatencyMs, (unsigned int)groupMask);
+
+	if (batchSize < 0 || batchSize > FMRX_RDS_BATCH_MAX || maxLatencyMs < 0) {
+		LOGE("%s: invalid batching parameters", __func__);
+		return FMC_STATUS_INVALID_PARM;
+	}
+
+	pthread_mutex_lock(&_sDispatchLock);
+
+	_sRdsBatchSize = batchSize;
+	_sRdsBatchLatencyNs = (jlong)maxLatencyMs * 1000000LL;
+	_sRdsBatchMask = (jint)groupMask;
+
+	/* Let the dispatcher flush a pending batch with the new settings */
+	pthread_cond_signal(&_sDispatchNotEmpty);
+
+	pthread_mutex_unlock(&_sDispatchLock);
+
+	return FMC_STATUS_SUCCESS;
+}
+
+static int nativeJFmRx_GetDispatcherStats(JNIEnv *env, jobject obj,
+					  jlongArray jStats)
+{
+	jlong stats[FMRX_DISPATCH_STAT_NUM];
+
+	if (jStats == NULL ||
+	    env->GetArrayLength(jStats) < FMRX_DISPATCH_STAT_NUM) {
+		LOGE("%s: invalid stats array", __func__);
+		return FMC_STATUS_INVALID_PARM;
+	}
+
+	pthread_mutex_lock(&_sDispatchLock);
+	memcpy(stats, _sDispatchStats, sizeof(stats));
+	stats[FMRX_DISPATCH_STAT_QUEUE_DEPTH] = _sDispatchCount;
+	pthread_mutex_unlock(&_sDispatchLock);
+
+	env->SetLongArrayRegion(jStats, 0, FMRX_DISPATCH_STAT_NUM, stats);
+
+	return FMC_STATUS_SUCCESS;
+}
+
 static int nativeJFmRx_Create(JNIEnv *env,jobject obj,jobject jContextValue)
 {
     FmRxStatus fmStatus;
@@ -173,6 +1122,12 @@ static int nativeJFmRx_Create(JNIEnv *env,jobject obj,jobject jContextValue)
 	}
 
 
+		FM_LOGD("nativeJFmRx_Create(): Starting callback dispatcher");
+
+	if (fmrx_dispatch_start() == false) {
+		goto CLEANUP;
+	}
+
 		FM_LOGD("nativeJFmRx_Create(): Calling FM_RX_Init");
 
 
@@ -241,6 +1196,7 @@ static int nativeJFmRx_Create(JNIEnv *env,jobject obj,jobject jContextValue)
 CLEANUP:
 	
 	LOGE("nativeJFmRx_create(): Exiting With a Failure indication");
+	fmrx_dispatch_stop();
 	return FMC_STATUS_FAILED;
 }
 
@@ -288,6 +1244,9 @@ static jint nativeJFmRx_Destroy(JNIEnv *env, jobject obj,jlong jContextValue)
 		
 	fm_close_cmd_socket();
 
+	/* The stack is gone - deliver what is left and stop the dispatcher */
+	fmrx_dispatch_stop();
+
 	
 	FM_LOGD("%s: calling bt_chip_disable", __func__);
 
@@ -870,559 +1829,197 @@ static int nativeJFmRx_SetRdsSystem(JNIEnv *env, jobject obj,jlong jContextValue
 	FmRxStatus status = FM_RX_SetRdsSystem(fmRxContext,
 				(FmcRdsSystem)rdsSystem);
 
-	FM_LOGD("%s: FM_RX_SetRdsSystem() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-
-static int nativeJFmRx_GetRdsSystem(JNIEnv *env, jobject obj,jlong jContextValue)
-{
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-
-	FmRxStatus status = FM_RX_GetRdsSystem(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_GetRdsSystem() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-
-static int nativeJFmRx_SetRdsGroupMask(JNIEnv *env, jobject obj,jlong jContextValue, jlong groupMask)
-{
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-
-	FmRxStatus status = FM_RX_SetRdsGroupMask(fmRxContext,
-				(FmcRdsGroupTypeMask)groupMask);
-
-	FM_LOGD("%s: FM_RX_SetRdsGroupMask() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-
-}
-
-static int  nativeJFmRx_GetRdsGroupMask(JNIEnv *env, jobject obj,jlong jContextValue)
-{
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-
-	FmRxStatus status = FM_RX_GetRdsGroupMask(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_GetRdsGroupMask() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-static int nativeJFmRx_CompleteScan(JNIEnv *env, jobject obj, jlong jContextValue)
-{
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-	FmRxStatus status = FM_RX_CompleteScan(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_CompleteScan() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-static int nativeJFmRx_GetCompleteScanProgress(JNIEnv *env, jobject obj, jlong jContextValue)
-{
-
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-
-	FmRxStatus status = FM_RX_GetCompleteScanProgress(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_GetCompleteScanProgress() returned %d", __func__,
-	     (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-static int nativeJFmRx_StopCompleteScan(JNIEnv *env, jobject obj, jlong jContextValue)
-{
-
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-
-	FmRxStatus status = FM_RX_StopCompleteScan(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_StopCompleteScan() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-static int nativeJFmRx_IsValidChannel(JNIEnv *env, jobject obj, jlong jContextValue)
-{
-
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-
-
-	FmRxStatus status = FM_RX_IsValidChannel(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_IsValidChannel() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-
-static int nativeJFmRx_GetFwVersion(JNIEnv *env, jobject obj, jlong jContextValue)
-{
-
-	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
-
-	FM_LOGD("%s: Entered", __func__);
-	FM_LOGD("%s: Exit", __func__);
-
-	FmRxStatus status = FM_RX_GetFwVersion(fmRxContext);
-
-	FM_LOGD("%s: FM_RX_GetFwVersion() returned %d", __func__, (int)status);
-
-	FM_LOGD("%s: Exit", __func__);
-
-	return status;
-}
-
-
-//##############################################################################
-//								 SIGNALS
-//##############################################################################
-
-extern "C"
-{
-
-
-/**********************************************************************
-*				Callback registration
-
-***********************************************************************/
-
-
-void fmrx_error_callback(const fm_rx_status status)
-{
-
-	LOGI("fmrx_error_callback: Entered, ");
-
-	JNIEnv* env = NULL;
-	bool attachedThread = false;
-	int jRet ;
-
-        /* check whether the current thread is attached to a virtual machine
-           instance, if no only then try to attach to the current thread. */
-
-	jRet = g_jVM->GetEnv((void **)&env,JNI_VERSION_1_4);
-
-	if(jRet < 0)
-	{
-		LOGE("failed to get JNI env,assuming native thread");
-		jRet = g_jVM->AttachCurrentThread((&env), NULL);
-
-		if(jRet != JNI_OK)
-		{
-			LOGE("failed to atatch to current thread %d",jRet);
-			return ;
-		}
-
-		attachedThread = true;
-	}
-
-	if(env == NULL)
-	{
-		LOGE("fmrx_error_callback: Entered, env is null");
-		return;
-	}
-
-
-
-		FM_LOGD("fmrx_error_callback:Calling CallStaticVoidMethod");
-
-
-		env->CallStaticVoidMethod(_sJClass,_sMethodId_nativeCb_fmRxCmdError, (jint)status
-						);
-
-  if (env->ExceptionOccurred())    {
-    LOGE("fmrx_error_callback:  ExceptionOccurred");
-    goto CLEANUP;
-    }
-
-    FM_LOGD("fmrx_error_callback: Exiting, Calling DetachCurrentThread at the END");
-
-
-    if(attachedThread == true)
-        g_jVM->DetachCurrentThread();
-
-    return;
-    
-    CLEANUP:
-	LOGE("fmrx_error_callback: Exiting due to failure");
-	if (env->ExceptionOccurred())    {
-	env->ExceptionDescribe();
-	env->ExceptionClear();
-	}
-//Sujesh ChipManager Start
-    if(attachedThread == true)
-        g_jVM->DetachCurrentThread();
-//Sujesh ChipManager End
-        return;
-
-}
-
-void fmapp_rx_callback(const fm_rx_event_s *event)
-{
-
-	FM_LOGD("%s: Entered, got event %d", __func__, event->eventType);
+	FM_LOGD("%s: FM_RX_SetRdsSystem() returned %d", __func__, (int)status);
 
-	JNIEnv* env = NULL;
-	jbyteArray jAfListData = NULL;
-	jbyteArray jNameString= NULL;
-	jbyteArray jRadioTxtMsg = NULL;
-	jbyteArray jGroupData = NULL;
-	jintArray jChannelsData = NULL ;
-	jsize len = NULL ;
+	FM_LOGD("%s: Exit", __func__);
 
-	g_jVM->AttachCurrentThread((&env), NULL);
+	return status;
+}
 
-	if(env == NULL)	{
-		LOGI("%s: Entered, env is null", __func__);
-	} else {
 
-		FM_LOGD("%s: jEnv %p", __func__, (void *)env);
+static int nativeJFmRx_GetRdsSystem(JNIEnv *env, jobject obj,jlong jContextValue)
+{
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-	}
+	FM_LOGD("%s: Entered", __func__);
 
-	switch (event->eventType) {
-		case FM_RX_EVENT_CMD_DONE:
 
-		FM_LOGD("%s: Calling CallStaticVoidMethod", __func__);
+	FmRxStatus status = FM_RX_GetRdsSystem(fmRxContext);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxCmdDone,
-				(jint)event->status,
-				(jint)event->p.cmdDone.cmd,
-				(jlong)event->p.cmdDone.value);
-		break;
+	FM_LOGD("%s: FM_RX_GetRdsSystem() returned %d", __func__, (int)status);
 
-	case FM_RX_EVENT_MONO_STEREO_MODE_CHANGED:
+	FM_LOGD("%s: Exit", __func__);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_MONO_STEREO_MODE_CHANGED",
-		     __func__);
+	return status;
+}
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxMonoStereoModeChanged,
-				(jint)event->status,
-				(jint)event->p.monoStereoMode.mode);
-		break;
 
-	case FM_RX_EVENT_PI_CODE_CHANGED:
+static int nativeJFmRx_SetRdsGroupMask(JNIEnv *env, jobject obj,jlong jContextValue, jlong groupMask)
+{
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_PI_CODE_CHANGED", __func__);
+	FM_LOGD("%s: Entered", __func__);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxPiCodeChanged,
-				(jint)event->status,
-				(jint)event->p.piChangedData.pi);
-		break;
 
-	case FM_RX_EVENT_AF_SWITCH_START:
-		
-		FM_LOGD("fmapp_rx_callback():EVENT --------------->FM_RX_EVENT_AF_SWITCH_START");    
-		FM_LOGD("AF switch process has started...");
-		
-		env->CallStaticVoidMethod(_sJClass,_sMethodId_nativeCb_fmRxAfSwitchStart,
-						(jint)event->status,
-						(jint)event->p.afSwitchData.pi,
-						(jint)event->p.afSwitchData.tunedFreq,
-						(jint)event->p.afSwitchData.afFreq);
+	FmRxStatus status = FM_RX_SetRdsGroupMask(fmRxContext,
+				(FmcRdsGroupTypeMask)groupMask);
 
-		break;
+	FM_LOGD("%s: FM_RX_SetRdsGroupMask() returned %d", __func__, (int)status);
 
-	case FM_RX_EVENT_AF_SWITCH_TO_FREQ_FAILED:
+	FM_LOGD("%s: Exit", __func__);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_SWITCH_TO_FREQ_FAILED",
-		      __func__);
-		FM_LOGD("AF switch to %d failed", event->p.afSwitchData.afFreq);
+	return status;
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxAfSwitchFreqFailed,
-				(jint)event->status,
-				(jint)event->p.afSwitchData.pi,
-				(jint)event->p.afSwitchData.tunedFreq,
-				(jint)event->p.afSwitchData.afFreq);
-		break;
+}
 
-	case FM_RX_EVENT_AF_SWITCH_COMPLETE:
+static int  nativeJFmRx_GetRdsGroupMask(JNIEnv *env, jobject obj,jlong jContextValue)
+{
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_SWITCH_COMPLETE", __func__);
+	FM_LOGD("%s: Entered", __func__);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxAfSwitchComplete,
-				(jint)event->status,
-				(jint)event->p.afSwitchData.pi,
-				(jint)event->p.afSwitchData.tunedFreq,
-				(jint)event->p.afSwitchData.afFreq);
-		break;
 
-	case FM_RX_EVENT_AF_LIST_CHANGED:
+	FmRxStatus status = FM_RX_GetRdsGroupMask(fmRxContext);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_AF_LIST_CHANGED", __func__);
+	FM_LOGD("%s: FM_RX_GetRdsGroupMask() returned %d", __func__, (int)status);
 
-		jAfListData = env->NewByteArray(event->p.afListData.afListSize);
-		if (jAfListData == NULL) {
-			LOGE("%s: Failed converting elements", __func__);
-			goto CLEANUP;
-		}
+	FM_LOGD("%s: Exit", __func__);
 
-		env->SetByteArrayRegion(jAfListData,
-				0,
-				event->p.afListData.afListSize,
-				(jbyte*)event->p.afListData.afList);
+	return status;
+}
 
-		if (env->ExceptionOccurred()) {
-			LOGE("%s: Calling nativeCb_fmRxAfListChanged failed",
-			     __func__);
-			goto CLEANUP;
-		}
+static int nativeJFmRx_CompleteScan(JNIEnv *env, jobject obj, jlong jContextValue)
+{
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxAfListChanged,
-				(jint)event->status,
-				(jint)event->p.afListData.pi,
-				jAfListData,
-				(jint)event->p.afListData.afListSize);
-		break;
+	FM_LOGD("%s: Entered", __func__);
 
-	case FM_RX_EVENT_PS_CHANGED:
+	FmRxStatus status = FM_RX_CompleteScan(fmRxContext);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_PS_CHANGED '%s'",
-		     __func__, (char *)(event->p.psData.name));
+	FM_LOGD("%s: FM_RX_CompleteScan() returned %d", __func__, (int)status);
 
-		len = strlen((char *)(event->p.psData.name));
+	FM_LOGD("%s: Exit", __func__);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_PS_CHANGED len %d", __func__, len);
+	return status;
+}
 
-		for(int i = 0; i< len ; i++)
+static int nativeJFmRx_GetCompleteScanProgress(JNIEnv *env, jobject obj, jlong jContextValue)
+{
 
-			FM_LOGD("%s: fmRxPsChanged name[] =  %x",
-			     __func__, event->p.psData.name[i]);
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		jNameString = env->NewByteArray(len);
-		if (jNameString == NULL) {
-			LOGE("%s: Failed converting elements", __func__);
-			goto CLEANUP;
-		}
+	FM_LOGD("%s: Entered", __func__);
 
-		env->SetByteArrayRegion(jNameString,
-				0,
-				len,
-				(jbyte*)event->p.psData.name);
 
-		if (env->ExceptionOccurred()) {
-			LOGE("%s: nativeCb_fmRxRadioText failed", __func__);
-			goto CLEANUP;
-		}
+	FmRxStatus status = FM_RX_GetCompleteScanProgress(fmRxContext);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxPsChanged,
-				(jint)event->status,
-				(jint)event->p.psData.frequency,
-				jNameString,
-				(jint)event->p.psData.repertoire);
-		break;
+	FM_LOGD("%s: FM_RX_GetCompleteScanProgress() returned %d", __func__,
+	     (int)status);
 
-	case FM_RX_EVENT_RADIO_TEXT:
+	FM_LOGD("%s: Exit", __func__);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_RADIO_TEXT", __func__);
+	return status;
+}
 
-		jRadioTxtMsg = env->NewByteArray(event->p.radioTextData.len);
-		if (jRadioTxtMsg == NULL) {
-			LOGE("%s: Failed converting elements", __func__);
-			goto CLEANUP;
-		}
+static int nativeJFmRx_StopCompleteScan(JNIEnv *env, jobject obj, jlong jContextValue)
+{
 
-		env->SetByteArrayRegion(jRadioTxtMsg,
-				0,
-				event->p.radioTextData.len,
-				(jbyte*)event->p.radioTextData.msg);
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		if (env->ExceptionOccurred()) {
-			LOGE("%s: Calling nativeCb_fmRxRadioText failed",
-			     __func__);
-			goto CLEANUP;
-		}
+	FM_LOGD("%s: Entered", __func__);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxRadioText,
-				(jint)event->status,
-				(jboolean)event->p.radioTextData.resetDisplay,
-				jRadioTxtMsg,
-				(jint)event->p.radioTextData.len,
-				(jint)event->p.radioTextData.startIndex,
-				(jint)event->p.radioTextData.repertoire);
-		break;
 
-	case FM_RX_EVENT_RAW_RDS:
+	FmRxStatus status = FM_RX_StopCompleteScan(fmRxContext);
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_RAW_RDS", __func__);
+	FM_LOGD("%s: FM_RX_StopCompleteScan() returned %d", __func__, (int)status);
 
-		len = sizeof(event->p.rawRdsGroupData.groupData);
+	FM_LOGD("%s: Exit", __func__);
 
-		jGroupData = env->NewByteArray(len);
+	return status;
+}
 
-		if (jGroupData == NULL)	{
-			LOGE("%s: Failed converting elements", __func__);
-			goto CLEANUP;
-		}
+static int nativeJFmRx_IsValidChannel(JNIEnv *env, jobject obj, jlong jContextValue)
+{
 
-		env->SetByteArrayRegion(jGroupData,
-				0,
-				len,
-				(jbyte*)event->p.rawRdsGroupData.groupData);
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		if (env->ExceptionOccurred()) {
-			LOGE("%s: Calling jniCb_fmRxRadioText failed",
-			     __func__);
-			goto CLEANUP;
-		}
+	FM_LOGD("%s: Entered", __func__);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxRawRDS,
-				(jint)event->status,
-				(jint)event->p.rawRdsGroupData.groupBitInMask,
-				jGroupData);
-		break;
 
-	case FM_RX_EVENT_AUDIO_PATH_CHANGED:
+	FmRxStatus status = FM_RX_IsValidChannel(fmRxContext);
 
-		FM_LOGD("Audio Path Changed Event received");
+	FM_LOGD("%s: FM_RX_IsValidChannel() returned %d", __func__, (int)status);
 
-		break;
+	FM_LOGD("%s: Exit", __func__);
 
-	case FM_RX_EVENT_PTY_CODE_CHANGED:
+	return status;
+}
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_PTY_CODE_CHANGED", __func__);
-		FM_LOGD("RDS PTY Code has changed to %d",
-		     event->p.ptyChangedData.pty);
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxPtyCodeChanged,
-				(jint)event->status,
-				(jint)event->p.ptyChangedData.pty);
-		break;
+static int nativeJFmRx_GetFwVersion(JNIEnv *env, jobject obj, jlong jContextValue)
+{
 
-	case FM_RX_EVENT_COMPLETE_SCAN_DONE:
+	FmRxContext * fmRxContext = (FmRxContext *)jContextValue;
 
-		FM_LOGD("%s: EVENT FM_RX_EVENT_COMPLETE_SCAN_DONE", __func__);
+	FM_LOGD("%s: Entered", __func__);
+	FM_LOGD("%s: Exit", __func__);
 
-		len = sizeof(event->p.completeScanData.channelsData) /
-			sizeof(int);
+	FmRxStatus status = FM_RX_GetFwVersion(fmRxContext);
 
-		FM_LOGD("len %d",len);
+	FM_LOGD("%s: FM_RX_GetFwVersion() returned %d", __func__, (int)status);
 
-		jChannelsData = env->NewIntArray(len);
-		if (jChannelsData == NULL) {
-			LOGE("%s: Failed converting elements", __func__);
-			goto CLEANUP;
-		}
+	FM_LOGD("%s: Exit", __func__);
 
-		env->SetIntArrayRegion(jChannelsData,
-				0,
-				len,
-				(jint*)event->p.completeScanData.channelsData);
+	return status;
+}
 
-		if (env->ExceptionOccurred()) {
-			LOGE("%s: Calling jniCb_fmRxRadioText failed",
-			     __func__);
-			goto CLEANUP;
-		}
 
-		env->CallStaticVoidMethod(_sJClass,
-				_sMethodId_nativeCb_fmRxCompleteScanDone,
-				(jint)event->status,
-				(jint)event->p.completeScanData.numOfChannels,
-				jChannelsData);
-		break;
+//##############################################################################
+//								 SIGNALS
+//##############################################################################
 
-	default:
+extern "C"
+{
 
-		FM_LOGD("%s: unhandled fm event %d", __func__, event->eventType);
 
-		break;
-	} //end switch
+/**********************************************************************
+*				Callback registration
+
+***********************************************************************/
 
-	if (env->ExceptionOccurred()) {
-		LOGE("fmapp_rx_callback:  ExceptionOccurred");
-		goto CLEANUP;
-	}
 
-//Delete the local references
-	if(jAfListData!= NULL)
-		env->DeleteLocalRef(jAfListData);
-	if(jRadioTxtMsg!= NULL)
-		env->DeleteLocalRef(jRadioTxtMsg);
-	if(jNameString!= NULL)
-		env->DeleteLocalRef(jNameString);
-	if(jGroupData!= NULL)
-		env->DeleteLocalRef(jGroupData);
+void fmrx_error_callback(const fm_rx_status status)
+{
+	fm_rx_event_s event;
 
-	if(jChannelsData!= NULL)
-		env->DeleteLocalRef(jChannelsData);
+	LOGI("fmrx_error_callback: Entered, ");
 
-	FM_LOGD("%s: Exiting, Calling DetachCurrentThread at the END", __func__);
+	memset(&event, 0, sizeof(event));
+	event.eventType = FMRX_DISPATCH_EVENT_ERROR;
+	event.status = status;
 
-	g_jVM->DetachCurrentThread();
+	fmrx_dispatch_enqueue(&event);
+}
 
-	FM_LOGD("fmapp_rx_callback: Exiting");
+void fmapp_rx_callback(const fm_rx_event_s *event)
+{
+	fm_rx_event_s notification;
+	bool notify;
 
-	return;
+	FM_LOGD("%s: Entered, got event %d", __func__, event->eventType);
 
-CLEANUP:
-	LOGE("fmapp_rx_callback: Exiting due to failure");
-	if(jAfListData!= NULL)
-		env->DeleteLocalRef(jAfListData);
-	if(jRadioTxtMsg!= NULL)
-		env->DeleteLocalRef(jRadioTxtMsg);
-	if(jNameString!= NULL)
-		env->DeleteLocalRef(jNameString);
-	if(jGroupData!= NULL)
-		env->DeleteLocalRef(jGroupData);
-	if(jChannelsData!= NULL)
-		env->DeleteLocalRef(jChannelsData);
-	if (env->ExceptionOccurred()) {
-		env->ExceptionDescribe();
-		env->ExceptionClear();
+	/* Raw groups go straight into the shared ring when one is registered */
+	if (event->eventType == FM_RX_EVENT_RAW_RDS &&
+	    fmrx_rds_ring_put(event, &notify)) {
+		if (notify) {
+			memset(&notification, 0, sizeof(notification));
+			notification.eventType = FMRX_DISPATCH_EVENT_RDS_RING;
+			fmrx_dispatch_enqueue(&notification);
+		}
+		return;
 	}
-	g_jVM->DetachCurrentThread();
+
+	fmrx_dispatch_enqueue(event);
 }
 
 }
@@ -1554,6 +2151,17 @@ void nativeJFmRx_ClassInitNative(JNIEnv* env, jclass clazz)
 								"(I)V");
 	VERIFY_METHOD_ID(_sMethodId_nativeCb_fmRxCmdError);
 
+	_sMethodId_nativeCb_fmRxRawRdsRingAvailable = env->GetStaticMethodID(
+				clazz,
+				"nativeCb_fmRxRawRdsRingAvailable",
+				"(I)V");
+	VERIFY_METHOD_ID(_sMethodId_nativeCb_fmRxRawRdsRingAvailable);
+
+	_sMethodId_nativeCb_fmRxRawRdsBatch = env->GetStaticMethodID(clazz,
+				"nativeCb_fmRxRawRdsBatch",
+				"(II[B[I)V");
+	VERIFY_METHOD_ID(_sMethodId_nativeCb_fmRxRawRdsBatch);
+
     }
     
     static JNINativeMethod JFmRxNative_sMethods[] = {
@@ -1600,7 +2208,12 @@ void nativeJFmRx_ClassInitNative(JNIEnv* env, jclass clazz)
     {"nativeJFmRx_IsValidChannel","(J)I",(void*)nativeJFmRx_IsValidChannel},
     {"nativeJFmRx_GetFwVersion","(J)I",(void*)nativeJFmRx_GetFwVersion},
     {"nativeJFmRx_GetCompleteScanProgress","(J)I",(void*)nativeJFmRx_GetCompleteScanProgress},
-    {"nativeJFmRx_StopCompleteScan","(J)I",(void*)nativeJFmRx_StopCompleteScan}
+    {"nativeJFmRx_StopCompleteScan","(J)I",(void*)nativeJFmRx_StopCompleteScan},
+    {"nativeJFmRx_GetDispatcherStats","([J)I",(void*)nativeJFmRx_GetDispatcherStats},
+    {"nativeJFmRx_SetRawRdsRing","(Ljava/nio/ByteBuffer;I)I",(void*)nativeJFmRx_SetRawRdsRing},
+    {"nativeJFmRx_SetRawRdsBatching","(IIJ)I",(void*)nativeJFmRx_SetRawRdsBatching},
+    {"nativeJFmRx_RdsRingLoadAcquire","(Ljava/nio/ByteBuffer;I)I",(void*)nativeJFmRx_RdsRingLoadAcquire},
+    {"nativeJFmRx_RdsRingStoreRelease","(Ljava/nio/ByteBuffer;II)V",(void*)nativeJFmRx_RdsRingStoreRelease}
     };
 
 /*
@@ -0,0 +1,15 @@
+# Modified by Sony Ericsson Mobile Communications AB
+
+LOCAL_PATH := $(call my-dir)
+include $(CLEAR_VARS)
+LOCAL_MODULE_TAGS := tests
+LOCAL_PACKAGE_NAME := FmRxServiceTests
+
+# FmRxService lives in the system process, which cannot be instrumented. The
+# service classes are built in instead, so the tests run in their own process
+# against JFmRxSimBackend and never touch the radio of the device.
+LOCAL_SRC_FILES := $(call all-java-files-under, src) \
+           $(call all-java-files-under, ../src/java)
+LOCAL_JAVA_LIBRARIES := android.test.runner fmreceiverif
+include $(BUILD_PACKAGE)
+include $(call all-makefiles-under,$(LOCAL_PATH))
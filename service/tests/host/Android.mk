@@ -0,0 +1,19 @@
+# Modified by Sony Ericsson Mobile Communications AB
+
+LOCAL_PATH := $(call my-dir)
+include $(CLEAR_VARS)
+LOCAL_MODULE_TAGS := tests
+LOCAL_MODULE := FmRxSimHostTests
+
+# The JFmRx core with JFmRxSimBackend and their tests, built for the host
+# JVM. The core only needs android.util.Log, which src/ stands in for with
+# the test annotations; JFmRxHostTests is the entry point.
+LOCAL_SRC_FILES := $(call all-java-files-under, src) \
+           $(call all-java-files-under, ../../../fmreceiverif/src/java/com/ti/core) \
+           ../src/com/ti/jfm/core/JFmRxTestCallback.java \
+           ../src/com/ti/jfm/core/JFmRxSimBackendTest.java \
+           ../src/com/ti/jfm/core/JFmRxCaptureReplayTest.java \
+           ../src/com/ti/jfm/core/JFmRxTraceTest.java
+LOCAL_STATIC_JAVA_LIBRARIES := junit
+LOCAL_JAR_MANIFEST := manifest.txt
+include $(BUILD_HOST_JAVA_LIBRARY)
@@ -0,0 +1,90 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package android.util;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+/**
+ * Host stand-in for the platform log, for the sources built by
+ * FmRxSimHostTests. Info, warnings and errors go to stderr, debug and
+ * verbose lines are dropped.
+ */
+public final class Log {
+
+	public static final int VERBOSE = 2;
+	public static final int DEBUG = 3;
+	public static final int INFO = 4;
+	public static final int WARN = 5;
+	public static final int ERROR = 6;
+
+	private static final String LEVELS = "??VDIWE";
+
+	private Log() {
+	}
+
+	public static int v(String tag, String msg) {
+		return println(VERBOSE, tag, msg);
+	}
+
+	public static int d(String tag, String msg) {
+		return println(DEBUG, tag, msg);
+	}
+
+	public static int i(String tag, String msg) {
+		return println(INFO, tag, msg);
+	}
+
+	public static int w(String tag, String msg) {
+		return println(WARN, tag, msg);
+	}
+
+	public static int w(String tag, String msg, Throwable tr) {
+		return println(WARN, tag, msg + '\n' + getStackTraceString(tr));
+	}
+
+	public static int e(String tag, String msg) {
+		return println(ERROR, tag, msg);
+	}
+
+	public static int e(String tag, String msg, Throwable tr) {
+		return println(ERROR, tag, msg + '\n' + getStackTraceString(tr));
+	}
+
+	public static boolean isLoggable(String tag, int level) {
+		return level >= INFO;
+	}
+
+	public static String getStackTraceString(Throwable tr) {
+		if (tr == null) {
+			return "";
+		}
+		StringWriter sw = new StringWriter();
+		tr.printStackTrace(new PrintWriter(sw));
+		return sw.toString();
+	}
+
+	public static int println(int priority, String tag, String msg) {
+		if (priority < INFO) {
+			return 0;
+		}
+		String line = LEVELS.charAt(priority) + "/" + tag + ": " + msg;
+		System.err.println(line);
+		return line.length();
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.jfm.core;
+
+import junit.framework.Test;
+import junit.framework.TestResult;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Runs the tests of the simulated stack on a plain JVM, without a device:
+ *
+ * <pre>
+ * java -jar out/host/&lt;os&gt;-&lt;arch&gt;/framework/FmRxSimHostTests.jar
+ * </pre>
+ *
+ * Exits with 1 if a test failed. The tests of the service classes need the
+ * platform Handler and run on a device, see ../Android.mk.
+ */
+public final class JFmRxHostTests {
+
+	private JFmRxHostTests() {
+	}
+
+	public static Test suite() {
+		TestSuite suite = new TestSuite("JFmRx simulated stack");
+
+		suite.addTestSuite(JFmRxSimBackendTest.class);
+		suite.addTestSuite(JFmRxCaptureReplayTest.class);
+		suite.addTestSuite(JFmRxTraceTest.class);
+		return suite;
+	}
+
+	public static void main(String[] args) {
+		TestResult result = TestRunner.run(suite());
+
+		System.exit(result.wasSuccessful() ? 0 : 1);
+	}
+}
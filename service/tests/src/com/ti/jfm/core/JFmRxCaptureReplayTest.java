@@ -0,0 +1,185 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.jfm.core;
+
+import android.test.suitebuilder.annotation.MediumTest;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+/**
+ * A session against the simulated stack is captured, then replayed into a
+ * second callback, which must see the same callbacks with the same arguments.
+ */
+@MediumTest
+public class JFmRxCaptureReplayTest extends TestCase {
+
+	private static final long TIMEOUT_MS = 5000;
+
+	private File mFile;
+	private JFmRxTestCallback mLive;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mFile = File.createTempFile("fmrx", ".cap");
+		mLive = new JFmRxTestCallback();
+
+		JFmRxSimBackend sim = new JFmRxSimBackend();
+		sim.addStation(new JFmRxSimBackend.Station(89300, 40).setPi(0xC201)
+				.setPty(10).setPs("RADIO 1").setRadioText("Hello world")
+				.setAfList(90100, 101200));
+		sim.addStation(new JFmRxSimBackend.Station(95000, 30));
+		sim.setCommandLatency(1, 2, 1).setStepMs(1).setRdsGroupIntervalMs(2);
+		JFmRx.setBackend(sim);
+		assertEquals(JFmRxStatus.SUCCESS, JFmRx.startCapture(mFile.getPath()));
+
+		JFmRx jFmRx = new JFmRx();
+		JFmRxAsync async = new JFmRxAsync(jFmRx);
+		try {
+			assertEquals(JFmRxStatus.SUCCESS, jFmRx.create(mLive));
+			assertDone(async.enable());
+			assertDone(async.enableRds());
+			assertDone(async.tune(new JFmRx.JFmRxFreq(89300)));
+			assertTrue(mLive.waitFor(JFmRx.UPCALL_AF_LIST, 1, TIMEOUT_MS));
+			assertTrue(mLive.waitFor(JFmRx.UPCALL_RADIO_TEXT, 1, TIMEOUT_MS));
+			assertTrue(mLive.waitFor(JFmRx.UPCALL_RAW_RDS, 32, TIMEOUT_MS));
+			assertEquals(JFmRxStatus.SUCCESS, jFmRx.setRawRdsBatching(8, 20,
+					0xFFFFFFFFL));
+			assertTrue(mLive.waitFor(JFmRx.UPCALL_RAW_RDS_BATCH, 4, TIMEOUT_MS));
+			assertEquals(JFmRxStatus.SUCCESS, jFmRx.setRawRdsBatching(0, 0, 0));
+			assertDone(async.seek(JFmRx.JFmRxSeekDirection.FM_RX_SEEK_DIRECTION_UP));
+			assertDone(async.completeScan());
+			assertDone(async.disable());
+		} finally {
+			JFmRx.stopCapture();
+			jFmRx.destroy();
+			sim.shutdown();
+			JFmRx.setBackend(null);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mFile.delete();
+		super.tearDown();
+	}
+
+	public void testReplayMatchesCapturedSession() throws Exception {
+		JFmRxTestCallback replayed = new JFmRxTestCallback();
+		JFmRxReplay replay = new JFmRxReplay(mFile.getPath(), replayed);
+
+		assertTrue(replay.play(false));
+		assertCallbacksEqual(mLive, replayed);
+		assertTrue(replay.getCommands() > 0);
+	}
+
+	public void testRealTimeReplayKeepsCapturedPace() throws Exception {
+		JFmRxTestCallback replayed = new JFmRxTestCallback();
+		JFmRxReplay replay = new JFmRxReplay(mFile.getPath(), replayed);
+
+		assertTrue(replay.play(true));
+		assertCallbacksEqual(mLive, replayed);
+		assertTrue(replay.getElapsedNs() >= replay.getRecordedNs() - 1000000L);
+	}
+
+	/* A backend set while capturing is captured too */
+	public void testSetBackendKeepsCapturing() throws Exception {
+		File file = File.createTempFile("fmrx", ".cap");
+		JFmRxSimBackend sim = new JFmRxSimBackend();
+		JFmRx jFmRx = new JFmRx();
+		JFmRxTestCallback live = new JFmRxTestCallback();
+
+		try {
+			assertEquals(JFmRxStatus.SUCCESS, JFmRx.startCapture(file
+					.getPath()));
+			JFmRx.setBackend(sim);
+			assertEquals(JFmRxStatus.SUCCESS, jFmRx.create(live));
+			assertDone(new JFmRxAsync(jFmRx).enable());
+			assertEquals(JFmRxStatus.SUCCESS, JFmRx.stopCapture());
+
+			JFmRxTestCallback replayed = new JFmRxTestCallback();
+			JFmRxReplay replay = new JFmRxReplay(file.getPath(), replayed);
+			assertTrue(replay.play(false));
+			assertEquals(2, replay.getCommands());
+			assertCallbacksEqual(live, replayed);
+		} finally {
+			JFmRx.stopCapture();
+			jFmRx.disable();
+			jFmRx.destroy();
+			sim.shutdown();
+			JFmRx.setBackend(null);
+			file.delete();
+		}
+	}
+
+	/* Records spread over many buffers of the writer come back in order */
+	public void testLongCaptureKeepsOrder() throws Exception {
+		File file = File.createTempFile("fmrx", ".cap");
+		JFmRxTestCallback live = new JFmRxTestCallback();
+		JFmRxSimBackend sim = new JFmRxSimBackend();
+		JFmRx jFmRx = new JFmRx();
+		byte[] group = new byte[JFmRxRdsRing.GROUP_SIZE];
+		int status = JFmRxStatus.SUCCESS.getValue();
+
+		JFmRx.setBackend(sim);
+		try {
+			assertEquals(JFmRxStatus.SUCCESS, jFmRx.create(live));
+			assertEquals(JFmRxStatus.SUCCESS, JFmRx.startCapture(file
+					.getPath()));
+			for (int i = 0; i < 40000; i++) {
+				group[0] = (byte) i;
+				group[1] = (byte) (i >> 8);
+				JFmRx.nativeCb_fmRxRawRDS(status, 1 << (i & 31), group);
+				/* About 15 bytes a record, leave the writer time to keep up */
+				if (i % 1000 == 999) {
+					Thread.sleep(1);
+				}
+			}
+			assertEquals(JFmRxStatus.SUCCESS, JFmRx.stopCapture());
+
+			JFmRxTestCallback replayed = new JFmRxTestCallback();
+			assertTrue(new JFmRxReplay(file.getPath(), replayed).play(false));
+			assertCallbacksEqual(live, replayed);
+		} finally {
+			JFmRx.stopCapture();
+			jFmRx.destroy();
+			sim.shutdown();
+			JFmRx.setBackend(null);
+			file.delete();
+		}
+	}
+
+	private static void assertCallbacksEqual(JFmRxTestCallback expected,
+			JFmRxTestCallback actual) {
+		for (int i = 0; i < JFmRx.NUM_UPCALLS; i++) {
+			assertEquals(JFmRx.getUpcallName(i), expected.getCount(i), actual
+					.getCount(i));
+		}
+		assertEquals(expected.getDigest(), actual.getDigest());
+	}
+
+	private static void assertDone(JFmRxFuture future)
+			throws InterruptedException {
+		assertTrue("command " + future.getCommand() + " timed out", future
+				.await(TIMEOUT_MS));
+		assertTrue("command " + future.getCommand() + " failed with "
+				+ future.getStatus(), future.isSuccess());
+	}
+}
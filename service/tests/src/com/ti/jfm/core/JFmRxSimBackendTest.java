@@ -0,0 +1,180 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.jfm.core;
+
+import android.test.suitebuilder.annotation.MediumTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Seek and complete scan, and how they stop, through JFmRxAsync against the
+ * simulated stack.
+ */
+@MediumTest
+public class JFmRxSimBackendTest extends TestCase {
+
+	private static final long TIMEOUT_MS = 5000;
+
+	private JFmRxSimBackend mSim;
+	private JFmRx mJFmRx;
+	private JFmRxAsync mAsync;
+	private JFmRxTestCallback mCallback;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mSim = new JFmRxSimBackend();
+		mSim.addStation(new JFmRxSimBackend.Station(89300, 40).setPi(0xC201)
+				.setPs("RADIO 1"));
+		mSim.addStation(new JFmRxSimBackend.Station(95000, 30));
+		mSim.setNoise(0, 0).setStepMs(2);
+		JFmRx.setBackend(mSim);
+		mJFmRx = new JFmRx();
+		mAsync = new JFmRxAsync(mJFmRx);
+		mCallback = new JFmRxTestCallback();
+		assertEquals(JFmRxStatus.SUCCESS, mJFmRx.create(mCallback));
+		assertDone(JFmRxStatus.SUCCESS, mAsync.enable());
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		long done = mCallback.getCount(JFmRx.UPCALL_CMD_DONE);
+		if (mJFmRx.disable() == JFmRxStatus.PENDING) {
+			mCallback.waitFor(JFmRx.UPCALL_CMD_DONE, done + 1, TIMEOUT_MS);
+		}
+		mJFmRx.destroy();
+		mSim.shutdown();
+		JFmRx.setBackend(null);
+		super.tearDown();
+	}
+
+	public void testSeekStopsOnNextStation() throws Exception {
+		JFmRxFuture seek = mAsync
+				.seek(JFmRx.JFmRxSeekDirection.FM_RX_SEEK_DIRECTION_UP);
+
+		assertDone(JFmRxStatus.SUCCESS, seek);
+		assertEquals(89300, seek.getValue());
+
+		seek = mAsync.seek(JFmRx.JFmRxSeekDirection.FM_RX_SEEK_DIRECTION_UP);
+		assertDone(JFmRxStatus.SUCCESS, seek);
+		assertEquals(95000, seek.getValue());
+	}
+
+	public void testSeekReachesBandLimit() throws Exception {
+		assertDone(JFmRxStatus.SUCCESS, mAsync.tune(new JFmRx.JFmRxFreq(
+				107000)));
+
+		JFmRxFuture seek = mAsync
+				.seek(JFmRx.JFmRxSeekDirection.FM_RX_SEEK_DIRECTION_UP);
+		assertDone(JFmRxStatus.SEEK_REACHED_BAND_LIMIT, seek);
+		assertEquals(108000, seek.getValue());
+	}
+
+	public void testStopSeekFailsSeekWithStopped() throws Exception {
+		assertDone(JFmRxStatus.SUCCESS, mAsync.tune(new JFmRx.JFmRxFreq(
+				96000)));
+
+		JFmRxFuture seek = mAsync
+				.seek(JFmRx.JFmRxSeekDirection.FM_RX_SEEK_DIRECTION_UP);
+		Thread.sleep(20);
+		JFmRxFuture stop = mAsync.stopSeek();
+
+		assertDone(JFmRxStatus.SEEK_STOPPED, stop);
+		assertDone(JFmRxStatus.SEEK_STOPPED, seek);
+		assertTrue(seek.getValue() >= 96000 && seek.getValue() < 108000);
+		assertEquals(stop.getValue(), seek.getValue());
+		assertEquals(0, mAsync.getInFlightCount());
+	}
+
+	public void testStopSeekWithoutSeek() throws Exception {
+		assertEquals(JFmRxStatus.SEEK_IS_NOT_IN_PROGRESS, mJFmRx.stopSeek());
+	}
+
+	public void testCompleteScanReportsStations() throws Exception {
+		JFmRxFuture scan = mAsync.completeScan();
+
+		assertDone(JFmRxStatus.SUCCESS, scan);
+		assertEquals(2, scan.getValue());
+		assertEquals(2, mCallback.getLastChannels());
+	}
+
+	public void testStopCompleteScanFailsScanWithStopped() throws Exception {
+		assertDone(JFmRxStatus.SUCCESS, mAsync.tune(new JFmRx.JFmRxFreq(
+				101000)));
+
+		JFmRxFuture scan = mAsync.completeScan();
+		Thread.sleep(20);
+		JFmRxFuture stop = mAsync.stopCompleteScan();
+
+		assertDone(JFmRxStatus.COMPLETE_SCAN_STOPPED, stop);
+		assertDone(JFmRxStatus.COMPLETE_SCAN_STOPPED, scan);
+		assertEquals(0, scan.getValue());
+
+		/* The stack sends no complete scan done for a stopped scan */
+		Thread.sleep(100);
+		assertEquals(0, mCallback.getCount(JFmRx.UPCALL_COMPLETE_SCAN_DONE));
+
+		JFmRxFuture freq = mAsync.getTunedFrequency();
+		assertDone(JFmRxStatus.SUCCESS, freq);
+		assertEquals(101000, freq.getValue());
+	}
+
+	public void testStopCompleteScanWithoutScan() throws Exception {
+		assertEquals(JFmRxStatus.COMPLETE_SCAN_IS_NOT_IN_PROGRESS, mJFmRx
+				.stopCompleteScan());
+		assertEquals(JFmRxStatus.COMPLETE_SCAN_IS_NOT_IN_PROGRESS, mJFmRx
+				.getCompleteScanProgress());
+	}
+
+	public void testScanCommandsRejectedWhenDisabled() throws Exception {
+		assertDone(JFmRxStatus.SUCCESS, mAsync.disable());
+
+		assertEquals(JFmRxStatus.CONTEXT_NOT_ENABLED, mJFmRx.stopCompleteScan());
+		assertEquals(JFmRxStatus.CONTEXT_NOT_ENABLED, mJFmRx
+				.getCompleteScanProgress());
+		assertEquals(JFmRxStatus.CONTEXT_NOT_ENABLED, mJFmRx.completeScan());
+		assertEquals(JFmRxStatus.CONTEXT_NOT_ENABLED, mJFmRx.stopSeek());
+	}
+
+	public void testReleasedSharedReadCompletesForOtherCaller()
+			throws Exception {
+		mSim.setCommandLatency(50, 0, 1);
+		JFmRxFuture first = mAsync.getTunedFrequency();
+		JFmRxFuture joined = mAsync.getTunedFrequency();
+		assertSame(first, joined);
+
+		/* The first caller gives up, the read goes on for the other one */
+		assertTrue(first.release());
+		assertFalse(joined.isCancelled());
+		assertDone(JFmRxStatus.SUCCESS, joined);
+
+		/* The last caller to give up cancels the read */
+		JFmRxFuture freq = mAsync.getTunedFrequency();
+		assertSame(freq, mAsync.getTunedFrequency());
+		assertTrue(freq.release());
+		assertTrue(freq.release());
+		assertTrue(freq.isCancelled());
+	}
+
+	private static void assertDone(JFmRxStatus status, JFmRxFuture future)
+			throws InterruptedException {
+		assertTrue("command " + future.getCommand() + " timed out", future
+				.await(TIMEOUT_MS));
+		assertEquals(status, future.getStatus());
+	}
+}
@@ -0,0 +1,201 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.jfm.core;
+
+import com.ti.jfm.core.JFmRx.JFmRxAfFreq;
+import com.ti.jfm.core.JFmRx.JFmRxAfListSize;
+import com.ti.jfm.core.JFmRx.JFmRxFreq;
+import com.ti.jfm.core.JFmRx.JFmRxMonoStereoMode;
+import com.ti.jfm.core.JFmRx.JFmRxRdsGroupTypeMask;
+import com.ti.jfm.core.JFmRx.JFmRxRdsPiCode;
+import com.ti.jfm.core.JFmRx.JFmRxRdsPtyCode;
+import com.ti.jfm.core.JFmRx.JFmRxRepertoire;
+import com.ti.jfm.core.JFmRx.JFmRxTuneFreq;
+
+/**
+ * Counts the callbacks per JFmRx.UPCALL_* index and folds their arguments
+ * into a digest, so that two streams of callbacks can be compared. Never
+ * allocates.
+ */
+public class JFmRxTestCallback implements JFmRx.ICallback {
+
+	private final long[] mCounts = new long[JFmRx.NUM_UPCALLS];
+	private final long[] mCommands = new long[JFmRxCommand.LAST_API_CMD + 1];
+	private long mDigest = 17;
+	private int mLastPi = 0;
+	private int mLastCommand = -1;
+	private int mLastChannels = -1;
+
+	public synchronized long getCount(int upcall) {
+		return mCounts[upcall];
+	}
+
+	/** Number of fmRxCmdDone received for command */
+	public synchronized long getCommandCount(int command) {
+		return mCommands[command];
+	}
+
+	public synchronized long getDigest() {
+		return mDigest;
+	}
+
+	public synchronized int getLastPi() {
+		return mLastPi;
+	}
+
+	public synchronized int getLastCommand() {
+		return mLastCommand;
+	}
+
+	/** Channel count of the last fmRxCompleteScanDone, -1 if none */
+	public synchronized int getLastChannels() {
+		return mLastChannels;
+	}
+
+	/* Waits until notified about an upcall of the given index */
+	public synchronized boolean waitFor(int upcall, long count, long timeoutMs)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + timeoutMs * 1000000L;
+
+		while (mCounts[upcall] < count) {
+			long waitMs = (deadline - System.nanoTime()) / 1000000L;
+			if (waitMs <= 0) {
+				return false;
+			}
+			wait(waitMs);
+		}
+		return true;
+	}
+
+	private void count(int upcall, JFmRxStatus status) {
+		mCounts[upcall]++;
+		mix(upcall);
+		mix(status != null ? status.getValue() : -1);
+		notifyAll();
+	}
+
+	private void mix(long value) {
+		mDigest = mDigest * 31 + value;
+	}
+
+	private void mix(byte[] data, int length) {
+		for (int i = 0; i < length; i++) {
+			mix(data[i]);
+		}
+	}
+
+	public synchronized void fmRxRawRDS(JFmRxStatus status,
+			JFmRxRdsGroupTypeMask bitInMaskValue, byte[] groupData) {
+		count(JFmRx.UPCALL_RAW_RDS, status);
+		mix(bitInMaskValue != null ? bitInMaskValue.getValue() : -1);
+		mix(groupData, groupData.length);
+	}
+
+	public synchronized void fmRxRadioText(JFmRxStatus status,
+			boolean resetDisplay, byte[] msg1, int len, int startIndex,
+			JFmRxRepertoire repertoire) {
+		count(JFmRx.UPCALL_RADIO_TEXT, status);
+		mix(resetDisplay ? 1 : 0);
+		mix(startIndex);
+		mix(msg1, len);
+	}
+
+	public synchronized void fmRxPiCodeChanged(JFmRxStatus status,
+			JFmRxRdsPiCode pi) {
+		count(JFmRx.UPCALL_PI_CODE, status);
+		mLastPi = pi.getValue();
+		mix(mLastPi);
+	}
+
+	public synchronized void fmRxPtyCodeChanged(JFmRxStatus status,
+			JFmRxRdsPtyCode pty) {
+		count(JFmRx.UPCALL_PTY_CODE, status);
+		mix(pty.getValue());
+	}
+
+	public synchronized void fmRxPsChanged(JFmRxStatus status,
+			JFmRxFreq frequency, byte[] name, JFmRxRepertoire repertoire) {
+		count(JFmRx.UPCALL_PS, status);
+		mix(frequency.getValue());
+		mix(name, name.length);
+	}
+
+	public synchronized void fmRxMonoStereoModeChanged(JFmRxStatus status,
+			JFmRxMonoStereoMode mode) {
+		count(JFmRx.UPCALL_MONO_STEREO_MODE, status);
+	}
+
+	public synchronized void fmRxAfSwitchFreqFailed(JFmRxStatus status,
+			JFmRxRdsPiCode pi, JFmRxTuneFreq tunedFreq, JFmRxAfFreq afFreq) {
+		count(JFmRx.UPCALL_AF_SWITCH_FREQ_FAILED, status);
+		mix(afFreq.getAfFreq());
+	}
+
+	public synchronized void fmRxAfSwitchStart(JFmRxStatus status,
+			JFmRxRdsPiCode pi, JFmRxTuneFreq tunedFreq, JFmRxAfFreq afFreq) {
+		count(JFmRx.UPCALL_AF_SWITCH_START, status);
+		mix(afFreq.getAfFreq());
+	}
+
+	public synchronized void fmRxAfSwitchComplete(JFmRxStatus status,
+			JFmRxRdsPiCode pi, JFmRxTuneFreq tunedFreq, JFmRxAfFreq afFreq) {
+		count(JFmRx.UPCALL_AF_SWITCH_COMPLETE, status);
+		mix(afFreq.getAfFreq());
+	}
+
+	public synchronized void fmRxAfListChanged(JFmRxStatus status,
+			JFmRxRdsPiCode pi, byte[] afList, JFmRxAfListSize afListSize) {
+		count(JFmRx.UPCALL_AF_LIST, status);
+		mix(afList, afListSize.getValue());
+	}
+
+	public synchronized void fmRxCmdDone(JFmRxStatus status, int command,
+			long value) {
+		count(JFmRx.UPCALL_CMD_DONE, status);
+		mLastCommand = command;
+		if (command >= 0 && command < mCommands.length) {
+			mCommands[command]++;
+		}
+		mix(command);
+		mix(value);
+	}
+
+	public synchronized void fmRxCmdError(JFmRxStatus status) {
+		count(JFmRx.UPCALL_CMD_ERROR, status);
+	}
+
+	public synchronized void fmRxCompleteScanDone(JFmRxStatus status,
+			int numOfChannels, int[] channelsData) {
+		count(JFmRx.UPCALL_COMPLETE_SCAN_DONE, status);
+		mLastChannels = numOfChannels;
+		for (int i = 0; i < numOfChannels; i++) {
+			mix(channelsData[i]);
+		}
+	}
+
+	public synchronized void fmRxRawRdsAvailable(JFmRxRdsRing ring, int count) {
+		count(JFmRx.UPCALL_RAW_RDS_RING, JFmRxStatus.SUCCESS);
+		ring.consume(count);
+	}
+
+	public synchronized void fmRxRawRdsBatch(JFmRxStatus status, int count,
+			byte[] groupData, int[] groupMasks) {
+		count(JFmRx.UPCALL_RAW_RDS_BATCH, status);
+		mix(groupData, count * JFmRxRdsRing.GROUP_SIZE);
+	}
+}
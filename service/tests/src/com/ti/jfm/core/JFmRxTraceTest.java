@@ -0,0 +1,77 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.jfm.core;
+
+import android.test.suitebuilder.annotation.MediumTest;
+
+import junit.framework.TestCase;
+
+/**
+ * Snapshots of the trace ring taken while it is written from several threads
+ * must only hold whole records.
+ */
+@MediumTest
+public class JFmRxTraceTest extends TestCase {
+
+	private static final int WRITERS = 4;
+	private static final int RECORDS = 200000;
+
+	public void testSnapshotNeverReturnsTornRecords() throws Exception {
+		long[] timeNs = new long[JFmRxTrace.RING_SIZE];
+		long[] event = new long[JFmRxTrace.RING_SIZE];
+		long[] value = new long[JFmRxTrace.RING_SIZE];
+		Thread[] writers = new Thread[WRITERS];
+		int snapshots = 0;
+
+		/*
+		 * Each record carries its id and status again in its value. The ring
+		 * is first filled with such records, over those of other tests.
+		 */
+		for (int n = 0; n < JFmRxTrace.RING_SIZE; n++) {
+			JFmRxTrace.call(WRITERS, n, ((long) WRITERS << 32) | n);
+		}
+		for (int i = 0; i < WRITERS; i++) {
+			final int op = i;
+			writers[i] = new Thread("writer" + i) {
+				public void run() {
+					for (int n = 0; n < RECORDS; n++) {
+						JFmRxTrace.call(op, n, ((long) op << 32) | n);
+					}
+				}
+			};
+			writers[i].start();
+		}
+
+		for (boolean writing = true; writing; snapshots++) {
+			writing = false;
+			for (Thread writer : writers) {
+				writing |= writer.isAlive();
+			}
+			int count = JFmRxTrace.snapshot(JFmRxTrace.RING_SIZE, timeNs,
+					event, value);
+			for (int i = 0; i < count; i++) {
+				assertEquals(JFmRxTrace.KIND_CALL, JFmRxTrace
+						.getKind(event[i]));
+				assertEquals(value[i] >>> 32, JFmRxTrace.getId(event[i]));
+				assertEquals((int) value[i], JFmRxTrace.getStatus(event[i]));
+			}
+		}
+		assertTrue(snapshots > 1);
+		assertTrue(JFmRxTrace.getCount() >= (long) WRITERS * RECORDS);
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.jfm.core;
+
+import android.os.Debug;
+import android.test.suitebuilder.annotation.MediumTest;
+
+import junit.framework.TestCase;
+
+/**
+ * The nativeCb_* upcalls of a steady RDS stream must not allocate in the
+ * Java decode layer. The upcalls are made from the test thread, as the
+ * native dispatcher would, with the arrays it caches.
+ */
+@MediumTest
+public class JFmRxUpcallAllocTest extends TestCase {
+
+	private static final int WARMUP_ROUNDS = 10000;
+	private static final int ROUNDS = 10000;
+	private static final int ATTEMPTS = 3;
+
+	private JFmRxSimBackend mSim;
+	private JFmRx mJFmRx;
+	private JFmRxTestCallback mCallback;
+
+	private final byte[] mGroup = new byte[JFmRxRdsRing.GROUP_SIZE];
+	private final byte[] mPs = "RADIO 1 ".getBytes();
+	private final byte[] mRt = "Hello world".getBytes();
+	private final byte[] mAfList = new byte[] { 26, 127 };
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mSim = new JFmRxSimBackend();
+		JFmRx.setBackend(mSim);
+		mJFmRx = new JFmRx();
+		mCallback = new JFmRxTestCallback();
+		assertEquals(JFmRxStatus.SUCCESS, mJFmRx.create(mCallback));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		mJFmRx.destroy();
+		mSim.shutdown();
+		JFmRx.setBackend(null);
+		super.tearDown();
+	}
+
+	public void testRdsStreamDoesNotAllocate() {
+		int allocs = -1;
+
+		for (int i = 0; i < WARMUP_ROUNDS; i++) {
+			rdsRound(i);
+		}
+
+		/*
+		 * A late compilation of the test loop may still allocate once, an
+		 * allocating upcall does so in every attempt.
+		 */
+		for (int attempt = 0; attempt < ATTEMPTS && allocs != 0; attempt++) {
+			Debug.resetThreadAllocCount();
+			Debug.startAllocCounting();
+			for (int i = 0; i < ROUNDS; i++) {
+				rdsRound(i);
+			}
+			Debug.stopAllocCounting();
+			allocs = Debug.getThreadAllocCount();
+		}
+
+		assertEquals(0, allocs);
+	}
+
+	/* One of each upcall of a tuned station with RDS */
+	private void rdsRound(int i) {
+		int status = JFmRxStatus.SUCCESS.getValue();
+
+		mGroup[7] = (byte) i;
+		JFmRx.nativeCb_fmRxRawRDS(status, 1 << (i & 3), mGroup);
+		JFmRx.nativeCb_fmRxPiCodeChanged(status, 0xC201);
+		JFmRx.nativeCb_fmRxPtyCodeChanged(status, 10);
+		JFmRx.nativeCb_fmRxPsChanged(status, 89300, mPs, 0);
+		JFmRx.nativeCb_fmRxRadioText(status, false, mRt, mRt.length, 0, 0);
+		JFmRx.nativeCb_fmRxAfListChanged(status, 0xC201, mAfList,
+				mAfList.length);
+		JFmRx.nativeCb_fmRxAfSwitchStart(status, 0xC201, 89300, 90100);
+		JFmRx.nativeCb_fmRxAfSwitchComplete(status, 0xC201, 90100, 90100);
+		JFmRx.nativeCb_fmRxCmdDone(status, JFmRxCommand.CMD_GET_RSSI, 40);
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.server;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.ti.fm.FmRxScanOptions;
+import com.ti.jfm.core.JFmRx;
+import com.ti.jfm.core.JFmRxAsync;
+import com.ti.jfm.core.JFmRxCommand;
+import com.ti.jfm.core.JFmRxSimBackend;
+import com.ti.jfm.core.JFmRxStatus;
+import com.ti.jfm.core.JFmRxTestCallback;
+
+/**
+ * The coarse pre-pass of FmRxGridScan against the exhaustive scan of the
+ * same grid, on a reference band played by the simulated stack: both must
+ * report the same stations, the coarse one with fewer tunes.
+ */
+@LargeTest
+public class FmRxGridScanTest extends TestCase {
+
+	private static final String TAG = "FmRxGridScanTest";
+
+	private static final int FIRST_FREQ = 87500;
+	private static final int LAST_FREQ = 108000;
+	private static final int SPACING_KHZ = 50;
+	private static final int COARSE_STEP_KHZ = 200;
+	private static final int RSSI_THRESHOLD = 7;
+	private static final long TIMEOUT_MS = 30000;
+
+	/*
+	 * Frequency and RSSI of each station of the reference band. The
+	 * simulator hears a station 12 dB lower for each 50 kHz away from it.
+	 * Stations half way between two coarse samples are strong enough to be
+	 * heard on them, 101700 is close to the threshold and is only kept after
+	 * the confirm reads and isValidChannel.
+	 */
+	private static final int[][] REFERENCE_BAND = { { 87600, 45 },
+			{ 88100, 32 }, { 89300, 40 }, { 90050, 28 }, { 91500, 52 },
+			{ 92400, 25 }, { 93900, 14 }, { 95000, 35 }, { 96500, 15 },
+			{ 98200, 30 }, { 100300, 48 }, { 101700, 9 }, { 104000, 38 },
+			{ 106100, 20 }, { 107900, 42 } };
+
+	private HandlerThread mThread;
+	private JFmRxSimBackend mSim;
+	private JFmRx mJFmRx;
+	private JFmRxAsync mAsync;
+	private JFmRxTestCallback mCallback;
+	private FmRxGridScan mScan;
+	private ScanResult mResult;
+
+	/* Collects the stations reported by one scan */
+	private static final class ScanResult implements FmRxScanListener {
+		private JFmRxStatus mStatus = null;
+		private int[] mChannels;
+		private int[] mRssi;
+
+		public void onChannelFound(int frequency, int rssi, int index) {
+		}
+
+		public void onScanProgress(int percent, int frequency) {
+		}
+
+		public synchronized void onScanDone(JFmRxStatus status,
+				int[] channels, int[] rssi, int count) {
+			mStatus = status;
+			mChannels = channels;
+			mRssi = rssi;
+			notifyAll();
+		}
+
+		synchronized void reset() {
+			mStatus = null;
+		}
+
+		synchronized JFmRxStatus await(long timeoutMs)
+				throws InterruptedException {
+			long deadline = System.nanoTime() + timeoutMs * 1000000L;
+
+			while (mStatus == null) {
+				long waitMs = (deadline - System.nanoTime()) / 1000000L;
+				if (waitMs <= 0) {
+					break;
+				}
+				wait(waitMs);
+			}
+			return mStatus;
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mSim = new JFmRxSimBackend();
+		for (int[] station : REFERENCE_BAND) {
+			mSim.addStation(new JFmRxSimBackend.Station(station[0],
+					station[1]));
+		}
+		mSim.setCommandLatency(1, 0, 1);
+		JFmRx.setBackend(mSim);
+		mJFmRx = new JFmRx();
+		mAsync = new JFmRxAsync(mJFmRx);
+		mCallback = new JFmRxTestCallback();
+		assertEquals(JFmRxStatus.SUCCESS, mJFmRx.create(mCallback));
+		assertTrue(mAsync.enable().await(TIMEOUT_MS));
+
+		mThread = new HandlerThread(TAG);
+		mThread.start();
+		mResult = new ScanResult();
+		mScan = new FmRxGridScan(new Handler(mThread.getLooper()), mAsync,
+				mResult);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		long done = mCallback.getCount(JFmRx.UPCALL_CMD_DONE);
+		if (mJFmRx.disable() == JFmRxStatus.PENDING) {
+			mCallback.waitFor(JFmRx.UPCALL_CMD_DONE, done + 1, TIMEOUT_MS);
+		}
+		mJFmRx.destroy();
+		mSim.shutdown();
+		JFmRx.setBackend(null);
+		mThread.quit();
+		super.tearDown();
+	}
+
+	public void testCoarseScanMatchesExhaustiveScan() throws Exception {
+		long start = System.nanoTime();
+		long exhaustiveTunes = scan(0);
+		long exhaustiveMs = (System.nanoTime() - start) / 1000000;
+		int[] channels = mResult.mChannels;
+		int[] rssi = mResult.mRssi;
+
+		start = System.nanoTime();
+		long coarseTunes = scan(COARSE_STEP_KHZ);
+		long coarseMs = (System.nanoTime() - start) / 1000000;
+
+		Log.i(TAG, "exhaustive: " + exhaustiveTunes + " tunes in "
+				+ exhaustiveMs + " ms, coarse: " + coarseTunes + " tunes in "
+				+ coarseMs + " ms, " + channels.length + " stations");
+
+		/* Each run of neighbouring channels is kept on its station */
+		assertEquals(REFERENCE_BAND.length, channels.length);
+		for (int i = 0; i < REFERENCE_BAND.length; i++) {
+			assertEquals(REFERENCE_BAND[i][0], channels[i]);
+			assertEquals(REFERENCE_BAND[i][1], rssi[i]);
+		}
+		assertTrue(Arrays.toString(mResult.mChannels), Arrays.equals(
+				channels, mResult.mChannels));
+		assertTrue(Arrays.toString(mResult.mRssi), Arrays.equals(rssi,
+				mResult.mRssi));
+		/*
+		 * 103 samples, then about 7 channels per station: on this dense band
+		 * a little over half the tunes of the exhaustive scan.
+		 */
+		assertTrue(coarseTunes + " tunes",
+				coarseTunes < exhaustiveTunes * 2 / 3);
+	}
+
+	/*
+	 * The limit of the pre-pass: a weak station half way between two
+	 * samples is heard on neither of them.
+	 */
+	public void testCoarseScanMissesWeakStationBetweenSamples()
+			throws Exception {
+		mSim.clearStations();
+		mSim.addStation(new JFmRxSimBackend.Station(95000, 20));
+
+		scan(0);
+		assertEquals(1, mResult.mChannels.length);
+		assertEquals(95000, mResult.mChannels[0]);
+
+		scan(COARSE_STEP_KHZ);
+		assertEquals(0, mResult.mChannels.length);
+	}
+
+	/* Runs a merged scan of the band, returns the number of tunes it made */
+	private long scan(int coarseStepKhz) throws InterruptedException {
+		FmRxScanOptions options = new FmRxScanOptions().setDwellMs(1)
+				.setConfirmDwellMs(1).setCoarseStepKhz(coarseStepKhz)
+				.setMergeAdjacent(true);
+		long tunes = mCallback.getCommandCount(JFmRxCommand.CMD_TUNE);
+
+		mResult.reset();
+		assertTrue(mScan.start(FIRST_FREQ, LAST_FREQ, SPACING_KHZ,
+				RSSI_THRESHOLD, options));
+		assertEquals(JFmRxStatus.SUCCESS, mResult.await(TIMEOUT_MS));
+		return mCallback.getCommandCount(JFmRxCommand.CMD_TUNE) - tunes;
+	}
+}
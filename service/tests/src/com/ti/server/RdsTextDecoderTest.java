@@ -0,0 +1,150 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.server;
+
+import android.test.suitebuilder.annotation.LargeTest;
+import android.test.suitebuilder.annotation.SmallTest;
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import com.ti.fm.IFmConstants;
+import com.ti.jfm.core.JFmRx.JFmRxRepertoire;
+
+/**
+ * RdsTextDecoder against the nibble indexed lookup it replaced. The output
+ * must match; the speed of both is only logged, it depends on the device.
+ */
+public class RdsTextDecoderTest extends TestCase {
+
+	private static final String TAG = "RdsTextDecoderTest";
+
+	private static final int WARMUP = 20000;
+	private static final int ROUNDS = 200000;
+
+	/* PS names as broadcast: each repeated many times, on a few stations */
+	private static final int[] FREQUENCIES = { 89300, 95000, 101200 };
+	private static final byte[][] PS = { "RADIO 1 ".getBytes(),
+			"NEWS    ".getBytes(), "TRAFFIC ".getBytes() };
+
+	@SmallTest
+	public void testMatchesLookupTable() {
+		RdsTextDecoder decoder = new RdsTextDecoder();
+		byte[] bytes = new byte[256];
+
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		for (JFmRxRepertoire repertoire : JFmRxRepertoire.values()) {
+			assertEquals(repertoire.toString(), lookup(bytes, repertoire),
+					decoder.decode(89300, bytes, repertoire));
+		}
+	}
+
+	@SmallTest
+	public void testReturnsLastStringWhileUnchanged() {
+		RdsTextDecoder decoder = new RdsTextDecoder();
+		byte[] ps = PS[0].clone();
+		JFmRxRepertoire g0 = JFmRxRepertoire.FMC_RDS_REPERTOIRE_G0_CODE_TABLE;
+
+		String first = decoder.decode(89300, ps, g0);
+		assertSame(first, decoder.decode(89300, ps.clone(), g0));
+		assertEquals(1, decoder.getCached());
+
+		/* The caller may reuse its array, the decoder kept a copy */
+		ps[0] = 'X';
+		assertEquals("XADIO 1 ", decoder.decode(89300, ps, g0));
+		assertNotSame(first, decoder.decode(95000, PS[0], g0));
+		assertEquals(first, decoder.decode(95000, PS[0], g0));
+		assertEquals(3, decoder.getDecoded());
+	}
+
+	@LargeTest
+	public void testBenchmarkAgainstLookupTable() {
+		RdsTextDecoder decoder = new RdsTextDecoder();
+
+		runLookup(WARMUP);
+		runDecoder(decoder, WARMUP);
+
+		long start = System.nanoTime();
+		int lookupChars = runLookup(ROUNDS);
+		long lookupNs = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		int decoderChars = runDecoder(decoder, ROUNDS);
+		long decoderNs = System.nanoTime() - start;
+
+		Log.i(TAG, "PS decode: lookup table " + lookupNs / ROUNDS
+				+ " ns, RdsTextDecoder " + decoderNs / ROUNDS + " ns, "
+				+ decoder.getDecoded() + " decoded, " + decoder.getCached()
+				+ " from the cache");
+		assertEquals(lookupChars, decoderChars);
+	}
+
+	/*
+	 * A station repeats its PS about 11 times a second, so consecutive
+	 * callbacks for one frequency mostly carry the same bytes.
+	 */
+	private static int runLookup(int rounds) {
+		int chars = 0;
+
+		for (int i = 0; i < rounds; i++) {
+			chars += lookup(PS[(i >> 4) % PS.length],
+					JFmRxRepertoire.FMC_RDS_REPERTOIRE_G0_CODE_TABLE).length();
+		}
+		return chars;
+	}
+
+	private static int runDecoder(RdsTextDecoder decoder, int rounds) {
+		int chars = 0;
+
+		for (int i = 0; i < rounds; i++) {
+			chars += decoder.decode(FREQUENCIES[(i >> 4) % PS.length],
+					PS[(i >> 4) % PS.length],
+					JFmRxRepertoire.FMC_RDS_REPERTOIRE_G0_CODE_TABLE).length();
+		}
+		return chars;
+	}
+
+	/* StubFmRxService.findFromLookupTable as it was before RdsTextDecoder */
+	private static String lookup(byte[] indexArray, JFmRxRepertoire repertoire) {
+		StringBuilder sb = new StringBuilder("");
+		char[][] table;
+
+		switch (repertoire) {
+		case FMC_RDS_REPERTOIRE_G0_CODE_TABLE:
+			table = IFmConstants.lookUpTable_G0;
+			break;
+		case FMC_RDS_REPERTOIRE_G1_CODE_TABLE:
+			table = IFmConstants.lookUpTable_G1;
+			break;
+		case FMC_RDS_REPERTOIRE_G2_CODE_TABLE:
+			table = IFmConstants.lookUpTable_G2;
+			break;
+		default:
+			return sb.toString();
+		}
+
+		for (int i = 0; i < indexArray.length; i++) {
+			int msb = (indexArray[i] & 0xF0) >> 4;
+			int lsb = (indexArray[i] & 0x0F);
+			sb.append(table[msb][lsb]);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * TI's FM
+ *
+ * Copyright 2001-2010 Texas Instruments, Inc. - http://www.ti.com/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ti.server;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.test.InstrumentationTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.ti.fm.FmReceiver;
+import com.ti.jfm.core.JFmRx;
+import com.ti.jfm.core.JFmRxSimBackend;
+
+/**
+ * Binder clients calling the get APIs at the same time, against the
+ * simulated stack with a fixed command latency. The calls must overlap
+ * instead of queueing behind each other on the stub.
+ */
+@LargeTest
+public class StubFmRxServiceLoadTest extends InstrumentationTestCase {
+
+	private static final String TAG = "StubFmRxServiceLoadTest";
+
+	private static final int LATENCY_MS = 20;
+	private static final int CLIENTS = 8;
+	private static final int CALLS = 10;
+	private static final int RSSI = 40;
+	private static final long TIMEOUT_MS = 5000;
+
+	private JFmRxSimBackend mSim;
+	private StubFmRxService mService;
+
+	/*
+	 * Grants the service permissions and keeps its broadcasts and receivers
+	 * inside the test.
+	 */
+	static final class TestContext extends ContextWrapper {
+		TestContext(Context base) {
+			super(base);
+		}
+
+		@Override
+		public void enforceCallingOrSelfPermission(String permission,
+				String message) {
+		}
+
+		@Override
+		public Intent registerReceiver(BroadcastReceiver receiver,
+				IntentFilter filter) {
+			return null;
+		}
+
+		@Override
+		public void unregisterReceiver(BroadcastReceiver receiver) {
+		}
+
+		@Override
+		public void sendBroadcast(Intent intent) {
+		}
+
+		@Override
+		public void sendBroadcast(Intent intent, String permission) {
+		}
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		mSim = new JFmRxSimBackend();
+		mSim.addStation(new JFmRxSimBackend.Station(87500, RSSI));
+		mSim.setNoise(0, 0).setCommandLatency(LATENCY_MS, 0, 1);
+		JFmRx.setBackend(mSim);
+
+		mService = new StubFmRxService();
+		final Context context = new TestContext(getInstrumentation()
+				.getTargetContext());
+		/* The service handlers need a looper */
+		getInstrumentation().runOnMainSync(new Runnable() {
+			public void run() {
+				mService.init(context);
+			}
+		});
+		assertTrue(mService.create());
+		assertTrue(mService.enable());
+		waitForState(FmReceiver.STATE_ENABLED);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		if (mService.disable()) {
+			waitForState(FmReceiver.STATE_DISABLED);
+		}
+		mService.destroy();
+		mSim.shutdown();
+		JFmRx.setBackend(null);
+		super.tearDown();
+	}
+
+	public void testConcurrentGettersOverlap() throws Exception {
+		final AtomicInteger failures = new AtomicInteger();
+		Thread[] clients = new Thread[CLIENTS];
+
+		for (int i = 0; i < CLIENTS; i++) {
+			final boolean rssi = (i & 1) == 0;
+			clients[i] = new Thread("client" + i) {
+				public void run() {
+					for (int n = 0; n < CALLS; n++) {
+						if (rssi) {
+							if (mService.getRssi() != RSSI) {
+								failures.incrementAndGet();
+							}
+						} else {
+							mService.getFwVersion();
+						}
+					}
+				}
+			};
+		}
+
+		long start = System.nanoTime();
+		for (Thread client : clients) {
+			client.start();
+		}
+		for (Thread client : clients) {
+			client.join(TIMEOUT_MS * CALLS);
+		}
+		long elapsedMs = (System.nanoTime() - start) / 1000000;
+		long serializedMs = (long) CLIENTS * CALLS * LATENCY_MS;
+
+		Log.i(TAG, CLIENTS * CALLS + " calls in " + elapsedMs + " ms, "
+				+ CLIENTS * CALLS * 1000L / Math.max(1, elapsedMs)
+				+ " calls/s, " + serializedMs + " ms if serialized");
+
+		assertEquals(0, failures.get());
+		assertTrue("took " + elapsedMs + " ms", elapsedMs < serializedMs / 2);
+	}
+
+	public void testRssiDoesNotQueueBehindOtherClient() throws Exception {
+		final long[] fwMs = new long[1];
+
+		/* Back to back reads from one client keep the chip busy */
+		Thread slow = new Thread("slow") {
+			public void run() {
+				long start = System.nanoTime();
+				for (int n = 0; n < CALLS; n++) {
+					mService.getFwVersion();
+				}
+				fwMs[0] = (System.nanoTime() - start) / 1000000;
+			}
+		};
+		slow.start();
+		Thread.sleep(LATENCY_MS / 2);
+
+		long start = System.nanoTime();
+		assertEquals(RSSI, mService.getRssi());
+		long rssiMs = (System.nanoTime() - start) / 1000000;
+		slow.join(TIMEOUT_MS * CALLS);
+
+		Log.i(TAG, "getRssi took " + rssiMs + " ms beside " + CALLS
+				+ " getFwVersion taking " + fwMs[0] + " ms");
+		assertTrue("getRssi took " + rssiMs + " ms",
+				rssiMs < 4 * LATENCY_MS);
+	}
+
+	private void waitForState(int state) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+
+		while (mService.getFMState() != state) {
+			assertTrue("state " + mService.getFMState(), System
+					.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+}